@@ -0,0 +1,93 @@
+package ru.netology.load;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import ru.netology.entity.Country;
+import ru.netology.sender.MessageSenderImpl;
+
+/**
+ * Синтетические заголовки запросов для MessageSenderImpl. IP-адреса распределены по странам
+ * согласно весам; часть запросов приходит без заголовка IP.
+ * Наборы заголовков готовятся заранее, чтобы генерация не попадала в измеряемое время.
+ */
+public class HeaderWorkload {
+
+    private static final int SIZE = 4096;
+
+    private final List<Map<String, String>> headers;
+
+    public HeaderWorkload(Map<Country, Double> countryWeights, double missingIpRatio, long seed) {
+        if (countryWeights.isEmpty()) {
+            throw new IllegalArgumentException("Country weights must not be empty");
+        }
+        Country[] countries = countryWeights.keySet().toArray(new Country[0]);
+        double[] cumulative = new double[countries.length];
+        double sum = 0;
+        for (int i = 0; i < countries.length; i++) {
+            double weight = countryWeights.get(countries[i]);
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weight must not be negative: " + countries[i]);
+            }
+            sum += weight;
+            cumulative[i] = sum;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        this.headers = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            Map<String, String> map = new HashMap<>();
+            if (random.nextDouble() >= missingIpRatio) {
+                double point = random.nextDouble() * sum;
+                int country = 0;
+                while (country < countries.length - 1 && point >= cumulative[country]) {
+                    country++;
+                }
+                map.put(MessageSenderImpl.IP_ADDRESS_HEADER, ip(countries[country], random));
+            }
+            headers.add(map);
+        }
+    }
+
+    /**
+     * Веса по умолчанию: основная доля трафика из России и США
+     */
+    public static Map<Country, Double> defaultWeights() {
+        Map<Country, Double> weights = new EnumMap<>(Country.class);
+        weights.put(Country.RUSSIA, 0.5);
+        weights.put(Country.USA, 0.3);
+        weights.put(Country.GERMANY, 0.1);
+        weights.put(Country.BRAZIL, 0.1);
+        return weights;
+    }
+
+    public Map<String, String> headers(long index) {
+        return headers.get((int) (index & (SIZE - 1)));
+    }
+
+    /**
+     * Метод возвращает случайный адрес из диапазона страны. GeoServiceImpl распознает только
+     * диапазоны России (172.*) и США (96.*); остальные адреса проходят ветку страны по умолчанию
+     */
+    static String ip(Country country, SplittableRandom random) {
+        int first;
+        switch (country) {
+            case RUSSIA:
+                first = 172;
+                break;
+            case USA:
+                first = 96;
+                break;
+            case GERMANY:
+                first = 81;
+                break;
+            default:
+                first = 177;
+                break;
+        }
+        return first + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(1, 255);
+    }
+}
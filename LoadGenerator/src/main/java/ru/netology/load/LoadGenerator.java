@@ -0,0 +1,142 @@
+package ru.netology.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import ru.netology.geo.GeoServiceImpl;
+import ru.netology.i18n.LocalizationServiceImpl;
+import ru.netology.patient.repository.ObservablePatientInfoRepository;
+import ru.netology.patient.repository.PatientInfoOffHeapRepository;
+import ru.netology.patient.service.alert.Alert;
+import ru.netology.patient.service.alert.SendAlertService;
+import ru.netology.patient.service.medical.MedicalServiceImpl;
+import ru.netology.patient.service.medical.VitalsBaseline;
+import ru.netology.sender.MessageSender;
+import ru.netology.sender.MessageSenderImpl;
+
+/**
+ * Генератор нагрузки для MessageSenderImpl и MedicalServiceImpl.
+ * <p>
+ * Параметры в виде key=value: target (message, medical или both), rate (запросов в секунду),
+ * duration и warmup (секунды), threads, patients, abnormal (доля показаний с отклонением),
+ * missingIp (доля запросов без IP), seed, report (файл отчета).
+ * Отчет содержит пропускную способность и перцентили задержки с поправкой на координированное упущение.
+ */
+public class LoadGenerator {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    /**
+     * Получатель уведомлений, только считающий их: вывод в консоль исказил бы измерение
+     */
+    private static final class CountingAlertService implements SendAlertService {
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void send(String message) {
+            count.increment();
+        }
+
+        @Override
+        public void send(Alert alert) {
+            count.increment();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = parse(args);
+        String target = options.getOrDefault("target", "both");
+        double rate = Double.parseDouble(options.getOrDefault("rate", "10000"));
+        long duration = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "30")));
+        long warmup = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", "5")));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        Path report = Path.of(options.getOrDefault("report", "load-report.txt"));
+
+        OpenLoopDriver driver = new OpenLoopDriver(threads);
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "Load report %s%ntarget rate %.0f/s, duration %ds, warmup %ds, threads %d%n",
+            Instant.now(), rate, TimeUnit.NANOSECONDS.toSeconds(duration), TimeUnit.NANOSECONDS.toSeconds(warmup), threads));
+
+        // MessageSenderImpl печатает каждое сообщение; вывод отключается, чтобы мерить сервис, а не консоль
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            if ("message".equals(target) || "both".equals(target)) {
+                HeaderWorkload workload = new HeaderWorkload(HeaderWorkload.defaultWeights(),
+                    Double.parseDouble(options.getOrDefault("missingIp", "0.05")), seed);
+                MessageSender sender = new MessageSenderImpl(new GeoServiceImpl(), new LocalizationServiceImpl());
+                OpenLoopDriver.Operation operation = index -> sender.send(workload.headers(index));
+                driver.run(operation, rate, warmup);
+                OpenLoopDriver.Result result = driver.run(operation, rate, duration);
+                appendResult(text, "MessageSenderImpl", rate, result, "");
+            }
+            if ("medical".equals(target) || "both".equals(target)) {
+                PatientWorkload workload = new PatientWorkload(Integer.parseInt(options.getOrDefault("patients", "10000")),
+                    Double.parseDouble(options.getOrDefault("abnormal", "0.1")), seed);
+                ObservablePatientInfoRepository repository =
+                    new ObservablePatientInfoRepository(new PatientInfoOffHeapRepository());
+                VitalsBaseline baseline = new VitalsBaseline();
+                repository.addListener(baseline);
+                workload.populate(repository);
+                CountingAlertService alerts = new CountingAlertService();
+                MedicalServiceImpl medicalService = new MedicalServiceImpl(repository, alerts, baseline);
+                OpenLoopDriver.Operation operation = index -> workload.check(medicalService, index);
+                driver.run(operation, rate, warmup);
+                long alertsBefore = alerts.count.sum();
+                OpenLoopDriver.Result result = driver.run(operation, rate, duration);
+                appendResult(text, "MedicalServiceImpl", rate, result, String.format(Locale.ROOT,
+                    "abnormal readings %.3f, alerts %d%n", workload.abnormalShare(), alerts.count.sum() - alertsBefore));
+            }
+        } finally {
+            System.setOut(console);
+        }
+        Files.writeString(report, text, StandardCharsets.UTF_8);
+        System.out.print(text);
+    }
+
+    static void appendResult(StringBuilder text, String name, double rate, OpenLoopDriver.Result result, String extra) {
+        text.append(String.format(Locale.ROOT, "%n== %s ==%n", name));
+        text.append(String.format(Locale.ROOT, "requests %d, completed %d, errors %d%n",
+            result.getScheduled(), result.getCompleted(), result.getErrors()));
+        text.append(String.format(Locale.ROOT, "throughput %.1f/s (target %.1f/s)%n", result.getThroughput(), rate));
+        text.append(extra);
+        appendPercentiles(text, "latency (corrected, us)", result.getLatency());
+        appendPercentiles(text, "service time (us)", result.getServiceTime());
+    }
+
+    private static void appendPercentiles(StringBuilder text, String title, LatencyHistogram histogram) {
+        text.append(title).append(':');
+        for (double percentile : PERCENTILES) {
+            text.append(String.format(Locale.ROOT, " p%s=%.1f", format(percentile),
+                histogram.valueAtPercentile(percentile) / 1000.0));
+        }
+        text.append(String.format(Locale.ROOT, " max=%.1f%n", histogram.getMaxValue() / 1000.0));
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+}
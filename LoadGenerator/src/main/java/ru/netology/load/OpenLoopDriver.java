@@ -0,0 +1,149 @@
+package ru.netology.load;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузка открытого цикла: запросы запускаются по расписанию с заданной частотой независимо от того,
+ * успевает ли сервис. Задержка считается от запланированного момента запуска, а не от фактического,
+ * поэтому время ожидания в очереди за медленными запросами попадает в гистограмму
+ * (поправка на координированное упущение). Отдельно записывается чистое время выполнения.
+ */
+public class OpenLoopDriver {
+
+    /**
+     * Нагружаемая операция; index - порядковый номер запроса для выбора синтетических данных
+     */
+    public interface Operation {
+        void run(long index) throws Exception;
+    }
+
+    /**
+     * Итог прогона
+     */
+    public static final class Result {
+        private final long scheduled;
+        private final long completed;
+        private final long errors;
+        private final long elapsedNanos;
+        private final LatencyHistogram latency;
+        private final LatencyHistogram serviceTime;
+
+        private Result(long scheduled, long completed, long errors, long elapsedNanos,
+                       LatencyHistogram latency, LatencyHistogram serviceTime) {
+            this.scheduled = scheduled;
+            this.completed = completed;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.latency = latency;
+            this.serviceTime = serviceTime;
+        }
+
+        public long getScheduled() {
+            return scheduled;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Задержка от запланированного момента запуска до завершения
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Время выполнения операции без ожидания в очереди
+         */
+        public LatencyHistogram getServiceTime() {
+            return serviceTime;
+        }
+
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : completed * 1e9 / elapsedNanos;
+        }
+    }
+
+    // Ближе этого к запланированному моменту поток не засыпает, а ждет активно
+    private static final long SPIN_THRESHOLD_NANOS = 50_000;
+
+    private final int threads;
+
+    public OpenLoopDriver(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    public Result run(Operation operation, double ratePerSecond, long durationNanos) throws InterruptedException {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + ratePerSecond);
+        }
+        double intervalNanos = 1e9 / ratePerSecond;
+        long total = (long) (durationNanos / intervalNanos);
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyHistogram serviceTime = new LatencyHistogram();
+        AtomicLong completed = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong lastCompletion = new AtomicLong();
+        // Очередь не ограничена: отставание сервиса копится в ней и видно в задержках, а не замедляет расписание
+        ExecutorService workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), task -> {
+                Thread thread = new Thread(task, "load-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        long start = System.nanoTime();
+        try {
+            for (long i = 0; i < total; i++) {
+                long intended = start + (long) (i * intervalNanos);
+                awaitUntil(intended);
+                long index = i;
+                workers.execute(() -> {
+                    long begin = System.nanoTime();
+                    try {
+                        operation.run(index);
+                    } catch (Exception exception) {
+                        errors.incrementAndGet();
+                    }
+                    long end = System.nanoTime();
+                    serviceTime.record(end - begin);
+                    latency.record(end - intended);
+                    completed.incrementAndGet();
+                    lastCompletion.accumulateAndGet(end, Math::max);
+                });
+            }
+        } finally {
+            workers.shutdown();
+        }
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        long elapsed = Math.max(0, lastCompletion.get() - start);
+        return new Result(total, completed.get(), errors.get(), elapsed, latency, serviceTime);
+    }
+
+    private static void awaitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
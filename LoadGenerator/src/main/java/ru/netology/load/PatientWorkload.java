@@ -0,0 +1,96 @@
+package ru.netology.load;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+import ru.netology.patient.repository.PatientInfoRepository;
+import ru.netology.patient.service.medical.MedicalService;
+
+/**
+ * Синтетические пациенты и показания для MedicalServiceImpl. Доля abnormalRatio показаний отклоняется
+ * от нормы пациента (давление выше на 30 или температура ниже на 2 градуса), остальные совпадают с ней.
+ * Показания готовятся заранее, чтобы генерация не попадала в измеряемое время.
+ */
+public class PatientWorkload {
+
+    private static final int READINGS = 8192;
+
+    private final PatientInfo[] patients;
+    private final int[] readingPatients = new int[READINGS];
+    private final String[] readingIds = new String[READINGS];
+    private final BloodPressure[] pressures = new BloodPressure[READINGS];
+    private final BigDecimal[] temperatures = new BigDecimal[READINGS];
+    private final int abnormalReadings;
+
+    public PatientWorkload(int patientCount, double abnormalRatio, long seed) {
+        if (patientCount < 1) {
+            throw new IllegalArgumentException("Patient count must be positive: " + patientCount);
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        this.patients = new PatientInfo[patientCount];
+        for (int i = 0; i < patientCount; i++) {
+            int high = 110 + random.nextInt(30);
+            int low = 70 + random.nextInt(15);
+            BigDecimal temperature = new BigDecimal("36.0").add(BigDecimal.valueOf(random.nextInt(10), 1));
+            patients[i] = new PatientInfo("Пациент" + i, "Фамилия" + i,
+                LocalDate.of(1940 + random.nextInt(70), 1 + random.nextInt(12), 1 + random.nextInt(28)),
+                new HealthInfo(temperature, new BloodPressure(high, low)));
+        }
+        int abnormal = 0;
+        for (int i = 0; i < READINGS; i++) {
+            int patient = random.nextInt(patientCount);
+            HealthInfo norm = patients[patient].getHealthInfo();
+            BloodPressure pressure = norm.getBloodPressure();
+            BigDecimal temperature = norm.getNormalTemperature();
+            if (random.nextDouble() < abnormalRatio) {
+                abnormal++;
+                if (random.nextBoolean()) {
+                    pressure = new BloodPressure(pressure.getHigh() + 30, pressure.getLow());
+                } else {
+                    temperature = temperature.subtract(new BigDecimal("2.0"));
+                }
+            }
+            readingPatients[i] = patient;
+            pressures[i] = pressure;
+            temperatures[i] = temperature;
+        }
+        this.abnormalReadings = abnormal;
+    }
+
+    /**
+     * Метод добавляет пациентов в репозиторий и связывает показания с выданными идентификаторами
+     */
+    public void populate(PatientInfoRepository repository) {
+        String[] ids = new String[patients.length];
+        for (int i = 0; i < patients.length; i++) {
+            ids[i] = repository.add(patients[i]);
+        }
+        for (int i = 0; i < READINGS; i++) {
+            readingIds[i] = ids[readingPatients[i]];
+        }
+    }
+
+    /**
+     * Метод выполняет одно показание: проверку давления и температуры
+     */
+    public void check(MedicalService medicalService, long index) {
+        int reading = (int) (index & (READINGS - 1));
+        String id = readingIds[reading];
+        if (id == null) {
+            throw new IllegalStateException("Workload is not populated");
+        }
+        medicalService.checkBloodPressure(id, pressures[reading]);
+        medicalService.checkTemperature(id, temperatures[reading]);
+    }
+
+    /**
+     * Метод возвращает фактическую долю показаний с отклонением среди подготовленных
+     */
+    public double abnormalShare() {
+        return (double) abnormalReadings / READINGS;
+    }
+}
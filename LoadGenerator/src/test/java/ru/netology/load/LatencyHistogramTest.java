@@ -0,0 +1,50 @@
+package ru.netology.load;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Класс для тестирования LatencyHistogram
+ * Проверяет границы корзин и вычисление перцентилей
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Тест проверяет, что значение попадает в корзину с верхней границей не меньше него и с погрешностью до 1/64
+     */
+    @Test
+    public void testBucketBounds() {
+        // Подготовка данных для теста
+        long[] values = {0, 1, 127, 128, 129, 1_000, 65_535, 1_000_000, 123_456_789_012L, Long.MAX_VALUE};
+
+        // Выполнение тестируемого метода и проверка результата
+        for (long value : values) {
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value));
+            assertTrue("value " + value, highest >= value);
+            assertTrue("value " + value, highest - value <= value / 64);
+        }
+    }
+
+    /**
+     * Тест проверяет перцентили равномерного распределения от 1 до 10000 мкс
+     */
+    @Test
+    public void testPercentiles() {
+        // Подготовка данных для теста
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // Выполнение тестируемого метода
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        // Проверка результата
+        assertEquals(10_000, histogram.getTotalCount());
+        assertEquals(10_000_000, histogram.getMaxValue());
+        assertEquals(5_000_000, histogram.valueAtPercentile(50), 5_000_000 / 64.0);
+        assertEquals(9_900_000, histogram.valueAtPercentile(99), 9_900_000 / 64.0);
+        assertEquals(10_000_000, histogram.valueAtPercentile(100));
+    }
+}
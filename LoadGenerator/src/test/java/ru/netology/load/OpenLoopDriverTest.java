@@ -0,0 +1,59 @@
+package ru.netology.load;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Класс для тестирования OpenLoopDriver
+ * Проверяет, что задержка считается от запланированного момента запуска
+ */
+public class OpenLoopDriverTest {
+
+    /**
+     * Тест проверяет поправку на координированное упущение: сервис, который не успевает за частотой,
+     * копит очередь, и задержка растет, хотя время выполнения каждого запроса постоянно
+     */
+    @Test
+    public void testQueueingDelayIsMeasured() throws InterruptedException {
+        // Подготовка данных для теста: 200 запросов в секунду на сервис с пропускной способностью 100 в секунду
+        OpenLoopDriver driver = new OpenLoopDriver(1);
+        OpenLoopDriver.Operation slow = index -> Thread.sleep(10);
+
+        // Выполнение тестируемого метода
+        OpenLoopDriver.Result result = driver.run(slow, 200, TimeUnit.MILLISECONDS.toNanos(500));
+
+        // Проверка результата
+        assertEquals(100, result.getScheduled());
+        assertEquals(100, result.getCompleted());
+        assertEquals(0, result.getErrors());
+        assertTrue(result.getServiceTime().valueAtPercentile(50) < TimeUnit.MILLISECONDS.toNanos(50));
+        // Последние запросы ждут в очереди около половины прогона
+        assertTrue(result.getLatency().getMaxValue() > TimeUnit.MILLISECONDS.toNanos(400));
+        assertTrue(result.getThroughput() < 150);
+    }
+
+    /**
+     * Тест проверяет подсчет ошибок операции
+     */
+    @Test
+    public void testErrorsAreCounted() throws InterruptedException {
+        // Подготовка данных для теста
+        OpenLoopDriver driver = new OpenLoopDriver(2);
+
+        // Выполнение тестируемого метода
+        OpenLoopDriver.Result result = driver.run(index -> {
+            if (index % 2 == 0) {
+                throw new IllegalStateException("failure " + index);
+            }
+        }, 1000, TimeUnit.MILLISECONDS.toNanos(100));
+
+        // Проверка результата
+        assertEquals(100, result.getScheduled());
+        assertEquals(100, result.getCompleted());
+        assertEquals(50, result.getErrors());
+    }
+}
@@ -1,8 +1,11 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
 import ru.netology.geo.GeoService;
 import ru.netology.geo.GeoServiceImpl;
+import ru.netology.geo.ReloadableGeoService;
 import ru.netology.i18n.LocalizationService;
 import ru.netology.i18n.LocalizationServiceImpl;
 import ru.netology.sender.MessageSender;
@@ -11,8 +14,16 @@ import ru.netology.sender.MessageSenderImpl;
 public class Main {
 
     //Тестовый пример
-    public static void main(String[] args) {
-        GeoService geoService = new GeoServiceImpl();
+    public static void main(String[] args) throws IOException {
+        // Если передан файл диапазонов, геоданные берутся из него и могут обновляться без перезапуска
+        GeoService geoService;
+        if (args.length > 0) {
+            ReloadableGeoService reloadableGeoService = new ReloadableGeoService(Paths.get(args[0]));
+            reloadableGeoService.reload();
+            geoService = reloadableGeoService;
+        } else {
+            geoService = new GeoServiceImpl();
+        }
         LocalizationService localizationService = new LocalizationServiceImpl();
         MessageSender messageSender = new MessageSenderImpl(geoService, localizationService);
 
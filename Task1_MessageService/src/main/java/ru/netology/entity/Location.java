@@ -1,6 +1,11 @@
 package ru.netology.entity;
 
-public class Location {
+import java.util.Objects;
+
+/**
+ * Неизменяемая локация. Канонические экземпляры выдает {@link ru.netology.geo.LocationRegistry}
+ */
+public final class Location {
 
     private final String city;
 
@@ -32,4 +37,25 @@ public class Location {
     public int getBuiling() {
         return builing;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Location location = (Location) o;
+        return builing == location.builing
+            && Objects.equals(city, location.city)
+            && country == location.country
+            && Objects.equals(street, location.street);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(city, country, street, builing);
+    }
+
+    @Override
+    public String toString() {
+        return "Location{city='" + city + "', country=" + country + ", street='" + street + "', builing=" + builing + '}';
+    }
 }
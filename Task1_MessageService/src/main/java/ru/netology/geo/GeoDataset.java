@@ -0,0 +1,259 @@
+package ru.netology.geo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+import ru.netology.entity.Country;
+import ru.netology.entity.Location;
+
+/**
+ * Неизменяемый набор диапазонов IPv4 с их локациями.
+ * <p>
+ * Вложенные диапазоны при сборке разворачиваются в непересекающиеся отрезки (побеждает самый узкий),
+ * поэтому поиск - один двоичный поиск по отсортированному массиву начал без блокировок и без создания объектов.
+ * Формат файла: строка {@code startIp,endIp,city,country,street,building}, пустое поле - null,
+ * строки с {@code #} и пустые строки пропускаются.
+ */
+public final class GeoDataset {
+
+    private static final long NOT_AN_IP = -1;
+
+    private final long[] starts;
+    private final long[] ends;
+    private final Location[] locations;
+
+    private GeoDataset(long[] starts, long[] ends, Location[] locations) {
+        this.starts = starts;
+        this.ends = ends;
+        this.locations = locations;
+    }
+
+    /**
+     * Метод возвращает локацию по ip; null - адрес не входит ни в один диапазон или не является IPv4
+     */
+    public Location lookup(String ip) {
+        long address = parseIp(ip);
+        if (address == NOT_AN_IP) {
+            return null;
+        }
+        int low = 0;
+        int high = starts.length - 1;
+        // Ищем последний отрезок, начинающийся не позже адреса
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] <= address) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high >= 0 && address <= ends[high] ? locations[high] : null;
+    }
+
+    /**
+     * Метод возвращает число непересекающихся отрезков после сборки
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * Метод возвращает набор, повторяющий ответы {@link GeoServiceImpl}
+     */
+    public static GeoDataset builtIn(LocationRegistry registry) {
+        return new Builder()
+            .add(GeoServiceImpl.LOCALHOST, GeoServiceImpl.LOCALHOST, registry.intern(null, null, null, 0))
+            .add("172.0.0.0", "172.255.255.255", registry.intern("Moscow", Country.RUSSIA, null, 0))
+            .add(GeoServiceImpl.MOSCOW_IP, GeoServiceImpl.MOSCOW_IP,
+                registry.intern("Moscow", Country.RUSSIA, "Lenina", 15))
+            .add("96.0.0.0", "96.255.255.255", registry.intern("New York", Country.USA, null, 0))
+            .add(GeoServiceImpl.NEW_YORK_IP, GeoServiceImpl.NEW_YORK_IP,
+                registry.intern("New York", Country.USA, " 10th Avenue", 32))
+            .build();
+    }
+
+    /**
+     * Метод читает набор из файла. Локации интернируются в собственный реестр набора: одинаковые строки
+     * делят один экземпляр, а после замены набора его локации собирает GC вместе с ним
+     */
+    public static GeoDataset load(Path file) throws IOException {
+        LocationRegistry registry = new LocationRegistry();
+        Builder builder = new Builder();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",", -1);
+                if (fields.length != 6) {
+                    throw new IOException("Expected 6 fields at line " + lineNumber + " of " + file);
+                }
+                try {
+                    Location location = registry.intern(field(fields[2]), country(fields[3]), field(fields[4]),
+                        fields[5].trim().isEmpty() ? 0 : Integer.parseInt(fields[5].trim()));
+                    builder.add(fields[0].trim(), fields[1].trim(), location);
+                } catch (IllegalArgumentException exception) {
+                    throw new IOException("Invalid range at line " + lineNumber + " of " + file, exception);
+                }
+            }
+        }
+        try {
+            return builder.build();
+        } catch (IllegalArgumentException exception) {
+            throw new IOException("Invalid dataset " + file, exception);
+        }
+    }
+
+    /**
+     * Метод переводит IPv4 в число без создания объектов; -1 - строка не является адресом IPv4
+     */
+    static long parseIp(String ip) {
+        if (ip == null) {
+            return NOT_AN_IP;
+        }
+        long address = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0; i < ip.length(); i++) {
+            char symbol = ip.charAt(i);
+            if (symbol >= '0' && symbol <= '9') {
+                octet = octet * 10 + (symbol - '0');
+                if (++digits > 3 || octet > 255) {
+                    return NOT_AN_IP;
+                }
+            } else if (symbol == '.' && digits > 0 && dots < 3) {
+                address = address << 8 | octet;
+                octet = 0;
+                digits = 0;
+                dots++;
+            } else {
+                return NOT_AN_IP;
+            }
+        }
+        return dots == 3 && digits > 0 ? address << 8 | octet : NOT_AN_IP;
+    }
+
+    private static String field(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static Country country(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : Country.valueOf(trimmed);
+    }
+
+    /**
+     * Сборка набора; вложенные диапазоны допустимы, частично пересекающиеся - нет
+     */
+    public static final class Builder {
+
+        private static final class Range {
+            private final long start;
+            private final long end;
+            private final Location location;
+            private final int order;
+
+            private Range(long start, long end, Location location, int order) {
+                this.start = start;
+                this.end = end;
+                this.location = location;
+                this.order = order;
+            }
+        }
+
+        private final List<Range> ranges = new ArrayList<>();
+
+        public Builder add(String startIp, String endIp, Location location) {
+            long start = parseIp(startIp);
+            long end = parseIp(endIp);
+            if (start == NOT_AN_IP || end == NOT_AN_IP || start > end) {
+                throw new IllegalArgumentException("Invalid IPv4 range: " + startIp + " - " + endIp);
+            }
+            ranges.add(new Range(start, end, location, ranges.size()));
+            return this;
+        }
+
+        /**
+         * Метод разворачивает диапазоны в отсортированные непересекающиеся отрезки:
+         * открытые диапазоны лежат в стеке, и каждый вложенный диапазон прерывает объемлющий.
+         * Из одинаковых диапазонов побеждает добавленный позже
+         */
+        public GeoDataset build() {
+            List<Range> sorted = new ArrayList<>(ranges);
+            sorted.sort(Comparator.<Range>comparingLong(range -> range.start)
+                .thenComparing(Comparator.<Range>comparingLong(range -> range.end).reversed())
+                .thenComparingInt(range -> range.order));
+            Segments segments = new Segments(sorted.size() * 2 + 1);
+            Deque<Range> open = new ArrayDeque<>();
+            long position = 0;
+            for (Range range : sorted) {
+                while (!open.isEmpty() && open.peek().end < range.start) {
+                    Range closed = open.pop();
+                    segments.add(position, closed.end, closed.location);
+                    position = closed.end + 1;
+                }
+                if (!open.isEmpty()) {
+                    Range outer = open.peek();
+                    if (range.end > outer.end) {
+                        throw new IllegalArgumentException("Ranges overlap partially at " + range.start);
+                    }
+                    segments.add(position, range.start - 1, outer.location);
+                }
+                position = range.start;
+                open.push(range);
+            }
+            while (!open.isEmpty()) {
+                Range closed = open.pop();
+                segments.add(position, closed.end, closed.location);
+                position = closed.end + 1;
+            }
+            return new GeoDataset(Arrays.copyOf(segments.starts, segments.size),
+                Arrays.copyOf(segments.ends, segments.size), Arrays.copyOf(segments.locations, segments.size));
+        }
+    }
+
+    /**
+     * Накопитель отрезков; соседние отрезки с одной локацией сливаются
+     */
+    private static final class Segments {
+        private final long[] starts;
+        private final long[] ends;
+        private final Location[] locations;
+        private int size;
+
+        private Segments(int capacity) {
+            this.starts = new long[capacity];
+            this.ends = new long[capacity];
+            this.locations = new Location[capacity];
+        }
+
+        private void add(long start, long end, Location location) {
+            if (start > end) {
+                return;
+            }
+            if (size > 0 && ends[size - 1] == start - 1 && locations[size - 1] == location) {
+                ends[size - 1] = end;
+                return;
+            }
+            starts[size] = start;
+            ends[size] = end;
+            locations[size] = location;
+            size++;
+        }
+    }
+}
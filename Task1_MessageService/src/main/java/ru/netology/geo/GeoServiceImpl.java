@@ -9,24 +9,57 @@ public class GeoServiceImpl implements GeoService {
     public static final String MOSCOW_IP = "172.0.32.11";
     public static final String NEW_YORK_IP = "96.44.183.149";
 
+    private final LocationRegistry registry;
+    // Ответы сервиса фиксированы, поэтому канонические экземпляры берутся из реестра один раз
+    private final Location localhost;
+    private final Location moscowCenter;
+    private final Location newYorkCenter;
+    private final Location moscow;
+    private final Location newYork;
+
+    public GeoServiceImpl() {
+        this(new LocationRegistry());
+    }
+
+    public GeoServiceImpl(LocationRegistry registry) {
+        this.registry = registry;
+        this.localhost = registry.intern(null, null, null, 0);
+        this.moscowCenter = registry.intern("Moscow", Country.RUSSIA, "Lenina", 15);
+        this.newYorkCenter = registry.intern("New York", Country.USA, " 10th Avenue", 32);
+        this.moscow = registry.intern("Moscow", Country.RUSSIA, null, 0);
+        this.newYork = registry.intern("New York", Country.USA, null, 0);
+    }
+
     /**
      * Метод определяет локацию по ip
      */
     public Location byIp(String ip) {
         if (LOCALHOST.equals(ip)) {
-            return new Location(null, null, null, 0);
+            return localhost;
         } else if (MOSCOW_IP.equals(ip)) {
-            return new Location("Moscow", Country.RUSSIA, "Lenina", 15);
+            return moscowCenter;
         } else if (NEW_YORK_IP.equals(ip)) {
-            return new Location("New York", Country.USA, " 10th Avenue", 32);
+            return newYorkCenter;
         } else if (ip.startsWith("172.")) {
-            return new Location("Moscow", Country.RUSSIA, null, 0);
+            return moscow;
         } else if (ip.startsWith("96.")) {
-            return new Location("New York", Country.USA, null,  0);
+            return newYork;
         }
         return null;
     }
 
+    /**
+     * Метод определяет локацию по ip и возвращает ее код из {@link LocationRegistry}; -1 - локация не найдена
+     */
+    public long byIpCode(String ip) {
+        Location location = byIp(ip);
+        return location == null ? -1 : registry.encode(location);
+    }
+
+    public LocationRegistry getRegistry() {
+        return registry;
+    }
+
     /**
      * Метод определяет локацию по координатам
      */
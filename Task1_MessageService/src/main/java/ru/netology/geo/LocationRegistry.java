@@ -0,0 +1,197 @@
+package ru.netology.geo;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import ru.netology.entity.Country;
+import ru.netology.entity.Location;
+
+/**
+ * Реестр канонических экземпляров {@link Location} и их упакованного представления в long.
+ * <p>
+ * Формат кода (от старших битов): 8 бит - страна (ordinal + 1, 0 - нет страны), 18 бит - id города,
+ * 18 бит - id улицы (0 - нет значения), 20 бит - номер дома (0..1048575).
+ * Код удобен как ключ кешей и поле в горячих путях: для повторных локаций ни {@link #intern},
+ * ни {@link #decode} не создают объектов. Чтение идет без блокировок; новые названия и локации
+ * добавляются под блокировкой реестра.
+ */
+public class LocationRegistry {
+
+    private static final int NAME_BITS = 18;
+    private static final int BUILDING_BITS = 20;
+    private static final int MAX_NAMES = (1 << NAME_BITS) - 1;
+    private static final int MAX_BUILDING = (1 << BUILDING_BITS) - 1;
+    private static final Country[] COUNTRIES = Country.values();
+
+    /**
+     * Открытая адресация: ключ - код, значение - локация; пустая ячейка - ячейка без локации.
+     * Код ячейки записывается до публикации локации, поэтому читатель, увидевший локацию, видит и ее код
+     */
+    private static final class Table {
+        private final long[] codes;
+        private final AtomicReferenceArray<Location> locations;
+        private int size;
+
+        private Table(int capacity) {
+            this.codes = new long[capacity];
+            this.locations = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    private final Map<String, Integer> nameIds = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private int nameCount = 1;
+    private volatile Table table = new Table(64);
+
+    /**
+     * Метод возвращает канонический экземпляр локации с заданными полями
+     */
+    public Location intern(String city, Country country, String street, int building) {
+        long code = encode(city, country, street, building);
+        Location location = find(table, code);
+        return location != null ? location : add(code, city, country, street, building);
+    }
+
+    public Location intern(Location location) {
+        return intern(location.getCity(), location.getCountry(), location.getStreet(), location.getBuiling());
+    }
+
+    /**
+     * Метод упаковывает локацию в long, регистрируя новые названия города и улицы
+     */
+    public long encode(Location location) {
+        return encode(location.getCity(), location.getCountry(), location.getStreet(), location.getBuiling());
+    }
+
+    public long encode(String city, Country country, String street, int building) {
+        if (building < 0 || building > MAX_BUILDING) {
+            throw new IllegalArgumentException("Building number does not fit into location code: " + building);
+        }
+        long countryBits = country == null ? 0 : country.ordinal() + 1;
+        return countryBits << (2 * NAME_BITS + BUILDING_BITS)
+            | (long) nameId(city) << (NAME_BITS + BUILDING_BITS)
+            | (long) nameId(street) << BUILDING_BITS
+            | building;
+    }
+
+    /**
+     * Метод возвращает канонический экземпляр по коду, полученному от {@link #encode}
+     */
+    public Location decode(long code) {
+        Location location = find(table, code);
+        if (location != null) {
+            return location;
+        }
+        Country country = country(code);
+        String city = name((int) (code >>> (NAME_BITS + BUILDING_BITS)) & MAX_NAMES);
+        String street = name((int) (code >>> BUILDING_BITS) & MAX_NAMES);
+        return add(code, city, country, street, (int) code & MAX_BUILDING);
+    }
+
+    /**
+     * Метод возвращает страну из кода без обращения к реестру
+     */
+    public static Country country(long code) {
+        int countryBits = (int) (code >>> (2 * NAME_BITS + BUILDING_BITS));
+        return countryBits == 0 ? null : COUNTRIES[countryBits - 1];
+    }
+
+    public synchronized int size() {
+        return table.size;
+    }
+
+    private int nameId(String name) {
+        if (name == null) {
+            return 0;
+        }
+        Integer id = nameIds.get(name);
+        return id != null ? id : registerName(name);
+    }
+
+    private synchronized int registerName(String name) {
+        Integer existing = nameIds.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        if (nameCount > MAX_NAMES) {
+            throw new IllegalStateException("Location registry is full");
+        }
+        int id = nameCount++;
+        String[] current = names;
+        if (id >= current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[id] = name;
+        // Публикуем массив до id, чтобы читатель кода всегда находил название
+        names = current;
+        nameIds.put(name, id);
+        return id;
+    }
+
+    private String name(int id) {
+        if (id == 0) {
+            return null;
+        }
+        String[] current = names;
+        if (id >= current.length || current[id] == null) {
+            throw new IllegalArgumentException("Unknown name id in location code: " + id);
+        }
+        return current[id];
+    }
+
+    private static Location find(Table table, long code) {
+        int mask = table.codes.length - 1;
+        for (int slot = slot(code, mask); ; slot = (slot + 1) & mask) {
+            Location location = table.locations.get(slot);
+            if (location == null || table.codes[slot] == code) {
+                return location;
+            }
+        }
+    }
+
+    /**
+     * Локация добавляется в текущую таблицу на месте; при заполнении больше чем наполовину таблица
+     * копируется в удвоенную и публикуется через volatile-поле, поэтому добавление амортизированно O(1).
+     * Читатели без блокировки видят либо прежнюю таблицу, либо полностью заполненную новую
+     */
+    private synchronized Location add(long code, String city, Country country, String street, int building) {
+        Table current = table;
+        Location existing = find(current, code);
+        if (existing != null) {
+            return existing;
+        }
+        if ((current.size + 1) * 2 > current.codes.length) {
+            Table grown = new Table(current.codes.length * 2);
+            for (int i = 0; i < current.codes.length; i++) {
+                Location location = current.locations.get(i);
+                if (location != null) {
+                    put(grown, current.codes[i], location);
+                }
+            }
+            grown.size = current.size;
+            table = grown;
+            current = grown;
+        }
+        Location location = new Location(city, country, street, building);
+        put(current, code, location);
+        current.size++;
+        return location;
+    }
+
+    private static void put(Table table, long code, Location location) {
+        int mask = table.codes.length - 1;
+        int slot = slot(code, mask);
+        while (table.locations.get(slot) != null) {
+            slot = (slot + 1) & mask;
+        }
+        table.codes[slot] = code;
+        table.locations.set(slot, location);
+    }
+
+    private static int slot(long code, int mask) {
+        long hash = code * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
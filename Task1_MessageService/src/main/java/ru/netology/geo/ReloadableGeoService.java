@@ -0,0 +1,100 @@
+package ru.netology.geo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import ru.netology.entity.Location;
+
+/**
+ * Геосервис с набором диапазонов из файла, который можно заменить без остановки.
+ * <p>
+ * Новый {@link GeoDataset} читается и собирается вне горячего пути, затем публикуется одной записью
+ * в volatile-поле (копирование при записи). {@link #byIp} читает поле один раз и работает со снимком,
+ * поэтому поиск wait-free и во время перезагрузки: он не ждет ни блокировок, ни повторов.
+ * Старый набор вместе с его локациями собирает GC, когда завершатся поиски, которые его еще держат:
+ * общий реестр хранит только локации встроенного набора.
+ * До первой удачной загрузки и после неудачных используется прежний набор, изначально - {@link GeoDataset#builtIn}.
+ */
+public class ReloadableGeoService implements GeoService {
+
+    private final Path file;
+    private final LocationRegistry registry;
+    private volatile GeoDataset dataset;
+    // Отметка загруженного файла; перезагрузки сериализуются, поэтому поля читаются и пишутся под блокировкой
+    private FileTime loadedModified;
+    private long loadedSize = -1;
+
+    public ReloadableGeoService(Path file) {
+        this(file, new LocationRegistry());
+    }
+
+    public ReloadableGeoService(Path file, LocationRegistry registry) {
+        this.file = file;
+        this.registry = registry;
+        this.dataset = GeoDataset.builtIn(registry);
+    }
+
+    /**
+     * Метод определяет локацию по ip в текущем наборе
+     */
+    @Override
+    public Location byIp(String ip) {
+        return dataset.lookup(ip);
+    }
+
+    /**
+     * Метод перечитывает файл и публикует новый набор; возвращает false, если файл не менялся.
+     * При ошибке чтения прежний набор остается в работе
+     */
+    public synchronized boolean reload() throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        long size = Files.size(file);
+        if (modified.equals(loadedModified) && size == loadedSize) {
+            return false;
+        }
+        dataset = GeoDataset.load(file);
+        loadedModified = modified;
+        loadedSize = size;
+        return true;
+    }
+
+    /**
+     * Метод перечитывает файл в потоке executor; поиски тем временем продолжают работать с прежним набором
+     */
+    public CompletableFuture<Boolean> reloadAsync(Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return reload();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }, executor);
+    }
+
+    /**
+     * Метод возвращает текущий набор, например для оценки его размера
+     */
+    public GeoDataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * Метод возвращает реестр локаций встроенного набора; наборы из файла его не пополняют
+     */
+    public LocationRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Метод определяет локацию по координатам
+     */
+    @Override
+    public Location byCoordinates(double latitude, double longitude) {
+        throw new RuntimeException("Not implemented");
+    }
+}
@@ -26,11 +26,19 @@ public class MessageSenderImpl implements MessageSender {
             Location location = geoService.byIp(ipAddress);
             // Проверяем, что локация определена и страна не null
             if (location != null && location.getCountry() != null) {
-                System.out.printf("Отправлено сообщение: %s", localizationService.locale(location.getCountry()));
-                return localizationService.locale(location.getCountry());
+                String text = localizationService.locale(location.getCountry());
+                printSent(text);
+                return text;
             }
         }
         // Возвращаем текст по умолчанию для США, если IP не определен или локация не найдена
         return localizationService.locale(Country.USA);
     }
+
+    /**
+     * Метод сообщает об отправке сообщения с определенной страной; общий для отправителей пакета
+     */
+    static void printSent(String text) {
+        System.out.printf("Отправлено сообщение: %s", text);
+    }
 }
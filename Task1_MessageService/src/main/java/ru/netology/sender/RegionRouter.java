@@ -0,0 +1,186 @@
+package ru.netology.sender;
+
+import java.io.Closeable;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import ru.netology.entity.Country;
+import ru.netology.entity.Location;
+import ru.netology.geo.GeoService;
+import ru.netology.i18n.LocalizationService;
+
+/**
+ * Отправитель сообщений с разделением трафика по регионам.
+ * <p>
+ * Страна определяется по IP в потоке вызывающего, после чего запрос уходит в полосу (lane) своей страны.
+ * У каждой полосы свой пул потоков с ограниченной очередью, свой LocalizationService и свой кеш
+ * локализованных текстов. Всплеск трафика одной страны заполняет только ее очередь: лишние запросы
+ * этой страны отклоняются, остальные полосы продолжают работать.
+ * Запросы без IP или с неизвестной локацией обслуживает отдельная полоса по умолчанию
+ * (текст для США, как в MessageSenderImpl).
+ */
+public class RegionRouter implements MessageSender, Closeable {
+
+    /**
+     * Размер полосы: число потоков и вместимость очереди
+     */
+    public static final class LaneSettings {
+        private final int threads;
+        private final int queueCapacity;
+
+        public LaneSettings(int threads, int queueCapacity) {
+            if (threads < 1 || queueCapacity < 1) {
+                throw new IllegalArgumentException("Lane needs at least one thread and one queue slot");
+            }
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    private static final class Lane {
+        private final String name;
+        private final ThreadPoolExecutor executor;
+        private final LocalizationService localizationService;
+        private final Map<Country, String> texts = new ConcurrentHashMap<>();
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        private Lane(String name, LaneSettings settings, LocalizationService localizationService) {
+            this.name = name;
+            this.localizationService = localizationService;
+            this.executor = new ThreadPoolExecutor(settings.threads, settings.threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(settings.queueCapacity), task -> {
+                    Thread thread = new Thread(task, "message-lane-" + name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+
+        private String text(Country country) {
+            return texts.computeIfAbsent(country, localizationService::locale);
+        }
+    }
+
+    private final GeoService geoService;
+    private final Map<Country, Lane> lanes = new EnumMap<>(Country.class);
+    private final Lane defaultLane;
+
+    public RegionRouter(GeoService geoService,
+                        Function<Country, LocalizationService> localizations,
+                        LaneSettings settings) {
+        this(geoService, localizations, settings, Map.of());
+    }
+
+    /**
+     * localizations - фабрика LocalizationService для полосы страны (для полосы по умолчанию - USA);
+     * overrides - размеры полос отдельных стран вместо settings
+     */
+    public RegionRouter(GeoService geoService,
+                        Function<Country, LocalizationService> localizations,
+                        LaneSettings settings,
+                        Map<Country, LaneSettings> overrides) {
+        this.geoService = geoService;
+        for (Country country : Country.values()) {
+            lanes.put(country, new Lane(country.name(), overrides.getOrDefault(country, settings),
+                localizations.apply(country)));
+        }
+        this.defaultLane = new Lane("default", settings, localizations.apply(Country.USA));
+    }
+
+    /**
+     * Метод отправляет сообщение и ждет его обработки в полосе страны
+     */
+    @Override
+    public String send(Map<String, String> headers) {
+        try {
+            return sendAsync(headers).join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Метод ставит сообщение в очередь полосы страны. Если очередь полосы заполнена,
+     * возвращается завершенный с ошибкой результат
+     */
+    public CompletableFuture<String> sendAsync(Map<String, String> headers) {
+        Location location = locate(headers.get(MessageSenderImpl.IP_ADDRESS_HEADER));
+        Country country = location != null ? location.getCountry() : null;
+        Lane lane = country != null ? lanes.get(country) : defaultLane;
+        lane.submitted.incrementAndGet();
+        CompletableFuture<String> result = new CompletableFuture<>();
+        try {
+            lane.executor.execute(() -> {
+                try {
+                    String text;
+                    if (country != null) {
+                        text = lane.text(country);
+                        MessageSenderImpl.printSent(text);
+                    } else {
+                        text = lane.text(Country.USA);
+                    }
+                    lane.completed.incrementAndGet();
+                    result.complete(text);
+                } catch (RuntimeException exception) {
+                    result.completeExceptionally(exception);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            lane.rejected.incrementAndGet();
+            result.completeExceptionally(new RuntimeException("Region lane " + lane.name + " is overloaded", exception));
+        }
+        return result;
+    }
+
+    /**
+     * Метрики полосы страны; country = null - полоса по умолчанию
+     */
+    public long submitted(Country country) {
+        return lane(country).submitted.get();
+    }
+
+    public long completed(Country country) {
+        return lane(country).completed.get();
+    }
+
+    public long rejected(Country country) {
+        return lane(country).rejected.get();
+    }
+
+    public int queued(Country country) {
+        return lane(country).executor.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        for (Lane lane : lanes.values()) {
+            lane.executor.shutdown();
+        }
+        defaultLane.executor.shutdown();
+    }
+
+    private Lane lane(Country country) {
+        return country != null ? lanes.get(country) : defaultLane;
+    }
+
+    private Location locate(String ipAddress) {
+        // Та же проверка, что и в MessageSenderImpl: пустой адрес или строка "null" - адрес не определен
+        if (ipAddress == null || ipAddress.isEmpty() || "null".equals(ipAddress)) {
+            return null;
+        }
+        return geoService.byIp(ipAddress);
+    }
+}
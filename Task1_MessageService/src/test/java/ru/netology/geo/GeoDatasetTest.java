@@ -0,0 +1,105 @@
+package ru.netology.geo;
+
+import org.junit.Test;
+
+import ru.netology.entity.Country;
+import ru.netology.entity.Location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Класс для тестирования GeoDataset
+ * Проверяет развертку вложенных диапазонов, разбор IPv4 и совпадение встроенного набора с GeoServiceImpl
+ */
+public class GeoDatasetTest {
+
+    /**
+     * Тест проверяет, что внутри вложенных диапазонов побеждает самый узкий,
+     * а вокруг них снова действует объемлющий
+     */
+    @Test
+    public void testNestedRangesNarrowestWins() {
+        // Подготовка данных для теста
+        LocationRegistry registry = new LocationRegistry();
+        Location russia = registry.intern(null, Country.RUSSIA, null, 0);
+        Location moscow = registry.intern("Moscow", Country.RUSSIA, null, 0);
+        Location kremlin = registry.intern("Moscow", Country.RUSSIA, "Red Square", 1);
+        Location berlin = registry.intern("Berlin", Country.GERMANY, null, 0);
+
+        // Выполнение тестируемого метода
+        GeoDataset dataset = new GeoDataset.Builder()
+            .add("10.0.0.0", "10.255.255.255", russia)
+            .add("10.1.0.0", "10.1.255.255", moscow)
+            .add("10.1.2.3", "10.1.2.3", kremlin)
+            .add("11.0.0.0", "11.0.0.255", berlin)
+            .build();
+
+        // Проверка результата
+        assertSame(russia, dataset.lookup("10.0.255.255"));
+        assertSame(moscow, dataset.lookup("10.1.0.0"));
+        assertSame(moscow, dataset.lookup("10.1.2.2"));
+        assertSame(kremlin, dataset.lookup("10.1.2.3"));
+        assertSame(moscow, dataset.lookup("10.1.2.4"));
+        assertSame(russia, dataset.lookup("10.2.0.0"));
+        assertSame(berlin, dataset.lookup("11.0.0.7"));
+        assertNull(dataset.lookup("11.0.1.0"));
+        assertNull(dataset.lookup("9.255.255.255"));
+        assertEquals(6, dataset.size());
+    }
+
+    /**
+     * Тест проверяет разбор IPv4 и отказ от строк, которые адресом не являются
+     */
+    @Test
+    public void testParseIp() {
+        // Выполнение тестируемого метода и проверка результата
+        assertEquals(0L, GeoDataset.parseIp("0.0.0.0"));
+        assertEquals(0xFFFFFFFFL, GeoDataset.parseIp("255.255.255.255"));
+        assertEquals(0xAC00200BL, GeoDataset.parseIp(GeoServiceImpl.MOSCOW_IP));
+        assertEquals(-1L, GeoDataset.parseIp("256.0.0.1"));
+        assertEquals(-1L, GeoDataset.parseIp("1.2.3"));
+        assertEquals(-1L, GeoDataset.parseIp("1.2.3.4.5"));
+        assertEquals(-1L, GeoDataset.parseIp("1..3.4"));
+        assertEquals(-1L, GeoDataset.parseIp("1.2.3.0004"));
+        assertEquals(-1L, GeoDataset.parseIp("172.abc"));
+        assertEquals(-1L, GeoDataset.parseIp(null));
+    }
+
+    /**
+     * Тест проверяет, что встроенный набор отвечает так же, как GeoServiceImpl, теми же экземплярами
+     */
+    @Test
+    public void testBuiltInMatchesGeoServiceImpl() {
+        // Подготовка данных для теста
+        LocationRegistry registry = new LocationRegistry();
+        GeoServiceImpl geoService = new GeoServiceImpl(registry);
+        String[] ips = {GeoServiceImpl.LOCALHOST, GeoServiceImpl.MOSCOW_IP, GeoServiceImpl.NEW_YORK_IP,
+            "172.16.0.1", "96.1.2.3", "8.8.8.8", "127.0.0.2"};
+
+        // Выполнение тестируемого метода
+        GeoDataset dataset = GeoDataset.builtIn(registry);
+
+        // Проверка результата
+        for (String ip : ips) {
+            assertSame(ip, geoService.byIp(ip), dataset.lookup(ip));
+        }
+    }
+
+    /**
+     * Тест проверяет, что частично пересекающиеся диапазоны отклоняются
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testPartialOverlapIsRejected() {
+        // Подготовка данных для теста
+        LocationRegistry registry = new LocationRegistry();
+        Location moscow = registry.intern("Moscow", Country.RUSSIA, null, 0);
+
+        // Выполнение тестируемого метода
+        new GeoDataset.Builder()
+            .add("10.0.0.0", "10.0.0.255", moscow)
+            .add("10.0.0.128", "10.0.1.255", moscow)
+            .build();
+    }
+}
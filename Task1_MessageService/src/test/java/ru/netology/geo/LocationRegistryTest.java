@@ -0,0 +1,108 @@
+package ru.netology.geo;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import ru.netology.entity.Country;
+import ru.netology.entity.Location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Класс для тестирования LocationRegistry
+ * Проверяет выдачу канонических экземпляров и упаковку локаций в long
+ */
+public class LocationRegistryTest {
+
+    /**
+     * Тест проверяет, что одинаковые локации интернируются в один экземпляр
+     */
+    @Test
+    public void testInternReturnsCanonicalInstance() {
+        // Подготовка данных для теста
+        LocationRegistry registry = new LocationRegistry();
+
+        // Выполнение тестируемого метода
+        Location first = registry.intern("Moscow", Country.RUSSIA, "Lenina", 15);
+        Location second = registry.intern(new Location("Moscow", Country.RUSSIA, "Lenina", 15));
+        Location empty = registry.intern(null, null, null, 0);
+
+        // Проверка результата
+        assertSame(first, second);
+        assertSame(empty, registry.intern(null, null, null, 0));
+        assertEquals(2, registry.size());
+    }
+
+    /**
+     * Тест проверяет, что код раскодируется в тот же канонический экземпляр, в том числе после роста таблицы
+     */
+    @Test
+    public void testEncodeDecodeRoundTrip() {
+        // Подготовка данных для теста
+        LocationRegistry registry = new LocationRegistry();
+        long[] codes = new long[500];
+        Location[] locations = new Location[500];
+        for (int i = 0; i < codes.length; i++) {
+            locations[i] = registry.intern("City" + (i % 50), Country.values()[i % 4], i % 3 == 0 ? null : "Street" + i, i);
+            codes[i] = registry.encode(locations[i]);
+        }
+
+        // Выполнение тестируемого метода и проверка результата
+        for (int i = 0; i < codes.length; i++) {
+            assertSame(locations[i], registry.decode(codes[i]));
+            assertEquals(Country.values()[i % 4], LocationRegistry.country(codes[i]));
+        }
+        assertNull(registry.decode(registry.encode(null, null, null, 0)).getCity());
+        assertEquals(500, registry.size() - 1);
+    }
+
+    /**
+     * Тест проверяет, что реестр растет амортизированно: сотня тысяч различных локаций интернируется
+     * быстро, а повторный запрос возвращает тот же экземпляр
+     */
+    @Test
+    public void testManyDistinctLocationsInternInLinearTime() {
+        // Подготовка данных для теста
+        LocationRegistry registry = new LocationRegistry();
+        int count = 100_000;
+        Location[] locations = new Location[count];
+
+        // Выполнение тестируемого метода
+        long started = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            locations[i] = registry.intern("City" + (i % 1_000), Country.RUSSIA, "Street" + (i / 1_000), i);
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        // Проверка результата
+        assertEquals(count, registry.size());
+        for (int i = 0; i < count; i += 997) {
+            assertSame(locations[i], registry.intern("City" + (i % 1_000), Country.RUSSIA, "Street" + (i / 1_000), i));
+        }
+        // Копирование таблицы на каждое добавление тратило на такой объем минуты
+        assertTrue("Interning took " + millis + " ms", millis < 5_000);
+    }
+
+    /**
+     * Тест проверяет, что GeoServiceImpl отдает один и тот же экземпляр для повторных ответов
+     */
+    @Test
+    public void testGeoServiceReturnsInternedLocations() {
+        // Подготовка данных для теста
+        GeoServiceImpl geoService = new GeoServiceImpl();
+
+        // Выполнение тестируемого метода
+        Location first = geoService.byIp("172.1.2.3");
+        Location second = geoService.byIp("172.4.5.6");
+        long code = geoService.byIpCode("172.7.8.9");
+
+        // Проверка результата
+        assertSame(first, second);
+        assertSame(first, geoService.getRegistry().decode(code));
+        assertEquals(-1, geoService.byIpCode("10.0.0.1"));
+    }
+}
@@ -0,0 +1,221 @@
+package ru.netology.geo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ru.netology.entity.Country;
+import ru.netology.entity.Location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Класс для тестирования ReloadableGeoService
+ * Проверяет загрузку набора из файла, сохранение прежнего набора при ошибке
+ * и поиск без сбоев во время фоновых перезагрузок
+ */
+public class ReloadableGeoServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Тест проверяет, что до загрузки работает встроенный набор, а после нее - набор из файла;
+     * неизмененный файл повторно не читается
+     */
+    @Test
+    public void testReloadReplacesBuiltInDataset() throws IOException {
+        // Подготовка данных для теста
+        File file = folder.newFile("geo.csv");
+        write(file, 1, "# startIp,endIp,city,country,street,building",
+            "5.0.0.0,5.255.255.255,Berlin,GERMANY,,0",
+            "5.1.1.1,5.1.1.1,Berlin,GERMANY,Unter den Linden,7");
+        ReloadableGeoService geoService = new ReloadableGeoService(file.toPath());
+        String moscowBefore = geoService.byIp(GeoServiceImpl.MOSCOW_IP).getCity();
+        int registrySize = geoService.getRegistry().size();
+
+        // Выполнение тестируемого метода
+        boolean reloaded = geoService.reload();
+        boolean reloadedAgain = geoService.reload();
+
+        // Проверка результата
+        assertEquals("Moscow", moscowBefore);
+        assertTrue(reloaded);
+        assertFalse(reloadedAgain);
+        assertNull(geoService.byIp(GeoServiceImpl.MOSCOW_IP));
+        assertEquals(Country.GERMANY, geoService.byIp("5.2.3.4").getCountry());
+        assertEquals("Unter den Linden", geoService.byIp("5.1.1.1").getStreet());
+        assertSame(geoService.byIp("5.2.3.4"), geoService.byIp("5.0.0.1"));
+        assertEquals(registrySize, geoService.getRegistry().size());
+    }
+
+    /**
+     * Тест проверяет, что файл с ошибкой отклоняется с номером строки, а в работе остается прежний набор
+     */
+    @Test
+    public void testBrokenFileKeepsPreviousDataset() throws IOException {
+        // Подготовка данных для теста
+        File file = folder.newFile("geo.csv");
+        write(file, 1, "5.0.0.0,5.255.255.255,Berlin,GERMANY,,0");
+        ReloadableGeoService geoService = new ReloadableGeoService(file.toPath());
+        geoService.reload();
+        GeoDataset loaded = geoService.getDataset();
+        write(file, 2, "5.0.0.0,5.255.255.255,Berlin,GERMANY,,0", "6.0.0.0,5.0.0.0,Berlin,GERMANY,,0");
+
+        // Выполнение тестируемого метода
+        try {
+            geoService.reload();
+            fail("Broken dataset was accepted");
+        } catch (IOException exception) {
+            // Проверка результата
+            assertTrue(exception.getMessage().contains("line 2"));
+        }
+        assertSame(loaded, geoService.getDataset());
+        assertEquals("Berlin", geoService.byIp("5.6.7.8").getCity());
+    }
+
+    /**
+     * Тест проверяет, что поиски во время фоновых перезагрузок всегда видят один из целых наборов:
+     * адрес из общего диапазона находится всегда, а пара адресов одного набора - в одной версии
+     */
+    @Test
+    public void testLookupsDuringReloadSeeWholeDatasets() throws Exception {
+        // Подготовка данных для теста
+        File file = folder.newFile("geo.csv");
+        write(file, 1, version(0));
+        ReloadableGeoService geoService = new ReloadableGeoService(file.toPath());
+        geoService.reload();
+        int readers = 4;
+        int reloads = 30;
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        GeoDataset snapshot = geoService.getDataset();
+                        Location first = snapshot.lookup("20.0.0.1");
+                        Location second = snapshot.lookup("20.0.1.1");
+                        if (first == null || second == null || first.getBuiling() != second.getBuiling()) {
+                            throw new AssertionError("Torn dataset: " + first + " / " + second);
+                        }
+                        if (geoService.byIp("20.0.2.2") == null) {
+                            throw new AssertionError("Lookup missed during reload");
+                        }
+                    }
+                } catch (Throwable failure) {
+                    synchronized (failures) {
+                        failures.add(failure);
+                    }
+                }
+            }, "geo-reader-" + i);
+            threads.add(reader);
+            reader.start();
+        }
+
+        // Выполнение тестируемого метода
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 1; i <= reloads; i++) {
+                write(file, i + 1, version(i));
+                assertTrue(geoService.reloadAsync(executor).get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            running.set(false);
+            executor.shutdown();
+            for (Thread thread : threads) {
+                thread.join(10_000);
+            }
+        }
+
+        // Проверка результата
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(reloads, geoService.byIp("20.0.0.1").getBuiling());
+    }
+
+    /**
+     * Тест проверяет, что повторные перезагрузки большого набора не накапливают локации в общем реестре
+     * и не замедляются: каждая загрузка обходится линейным временем от размера файла
+     */
+    @Test
+    public void testRepeatedReloadsOfLargeDatasetStayFast() throws IOException {
+        // Подготовка данных для теста
+        File file = folder.newFile("geo.csv");
+        int locations = 20_000;
+        int reloads = 3;
+        ReloadableGeoService geoService = new ReloadableGeoService(file.toPath());
+        int registrySize = geoService.getRegistry().size();
+        long[] reloadMillis = new long[reloads];
+
+        // Выполнение тестируемого метода
+        for (int i = 0; i < reloads; i++) {
+            write(file, i + 1, distinctLocations(locations, i));
+            long started = System.nanoTime();
+            assertTrue(geoService.reload());
+            reloadMillis[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        }
+
+        // Проверка результата
+        assertEquals(registrySize, geoService.getRegistry().size());
+        assertEquals(locations, geoService.getDataset().size());
+        assertEquals("City" + (locations - 1), geoService.byIp(ip(locations - 1)).getCity());
+        assertEquals(reloads - 1, geoService.byIp(ip(0)).getBuiling());
+        // Квадратичная загрузка тратила на такой файл секунды и росла с каждой перезагрузкой
+        for (long millis : reloadMillis) {
+            assertTrue(Arrays.toString(reloadMillis), millis < 2_000);
+        }
+    }
+
+    /**
+     * Набор из count адресов, каждый со своей локацией; номер дома - номер версии
+     */
+    private static String[] distinctLocations(int count, int version) {
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = ip(i) + "," + ip(i) + ",City" + i + ",GERMANY,Street" + i + "," + version;
+        }
+        return lines;
+    }
+
+    private static String ip(int number) {
+        return "30." + (number >>> 16) + "." + ((number >>> 8) & 0xFF) + "." + (number & 0xFF);
+    }
+
+    /**
+     * Версия набора: все отрезки диапазона 20.0.0.0/16 указывают на дом с номером версии
+     */
+    private static String[] version(int number) {
+        String[] lines = new String[256];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "20.0." + i + ".0,20.0." + i + ".255,Berlin,GERMANY,Street" + i + "," + number;
+        }
+        return lines;
+    }
+
+    /**
+     * Метод записывает файл и задает ему отдельную дату изменения, чтобы перезагрузка заметила каждую версию
+     */
+    private static void write(File file, int version, String... lines) throws IOException {
+        Files.write(file.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(version * 1_000L));
+    }
+}
@@ -0,0 +1,122 @@
+package ru.netology.sender;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ru.netology.entity.Country;
+import ru.netology.entity.Location;
+import ru.netology.geo.GeoService;
+import ru.netology.i18n.LocalizationService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Класс для тестирования RegionRouter
+ * Проверяет маршрутизацию по странам, кеш текстов полосы и изоляцию перегруженной полосы
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class RegionRouterTest {
+
+    @Mock
+    private GeoService geoService;
+
+    @Mock
+    private LocalizationService localizationService;
+
+    /**
+     * Тест проверяет, что запрос обслуживается полосой своей страны, текст страны кешируется в полосе,
+     * а запрос без IP уходит в полосу по умолчанию
+     */
+    @Test
+    public void testRoutesByCountry() {
+        // Подготовка данных для теста
+        when(geoService.byIp("172.0.32.11")).thenReturn(new Location("Moscow", Country.RUSSIA, "Lenina", 15));
+        when(localizationService.locale(Country.RUSSIA)).thenReturn("Добро пожаловать");
+        when(localizationService.locale(Country.USA)).thenReturn("Welcome");
+        RegionRouter router = new RegionRouter(geoService, country -> localizationService,
+            new RegionRouter.LaneSettings(1, 10));
+
+        // Выполнение тестируемого метода
+        String first = router.send(headers("172.0.32.11"));
+        String second = router.send(headers("172.0.32.11"));
+        String unknown = router.send(new HashMap<>());
+        router.close();
+
+        // Проверка результата
+        assertEquals("Добро пожаловать", first);
+        assertEquals("Добро пожаловать", second);
+        assertEquals("Welcome", unknown);
+        assertEquals(2, router.completed(Country.RUSSIA));
+        assertEquals(1, router.completed(null));
+        assertEquals(0, router.submitted(Country.USA));
+        verify(localizationService, times(1)).locale(Country.RUSSIA);
+    }
+
+    /**
+     * Тест проверяет, что переполнение полосы одной страны отклоняет только ее запросы
+     */
+    @Test
+    public void testHotRegionDoesNotStarveOthers() throws Exception {
+        // Подготовка данных для теста: обработка запросов США зависает до release
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LocalizationService slowUsa = country -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            return "Welcome";
+        };
+        when(geoService.byIp("96.44.183.149")).thenReturn(new Location("New York", Country.USA, " 10th Avenue", 32));
+        when(geoService.byIp("172.0.32.11")).thenReturn(new Location("Moscow", Country.RUSSIA, "Lenina", 15));
+        when(localizationService.locale(Country.RUSSIA)).thenReturn("Добро пожаловать");
+        Map<Country, RegionRouter.LaneSettings> overrides = new HashMap<>();
+        overrides.put(Country.USA, new RegionRouter.LaneSettings(1, 1));
+        RegionRouter router = new RegionRouter(geoService,
+            country -> country == Country.USA ? slowUsa : localizationService,
+            new RegionRouter.LaneSettings(1, 10), overrides);
+
+        // Выполнение тестируемого метода
+        CompletableFuture<String> running = router.sendAsync(headers("96.44.183.149"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = router.sendAsync(headers("96.44.183.149"));
+        try {
+            router.send(headers("96.44.183.149"));
+            fail("Overloaded lane must reject");
+        } catch (RuntimeException expected) {
+            assertEquals("Region lane USA is overloaded", expected.getMessage());
+        }
+        String russian = router.send(headers("172.0.32.11"));
+        release.countDown();
+
+        // Проверка результата
+        assertEquals("Добро пожаловать", russian);
+        assertEquals("Welcome", running.get(5, TimeUnit.SECONDS));
+        assertEquals("Welcome", queued.get(5, TimeUnit.SECONDS));
+        assertEquals(3, router.submitted(Country.USA));
+        assertEquals(1, router.rejected(Country.USA));
+        assertEquals(0, router.rejected(Country.RUSSIA));
+        router.close();
+    }
+
+    private static Map<String, String> headers(String ip) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(MessageSenderImpl.IP_ADDRESS_HEADER, ip);
+        return headers;
+    }
+}
@@ -6,46 +6,84 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 
 import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 
 import ru.netology.patient.entity.*;
+import ru.netology.patient.repository.ObservablePatientInfoRepository;
 import ru.netology.patient.repository.PatientInfoFileRepository;
-import ru.netology.patient.repository.PatientInfoRepository;
-import ru.netology.patient.service.alert.SendAlertService;
+import ru.netology.patient.service.alert.AlertOutbox;
+import ru.netology.patient.service.alert.PriorityAlertScheduler;
 import ru.netology.patient.service.alert.SendAlertServiceImpl;
 import ru.netology.patient.service.medical.MedicalService;
 import ru.netology.patient.service.medical.MedicalServiceImpl;
+import ru.netology.patient.service.medical.VitalsBaseline;
+import ru.netology.patient.service.medical.analytics.VitalsColumnStore;
+import ru.netology.patient.service.medical.escalation.AlertEscalator;
+import ru.netology.patient.service.medical.escalation.TimerWheel;
+import ru.netology.patient.service.medical.rules.ClinicalRuleEngine;
+import ru.netology.patient.service.medical.trend.VitalsTrendMonitor;
 
 public class Main {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
         mapper.registerModules(new JavaTimeModule(), new ParameterNamesModule());
         mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
 
         File repoFile = new File("patients.txt");
-        PatientInfoRepository patientInfoRepository = new PatientInfoFileRepository(repoFile, mapper);
+        // При закрытии репозиторий сохраняет снимок индексов, чтобы следующий запуск не перечитывал весь файл
+        try (PatientInfoFileRepository fileRepository = new PatientInfoFileRepository(repoFile, mapper);
+             // Уведомления записываются в журнал до доставки и после перезапуска повторяются, если не были доставлены
+             AlertOutbox alertOutbox = new AlertOutbox(new File("alerts-outbox"));
+             // Уведомления доставляются по важности: критические не ждут за очередью менее важных
+             PriorityAlertScheduler alertService = new PriorityAlertScheduler(new SendAlertServiceImpl(), alertOutbox);
+             VitalsColumnStore vitalsColumns = new VitalsColumnStore(new File("patients-columns"), repoFile);
+             TimerWheel timerWheel = TimerWheel.started(1_000)) {
+            ObservablePatientInfoRepository patientInfoRepository = new ObservablePatientInfoRepository(fileRepository);
+            // Колоночная копия показателей для аналитики перестраивается, если не совпадает с репозиторием
+            if (!vitalsColumns.isInSync()) {
+                vitalsColumns.export(fileRepository, mapper);
+            }
+            patientInfoRepository.addListener(vitalsColumns);
+            // Снимок норм пациентов синхронизируется с репозиторием через слушателя
+            VitalsBaseline vitalsBaseline = new VitalsBaseline();
+            patientInfoRepository.addListener(vitalsBaseline);
 
-        String id1 = patientInfoRepository.add(
-            new PatientInfo("Иван", "Петров", LocalDate.of(1980, 11, 26),
-                new HealthInfo(new BigDecimal("36.65"), new BloodPressure(120, 80)))
-        );
+            String id1 = patientInfoRepository.add(
+                new PatientInfo("Иван", "Петров", LocalDate.of(1980, 11, 26),
+                    new HealthInfo(new BigDecimal("36.65"), new BloodPressure(120, 80)))
+            );
 
-        // Добавляем второго пациента в репозиторий
-        patientInfoRepository.add(
-            new PatientInfo("Семен", "Михайлов", LocalDate.of(1982, 1, 16),
-                new HealthInfo(new BigDecimal("36.6"), new BloodPressure(125, 78)))
-        );
+            // Добавляем второго пациента в репозиторий
+            patientInfoRepository.add(
+                new PatientInfo("Семен", "Михайлов", LocalDate.of(1982, 1, 16),
+                    new HealthInfo(new BigDecimal("36.6"), new BloodPressure(125, 78)))
+            );
 
-        SendAlertService alertService = new SendAlertServiceImpl();
-        MedicalService medicalService = new MedicalServiceImpl(patientInfoRepository, alertService);
+            // Клинические правила берутся из локального файла, если он есть, иначе действуют исходные проверки
+            Path rulesFile = Path.of("clinical-rules.json");
+            ClinicalRuleEngine ruleEngine = Files.exists(rulesFile)
+                ? ClinicalRuleEngine.fromFile(rulesFile, mapper)
+                : ClinicalRuleEngine.legacy();
+            // Предупреждение, не снятое нормальным показанием за 15 минут, эскалируется
+            AlertEscalator escalator = new AlertEscalator(alertService, timerWheel, Duration.ofMinutes(15));
+            // Тренды показателей предупреждают о плавном ухудшении до выхода за границы нормы
+            VitalsTrendMonitor trendMonitor = new VitalsTrendMonitor(alertService);
+            patientInfoRepository.addListener(trendMonitor);
+            MedicalService medicalService = new MedicalServiceImpl(patientInfoRepository, alertService, vitalsBaseline,
+                ruleEngine, escalator, trendMonitor);
 
-        //run service
-        BloodPressure currentPressure = new BloodPressure(60, 120);
-        medicalService.checkBloodPressure(id1, currentPressure);
+            //run service
+            BloodPressure currentPressure = new BloodPressure(60, 120);
+            medicalService.checkBloodPressure(id1, currentPressure);
 
-        BigDecimal currentTemperature = new BigDecimal("37.9");
-        medicalService.checkTemperature(id1, currentTemperature);
+            BigDecimal currentTemperature = new BigDecimal("37.9");
+            medicalService.checkTemperature(id1, currentTemperature);
+        }
     }
 }
@@ -0,0 +1,161 @@
+package ru.netology.patient.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Диапазон байт файла с построчными записями, границы которого выровнены по переводам строк.
+ * Позволяет обрабатывать файл репозитория по частям независимо друг от друга.
+ */
+public final class FileRange {
+
+    /**
+     * Обработчик строки: байты строки без перевода строки и смещение ее начала в файле
+     */
+    public interface LineVisitor {
+        void visit(byte[] buffer, int offset, int length, long lineOffset) throws IOException;
+    }
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final long start;
+    private final long end;
+
+    public FileRange(long start, long end) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid range: [" + start + ", " + end + ")");
+        }
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Метод делит файл на не более чем parts диапазонов, каждый из которых начинается с новой строки
+     */
+    public static List<FileRange> splitByLines(FileChannel channel, int parts) throws IOException {
+        return splitByLines(channel, 0, channel.size(), parts);
+    }
+
+    /**
+     * Метод делит участок файла [from, to) на не более чем parts диапазонов, выровненных по строкам.
+     * from должен указывать на начало строки
+     */
+    public static List<FileRange> splitByLines(FileChannel channel, long from, long to, int parts) throws IOException {
+        if (parts < 1) {
+            throw new IllegalArgumentException("Parts must be positive: " + parts);
+        }
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+        List<FileRange> ranges = new ArrayList<>(parts);
+        long step = Math.max(1, (to - from) / parts);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long rangeStart = from;
+        for (int i = 1; i < parts && rangeStart < to; i++) {
+            long boundary = nextLineStart(channel, Math.max(rangeStart, from + step * i), to, probe);
+            if (boundary > rangeStart) {
+                ranges.add(new FileRange(rangeStart, boundary));
+                rangeStart = boundary;
+            }
+        }
+        if (rangeStart < to) {
+            ranges.add(new FileRange(rangeStart, to));
+        }
+        return ranges;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long length() {
+        return end - start;
+    }
+
+    /**
+     * Метод читает диапазон позиционными чтениями канала и передает каждую строку в visitor.
+     * Строки длиннее буфера поддерживаются: буфер увеличивается по мере необходимости
+     */
+    public void forEachLine(FileChannel channel, LineVisitor visitor) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(READ_BUFFER_SIZE, Math.max(length(), 1))];
+        ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+        int filled = 0;
+        long bufferOffset = start;
+        long position = start;
+        while (true) {
+            if (filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                wrapper = ByteBuffer.wrap(buffer);
+            }
+            int toRead = (int) Math.min(buffer.length - filled, end - position);
+            int read = 0;
+            if (toRead > 0) {
+                wrapper.limit(filled + toRead).position(filled);
+                read = channel.read(wrapper, position);
+            }
+            if (read <= 0) {
+                // Последняя строка без завершающего перевода строки
+                if (filled > 0) {
+                    visitor.visit(buffer, 0, trimCarriageReturn(buffer, 0, filled), bufferOffset);
+                }
+                return;
+            }
+            position += read;
+            int lineStart = 0;
+            int scanFrom = filled;
+            filled += read;
+            for (int i = scanFrom; i < filled; i++) {
+                if (buffer[i] == '\n') {
+                    visitor.visit(buffer, lineStart, trimCarriageReturn(buffer, lineStart, i - lineStart),
+                        bufferOffset + lineStart);
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart > 0) {
+                System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+                filled -= lineStart;
+                bufferOffset += lineStart;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FileRange{" +
+            "start=" + start +
+            ", end=" + end +
+            '}';
+    }
+
+    private static int trimCarriageReturn(byte[] buffer, int offset, int length) {
+        return length > 0 && buffer[offset + length - 1] == '\r' ? length - 1 : length;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long limit, ByteBuffer probe) throws IOException {
+        // Граница должна оказаться сразу после перевода строки, поэтому смотрим с предыдущего байта
+        long current = position - 1;
+        while (current < limit) {
+            probe.clear();
+            int read = channel.read(probe, current);
+            if (read <= 0) {
+                return limit;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return Math.min(current + i + 1, limit);
+                }
+            }
+            current += read;
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,143 @@
+package ru.netology.patient.repository;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import ru.netology.patient.entity.PatientInfo;
+
+/**
+ * Примитивный мульти-индекс "хеш естественного ключа -> смещения записей".
+ * Естественный ключ пациента - имя, фамилия, дата рождения и показатели здоровья (без id).
+ * Коллизии хешей допустимы: владелец индекса обязан сверить найденные записи полностью.
+ * Класс не потокобезопасен.
+ */
+final class NaturalKeyIndex {
+
+    /**
+     * Обработчик кандидатов, найденных по хешу. Возвращает true, чтобы прекратить перебор
+     */
+    interface CandidateVisitor {
+        boolean visit(long offset);
+    }
+
+    interface EntryVisitor {
+        void visit(int hash, long offset);
+    }
+
+    private static final long EMPTY = -1L;
+    private static final long TOMBSTONE = -2L;
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] hashes;
+    private long[] offsets;
+    private int size;
+    private int used;
+
+    NaturalKeyIndex() {
+        this(0);
+    }
+
+    NaturalKeyIndex(int expectedSize) {
+        long needed = Math.max(MIN_CAPACITY, (long) expectedSize * 4 / 3 + 2);
+        if (needed > 1 << 30) {
+            throw new IllegalArgumentException("Index is too large: " + expectedSize);
+        }
+        allocate(Integer.highestOneBit((int) needed - 1) << 1);
+    }
+
+    static int hashOf(PatientInfo patientInfo) {
+        return Objects.hash(patientInfo.getName(),
+            patientInfo.getSurname(),
+            patientInfo.getBirthday(),
+            patientInfo.getHealthInfo());
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(int hash, long offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        }
+        if ((used + 1) * 4L > offsets.length * 3L) {
+            rehash(size + 1 > offsets.length / 2 ? offsets.length * 2 : offsets.length);
+        }
+        int mask = offsets.length - 1;
+        int i = slot(hash, mask);
+        while (offsets[i] >= 0) {
+            i = (i + 1) & mask;
+        }
+        if (offsets[i] == EMPTY) {
+            used++;
+        }
+        hashes[i] = hash;
+        offsets[i] = offset;
+        size++;
+    }
+
+    boolean remove(int hash, long offset) {
+        int mask = offsets.length - 1;
+        for (int i = slot(hash, mask); offsets[i] != EMPTY; i = (i + 1) & mask) {
+            if (offsets[i] == offset && hashes[i] == hash) {
+                offsets[i] = TOMBSTONE;
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Метод перебирает все смещения с заданным хешем, пока visitor не вернет true
+     */
+    boolean forEach(int hash, CandidateVisitor visitor) {
+        int mask = offsets.length - 1;
+        for (int i = slot(hash, mask); offsets[i] != EMPTY; i = (i + 1) & mask) {
+            if (offsets[i] >= 0 && hashes[i] == hash && visitor.visit(offsets[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void forEach(EntryVisitor visitor) {
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i] >= 0) {
+                visitor.visit(hashes[i], offsets[i]);
+            }
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldHashes = hashes;
+        long[] oldOffsets = offsets;
+        allocate(newCapacity);
+        int mask = newCapacity - 1;
+        for (int j = 0; j < oldOffsets.length; j++) {
+            if (oldOffsets[j] >= 0) {
+                int i = slot(oldHashes[j], mask);
+                while (offsets[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                hashes[i] = oldHashes[j];
+                offsets[i] = oldOffsets[j];
+                size++;
+                used++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        offsets = new long[capacity];
+        Arrays.fill(offsets, EMPTY);
+        size = 0;
+        used = 0;
+    }
+
+    private static int slot(int hash, int mask) {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
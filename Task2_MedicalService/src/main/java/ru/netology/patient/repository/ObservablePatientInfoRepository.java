@@ -0,0 +1,99 @@
+package ru.netology.patient.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import ru.netology.patient.entity.PatientInfo;
+
+/**
+ * Декоратор репозитория, оповещающий слушателей об успешных изменениях.
+ * Слушатели вызываются в потоке, выполнившем изменение, после того как оно применено к репозиторию.
+ * Изменение пациента и оповещение о нем выполняются под блокировкой полосы его id, поэтому слушатели
+ * получают изменения одного пациента в порядке их применения: параллельные update не оставляют
+ * в слушателе старую версию, а удаление не отменяется запоздавшим onPut. Изменения разных пациентов
+ * по-прежнему идут параллельно. Порядок гарантирован, если все изменения идут через декоратор
+ */
+public class ObservablePatientInfoRepository implements PatientInfoRepository {
+
+    private static final int STRIPES = 64;
+
+    private final PatientInfoRepository delegate;
+    private final List<PatientChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object[] stripes = new Object[STRIPES];
+
+    public ObservablePatientInfoRepository(PatientInfoRepository delegate) {
+        this.delegate = delegate;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    public void addListener(PatientChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(PatientChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public PatientInfo getById(String id) {
+        return delegate.getById(id);
+    }
+
+    /**
+     * Новый id еще никому не известен, поэтому добавление не может гоняться с другими изменениями того же пациента
+     */
+    @Override
+    public String add(PatientInfo patientInfo) {
+        String id = delegate.add(patientInfo);
+        PatientInfo stored = new PatientInfo(id,
+            patientInfo.getName(),
+            patientInfo.getSurname(),
+            patientInfo.getBirthday(),
+            patientInfo.getHealthInfo());
+        for (PatientChangeListener listener : listeners) {
+            listener.onPut(stored);
+        }
+        return id;
+    }
+
+    @Override
+    public PatientInfo remove(String id) {
+        synchronized (stripe(id)) {
+            PatientInfo removed = delegate.remove(id);
+            if (removed != null) {
+                for (PatientChangeListener listener : listeners) {
+                    listener.onRemove(id);
+                }
+            }
+            return removed;
+        }
+    }
+
+    @Override
+    public PatientInfo update(PatientInfo patientInfo) {
+        synchronized (stripe(patientInfo.getId())) {
+            PatientInfo previous = delegate.update(patientInfo);
+            for (PatientChangeListener listener : listeners) {
+                listener.onPut(patientInfo);
+            }
+            return previous;
+        }
+    }
+
+    @Override
+    public PatientPage findBySurnamePrefix(String prefix, int pageSize) {
+        return delegate.findBySurnamePrefix(prefix, pageSize);
+    }
+
+    @Override
+    public PatientPage findByBirthdayBetween(LocalDate from, LocalDate to, int pageSize) {
+        return delegate.findByBirthdayBetween(from, to, pageSize);
+    }
+
+    private Object stripe(String id) {
+        return stripes[id == null ? 0 : (id.hashCode() & 0x7fffffff) % STRIPES];
+    }
+}
@@ -0,0 +1,20 @@
+package ru.netology.patient.repository;
+
+import ru.netology.patient.entity.PatientInfo;
+
+/**
+ * Слушатель изменений репозитория пациентов.
+ * Используется производными структурами (кешами, индексами), которые должны оставаться синхронными с репозиторием
+ */
+public interface PatientChangeListener {
+
+    /**
+     * Метод вызывается после добавления или обновления пациента, patientInfo всегда содержит id
+     */
+    void onPut(PatientInfo patientInfo);
+
+    /**
+     * Метод вызывается после удаления пациента
+     */
+    void onRemove(String id);
+}
@@ -0,0 +1,203 @@
+package ru.netology.patient.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Блочный фильтр Блума по id пациентов: отвечает "точно нет" или "возможно есть".
+ * <p>
+ * Блок - 8 слов по 32 бита (256 бит, одна кеш-линия). Старшая половина хеша выбирает блок,
+ * младшая с восемью множителями - по одному биту в каждом слове (split block bloom filter).
+ * При {@link #BITS_PER_ID} бит на id ложных срабатываний около 1%.
+ * <p>
+ * Удалить id из фильтра Блума нельзя: удаленные id остаются в нем, пока владелец не перестроит фильтр
+ * ({@link #needsRebuild()}); то же при заполнении сверх расчетной емкости. Добавление - под блокировкой
+ * владельца; проверка идет без блокировок и может не увидеть только id, добавление которого еще не завершилось.
+ * <p>
+ * Формат файла (big-endian): magic, версия, длина покрытой части файла данных и ее отпечаток
+ * (как у {@link PatientIndexSnapshot}), емкость, число добавленных и удаленных id, число блоков,
+ * слова блоков; в конце CRC32 всего предыдущего содержимого.
+ */
+final class PatientIdFilter {
+
+    static final int BITS_PER_ID = 10;
+
+    private static final int MAGIC = 0x50494446;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4 + 4 + 4;
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int MIN_CAPACITY = 1024;
+    private static final int[] SALTS = {
+        0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d, 0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31
+    };
+
+    private final int capacity;
+    private final int blockCount;
+    private final int[] words;
+    private int added;
+    private int removed;
+
+    /**
+     * expectedIds - ожидаемое число id; емкость берется с запасом для последующих добавлений
+     */
+    PatientIdFilter(int expectedIds) {
+        this(Math.max(MIN_CAPACITY, expectedIds * 2), null);
+    }
+
+    private PatientIdFilter(int capacity, int[] words) {
+        this.capacity = capacity;
+        this.words = words != null ? words : new int[blocksFor(capacity) * WORDS_PER_BLOCK];
+        this.blockCount = this.words.length / WORDS_PER_BLOCK;
+    }
+
+    /**
+     * Хеш id в канонической записи UUID по его половинам
+     */
+    static long hash(long msb, long lsb) {
+        return mix(msb * 0x9E3779B97F4A7C15L + lsb);
+    }
+
+    /**
+     * Хеш прочих id; строка кеширует свой hashCode, поэтому объектов не создается
+     */
+    static long hash(String id) {
+        return mix(id.hashCode() * 0xC2B2AE3D27D4EB4FL + id.length());
+    }
+
+    void add(long hash) {
+        int block = block(hash) * WORDS_PER_BLOCK;
+        int low = (int) hash;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            words[block + i] |= 1 << ((low * SALTS[i]) >>> 27);
+        }
+        added++;
+    }
+
+    boolean mightContain(long hash) {
+        int block = block(hash) * WORDS_PER_BLOCK;
+        int low = (int) hash;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            if ((words[block + i] & 1 << ((low * SALTS[i]) >>> 27)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Метод учитывает удаленный id: его биты остаются в фильтре
+     */
+    void onRemove() {
+        removed++;
+    }
+
+    /**
+     * Фильтр пора перестроить: добавлено больше расчетной емкости или больше половины добавленных id удалено
+     */
+    boolean needsRebuild() {
+        return added > capacity || removed > MIN_CAPACITY && removed * 2 > added;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Метод загружает фильтр или возвращает null, если файла нет, он поврежден
+     * или покрывает не ту часть файла данных (тогда владелец строит фильтр по индексу)
+     */
+    static PatientIdFilter load(File filterFile, FileChannel data, long coveredLength) throws IOException {
+        if (!filterFile.exists()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(filterFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 4 || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit((int) size - 4));
+            if ((int) crc.getValue() != buffer.getInt((int) size - 4)) {
+                return null;
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            long filterCoveredLength = buffer.getLong();
+            int fingerprint = buffer.getInt();
+            if (filterCoveredLength != coveredLength
+                || fingerprint != PatientIndexSnapshot.fingerprint(data, coveredLength)) {
+                return null;
+            }
+            int capacity = buffer.getInt();
+            int added = buffer.getInt();
+            int removed = buffer.getInt();
+            int blockCount = buffer.getInt();
+            if (blockCount != blocksFor(capacity) || size != HEADER_SIZE + blockCount * WORDS_PER_BLOCK * 4L + 4) {
+                return null;
+            }
+            int[] words = new int[blockCount * WORDS_PER_BLOCK];
+            buffer.asIntBuffer().get(words);
+            PatientIdFilter filter = new PatientIdFilter(capacity, words);
+            filter.added = added;
+            filter.removed = removed;
+            return filter;
+        }
+    }
+
+    /**
+     * Метод записывает фильтр во временный файл и атомарно заменяет им предыдущий
+     */
+    void write(File filterFile, FileChannel data, long coveredLength) throws IOException {
+        File tmpFile = new File(filterFile.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream fileStream = new FileOutputStream(tmpFile);
+             DataOutputStream out = new DataOutputStream(
+                 new CheckedOutputStream(new BufferedOutputStream(fileStream, 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(coveredLength);
+            out.writeInt(PatientIndexSnapshot.fingerprint(data, coveredLength));
+            out.writeInt(capacity);
+            out.writeInt(added);
+            out.writeInt(removed);
+            out.writeInt(blockCount);
+            for (int word : words) {
+                out.writeInt(word);
+            }
+            out.flush();
+            // Контрольная сумма пишется в обход CheckedOutputStream
+            new DataOutputStream(fileStream).writeInt((int) crc.getValue());
+            fileStream.getFD().sync();
+        }
+        Files.move(tmpFile.toPath(), filterFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private int block(long hash) {
+        return (int) (((hash >>> 32) * blockCount) >>> 32);
+    }
+
+    private static int blocksFor(int capacity) {
+        return (int) Math.max(1, ((long) capacity * BITS_PER_ID + 255) / 256);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        return value ^ value >>> 33;
+    }
+}
@@ -0,0 +1,220 @@
+package ru.netology.patient.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Параллельная загрузка индексов файлового репозитория из журнала.
+ * <p>
+ * Журнал делится на диапазоны, выровненные по строкам (параллельный {@link PatientLog}.recover),
+ * и каждый диапазон разбирается в своем потоке: проверка CRC и потоковый разбор json - основная работа загрузки.
+ * Разобранная операция (PUT с хешем естественного ключа или DELETE) попадает в корзину шарда по хешу id,
+ * поэтому частичные индексы диапазонов ничего не делят между собой.
+ * <p>
+ * Затем каждый шард сводится отдельной задачей: корзины шарда просматриваются в порядке диапазонов,
+ * и для каждого id остается последняя операция - та же, что осталась бы при последовательном чтении.
+ * Шарды не пересекаются по id, поэтому сведение идет без общей блокировки. Итог передается владельцу
+ * индекса ({@link IndexTarget}) по одной операции на id.
+ */
+final class PatientIndexLoader {
+
+    /**
+     * Получатель итоговых операций; вызывается из одного потока
+     */
+    interface IndexTarget {
+        void putUuid(long msb, long lsb, int naturalKeyHash, long offset) throws IOException;
+
+        void put(String id, int naturalKeyHash, long offset) throws IOException;
+
+        void removeUuid(long msb, long lsb) throws IOException;
+
+        void remove(String id) throws IOException;
+    }
+
+    /**
+     * Операции одного шарда из одного диапазона в порядке файла.
+     * Для id, не являющихся UUID, строка хранится в others, для UUID там null
+     */
+    private static final class Bucket {
+        private byte[] operations = new byte[64];
+        private long[] msbs = new long[64];
+        private long[] lsbs = new long[64];
+        private int[] naturalKeyHashes = new int[64];
+        private long[] offsets = new long[64];
+        private String[] others = new String[64];
+        private int size;
+
+        private void add(byte operation, long msb, long lsb, String other, int naturalKeyHash, long offset) {
+            if (size == offsets.length) {
+                int capacity = size * 2;
+                operations = Arrays.copyOf(operations, capacity);
+                msbs = Arrays.copyOf(msbs, capacity);
+                lsbs = Arrays.copyOf(lsbs, capacity);
+                naturalKeyHashes = Arrays.copyOf(naturalKeyHashes, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                others = Arrays.copyOf(others, capacity);
+            }
+            operations[size] = operation;
+            msbs[size] = msb;
+            lsbs[size] = lsb;
+            others[size] = other;
+            naturalKeyHashes[size] = naturalKeyHash;
+            offsets[size] = offset;
+            size++;
+        }
+    }
+
+    /**
+     * Разбор одного диапазона журнала в корзины шардов
+     */
+    private final class RangeParser implements PatientLog.RecordVisitor {
+        private final Bucket[] buckets = new Bucket[shards];
+
+        private RangeParser() {
+            for (int i = 0; i < shards; i++) {
+                buckets[i] = new Bucket();
+            }
+        }
+
+        @Override
+        public void visit(long sequence, byte operation, byte[] buffer, int offset, int length, long recordOffset)
+            throws IOException {
+            String id;
+            int naturalKeyHash = 0;
+            if (operation == PatientLogFormat.DELETE) {
+                id = reader.readId(buffer, offset, length);
+            } else if (operation == PatientLogFormat.PUT) {
+                PatientRecordReader.RecordKeys keys = reader.readKeys(buffer, offset, length);
+                id = keys.getId();
+                naturalKeyHash = keys.getNaturalKeyHash();
+            } else {
+                return;
+            }
+            if (id == null) {
+                return;
+            }
+            if (UuidOffsetIndex.isCanonical(id)) {
+                long msb = UuidOffsetIndex.mostSignificantBits(id);
+                long lsb = UuidOffsetIndex.leastSignificantBits(id);
+                buckets[shard(PatientIdFilter.hash(msb, lsb))]
+                    .add(operation, msb, lsb, null, naturalKeyHash, recordOffset);
+            } else {
+                buckets[shard(PatientIdFilter.hash(id))].add(operation, 0, 0, id, naturalKeyHash, recordOffset);
+            }
+        }
+    }
+
+    /**
+     * Последняя операция каждого id шарда: ссылка (номер диапазона << 32 | позиция в корзине)
+     */
+    private static final class ShardResult {
+        private final UuidOffsetIndex uuids = new UuidOffsetIndex();
+        private final Map<String, Long> others = new HashMap<>();
+    }
+
+    private final PatientRecordReader reader;
+    private final int shards;
+    private final List<RangeParser> ranges = new ArrayList<>();
+
+    PatientIndexLoader(PatientRecordReader reader, int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Shards must be positive: " + shards);
+        }
+        this.reader = reader;
+        this.shards = shards;
+    }
+
+    /**
+     * Метод создает обработчик очередного диапазона; диапазоны запрашиваются в порядке файла
+     */
+    synchronized PatientLog.RecordVisitor rangeVisitor(FileRange range) {
+        RangeParser parser = new RangeParser();
+        ranges.add(parser);
+        return parser;
+    }
+
+    /**
+     * Метод сводит шарды в потоках executor и передает target последнюю операцию каждого id
+     */
+    void apply(Executor executor, IndexTarget target) throws IOException {
+        List<RangeParser> parsed;
+        synchronized (this) {
+            parsed = new ArrayList<>(ranges);
+        }
+        List<CompletableFuture<ShardResult>> futures = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            int current = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> merge(parsed, current), executor));
+        }
+        for (int shard = 0; shard < shards; shard++) {
+            ShardResult result;
+            try {
+                result = futures.get(shard).join();
+            } catch (CompletionException exception) {
+                if (exception.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) exception.getCause();
+                }
+                throw exception;
+            }
+            apply(parsed, shard, result, target);
+        }
+    }
+
+    private static ShardResult merge(List<RangeParser> parsed, int shard) {
+        ShardResult result = new ShardResult();
+        for (int range = 0; range < parsed.size(); range++) {
+            Bucket bucket = parsed.get(range).buckets[shard];
+            for (int i = 0; i < bucket.size; i++) {
+                long reference = (long) range << 32 | i;
+                if (bucket.others[i] == null) {
+                    result.uuids.put(bucket.msbs[i], bucket.lsbs[i], reference);
+                } else {
+                    result.others.put(bucket.others[i], reference);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void apply(List<RangeParser> parsed, int shard, ShardResult result, IndexTarget target)
+        throws IOException {
+        try {
+            result.uuids.forEach((msb, lsb, reference) -> {
+                Bucket bucket = parsed.get((int) (reference >>> 32)).buckets[shard];
+                int i = (int) reference;
+                try {
+                    if (bucket.operations[i] == PatientLogFormat.PUT) {
+                        target.putUuid(msb, lsb, bucket.naturalKeyHashes[i], bucket.offsets[i]);
+                    } else {
+                        target.removeUuid(msb, lsb);
+                    }
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            });
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+        for (Map.Entry<String, Long> entry : result.others.entrySet()) {
+            Bucket bucket = parsed.get((int) (entry.getValue() >>> 32)).buckets[shard];
+            int i = (int) (long) entry.getValue();
+            if (bucket.operations[i] == PatientLogFormat.PUT) {
+                target.put(entry.getKey(), bucket.naturalKeyHashes[i], bucket.offsets[i]);
+            } else {
+                target.remove(entry.getKey());
+            }
+        }
+    }
+
+    private int shard(long idHash) {
+        return (int) Long.remainderUnsigned(idHash, shards);
+    }
+}
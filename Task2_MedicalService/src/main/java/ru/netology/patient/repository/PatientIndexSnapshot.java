@@ -0,0 +1,191 @@
+package ru.netology.patient.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Снимок индексов файлового репозитория, сохраняемый рядом с файлом данных.
+ * <p>
+ * Формат (big-endian): заголовок - magic, версия, длина покрытой части файла данных,
+ * CRC32 последних байт покрытой части (защита от подмены файла данных), число записей каждого раздела;
+ * затем разделы: UUID -> смещение, хеш естественного ключа -> смещение, прочие (не UUID) id -> смещение;
+ * в конце CRC32 всего предыдущего содержимого.
+ * <p>
+ * При загрузке снимок отображается в память, проверяется контрольная сумма, и индексы заполняются из него.
+ * Записи файла данных после покрытой части владелец индекса дочитывает сам.
+ */
+final class PatientIndexSnapshot {
+
+    private static final int MAGIC = 0x50494458;
+    // Версия 2: хеш естественного ключа считается PatientRecordReader по тексту JSON
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4 + 4;
+    private static final int FINGERPRINT_SIZE = 4096;
+
+    private final long coveredLength;
+    private final UuidOffsetIndex ids;
+    private final NaturalKeyIndex naturalKeys;
+    private final Map<String, Long> otherIds;
+
+    private PatientIndexSnapshot(long coveredLength,
+                                 UuidOffsetIndex ids,
+                                 NaturalKeyIndex naturalKeys,
+                                 Map<String, Long> otherIds) {
+        this.coveredLength = coveredLength;
+        this.ids = ids;
+        this.naturalKeys = naturalKeys;
+        this.otherIds = otherIds;
+    }
+
+    long getCoveredLength() {
+        return coveredLength;
+    }
+
+    UuidOffsetIndex getIds() {
+        return ids;
+    }
+
+    NaturalKeyIndex getNaturalKeys() {
+        return naturalKeys;
+    }
+
+    Map<String, Long> getOtherIds() {
+        return otherIds;
+    }
+
+    /**
+     * Метод загружает снимок или возвращает null, если снимка нет, он поврежден или не соответствует файлу данных
+     */
+    static PatientIndexSnapshot load(File snapshotFile, FileChannel data) throws IOException {
+        if (!snapshotFile.exists()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 4 || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit((int) size - 4));
+            if ((int) crc.getValue() != buffer.getInt((int) size - 4)) {
+                return null;
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            long coveredLength = buffer.getLong();
+            int fingerprint = buffer.getInt();
+            if (coveredLength > data.size() || fingerprint != fingerprint(data, coveredLength)) {
+                return null;
+            }
+            int idCount = buffer.getInt();
+            int keyCount = buffer.getInt();
+            int otherCount = buffer.getInt();
+
+            UuidOffsetIndex ids = new UuidOffsetIndex(idCount);
+            for (int i = 0; i < idCount; i++) {
+                ids.put(buffer.getLong(), buffer.getLong(), buffer.getLong());
+            }
+            NaturalKeyIndex naturalKeys = new NaturalKeyIndex(keyCount);
+            for (int i = 0; i < keyCount; i++) {
+                naturalKeys.add(buffer.getInt(), buffer.getLong());
+            }
+            Map<String, Long> otherIds = new HashMap<>();
+            for (int i = 0; i < otherCount; i++) {
+                byte[] id = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(id);
+                otherIds.put(new String(id, StandardCharsets.UTF_8), buffer.getLong());
+            }
+            return new PatientIndexSnapshot(coveredLength, ids, naturalKeys, otherIds);
+        }
+    }
+
+    /**
+     * Метод записывает снимок во временный файл и атомарно заменяет им предыдущий снимок
+     */
+    static void write(File snapshotFile,
+                      FileChannel data,
+                      long coveredLength,
+                      UuidOffsetIndex ids,
+                      NaturalKeyIndex naturalKeys,
+                      Map<String, Long> otherIds) throws IOException {
+        File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream fileStream = new FileOutputStream(tmpFile);
+             DataOutputStream out = new DataOutputStream(
+                 new CheckedOutputStream(new BufferedOutputStream(fileStream, 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(coveredLength);
+            out.writeInt(fingerprint(data, coveredLength));
+            out.writeInt(ids.size());
+            out.writeInt(naturalKeys.size());
+            out.writeInt(otherIds.size());
+            IOException[] failure = new IOException[1];
+            ids.forEach((msb, lsb, offset) -> {
+                try {
+                    out.writeLong(msb);
+                    out.writeLong(lsb);
+                    out.writeLong(offset);
+                } catch (IOException exception) {
+                    failure[0] = exception;
+                }
+            });
+            naturalKeys.forEach((hash, offset) -> {
+                try {
+                    out.writeInt(hash);
+                    out.writeLong(offset);
+                } catch (IOException exception) {
+                    failure[0] = exception;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            for (Map.Entry<String, Long> entry : otherIds.entrySet()) {
+                byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(id.length);
+                out.write(id);
+                out.writeLong(entry.getValue());
+            }
+            out.flush();
+            // Контрольная сумма пишется в обход CheckedOutputStream
+            new DataOutputStream(fileStream).writeInt((int) crc.getValue());
+            fileStream.getFD().sync();
+        }
+        Files.move(tmpFile.toPath(), snapshotFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Метод считает CRC32 последних (до 4 КБ) байт покрытой части файла данных
+     */
+    static int fingerprint(FileChannel data, long coveredLength) throws IOException {
+        int length = (int) Math.min(FINGERPRINT_SIZE, coveredLength);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        long position = coveredLength - length;
+        while (buffer.hasRemaining()) {
+            if (data.read(buffer, position + buffer.position()) < 0) {
+                return 0;
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.flip());
+        return (int) crc.getValue();
+    }
+}
@@ -3,32 +3,118 @@ package ru.netology.patient.repository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
-import java.util.Scanner;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import ru.netology.patient.entity.PatientInfo;
 
-public class PatientInfoFileRepository implements PatientInfoRepository {
+/**
+ * Файловый репозиторий пациентов: журнал {@link PatientLog}, по одной записи с JSON пациента на строку.
+ * В памяти поддерживаются примитивные индексы id -> смещение строки и хеш естественного ключа -> смещения,
+ * поэтому getById читает одну строку, а add не сканирует файл.
+ * <p>
+ * Индексы сохраняются в снимок patients.txt.idx при вызове {@link #saveSnapshot()} и {@link #close()}.
+ * При открытии снимок отображается в память, а из файла данных дочитываются только строки,
+ * дописанные после снимка; длинный хвост (или весь файл без снимка) разбирается по диапазонам
+ * в нескольких потоках ({@link PatientIndexLoader}). Строки разбираются потоково (см. {@link PatientRecordReader}):
+ * для индекса нужны только id и хеш естественного ключа, PatientInfo создается лишь при чтении пациента.
+ * <p>
+ * Обновление дописывает новую версию записи, удаление - запись DELETE; индексы указывают на последнюю версию.
+ * Вторичные индексы для поиска по фамилии и дате рождения ({@link PatientSearchIndex}) строятся
+ * при первом поиске и дальше поддерживаются при каждом изменении.
+ * <p>
+ * Перед индексом стоит фильтр Блума по id ({@link PatientIdFilter}): неизвестный id отклоняется без блокировки
+ * и обращения к индексу. Фильтр сохраняется вместе со снимком в patients.txt.bloom и перестраивается
+ * по индексу, если файла нет, он не совпадает со снимком или накопилось много удаленных id.
+ */
+public class PatientInfoFileRepository implements PatientInfoRepository, Closeable {
+
+    public static final String SNAPSHOT_SUFFIX = ".idx";
+    public static final String ID_FILTER_SUFFIX = ".bloom";
+    // Хвост журнала короче двух таких диапазонов читается в одном потоке
+    static final long MIN_LOAD_RANGE_SIZE = 512 * 1024;
 
     private final File repoFile;
+    private final File snapshotFile;
+    private final File idFilterFile;
     private final ObjectMapper mapper;
+    private final PatientRecordReader reader;
+    private final PatientLog log;
+    private final FileChannel channel;
+    // Чтение строк по смещению и сериализация на буферах потока
+    private final PatientRecordIo io;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private UuidOffsetIndex ids;
+    private NaturalKeyIndex naturalKeys;
+    // id, не являющиеся UUID (например, записанные в файл вручную)
+    private Map<String, Long> otherIds;
+    private long indexedLength;
+    // Меняется под блокировкой записи; читается без блокировки
+    private volatile PatientIdFilter idFilter;
+    // null, пока не было ни одного поиска
+    private volatile PatientSearchIndex searchIndex;
 
     public PatientInfoFileRepository(File repoFile, ObjectMapper mapper) {
+        this(repoFile, mapper, PatientLog.Durability.perBatch());
+    }
+
+    public PatientInfoFileRepository(File repoFile, ObjectMapper mapper, PatientLog.Durability durability) {
+        this(repoFile, mapper, durability, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * loadParallelism - число потоков, разбирающих журнал при открытии (см. {@link PatientIndexLoader})
+     */
+    public PatientInfoFileRepository(File repoFile, ObjectMapper mapper, PatientLog.Durability durability,
+                                     int loadParallelism) {
+        if (loadParallelism < 1) {
+            throw new IllegalArgumentException("Load parallelism must be positive: " + loadParallelism);
+        }
         createRepoFileIfNotExists(repoFile);
         this.repoFile = repoFile;
+        this.snapshotFile = new File(repoFile.getPath() + SNAPSHOT_SUFFIX);
+        this.idFilterFile = new File(repoFile.getPath() + ID_FILTER_SUFFIX);
         this.mapper = mapper;
+        this.reader = new PatientRecordReader(mapper);
+        try {
+            this.log = new PatientLog(repoFile, durability);
+            this.channel = log.channel();
+            this.io = new PatientRecordIo(channel);
+            loadIndex(loadParallelism);
+        } catch (IOException exception) {
+            throw new RuntimeException("Cannot open patient repository " + repoFile, exception);
+        }
     }
 
     @Override
     public PatientInfo getById(String id) {
-        try (Scanner scanner = new Scanner(repoFile)) {
-            while (scanner.hasNextLine()) {
-                PatientInfo patientInfo = mapper.readValue(scanner.nextLine(), PatientInfo.class);
-                if (patientInfo.getId().equals(id)) {
-                    return patientInfo;
-                }
-            }
+        if (id == null || !idFilter.mightContain(idHash(id))) {
+            return null;
+        }
+        long offset;
+        lock.readLock().lock();
+        try {
+            offset = offsetOf(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (offset == UuidOffsetIndex.NO_OFFSET) {
+            return null;
+        }
+        try {
+            // Уже записанные строки не меняются, поэтому читать их можно без блокировки
+            PatientLogFormat.Frame frame = io.readRecord(offset);
+            return reader.readIfIdMatches(io.line(), frame.getPayloadOffset(), frame.getPayloadLength(), id);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -43,18 +129,26 @@ public class PatientInfoFileRepository implements PatientInfoRepository {
             patientInfo.getBirthday(),
             patientInfo.getHealthInfo());
 
-        try (Scanner scanner = new Scanner(repoFile); FileWriter writer = new FileWriter(repoFile, true)) {
-            while (scanner.hasNextLine()) {
-                PatientInfo existsValue = mapper.readValue(scanner.nextLine(), PatientInfo.class);
-                if (isPatientExist(patientInfo, existsValue)) {
-                    throw new RuntimeException("Patient already exists");
-                }
+        lock.writeLock().lock();
+        try {
+            PatientRecordIo.PayloadOutput payload = serialize(info);
+            // Хеш считается по тем же байтам, что попадут в файл, как и при дочитывании хвоста
+            int hash = reader.readKeys(payload.bytes(), 0, payload.size()).getNaturalKeyHash();
+            if (hasDuplicate(patientInfo, hash, UuidOffsetIndex.NO_OFFSET)) {
+                throw new RuntimeException("Patient already exists");
+            }
+            long offset = log.append(PatientLogFormat.PUT, payload.bytes(), 0, payload.size());
+            index(info.getId(), hash, offset);
+            indexedLength = log.position();
+            if (searchIndex != null) {
+                searchIndex.onPut(info);
             }
-            String serializedPatientInfo = mapper.writeValueAsString(info);
-            writer.append(String.format("%s%n", serializedPatientInfo));
         } catch (IOException exception) {
             exception.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
         }
+        awaitDurable();
         return info.getId();
     }
 
@@ -65,14 +159,432 @@ public class PatientInfoFileRepository implements PatientInfoRepository {
             && existsValue.getSurname().equals(patientInfo.getSurname());
     }
 
+    /**
+     * Метод удаляет пациента и возвращает удаленную запись или null, если пациента нет
+     */
     @Override
     public PatientInfo remove(String id) {
-        throw new RuntimeException("Not implemented");
+        PatientInfo removed;
+        lock.writeLock().lock();
+        try {
+            long offset = offsetOf(id);
+            if (offset == UuidOffsetIndex.NO_OFFSET) {
+                return null;
+            }
+            removed = read(offset);
+            PatientRecordIo.PayloadOutput payload = serialize(Collections.singletonMap("id", id));
+            log.append(PatientLogFormat.DELETE, payload.bytes(), 0, payload.size());
+            unindex(id);
+            indexedLength = log.position();
+            if (searchIndex != null) {
+                searchIndex.onRemove(id);
+            }
+        } catch (IOException exception) {
+            throw new RuntimeException("Cannot remove patient " + id, exception);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable();
+        return removed;
     }
 
+    /**
+     * Метод дописывает новую версию пациента с тем же id и возвращает предыдущую версию
+     */
     @Override
     public PatientInfo update(PatientInfo patientInfo) {
-        throw new RuntimeException("Not implemented");
+        PatientInfo previous;
+        lock.writeLock().lock();
+        try {
+            long offset = offsetOf(patientInfo.getId());
+            if (offset == UuidOffsetIndex.NO_OFFSET) {
+                throw new RuntimeException("Patient not found");
+            }
+            PatientRecordIo.PayloadOutput payload = serialize(patientInfo);
+            int hash = reader.readKeys(payload.bytes(), 0, payload.size()).getNaturalKeyHash();
+            if (hasDuplicate(patientInfo, hash, offset)) {
+                throw new RuntimeException("Patient already exists");
+            }
+            previous = read(offset);
+            index(patientInfo.getId(), hash, log.append(PatientLogFormat.PUT, payload.bytes(), 0, payload.size()));
+            indexedLength = log.position();
+            if (searchIndex != null) {
+                searchIndex.onPut(patientInfo);
+            }
+        } catch (IOException exception) {
+            throw new RuntimeException("Cannot update patient " + patientInfo.getId(), exception);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable();
+        return previous;
+    }
+
+    @Override
+    public PatientPage findBySurnamePrefix(String prefix, int pageSize) {
+        PatientSearchIndex index = searchIndex();
+        return PatientPage.fetch((after, limit) -> index.findBySurnamePrefix(prefix, after, limit),
+            this::getById,
+            patientInfo -> PatientSearchIndex.matchesSurnamePrefix(patientInfo, prefix),
+            null, pageSize);
+    }
+
+    @Override
+    public PatientPage findByBirthdayBetween(LocalDate from, LocalDate to, int pageSize) {
+        PatientSearchIndex index = searchIndex();
+        return PatientPage.fetch((after, limit) -> index.findByBirthdayBetween(from, to, after, limit),
+            this::getById,
+            patientInfo -> patientInfo.getBirthday() != null
+                && !patientInfo.getBirthday().isBefore(from) && !patientInfo.getBirthday().isAfter(to),
+            null, pageSize);
+    }
+
+    /**
+     * Метод проверяет, что запись по смещению - текущая версия пациента (не обновлена и не удалена)
+     */
+    public boolean isCurrent(String id, long recordOffset) {
+        lock.readLock().lock();
+        try {
+            return offsetOf(id) == recordOffset;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public File getRepoFile() {
+        return repoFile;
+    }
+
+    /**
+     * Метод возвращает число байт оборванной последней записи, отрезанных из журнала при открытии
+     */
+    public long truncatedBytes() {
+        return log.truncatedBytes();
+    }
+
+    /**
+     * Метод сохраняет снимок индексов рядом с файлом данных
+     */
+    public void saveSnapshot() {
+        lock.readLock().lock();
+        try {
+            // Снимок не должен ссылаться на записи, которых после сбоя не окажется на диске
+            log.sync(indexedLength);
+            PatientIndexSnapshot.write(snapshotFile, channel, indexedLength, ids, naturalKeys, otherIds);
+            idFilter.write(idFilterFile, channel, indexedLength);
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Метод сохраняет снимок индексов и закрывает журнал
+     */
+    @Override
+    public void close() throws IOException {
+        saveSnapshot();
+        log.close();
+    }
+
+    private void loadIndex(int loadParallelism) throws IOException {
+        PatientIndexSnapshot snapshot = PatientIndexSnapshot.load(snapshotFile, channel);
+        if (snapshot != null) {
+            ids = snapshot.getIds();
+            naturalKeys = snapshot.getNaturalKeys();
+            otherIds = snapshot.getOtherIds();
+            indexedLength = snapshot.getCoveredLength();
+            idFilter = PatientIdFilter.load(idFilterFile, channel, indexedLength);
+        } else {
+            ids = new UuidOffsetIndex();
+            naturalKeys = new NaturalKeyIndex();
+            otherIds = new HashMap<>();
+            indexedLength = 0;
+        }
+        if (idFilter == null) {
+            idFilter = buildIdFilter();
+        }
+        // Восстановление журнала обрезает оборванный хвост; целые записи после снимка попадают в индекс
+        int parts = (int) Math.min(loadParallelism, (channel.size() - indexedLength) / MIN_LOAD_RANGE_SIZE);
+        if (parts > 1) {
+            loadInParallel(parts);
+            return;
+        }
+        indexedLength = log.recover(indexedLength, (sequence, operation, buffer, offset, length, recordOffset) -> {
+            try {
+                apply(operation, buffer, offset, length, recordOffset);
+            } catch (IOException exception) {
+                exception.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Метод разбирает журнал после снимка в parts потоках и применяет к индексам последнюю операцию каждого id
+     */
+    private void loadInParallel(int parts) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(parts, runnable -> {
+            Thread thread = new Thread(runnable, "patient-index-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            PatientIndexLoader loader = new PatientIndexLoader(reader, parts);
+            indexedLength = log.recover(indexedLength, parts, pool, loader::rangeVisitor);
+            loader.apply(pool, new PatientIndexLoader.IndexTarget() {
+                @Override
+                public void putUuid(long msb, long lsb, int naturalKeyHash, long offset) throws IOException {
+                    indexUuid(msb, lsb, naturalKeyHash, offset);
+                }
+
+                @Override
+                public void put(String id, int naturalKeyHash, long offset) throws IOException {
+                    index(id, naturalKeyHash, offset);
+                }
+
+                @Override
+                public void removeUuid(long msb, long lsb) throws IOException {
+                    unindexUuid(msb, lsb);
+                }
+
+                @Override
+                public void remove(String id) throws IOException {
+                    unindex(id);
+                }
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Метод применяет к индексам запись журнала, уже находящуюся в файле по смещению recordOffset
+     */
+    private void apply(byte operation, byte[] buffer, int offset, int length, long recordOffset) throws IOException {
+        if (operation == PatientLogFormat.DELETE) {
+            String id = reader.readId(buffer, offset, length);
+            if (id != null) {
+                unindex(id);
+                if (searchIndex != null) {
+                    searchIndex.onRemove(id);
+                }
+            }
+        } else if (operation == PatientLogFormat.PUT) {
+            PatientRecordReader.RecordKeys keys = reader.readKeys(buffer, offset, length);
+            String id = keys.getId();
+            if (id != null) {
+                index(id, keys.getNaturalKeyHash(), recordOffset);
+                if (searchIndex != null) {
+                    searchIndex.onPut(reader.read(buffer, offset, length));
+                }
+            }
+        }
+    }
+
+    PatientLog log() {
+        return log;
+    }
+
+    /**
+     * Метод дописывает в журнал целые строки, полученные с ведущего узла, и применяет их к индексам.
+     * Локальный журнал реплики остается побайтной копией журнала ведущего узла
+     */
+    void applyReplicated(byte[] data, int offset, int length) throws IOException {
+        lock.writeLock().lock();
+        try {
+            long base = log.appendRaw(data, offset, length);
+            PatientLogFormat.Frame frame = new PatientLogFormat.Frame();
+            int lineStart = offset;
+            for (int i = offset; i < offset + length; i++) {
+                if (data[i] != '\n') {
+                    continue;
+                }
+                int lineLength = i - lineStart;
+                if (lineLength > 0 && data[i - 1] == '\r') {
+                    lineLength--;
+                }
+                if (lineLength > 0) {
+                    if (!PatientLogFormat.decode(data, lineStart, lineLength, frame)) {
+                        throw new IOException("Corrupted replicated record at offset " + (base + lineStart - offset));
+                    }
+                    apply(frame.getOperation(), data, frame.getPayloadOffset(), frame.getPayloadLength(),
+                        base + lineStart - offset);
+                }
+                lineStart = i + 1;
+            }
+            indexedLength = log.position();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.awaitDurable();
+    }
+
+    private PatientSearchIndex searchIndex() {
+        PatientSearchIndex index = searchIndex;
+        if (index != null) {
+            return index;
+        }
+        // Запись в репозиторий ждет окончания построения, поэтому ни одно изменение не теряется
+        lock.writeLock().lock();
+        try {
+            if (searchIndex == null) {
+                PatientSearchIndex built = new PatientSearchIndex();
+                forEachCurrentOffset(offset -> built.onPut(read(offset)));
+                searchIndex = built;
+            }
+            return searchIndex;
+        } catch (IOException exception) {
+            throw new RuntimeException("Cannot build search index of " + repoFile, exception);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private interface OffsetVisitor {
+        void visit(long offset) throws IOException;
+    }
+
+    private void forEachCurrentOffset(OffsetVisitor visitor) throws IOException {
+        try {
+            ids.forEach((msb, lsb, offset) -> {
+                try {
+                    visitor.visit(offset);
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            });
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+        for (long offset : otherIds.values()) {
+            visitor.visit(offset);
+        }
+    }
+
+    private boolean hasDuplicate(PatientInfo patientInfo, int hash, long ownOffset) throws IOException {
+        try {
+            return naturalKeys.forEach(hash, offset -> {
+                try {
+                    return offset != ownOffset && isPatientExist(patientInfo, read(offset));
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            });
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    private void awaitDurable() {
+        try {
+            // fsync вне блокировки: одновременные изменения разделяют один fsync
+            log.awaitDurable();
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    private void index(String id, int naturalKeyHash, long offset) throws IOException {
+        if (UuidOffsetIndex.isCanonical(id)) {
+            indexUuid(UuidOffsetIndex.mostSignificantBits(id), UuidOffsetIndex.leastSignificantBits(id),
+                naturalKeyHash, offset);
+        } else {
+            Long previous = otherIds.put(id, offset);
+            indexed(previous == null ? UuidOffsetIndex.NO_OFFSET : previous, PatientIdFilter.hash(id),
+                naturalKeyHash, offset);
+        }
+    }
+
+    private void indexUuid(long msb, long lsb, int naturalKeyHash, long offset) throws IOException {
+        indexed(ids.put(msb, lsb, offset), PatientIdFilter.hash(msb, lsb), naturalKeyHash, offset);
+    }
+
+    /**
+     * Метод обновляет фильтр id и индекс естественного ключа после того, как id стал указывать на offset
+     */
+    private void indexed(long previous, long idHash, int naturalKeyHash, long offset) throws IOException {
+        if (previous == UuidOffsetIndex.NO_OFFSET) {
+            idFilter.add(idHash);
+            if (idFilter.needsRebuild()) {
+                idFilter = buildIdFilter();
+            }
+        } else {
+            removeNaturalKey(previous);
+        }
+        naturalKeys.add(naturalKeyHash, offset);
+    }
+
+    private void unindex(String id) throws IOException {
+        if (UuidOffsetIndex.isCanonical(id)) {
+            unindexUuid(UuidOffsetIndex.mostSignificantBits(id), UuidOffsetIndex.leastSignificantBits(id));
+        } else {
+            Long offset = otherIds.remove(id);
+            unindexed(offset == null ? UuidOffsetIndex.NO_OFFSET : offset);
+        }
+    }
+
+    private void unindexUuid(long msb, long lsb) throws IOException {
+        unindexed(ids.remove(msb, lsb));
+    }
+
+    private void unindexed(long offset) throws IOException {
+        if (offset != UuidOffsetIndex.NO_OFFSET) {
+            idFilter.onRemove();
+            if (idFilter.needsRebuild()) {
+                idFilter = buildIdFilter();
+            }
+            removeNaturalKey(offset);
+        }
+    }
+
+    private void removeNaturalKey(long offset) throws IOException {
+        PatientLogFormat.Frame frame = io.readRecord(offset);
+        naturalKeys.remove(reader.readKeys(io.line(), frame.getPayloadOffset(), frame.getPayloadLength())
+            .getNaturalKeyHash(), offset);
+    }
+
+    /**
+     * Метод строит фильтр по текущему индексу с запасом емкости
+     */
+    private PatientIdFilter buildIdFilter() {
+        PatientIdFilter filter = new PatientIdFilter(ids.size() + otherIds.size());
+        ids.forEach((msb, lsb, offset) -> filter.add(PatientIdFilter.hash(msb, lsb)));
+        for (String id : otherIds.keySet()) {
+            filter.add(PatientIdFilter.hash(id));
+        }
+        return filter;
+    }
+
+    private static long idHash(String id) {
+        return UuidOffsetIndex.isCanonical(id)
+            ? PatientIdFilter.hash(UuidOffsetIndex.mostSignificantBits(id), UuidOffsetIndex.leastSignificantBits(id))
+            : PatientIdFilter.hash(id);
+    }
+
+    private long offsetOf(String id) {
+        if (id == null) {
+            return UuidOffsetIndex.NO_OFFSET;
+        }
+        if (UuidOffsetIndex.isCanonical(id)) {
+            return ids.get(UuidOffsetIndex.mostSignificantBits(id), UuidOffsetIndex.leastSignificantBits(id));
+        }
+        Long offset = otherIds.get(id);
+        return offset == null ? UuidOffsetIndex.NO_OFFSET : offset;
+    }
+
+    private PatientInfo read(long offset) throws IOException {
+        PatientLogFormat.Frame frame = io.readRecord(offset);
+        return reader.read(io.line(), frame.getPayloadOffset(), frame.getPayloadLength());
+    }
+
+    /**
+     * Метод сериализует значение в буфер потока; буфер действителен до следующей сериализации в этом потоке
+     */
+    private PatientRecordIo.PayloadOutput serialize(Object value) throws IOException {
+        PatientRecordIo.PayloadOutput payload = io.payload();
+        mapper.writeValue(payload, value);
+        return payload;
     }
 
     private static void createRepoFileIfNotExists(File repoFile) {
@@ -0,0 +1,418 @@
+package ru.netology.patient.repository;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+
+/**
+ * Репозиторий, хранящий записи пациентов вне кучи - в прямых (direct) ByteBuffer-сегментах.
+ * На куче остаются только примитивные индексы: UUID -> смещение и хеш естественного ключа -> смещение.
+ * PatientInfo собирается лениво, только при чтении конкретной записи.
+ * <p>
+ * Формат записи (big-endian):
+ * длина записи (int), флаги (byte), id (2 x long), дата рождения в днях эпохи (int),
+ * температура - немасштабированное значение (long) и масштаб (int), давление high/low (2 x int),
+ * имя и фамилия - длина (int, -1 для null) и байты UTF-8.
+ * <p>
+ * update и remove не освобождают место в сегменте сразу: старая версия записи
+ * остается "мусором", его объем доступен через {@link #garbageBytes()}. Когда мусора становится
+ * больше живых данных и не меньше сегмента, живые записи переписываются в новые сегменты (уплотнение),
+ * а старые сегменты отдаются GC, поэтому занятая память ограничена удвоенным объемом живых записей.
+ */
+public class PatientInfoOffHeapRepository implements PatientInfoRepository {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final int HAS_BIRTHDAY = 1;
+    private static final int HAS_HEALTH_INFO = 1 << 1;
+    private static final int HAS_TEMPERATURE = 1 << 2;
+    private static final int HAS_BLOOD_PRESSURE = 1 << 3;
+
+    // длина + флаги + id + дата рождения + температура + масштаб + давление + длины строк
+    private static final int FIXED_PART_SIZE = 4 + 1 + 16 + 4 + 8 + 4 + 8 + 8;
+
+    private final int segmentSize;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private UuidOffsetIndex ids;
+    private NaturalKeyIndex naturalKeys = new NaturalKeyIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Вторичные индексы живут на куче, поэтому строятся только при первом поиске
+    private volatile PatientSearchIndex searchIndex;
+
+    private int writePosition;
+    private long garbageBytes;
+
+    public PatientInfoOffHeapRepository() {
+        this(DEFAULT_SEGMENT_SIZE, 0);
+    }
+
+    public PatientInfoOffHeapRepository(int segmentSize, int expectedPatients) {
+        if (segmentSize < FIXED_PART_SIZE) {
+            throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        this.ids = new UuidOffsetIndex(expectedPatients);
+    }
+
+    @Override
+    public PatientInfo getById(String id) {
+        UUID uuid = parseId(id);
+        if (uuid == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            long offset = ids.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            return offset == UuidOffsetIndex.NO_OFFSET ? null : read(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String add(PatientInfo patientInfo) {
+        UUID uuid = UUID.randomUUID();
+        PatientInfo info = new PatientInfo(uuid.toString(),
+            patientInfo.getName(),
+            patientInfo.getSurname(),
+            patientInfo.getBirthday(),
+            patientInfo.getHealthInfo());
+        int hash = NaturalKeyIndex.hashOf(info);
+
+        lock.writeLock().lock();
+        try {
+            if (hasDuplicate(info, hash)) {
+                throw new RuntimeException("Patient already exists");
+            }
+            long offset = append(uuid, info);
+            ids.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), offset);
+            naturalKeys.add(hash, offset);
+            if (searchIndex != null) {
+                searchIndex.onPut(info);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return info.getId();
+    }
+
+    /**
+     * Метод удаляет пациента и возвращает удаленную запись или null, если пациента нет
+     */
+    @Override
+    public PatientInfo remove(String id) {
+        UUID uuid = parseId(id);
+        if (uuid == null) {
+            return null;
+        }
+        lock.writeLock().lock();
+        try {
+            long offset = ids.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (offset == UuidOffsetIndex.NO_OFFSET) {
+                return null;
+            }
+            PatientInfo removed = read(offset);
+            naturalKeys.remove(NaturalKeyIndex.hashOf(removed), offset);
+            garbageBytes += recordLength(offset);
+            if (searchIndex != null) {
+                searchIndex.onRemove(id);
+            }
+            compactIfNeeded();
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Метод заменяет данные пациента с тем же id и возвращает предыдущую версию записи
+     */
+    @Override
+    public PatientInfo update(PatientInfo patientInfo) {
+        UUID uuid = parseId(patientInfo.getId());
+        if (uuid == null) {
+            throw new RuntimeException("Patient not found");
+        }
+        int hash = NaturalKeyIndex.hashOf(patientInfo);
+
+        lock.writeLock().lock();
+        try {
+            long oldOffset = ids.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (oldOffset == UuidOffsetIndex.NO_OFFSET) {
+                throw new RuntimeException("Patient not found");
+            }
+            if (hasDuplicate(patientInfo, hash)) {
+                throw new RuntimeException("Patient already exists");
+            }
+            PatientInfo previous = read(oldOffset);
+            long offset = append(uuid, patientInfo);
+            ids.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), offset);
+            naturalKeys.remove(NaturalKeyIndex.hashOf(previous), oldOffset);
+            naturalKeys.add(hash, offset);
+            garbageBytes += recordLength(oldOffset);
+            if (searchIndex != null) {
+                searchIndex.onPut(patientInfo);
+            }
+            compactIfNeeded();
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public PatientPage findBySurnamePrefix(String prefix, int pageSize) {
+        PatientSearchIndex index = searchIndex();
+        return PatientPage.fetch((after, limit) -> index.findBySurnamePrefix(prefix, after, limit),
+            this::getById,
+            patientInfo -> PatientSearchIndex.matchesSurnamePrefix(patientInfo, prefix),
+            null, pageSize);
+    }
+
+    @Override
+    public PatientPage findByBirthdayBetween(LocalDate from, LocalDate to, int pageSize) {
+        PatientSearchIndex index = searchIndex();
+        return PatientPage.fetch((after, limit) -> index.findByBirthdayBetween(from, to, after, limit),
+            this::getById,
+            patientInfo -> patientInfo.getBirthday() != null
+                && !patientInfo.getBirthday().isBefore(from) && !patientInfo.getBirthday().isAfter(to),
+            null, pageSize);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long garbageBytes() {
+        lock.readLock().lock();
+        try {
+            return garbageBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Метод возвращает объем выделенных сегментов в байтах
+     */
+    public long capacityBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) segments.size() * segmentSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private PatientSearchIndex searchIndex() {
+        PatientSearchIndex index = searchIndex;
+        if (index != null) {
+            return index;
+        }
+        // Запись в репозиторий ждет окончания построения, поэтому ни одно изменение не теряется
+        lock.writeLock().lock();
+        try {
+            if (searchIndex == null) {
+                PatientSearchIndex built = new PatientSearchIndex();
+                ids.forEach((msb, lsb, offset) -> built.onPut(read(offset)));
+                searchIndex = built;
+            }
+            return searchIndex;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactIfNeeded() {
+        long usedBytes = segments.isEmpty() ? 0 : (long) (segments.size() - 1) * segmentSize + writePosition;
+        if (garbageBytes >= segmentSize && garbageBytes * 2 > usedBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Метод переписывает живые записи в новые сегменты и перестраивает индексы.
+     * Новое смещение записи сохраняется на месте ее id в старом сегменте, поэтому индекс
+     * естественных ключей переносится без чтения записей; старые сегменты после этого не нужны
+     */
+    private void compact() {
+        List<ByteBuffer> oldSegments = new ArrayList<>(segments);
+        segments.clear();
+        writePosition = 0;
+        UuidOffsetIndex newIds = new UuidOffsetIndex(ids.size());
+        ids.forEach((msb, lsb, offset) -> {
+            ByteBuffer source = oldSegments.get((int) (offset / segmentSize));
+            int pos = (int) (offset % segmentSize);
+            long newOffset = copy(source, pos, source.getInt(pos));
+            newIds.put(msb, lsb, newOffset);
+            source.putLong(pos + 5, newOffset);
+        });
+        NaturalKeyIndex newNaturalKeys = new NaturalKeyIndex(naturalKeys.size());
+        naturalKeys.forEach((hash, offset) -> newNaturalKeys.add(hash,
+            oldSegments.get((int) (offset / segmentSize)).getLong((int) (offset % segmentSize) + 5)));
+        ids = newIds;
+        naturalKeys = newNaturalKeys;
+        garbageBytes = 0;
+    }
+
+    private long copy(ByteBuffer source, int pos, int length) {
+        ByteBuffer segment = allocate(length);
+        int start = writePosition;
+        segment.put(start, source, pos, length);
+        writePosition = start + length;
+        return (long) (segments.size() - 1) * segmentSize + start;
+    }
+
+    /**
+     * Метод возвращает сегмент, в котором с writePosition помещается length байт
+     */
+    private ByteBuffer allocate(int length) {
+        if (segments.isEmpty() || writePosition + length > segmentSize) {
+            segments.add(ByteBuffer.allocateDirect(segmentSize));
+            writePosition = 0;
+        }
+        return segments.get(segments.size() - 1);
+    }
+
+    private boolean hasDuplicate(PatientInfo patientInfo, int hash) {
+        return naturalKeys.forEach(hash, offset -> {
+            PatientInfo existsValue = read(offset);
+            return !existsValue.getId().equals(patientInfo.getId()) && isPatientExist(patientInfo, existsValue);
+        });
+    }
+
+    private static boolean isPatientExist(PatientInfo patientInfo, PatientInfo existsValue) {
+        return Objects.equals(existsValue.getBirthday(), patientInfo.getBirthday())
+            && Objects.equals(existsValue.getHealthInfo(), patientInfo.getHealthInfo())
+            && Objects.equals(existsValue.getName(), patientInfo.getName())
+            && Objects.equals(existsValue.getSurname(), patientInfo.getSurname());
+    }
+
+    private long append(UUID uuid, PatientInfo info) {
+        byte[] name = encode(info.getName());
+        byte[] surname = encode(info.getSurname());
+        int length = FIXED_PART_SIZE + lengthOf(name) + lengthOf(surname);
+        if (length > segmentSize) {
+            throw new RuntimeException("Patient record is too large: " + length + " bytes");
+        }
+        ByteBuffer segment = allocate(length);
+        int segmentIndex = segments.size() - 1;
+        int start = writePosition;
+        int pos = start;
+
+        HealthInfo healthInfo = info.getHealthInfo();
+        BigDecimal temperature = healthInfo == null ? null : healthInfo.getNormalTemperature();
+        BloodPressure bloodPressure = healthInfo == null ? null : healthInfo.getBloodPressure();
+        int flags = (info.getBirthday() != null ? HAS_BIRTHDAY : 0)
+            | (healthInfo != null ? HAS_HEALTH_INFO : 0)
+            | (temperature != null ? HAS_TEMPERATURE : 0)
+            | (bloodPressure != null ? HAS_BLOOD_PRESSURE : 0);
+
+        segment.putInt(pos, length);
+        segment.put(pos + 4, (byte) flags);
+        segment.putLong(pos + 5, uuid.getMostSignificantBits());
+        segment.putLong(pos + 13, uuid.getLeastSignificantBits());
+        segment.putInt(pos + 21, info.getBirthday() != null ? Math.toIntExact(info.getBirthday().toEpochDay()) : 0);
+        segment.putLong(pos + 25, temperature != null ? unscaledValue(temperature) : 0L);
+        segment.putInt(pos + 33, temperature != null ? temperature.scale() : 0);
+        segment.putInt(pos + 37, bloodPressure != null ? bloodPressure.getHigh() : 0);
+        segment.putInt(pos + 41, bloodPressure != null ? bloodPressure.getLow() : 0);
+        pos = putString(segment, pos + 45, name);
+        putString(segment, pos, surname);
+
+        writePosition = start + length;
+        return (long) segmentIndex * segmentSize + start;
+    }
+
+    private PatientInfo read(long offset) {
+        ByteBuffer segment = segments.get((int) (offset / segmentSize));
+        int pos = (int) (offset % segmentSize);
+
+        int flags = segment.get(pos + 4);
+        UUID uuid = new UUID(segment.getLong(pos + 5), segment.getLong(pos + 13));
+        LocalDate birthday = (flags & HAS_BIRTHDAY) != 0 ? LocalDate.ofEpochDay(segment.getInt(pos + 21)) : null;
+        HealthInfo healthInfo = null;
+        if ((flags & HAS_HEALTH_INFO) != 0) {
+            BigDecimal temperature = (flags & HAS_TEMPERATURE) != 0
+                ? BigDecimal.valueOf(segment.getLong(pos + 25), segment.getInt(pos + 33))
+                : null;
+            BloodPressure bloodPressure = (flags & HAS_BLOOD_PRESSURE) != 0
+                ? new BloodPressure(segment.getInt(pos + 37), segment.getInt(pos + 41))
+                : null;
+            healthInfo = new HealthInfo(temperature, bloodPressure);
+        }
+        int nameLength = segment.getInt(pos + 45);
+        String name = getString(segment, pos + 49, nameLength);
+        int surnamePos = pos + 49 + Math.max(nameLength, 0);
+        String surname = getString(segment, surnamePos + 4, segment.getInt(surnamePos));
+
+        return new PatientInfo(uuid.toString(), name, surname, birthday, healthInfo);
+    }
+
+    private int recordLength(long offset) {
+        return segments.get((int) (offset / segmentSize)).getInt((int) (offset % segmentSize));
+    }
+
+    private static long unscaledValue(BigDecimal value) {
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() > 63) {
+            throw new RuntimeException("Temperature value is too precise: " + value);
+        }
+        return unscaled.longValue();
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int lengthOf(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static int putString(ByteBuffer segment, int pos, byte[] bytes) {
+        if (bytes == null) {
+            segment.putInt(pos, -1);
+            return pos + 4;
+        }
+        segment.putInt(pos, bytes.length);
+        segment.put(pos + 4, bytes);
+        return pos + 4 + bytes.length;
+    }
+
+    private static String getString(ByteBuffer segment, int pos, int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        segment.get(pos, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static UUID parseId(String id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException exception) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package ru.netology.patient.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import ru.netology.patient.entity.PatientInfo;
+
+/**
+ * Реплика репозитория пациентов только для чтения.
+ * Получает журнал с {@link PatientReplicationLeader}, дописывает его в собственный локальный файл
+ * (с собственными индексами и снимком) и обслуживает чтения локально.
+ * <p>
+ * Отставание ограничено: реплика помнит, когда в последний раз догнала надежную длину журнала ведущего узла.
+ * Если это было раньше, чем maxStalenessMillis назад (или ни разу), чтения отклоняются.
+ * При обрыве соединения реплика переподключается и продолжает с длины своего журнала.
+ */
+public class PatientInfoReplicaRepository implements PatientInfoRepository, Closeable {
+
+    private static final long RECONNECT_DELAY_MILLIS = 200;
+
+    private final PatientInfoFileRepository local;
+    private final InetSocketAddress leader;
+    private final long maxStalenessMillis;
+    private final Thread receiver;
+
+    private volatile boolean running = true;
+    private volatile Socket socket;
+    // Время (System.nanoTime), когда реплика в последний раз догнала ведущий узел; 0 - ни разу
+    private volatile long caughtUpAtNanos;
+
+    public PatientInfoReplicaRepository(File repoFile,
+                                        ObjectMapper mapper,
+                                        InetSocketAddress leader,
+                                        long maxStalenessMillis) {
+        this.local = new PatientInfoFileRepository(repoFile, mapper, PatientLog.Durability.perInterval(100));
+        this.leader = leader;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.receiver = new Thread(this::receiveLoop, "patient-replica-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    @Override
+    public PatientInfo getById(String id) {
+        checkStaleness();
+        return local.getById(id);
+    }
+
+    @Override
+    public String add(PatientInfo patientInfo) {
+        throw new RuntimeException("Replica is read-only");
+    }
+
+    @Override
+    public PatientInfo remove(String id) {
+        throw new RuntimeException("Replica is read-only");
+    }
+
+    @Override
+    public PatientInfo update(PatientInfo patientInfo) {
+        throw new RuntimeException("Replica is read-only");
+    }
+
+    @Override
+    public PatientPage findBySurnamePrefix(String prefix, int pageSize) {
+        checkStaleness();
+        return local.findBySurnamePrefix(prefix, pageSize);
+    }
+
+    @Override
+    public PatientPage findByBirthdayBetween(LocalDate from, LocalDate to, int pageSize) {
+        checkStaleness();
+        return local.findByBirthdayBetween(from, to, pageSize);
+    }
+
+    /**
+     * Метод возвращает время в миллисекундах с момента, когда реплика в последний раз догнала ведущий узел,
+     * или -1, если этого еще не было
+     */
+    public long stalenessMillis() {
+        long caughtUpAt = caughtUpAtNanos;
+        return caughtUpAt == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - caughtUpAt);
+    }
+
+    /**
+     * Метод возвращает длину журнала, примененную репликой
+     */
+    public long appliedPosition() {
+        return local.log().position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            current.close();
+        }
+        receiver.interrupt();
+        try {
+            receiver.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        local.close();
+    }
+
+    private void checkStaleness() {
+        long staleness = stalenessMillis();
+        if (staleness < 0 || staleness > maxStalenessMillis) {
+            throw new RuntimeException("Replica is stale");
+        }
+    }
+
+    private void receiveLoop() {
+        while (running) {
+            try (Socket connection = new Socket()) {
+                connection.connect(leader);
+                connection.setTcpNoDelay(true);
+                socket = connection;
+                receive(connection);
+            } catch (IOException exception) {
+                if (!running) {
+                    return;
+                }
+            } finally {
+                socket = null;
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException exception) {
+                return;
+            }
+        }
+    }
+
+    private void receive(Socket connection) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        long position = local.log().position();
+        out.writeLong(position);
+        out.flush();
+        // Сообщения режутся по размеру, а не по строкам: незавершенная строка ждет продолжения
+        byte[] pending = new byte[64 * 1024];
+        int pendingLength = 0;
+        while (running) {
+            long leaderPosition = in.readLong();
+            int length = in.readInt();
+            if (pendingLength + length > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+            }
+            in.readFully(pending, pendingLength, length);
+            pendingLength += length;
+            int complete = pendingLength;
+            while (complete > 0 && pending[complete - 1] != '\n') {
+                complete--;
+            }
+            if (complete > 0) {
+                local.applyReplicated(pending, 0, complete);
+                System.arraycopy(pending, complete, pending, 0, pendingLength - complete);
+                pendingLength -= complete;
+                position += complete;
+            }
+            if (position >= leaderPosition && pendingLength == 0) {
+                caughtUpAtNanos = System.nanoTime();
+            }
+        }
+    }
+}
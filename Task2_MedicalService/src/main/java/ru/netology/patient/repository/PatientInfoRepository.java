@@ -1,5 +1,7 @@
 package ru.netology.patient.repository;
 
+import java.time.LocalDate;
+
 import ru.netology.patient.entity.PatientInfo;
 
 public interface PatientInfoRepository {
@@ -11,4 +13,14 @@ public interface PatientInfoRepository {
     PatientInfo remove(String id);
 
     PatientInfo update(PatientInfo patientInfo);
+
+    /**
+     * Метод ищет пациентов по началу фамилии без учета регистра, результат упорядочен по фамилии
+     */
+    PatientPage findBySurnamePrefix(String prefix, int pageSize);
+
+    /**
+     * Метод ищет пациентов с датой рождения в диапазоне [from, to], результат упорядочен по дате рождения
+     */
+    PatientPage findByBirthdayBetween(LocalDate from, LocalDate to, int pageSize);
 }
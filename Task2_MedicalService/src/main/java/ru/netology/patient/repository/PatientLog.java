@@ -0,0 +1,428 @@
+package ru.netology.patient.repository;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал упреждающей записи пациентов поверх файла данных (формат записей - {@link PatientLogFormat}).
+ * <p>
+ * При открытии {@link #recover} проверяет записи от заданного смещения до конца файла
+ * и обрезает оборванный хвост, оставшийся после сбоя во время записи. Поврежденная запись,
+ * за которой следуют целые, считается порчей файла, а не оборванным хвостом, и открытие прерывается.
+ * <p>
+ * Надежность задается {@link Durability}: fsync на пакет (групповая фиксация - один fsync покрывает
+ * все записи, добавленные к его началу) или fsync по интервалу в фоновом потоке.
+ */
+public final class PatientLog implements Closeable {
+
+    /**
+     * Обработчик записи журнала при восстановлении
+     */
+    public interface RecordVisitor {
+        void visit(long sequence, byte operation, byte[] buffer, int offset, int length, long recordOffset)
+            throws IOException;
+    }
+
+    /**
+     * Режим надежности записи
+     */
+    public static final class Durability {
+
+        private final long intervalMillis;
+
+        private Durability(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+
+        /**
+         * Запись подтверждается после fsync; одновременные записи разделяют один fsync
+         */
+        public static Durability perBatch() {
+            return new Durability(0);
+        }
+
+        /**
+         * Запись подтверждается сразу, fsync выполняется раз в intervalMillis.
+         * При сбое теряются записи последнего интервала
+         */
+        public static Durability perInterval(long intervalMillis) {
+            if (intervalMillis <= 0) {
+                throw new IllegalArgumentException("Interval must be positive: " + intervalMillis);
+            }
+            return new Durability(intervalMillis);
+        }
+
+        boolean isPerBatch() {
+            return intervalMillis == 0;
+        }
+
+        @Override
+        public String toString() {
+            return isPerBatch() ? "Durability{perBatch}" : "Durability{perInterval=" + intervalMillis + "ms}";
+        }
+    }
+
+    private static final int TAIL_PROBE_SIZE = 4096;
+
+    private final FileChannel channel;
+    private final Durability durability;
+    private final ScheduledExecutorService syncer;
+    private final Object syncLock = new Object();
+    // Оповещение ожидающих новых надежных записей (например, отправки на реплики)
+    private final Object syncSignal = new Object();
+
+    private long nextSequence = 1;
+    // Буферы записи; используются только под блокировкой журнала
+    private byte[] frameBuffer = new byte[1024];
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(1024);
+    private final CRC32C crc = new CRC32C();
+    private volatile long writtenPosition;
+    private volatile long syncedPosition;
+    // Объем, отрезанный при восстановлении как оборванный хвост
+    private volatile long truncatedBytes;
+
+    public PatientLog(File file, Durability durability) throws IOException {
+        this.channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.durability = durability;
+        this.writtenPosition = channel.size();
+        this.syncedPosition = writtenPosition;
+        if (durability.isPerBatch()) {
+            this.syncer = null;
+        } else {
+            this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "patient-log-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::syncQuietly,
+                durability.intervalMillis, durability.intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    FileChannel channel() {
+        return channel;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Метод возвращает длину журнала с учетом всех добавленных записей
+     */
+    public long position() {
+        return writtenPosition;
+    }
+
+    /**
+     * Метод возвращает число байт оборванных хвостов, отрезанных {@link #recover} с открытия журнала;
+     * ненулевое значение означает, что последние записи до сбоя потеряны
+     */
+    public long truncatedBytes() {
+        return truncatedBytes;
+    }
+
+    public synchronized long nextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Метод передает visitor все целые записи начиная со смещения from (начало строки),
+     * обрезает оборванный хвост и восстанавливает счетчик номеров. Возвращает длину журнала
+     */
+    public synchronized long recover(long from, RecordVisitor visitor) throws IOException {
+        return recover(from, 1, null, range -> visitor);
+    }
+
+    /**
+     * Параллельный вариант {@link #recover(long, RecordVisitor)}: участок журнала после from делится
+     * на не более чем parts диапазонов, выровненных по строкам, и диапазоны проверяются в потоках executor.
+     * visitors выдает обработчик на каждый диапазон; записи диапазона передаются ему по порядку в одном потоке.
+     * Оборванной считается только последняя строка файла: поврежденная запись, после которой в любом
+     * диапазоне есть целые, - порча журнала
+     */
+    public synchronized long recover(long from, int parts, Executor executor,
+                                     Function<FileRange, RecordVisitor> visitors) throws IOException {
+        long fileSize = channel.size();
+        if (from > 0) {
+            nextSequence = sequenceBefore(from) + 1;
+        }
+        boolean terminated = fileSize == 0 || endsWithNewline(fileSize);
+        List<FileRange> ranges = FileRange.splitByLines(channel, from, fileSize, parts);
+        List<RangeScan> scans = new ArrayList<>(ranges.size());
+        if (ranges.size() <= 1 || executor == null) {
+            for (FileRange range : ranges) {
+                scans.add(scan(range, fileSize, terminated, visitors.apply(range)));
+            }
+        } else {
+            List<CompletableFuture<RangeScan>> futures = new ArrayList<>(ranges.size());
+            for (FileRange range : ranges) {
+                RecordVisitor visitor = visitors.apply(range);
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return scan(range, fileSize, terminated, visitor);
+                    } catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                }, executor));
+            }
+            for (CompletableFuture<RangeScan> future : futures) {
+                scans.add(join(future));
+            }
+        }
+        long tornAt = -1;
+        long lastIntact = -1;
+        for (RangeScan scan : scans) {
+            if (tornAt < 0) {
+                tornAt = scan.firstDamaged;
+            }
+            lastIntact = Math.max(lastIntact, scan.lastIntact);
+            nextSequence = Math.max(nextSequence, scan.maxSequence + 1);
+        }
+        if (tornAt >= 0 && lastIntact > tornAt) {
+            throw new IOException("Patient log is corrupted at offset " + tornAt);
+        }
+        long size = fileSize;
+        if (tornAt >= 0) {
+            truncatedBytes += size - tornAt;
+            channel.truncate(tornAt);
+            channel.force(true);
+            size = tornAt;
+        }
+        writtenPosition = size;
+        markSynced(size);
+        return size;
+    }
+
+    /**
+     * Метод дописывает запись в конец журнала и возвращает ее смещение.
+     * Запись становится надежной после {@link #awaitDurable()} (или ближайшего fsync по интервалу)
+     */
+    public long append(byte operation, byte[] payload) throws IOException {
+        return append(operation, payload, 0, payload.length);
+    }
+
+    /**
+     * Метод дописывает запись с json из payload[offset, offset + length).
+     * Запись собирается в буфере журнала и пишется в файл из прямого буфера, поэтому новых объектов не создается
+     */
+    public synchronized long append(byte operation, byte[] payload, int offset, int length) throws IOException {
+        int frameLength = PatientLogFormat.maxFrameLength(length);
+        if (frameBuffer.length < frameLength) {
+            frameBuffer = new byte[Math.max(frameLength, frameBuffer.length * 2)];
+        }
+        frameLength = PatientLogFormat.encode(nextSequence, operation, payload, offset, length, frameBuffer, crc);
+        if (writeBuffer.capacity() < frameLength) {
+            writeBuffer = ByteBuffer.allocateDirect(Math.max(frameLength, writeBuffer.capacity() * 2));
+        }
+        writeBuffer.clear();
+        writeBuffer.put(frameBuffer, 0, frameLength);
+        writeBuffer.flip();
+        long start = writtenPosition;
+        long position = start;
+        while (writeBuffer.hasRemaining()) {
+            position += channel.write(writeBuffer, position);
+        }
+        nextSequence++;
+        writtenPosition = position;
+        return start;
+    }
+
+    /**
+     * Метод ждет, пока все уже добавленные записи попадут на диск. В режиме интервала ничего не делает
+     */
+    public void awaitDurable() throws IOException {
+        if (durability.isPerBatch()) {
+            sync(writtenPosition);
+        }
+    }
+
+    /**
+     * Метод выполняет fsync, если позиция target еще не зафиксирована.
+     * Потоки, ждущие на syncLock, часто обнаруживают, что их записи уже покрыл чужой fsync
+     */
+    public void sync(long target) throws IOException {
+        if (syncedPosition >= target) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedPosition >= target) {
+                return;
+            }
+            long position = writtenPosition;
+            channel.force(false);
+            markSynced(position);
+        }
+    }
+
+    /**
+     * Метод возвращает длину журнала, уже записанную на диск: до нее записи не пропадут после сбоя
+     */
+    public long syncedPosition() {
+        return syncedPosition;
+    }
+
+    /**
+     * Метод ждет, пока надежная часть журнала станет длиннее position, но не дольше timeoutMillis.
+     * Возвращает true, если появились новые записи
+     */
+    public boolean awaitSyncedBeyond(long position, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (syncSignal) {
+            while (syncedPosition <= position) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                syncSignal.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Метод дописывает готовые записи (целые строки журнала, полученные с ведущего узла) без изменения.
+     * Возвращает смещение первой из них
+     */
+    synchronized long appendRaw(byte[] data, int offset, int length) throws IOException {
+        long start = writtenPosition;
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        long position = start;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        writtenPosition = position;
+        return start;
+    }
+
+    private void markSynced(long position) {
+        synchronized (syncSignal) {
+            syncedPosition = position;
+            syncSignal.notifyAll();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        try {
+            sync(writtenPosition);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync(writtenPosition);
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * Итог проверки диапазона: первая поврежденная строка, последняя целая запись и наибольший номер
+     */
+    private static final class RangeScan {
+        private long firstDamaged = -1;
+        private long lastIntact = -1;
+        private long maxSequence = PatientLogFormat.LEGACY_SEQUENCE;
+    }
+
+    private RangeScan scan(FileRange range, long fileSize, boolean terminated, RecordVisitor visitor)
+        throws IOException {
+        RangeScan scan = new RangeScan();
+        PatientLogFormat.Frame frame = new PatientLogFormat.Frame();
+        range.forEachLine(channel, (buffer, offset, length, lineOffset) -> {
+            // Последняя строка без перевода строки (длина могла уменьшиться на отброшенный '\r')
+            boolean torn = !terminated && lineOffset + length >= fileSize - 1;
+            if (length == 0 && !torn) {
+                return;
+            }
+            if (torn || !PatientLogFormat.decode(buffer, offset, length, frame)) {
+                if (scan.firstDamaged < 0) {
+                    scan.firstDamaged = lineOffset;
+                }
+                return;
+            }
+            if (scan.firstDamaged >= 0) {
+                throw new IOException("Patient log is corrupted at offset " + scan.firstDamaged);
+            }
+            scan.lastIntact = lineOffset;
+            scan.maxSequence = Math.max(scan.maxSequence, frame.getSequence());
+            visitor.visit(frame.getSequence(), frame.getOperation(),
+                buffer, frame.getPayloadOffset(), frame.getPayloadLength(), lineOffset);
+        });
+        return scan;
+    }
+
+    private static RangeScan join(CompletableFuture<RangeScan> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw exception;
+        }
+    }
+
+    private boolean endsWithNewline(long size) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        return channel.read(last, size - 1) == 1 && last.get(0) == '\n';
+    }
+
+    /**
+     * Метод читает номер записи, которая заканчивается перед смещением end
+     */
+    private long sequenceBefore(long end) throws IOException {
+        int window = TAIL_PROBE_SIZE;
+        while (true) {
+            long start = Math.max(0, end - window);
+            ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) <= 0) {
+                    throw new IOException("Unexpected end of patient log at offset " + (start + buffer.position()));
+                }
+            }
+            byte[] bytes = buffer.array();
+            int lineEnd = bytes.length;
+            if (lineEnd > 0 && bytes[lineEnd - 1] == '\n') {
+                lineEnd--;
+            }
+            int lineStart = lineEnd;
+            while (lineStart > 0 && bytes[lineStart - 1] != '\n') {
+                lineStart--;
+            }
+            if (lineStart > 0 || start == 0) {
+                PatientLogFormat.Frame frame = new PatientLogFormat.Frame();
+                return PatientLogFormat.decode(bytes, lineStart, lineEnd - lineStart, frame)
+                    ? frame.getSequence()
+                    : PatientLogFormat.LEGACY_SEQUENCE;
+            }
+            window *= 2;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ru.netology.patient.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Формат записи журнала пациентов - одна строка на запись:
+ * <pre>
+ * #&lt;sequence&gt;:&lt;operation&gt;:&lt;length&gt;:&lt;crc32c, 8 hex&gt;:&lt;json&gt;\n
+ * </pre>
+ * Длина - число байт json, CRC32C считается по заголовку до контрольной суммы и по json.
+ * Строковый формат сохраняет деление файла по переводам строк (FileRange), а строки старого формата,
+ * начинающиеся с '{', по-прежнему читаются как добавление пациента без номера.
+ */
+public final class PatientLogFormat {
+
+    public static final byte PUT = 'P';
+    // Удаление пациента, json записи - {"id": ...}
+    public static final byte DELETE = 'D';
+    public static final long LEGACY_SEQUENCE = 0;
+
+    private static final byte MARKER = '#';
+    private static final byte SEPARATOR = ':';
+    private static final int CRC_LENGTH = 8;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Разобранная запись журнала. Данные записи лежат в исходном буфере
+     */
+    public static final class Frame {
+        private long sequence;
+        private byte operation;
+        private int payloadOffset;
+        private int payloadLength;
+        // Контрольная сумма переиспользуется при каждом разборе
+        private final CRC32C crc = new CRC32C();
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public byte getOperation() {
+            return operation;
+        }
+
+        public int getPayloadOffset() {
+            return payloadOffset;
+        }
+
+        public int getPayloadLength() {
+            return payloadLength;
+        }
+    }
+
+    private PatientLogFormat() {
+    }
+
+    /**
+     * Метод формирует запись журнала вместе с завершающим переводом строки
+     */
+    public static byte[] encode(long sequence, byte operation, byte[] payload) {
+        byte[] frame = new byte[maxFrameLength(payload.length)];
+        int length = encode(sequence, operation, payload, 0, payload.length, frame, new CRC32C());
+        return Arrays.copyOf(frame, length);
+    }
+
+    /**
+     * Метод записывает запись журнала в начало target без создания объектов и возвращает ее длину.
+     * Размер target - не меньше {@link #maxFrameLength(int)}, crc сбрасывается перед расчетом
+     */
+    public static int encode(long sequence, byte operation, byte[] payload, int offset, int length,
+                             byte[] target, CRC32C crc) {
+        int position = 0;
+        target[position++] = MARKER;
+        position = writeDecimal(sequence, target, position);
+        target[position++] = SEPARATOR;
+        target[position++] = operation;
+        target[position++] = SEPARATOR;
+        position = writeDecimal(length, target, position);
+        target[position++] = SEPARATOR;
+        crc.reset();
+        crc.update(target, 0, position);
+        crc.update(payload, offset, length);
+        long value = crc.getValue();
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            target[position++] = HEX[(int) (value >>> shift) & 0xF];
+        }
+        target[position++] = SEPARATOR;
+        System.arraycopy(payload, offset, target, position, length);
+        position += length;
+        target[position++] = '\n';
+        return position;
+    }
+
+    /**
+     * Метод возвращает наибольшую длину записи журнала с json длины payloadLength
+     */
+    public static int maxFrameLength(int payloadLength) {
+        // '#', номер (до 19 цифр), ":P:", длина (до 10 цифр), ':', crc, ':', json, '\n'
+        return 1 + 19 + 3 + 10 + 1 + CRC_LENGTH + 1 + payloadLength + 1;
+    }
+
+    /**
+     * Метод разбирает строку журнала (без перевода строки) в frame.
+     * Возвращает false, если строка повреждена: неверный заголовок, длина или контрольная сумма
+     */
+    public static boolean decode(byte[] buffer, int offset, int length, Frame frame) {
+        if (length > 0 && buffer[offset] == '{') {
+            frame.sequence = LEGACY_SEQUENCE;
+            frame.operation = PUT;
+            frame.payloadOffset = offset;
+            frame.payloadLength = length;
+            return true;
+        }
+        int end = offset + length;
+        if (length < 1 || buffer[offset] != MARKER) {
+            return false;
+        }
+        int position = offset + 1;
+        long sequence = 0;
+        int digits = 0;
+        while (position < end && buffer[position] != SEPARATOR) {
+            int digit = buffer[position++] - '0';
+            if (digit < 0 || digit > 9 || ++digits > 18) {
+                return false;
+            }
+            sequence = sequence * 10 + digit;
+        }
+        if (digits == 0 || position + 2 >= end || buffer[position + 2] != SEPARATOR) {
+            return false;
+        }
+        byte operation = buffer[position + 1];
+        position += 3;
+        long payloadLength = 0;
+        digits = 0;
+        while (position < end && buffer[position] != SEPARATOR) {
+            int digit = buffer[position++] - '0';
+            if (digit < 0 || digit > 9 || ++digits > 10) {
+                return false;
+            }
+            payloadLength = payloadLength * 10 + digit;
+        }
+        int headerEnd = position + 1;
+        if (digits == 0 || headerEnd + CRC_LENGTH + 1 + payloadLength != end
+            || buffer[headerEnd + CRC_LENGTH] != SEPARATOR) {
+            return false;
+        }
+        long expected = 0;
+        for (int i = headerEnd; i < headerEnd + CRC_LENGTH; i++) {
+            int digit = Character.digit(buffer[i], 16);
+            if (digit < 0) {
+                return false;
+            }
+            expected = expected << 4 | digit;
+        }
+        int payloadOffset = headerEnd + CRC_LENGTH + 1;
+        CRC32C crc = frame.crc;
+        crc.reset();
+        crc.update(buffer, offset, headerEnd - offset);
+        crc.update(buffer, payloadOffset, (int) payloadLength);
+        if (crc.getValue() != expected) {
+            return false;
+        }
+        frame.sequence = sequence;
+        frame.operation = operation;
+        frame.payloadOffset = payloadOffset;
+        frame.payloadLength = (int) payloadLength;
+        return true;
+    }
+
+    private static int writeDecimal(long value, byte[] target, int position) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,78 @@
+package ru.netology.patient.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import ru.netology.patient.entity.PatientInfo;
+
+/**
+ * Страница результата поиска пациентов.
+ * Следующая страница запрашивается лениво при вызове {@link #next()} по курсору - последнему ключу этой страницы,
+ * поэтому в памяти одновременно находится только одна страница
+ */
+public final class PatientPage {
+
+    private final List<PatientInfo> patients;
+    private final Supplier<PatientPage> next;
+
+    private PatientPage(List<PatientInfo> patients, Supplier<PatientPage> next) {
+        this.patients = patients;
+        this.next = next;
+    }
+
+    /**
+     * Метод читает страницу: query возвращает ключи индекса после курсора, loader загружает пациента по id,
+     * а matches отбрасывает пациентов, измененных после чтения индекса
+     */
+    static PatientPage fetch(BiFunction<PatientSearchIndex.Key, Integer, List<PatientSearchIndex.Key>> query,
+                             Function<String, PatientInfo> loader,
+                             Predicate<PatientInfo> matches,
+                             PatientSearchIndex.Key after,
+                             int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        List<PatientSearchIndex.Key> keys = query.apply(after, pageSize + 1);
+        boolean hasNext = keys.size() > pageSize;
+        int count = Math.min(keys.size(), pageSize);
+        List<PatientInfo> patients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PatientInfo patientInfo = loader.apply(keys.get(i).getId());
+            if (patientInfo != null && matches.test(patientInfo)) {
+                patients.add(patientInfo);
+            }
+        }
+        PatientSearchIndex.Key last = count > 0 ? keys.get(count - 1) : null;
+        return new PatientPage(Collections.unmodifiableList(patients),
+            hasNext ? () -> fetch(query, loader, matches, last, pageSize) : null);
+    }
+
+    public List<PatientInfo> getPatients() {
+        return patients;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    public PatientPage next() {
+        if (next == null) {
+            throw new NoSuchElementException("No more pages");
+        }
+        return next.get();
+    }
+
+    @Override
+    public String toString() {
+        return "PatientPage{" +
+            "patients=" + patients +
+            ", hasNext=" + hasNext() +
+            '}';
+    }
+}
@@ -0,0 +1,125 @@
+package ru.netology.patient.repository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Ввод-вывод записей журнала пациентов на переиспользуемых буферах потока.
+ * <p>
+ * У каждого потока свой набор буферов: прямой буфер, в который канал читает файл порциями по {@link #CHUNK_SIZE} байт,
+ * массив строки, в который порции копируются до перевода строки (граница записи ищется по байтам),
+ * разобранный заголовок {@link PatientLogFormat.Frame} и поток для сериализации json ({@link PayloadOutput}).
+ * Буферы растут до размера самой длинной записи и дальше не пересоздаются, поэтому в установившемся режиме
+ * чтение записи по смещению не создает объектов. Результаты действительны до следующего вызова в том же потоке.
+ */
+final class PatientRecordIo {
+
+    static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Приемник сериализованного json поверх растущего массива. Закрытие ничего не делает,
+     * поэтому поток можно передавать в ObjectMapper.writeValue
+     */
+    static final class PayloadOutput extends OutputStream {
+        private byte[] bytes = new byte[512];
+        private int size;
+
+        @Override
+        public void write(int value) {
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte) value;
+        }
+
+        @Override
+        public void write(byte[] source, int offset, int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+    }
+
+    private static final class Buffers {
+        private final ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        private final PatientLogFormat.Frame frame = new PatientLogFormat.Frame();
+        private final PayloadOutput payload = new PayloadOutput();
+        private byte[] line = new byte[512];
+    }
+
+    private final FileChannel channel;
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    PatientRecordIo(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Метод читает запись журнала по смещению в буфер строки потока ({@link #line()}) и разбирает ее заголовок
+     */
+    PatientLogFormat.Frame readRecord(long offset) throws IOException {
+        Buffers own = buffers.get();
+        int length = readLine(own, offset);
+        if (!PatientLogFormat.decode(own.line, 0, length, own.frame)) {
+            throw new IOException("Corrupted patient record at offset " + offset);
+        }
+        return own.frame;
+    }
+
+    /**
+     * Метод возвращает буфер строки потока с последней прочитанной записью
+     */
+    byte[] line() {
+        return buffers.get().line;
+    }
+
+    /**
+     * Метод возвращает очищенный буфер текущего потока для сериализации json записи
+     */
+    PayloadOutput payload() {
+        PayloadOutput payload = buffers.get().payload;
+        payload.size = 0;
+        return payload;
+    }
+
+    /**
+     * Метод копирует строку по смещению (без перевода строки) в начало буфера строки и возвращает ее длину
+     */
+    private int readLine(Buffers own, long offset) throws IOException {
+        ByteBuffer chunk = own.chunk;
+        int length = 0;
+        while (true) {
+            chunk.clear();
+            int read = channel.read(chunk, offset + length);
+            if (read <= 0) {
+                return length;
+            }
+            if (own.line.length < length + read) {
+                own.line = Arrays.copyOf(own.line, Math.max(length + read, own.line.length * 2));
+            }
+            chunk.flip();
+            chunk.get(own.line, length, read);
+            for (int i = length; i < length + read; i++) {
+                if (own.line[i] == '\n') {
+                    return i;
+                }
+            }
+            length += read;
+        }
+    }
+}
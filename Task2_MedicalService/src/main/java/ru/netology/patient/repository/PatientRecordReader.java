@@ -0,0 +1,248 @@
+package ru.netology.patient.repository;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import ru.netology.patient.entity.PatientInfo;
+
+/**
+ * Потоковый разбор JSON-записей PatientInfo без привязки к объектам.
+ * Для отбора записей достаточно прочитать поле "id" (остальное пропускается через skipChildren),
+ * а полный PatientInfo с BigDecimal и LocalDate создается только для подходящей записи.
+ * <p>
+ * Хеш естественного ключа считается по тексту токенов (все поля, кроме "id") и не зависит
+ * от порядка полей. Внутренние буферы парсера JsonFactory переиспользует в пределах потока,
+ * результат {@link #readKeys} - тоже объект потока. Совпадение id при чтении по смещению
+ * проверяется по байтам записи без парсера ({@link #matchLeadingId}).
+ */
+public final class PatientRecordReader {
+
+    private static final String ID_FIELD = "id";
+    private static final int MAX_DEPTH = 16;
+    private static final byte[] LEADING_ID = "{\"id\":\"".getBytes(StandardCharsets.US_ASCII);
+
+    // Результаты matchLeadingId
+    static final int ID_MATCH = 1;
+    static final int ID_MISMATCH = 0;
+    static final int ID_UNKNOWN = -1;
+
+    /**
+     * Ключи записи. Экземпляр принадлежит потоку и действителен до следующего вызова readKeys в нем
+     */
+    public static final class RecordKeys {
+        private String id;
+        private int naturalKeyHash;
+
+        public String getId() {
+            return id;
+        }
+
+        public int getNaturalKeyHash() {
+            return naturalKeyHash;
+        }
+    }
+
+    /**
+     * Декодер UTF-8 потока с буферами; исходный массив оборачивается заново, только когда он сменился
+     */
+    private static final class IdDecoder {
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private CharBuffer chars = CharBuffer.allocate(64);
+        private ByteBuffer source;
+
+        /**
+         * Метод декодирует байты в буфер символов; null - байты не являются корректным UTF-8
+         */
+        private CharBuffer decode(byte[] buffer, int offset, int length) {
+            if (source == null || source.array() != buffer) {
+                source = ByteBuffer.wrap(buffer);
+            }
+            source.clear();
+            source.position(offset).limit(offset + length);
+            if (chars.capacity() < length) {
+                // В UTF-8 символов не больше, чем байт
+                chars = CharBuffer.allocate(length);
+            }
+            chars.clear();
+            decoder.reset();
+            if (decoder.decode(source, chars, true).isError() || decoder.flush(chars).isError()) {
+                return null;
+            }
+            chars.flip();
+            return chars;
+        }
+    }
+
+    private final ObjectMapper mapper;
+    private final JsonFactory factory;
+    private final ThreadLocal<RecordKeys> keys = ThreadLocal.withInitial(RecordKeys::new);
+    private final ThreadLocal<int[]> paths = ThreadLocal.withInitial(() -> new int[MAX_DEPTH]);
+    private final ThreadLocal<IdDecoder> ids = ThreadLocal.withInitial(IdDecoder::new);
+
+    public PatientRecordReader(ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.factory = mapper.getFactory();
+    }
+
+    /**
+     * Метод возвращает значение поля "id" записи или null, если поля нет
+     */
+    public String readId(byte[] buffer, int offset, int length) throws IOException {
+        try (JsonParser parser = factory.createParser(buffer, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                boolean isId = ID_FIELD.equals(parser.getCurrentName());
+                JsonToken value = parser.nextToken();
+                if (isId) {
+                    return value == JsonToken.VALUE_NULL ? null : parser.getText();
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Метод создает PatientInfo, только если id записи совпадает с искомым, иначе возвращает null
+     */
+    public PatientInfo readIfIdMatches(byte[] buffer, int offset, int length, String id) throws IOException {
+        if (id == null) {
+            return null;
+        }
+        int match = matchLeadingId(buffer, offset, length, id);
+        if (match == ID_MISMATCH || match == ID_UNKNOWN && !id.equals(readId(buffer, offset, length))) {
+            return null;
+        }
+        return read(buffer, offset, length);
+    }
+
+    /**
+     * Метод сравнивает id записи с искомым без разбора json и создания строк. Записи репозитория начинаются
+     * с {"id":"...", поэтому достаточно сравнить байты значения: ASCII - напрямую, остальное - после
+     * декодирования UTF-8 в буфер символов потока. Для записей другого вида (пробелы, экранирование,
+     * иной порядок полей) возвращается ID_UNKNOWN, и id читается парсером
+     */
+    int matchLeadingId(byte[] buffer, int offset, int length, String id) {
+        int start = offset + LEADING_ID.length;
+        if (length < LEADING_ID.length || !startsWith(buffer, offset, LEADING_ID)) {
+            return ID_UNKNOWN;
+        }
+        int end = offset + length;
+        boolean ascii = true;
+        int quote = start;
+        while (quote < end && buffer[quote] != '"') {
+            if (buffer[quote] == '\\') {
+                return ID_UNKNOWN;
+            }
+            ascii &= buffer[quote] >= 0;
+            quote++;
+        }
+        if (quote == end) {
+            return ID_UNKNOWN;
+        }
+        if (ascii) {
+            if (quote - start != id.length()) {
+                return ID_MISMATCH;
+            }
+            for (int i = 0; i < id.length(); i++) {
+                if (buffer[start + i] != id.charAt(i)) {
+                    return ID_MISMATCH;
+                }
+            }
+            return ID_MATCH;
+        }
+        CharBuffer chars = ids.get().decode(buffer, start, quote - start);
+        if (chars == null) {
+            return ID_UNKNOWN;
+        }
+        if (chars.remaining() != id.length()) {
+            return ID_MISMATCH;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (chars.get(i) != id.charAt(i)) {
+                return ID_MISMATCH;
+            }
+        }
+        return ID_MATCH;
+    }
+
+    public PatientInfo read(byte[] buffer, int offset, int length) throws IOException {
+        return mapper.readValue(buffer, offset, length, PatientInfo.class);
+    }
+
+    /**
+     * Метод за один проход читает id и хеш естественного ключа записи
+     */
+    public RecordKeys readKeys(byte[] buffer, int offset, int length) throws IOException {
+        RecordKeys result = keys.get();
+        result.id = null;
+        int hash = 0;
+        // Хеш пути к текущему полю на каждом уровне вложенности
+        int[] path = paths.get();
+        int depth = 0;
+        try (JsonParser parser = factory.createParser(buffer, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Patient record is not a JSON object");
+            }
+            path[0] = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    if (depth == 0 && ID_FIELD.equals(name)) {
+                        JsonToken value = parser.nextToken();
+                        result.id = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                        parser.skipChildren();
+                        continue;
+                    }
+                    path[depth + 1] = path[depth] * 31 + name.hashCode();
+                } else if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                    if (++depth >= MAX_DEPTH - 1) {
+                        throw new IOException("Patient record is nested too deep");
+                    }
+                    if (token == JsonToken.START_ARRAY) {
+                        // Элементы массива хешируются по пути самого массива
+                        path[depth + 1] = path[depth];
+                    }
+                } else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                    if (depth == 0) {
+                        break;
+                    }
+                    depth--;
+                } else {
+                    // Сумма перемешанных хешей не зависит от порядка полей
+                    hash += mix(path[depth + 1] * 31 + parser.getText().hashCode());
+                }
+            }
+        }
+        result.naturalKeyHash = hash;
+        return result;
+    }
+
+    private static boolean startsWith(byte[] buffer, int offset, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
+}
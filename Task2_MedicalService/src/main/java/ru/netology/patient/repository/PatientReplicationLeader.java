@@ -0,0 +1,129 @@
+package ru.netology.patient.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ведущий узел репликации: отдает репликам журнал файлового репозитория по TCP.
+ * <p>
+ * Протокол: реплика присылает длину своего локального журнала (long), после чего ведущий узел
+ * отправляет сообщения [long надежная длина журнала][int n][n байт журнала начиная с позиции реплики].
+ * Отправляются только записи, уже записанные на диск (fsync), поэтому реплика не может оказаться
+ * впереди ведущего узла после его сбоя. При отсутствии новых записей раз в heartbeatMillis
+ * отправляется сообщение с n = 0, по которому реплика оценивает свое отставание.
+ */
+public class PatientReplicationLeader implements Closeable {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final PatientLog log;
+    private final long heartbeatMillis;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> followers = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
+
+    /**
+     * port = 0 - свободный порт, его можно узнать через {@link #getPort()}
+     */
+    public PatientReplicationLeader(PatientInfoFileRepository repository, int port, long heartbeatMillis) throws IOException {
+        this.log = repository.log();
+        this.heartbeatMillis = heartbeatMillis;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "patient-replication-leader");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int followerCount() {
+        return followers.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Socket follower : followers) {
+            follower.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                followers.add(socket);
+                Thread sender = new Thread(() -> serve(socket), "patient-replication-sender");
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException exception) {
+                if (running) {
+                    exception.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            long position = in.readLong();
+            if (position < 0 || position > log.syncedPosition()) {
+                throw new IOException("Follower log is not a prefix of the leader log: " + position);
+            }
+            // Сразу сообщаем длину журнала, чтобы догнавшая реплика не ждала первого heartbeat
+            out.writeLong(log.syncedPosition());
+            out.writeInt(0);
+            out.flush();
+            FileChannel channel = log.channel();
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+            while (running) {
+                long synced = log.syncedPosition();
+                if (position < synced) {
+                    chunk.clear().limit((int) Math.min(CHUNK_SIZE, synced - position));
+                    while (chunk.hasRemaining()) {
+                        if (channel.read(chunk, position + chunk.position()) <= 0) {
+                            throw new IOException("Unexpected end of patient log at " + (position + chunk.position()));
+                        }
+                    }
+                    out.writeLong(synced);
+                    out.writeInt(chunk.limit());
+                    out.write(chunk.array(), 0, chunk.limit());
+                    out.flush();
+                    position += chunk.limit();
+                } else if (!log.awaitSyncedBeyond(position, heartbeatMillis)) {
+                    out.writeLong(synced);
+                    out.writeInt(0);
+                    out.flush();
+                }
+            }
+        } catch (SocketException | EOFException exception) {
+            // Реплика отключилась или ведущий узел закрывается
+        } catch (IOException exception) {
+            if (running) {
+                exception.printStackTrace();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            followers.remove(socket);
+        }
+    }
+}
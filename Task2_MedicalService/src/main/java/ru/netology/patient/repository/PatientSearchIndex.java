@@ -0,0 +1,174 @@
+package ru.netology.patient.repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import ru.netology.patient.entity.PatientInfo;
+
+/**
+ * Вторичные индексы пациентов: фамилия без учета регистра (поиск по префиксу)
+ * и дата рождения в днях эпохи (поиск по диапазону).
+ * Индексы - отсортированные множества ключей (значение, id), поэтому страницы выдаются по курсору
+ * (последнему ключу предыдущей страницы) без смещений и повторного просмотра.
+ * Поддерживается инкрементально как слушатель изменений репозитория; потокобезопасен.
+ */
+public class PatientSearchIndex implements PatientChangeListener {
+
+    /**
+     * Ключ индекса. Используется как курсор страницы
+     */
+    public static final class Key implements Comparable<Key> {
+        private final String text;
+        private final long day;
+        private final String id;
+
+        private Key(String text, long day, String id) {
+            this.text = text;
+            this.day = day;
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int result = text.compareTo(other.text);
+            if (result == 0) {
+                result = Long.compare(day, other.day);
+            }
+            return result != 0 ? result : id.compareTo(other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return day == key.day && text.equals(key.text) && id.equals(key.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return (text.hashCode() * 31 + Long.hashCode(day)) * 31 + id.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "Key{" +
+                "text='" + text + '\'' +
+                ", day=" + day +
+                ", id='" + id + '\'' +
+                '}';
+        }
+    }
+
+    private static final class Entry {
+        private final Key surname;
+        private final Key birthday;
+
+        private Entry(Key surname, Key birthday) {
+            this.surname = surname;
+            this.birthday = birthday;
+        }
+    }
+
+    private final NavigableSet<Key> surnames = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Key> birthdays = new ConcurrentSkipListSet<>();
+    // Текущие ключи пациента, чтобы при обновлении и удалении убрать старые
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void onPut(PatientInfo patientInfo) {
+        String id = patientInfo.getId();
+        Key surname = patientInfo.getSurname() == null ? null : new Key(normalize(patientInfo.getSurname()), 0, id);
+        Key birthday = patientInfo.getBirthday() == null ? null : new Key("", patientInfo.getBirthday().toEpochDay(), id);
+        // compute выполняется под блокировкой ключа, поэтому изменения одного пациента не перемешиваются
+        entries.compute(id, (key, previous) -> {
+            if (previous != null) {
+                remove(previous);
+            }
+            if (surname != null) {
+                surnames.add(surname);
+            }
+            if (birthday != null) {
+                birthdays.add(birthday);
+            }
+            return new Entry(surname, birthday);
+        });
+    }
+
+    @Override
+    public void onRemove(String id) {
+        entries.computeIfPresent(id, (key, previous) -> {
+            remove(previous);
+            return null;
+        });
+    }
+
+    /**
+     * Метод возвращает до limit ключей с фамилией, начинающейся с prefix (без учета регистра),
+     * следующих за курсором after (null - с начала)
+     */
+    public List<Key> findBySurnamePrefix(String prefix, Key after, int limit) {
+        String normalized = normalize(prefix);
+        NavigableSet<Key> tail = after != null
+            ? surnames.tailSet(after, false)
+            : surnames.tailSet(new Key(normalized, 0, ""), true);
+        List<Key> result = new ArrayList<>(Math.min(limit, 64));
+        for (Key key : tail) {
+            if (!key.text.startsWith(normalized) || result.size() == limit) {
+                break;
+            }
+            result.add(key);
+        }
+        return result;
+    }
+
+    /**
+     * Метод возвращает до limit ключей с датой рождения в диапазоне [from, to],
+     * следующих за курсором after (null - с начала)
+     */
+    public List<Key> findByBirthdayBetween(LocalDate from, LocalDate to, Key after, int limit) {
+        long toDay = to.toEpochDay();
+        NavigableSet<Key> tail = after != null
+            ? birthdays.tailSet(after, false)
+            : birthdays.tailSet(new Key("", from.toEpochDay(), ""), true);
+        List<Key> result = new ArrayList<>(Math.min(limit, 64));
+        for (Key key : tail) {
+            if (key.day > toDay || result.size() == limit) {
+                break;
+            }
+            result.add(key);
+        }
+        return result;
+    }
+
+    static boolean matchesSurnamePrefix(PatientInfo patientInfo, String prefix) {
+        return patientInfo.getSurname() != null && normalize(patientInfo.getSurname()).startsWith(normalize(prefix));
+    }
+
+    private void remove(Entry entry) {
+        if (entry.surname != null) {
+            surnames.remove(entry.surname);
+        }
+        if (entry.birthday != null) {
+            birthdays.remove(entry.birthday);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,199 @@
+package ru.netology.patient.repository;
+
+import java.util.Arrays;
+
+/**
+ * Примитивный индекс UUID -> смещение записи на открытой адресации (линейное пробирование).
+ * Ключ хранится как две половины UUID в массивах long, поэтому поиск не создает объектов.
+ * Класс не потокобезопасен: синхронизация лежит на владельце индекса.
+ */
+final class UuidOffsetIndex {
+
+    static final long NO_OFFSET = -1L;
+
+    interface EntryVisitor {
+        void visit(long msb, long lsb, long offset);
+    }
+
+    private static final long EMPTY = -1L;
+    private static final long TOMBSTONE = -2L;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] msbs;
+    private long[] lsbs;
+    private long[] offsets;
+    private int size;
+    private int used;
+
+    UuidOffsetIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    UuidOffsetIndex(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(long msb, long lsb) {
+        int mask = offsets.length - 1;
+        for (int i = slot(msb, lsb, mask); ; i = (i + 1) & mask) {
+            long offset = offsets[i];
+            if (offset == EMPTY) {
+                return NO_OFFSET;
+            }
+            if (offset != TOMBSTONE && msbs[i] == msb && lsbs[i] == lsb) {
+                return offset;
+            }
+        }
+    }
+
+    /**
+     * Метод сохраняет смещение для ключа и возвращает предыдущее значение или NO_OFFSET
+     */
+    long put(long msb, long lsb, long offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        }
+        if ((used + 1) * 4L > offsets.length * 3L) {
+            rehash(size + 1 > offsets.length / 2 ? offsets.length * 2 : offsets.length);
+        }
+        int mask = offsets.length - 1;
+        int firstTombstone = -1;
+        for (int i = slot(msb, lsb, mask); ; i = (i + 1) & mask) {
+            long current = offsets[i];
+            if (current == EMPTY) {
+                int target = firstTombstone >= 0 ? firstTombstone : i;
+                if (firstTombstone < 0) {
+                    used++;
+                }
+                msbs[target] = msb;
+                lsbs[target] = lsb;
+                offsets[target] = offset;
+                size++;
+                return NO_OFFSET;
+            }
+            if (current == TOMBSTONE) {
+                if (firstTombstone < 0) {
+                    firstTombstone = i;
+                }
+            } else if (msbs[i] == msb && lsbs[i] == lsb) {
+                offsets[i] = offset;
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Метод удаляет ключ и возвращает его смещение или NO_OFFSET, если ключа не было
+     */
+    long remove(long msb, long lsb) {
+        int mask = offsets.length - 1;
+        for (int i = slot(msb, lsb, mask); ; i = (i + 1) & mask) {
+            long offset = offsets[i];
+            if (offset == EMPTY) {
+                return NO_OFFSET;
+            }
+            if (offset != TOMBSTONE && msbs[i] == msb && lsbs[i] == lsb) {
+                offsets[i] = TOMBSTONE;
+                size--;
+                return offset;
+            }
+        }
+    }
+
+    void forEach(EntryVisitor visitor) {
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i] >= 0) {
+                visitor.visit(msbs[i], lsbs[i], offsets[i]);
+            }
+        }
+    }
+
+    /**
+     * Метод проверяет, что id - UUID в канонической записи (как у UUID.toString); остальные id
+     * считаются обычными строками. Проверка и разбор идут по символам, без создания объектов
+     */
+    static boolean isCanonical(String id) {
+        if (id == null || id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static long mostSignificantBits(String uuid) {
+        return hexBits(uuid, 0, 18);
+    }
+
+    static long leastSignificantBits(String uuid) {
+        return hexBits(uuid, 19, 36);
+    }
+
+    private static long hexBits(String uuid, int from, int to) {
+        long bits = 0;
+        for (int i = from; i < to; i++) {
+            char c = uuid.charAt(i);
+            if (c != '-') {
+                bits = bits << 4 | Character.digit(c, 16);
+            }
+        }
+        return bits;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        long[] oldOffsets = offsets;
+        allocate(newCapacity);
+        int mask = newCapacity - 1;
+        for (int j = 0; j < oldOffsets.length; j++) {
+            long offset = oldOffsets[j];
+            if (offset >= 0) {
+                int i = slot(oldMsbs[j], oldLsbs[j], mask);
+                while (offsets[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                msbs[i] = oldMsbs[j];
+                lsbs[i] = oldLsbs[j];
+                offsets[i] = offset;
+                size++;
+                used++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        offsets = new long[capacity];
+        Arrays.fill(offsets, EMPTY);
+        size = 0;
+        used = 0;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        // Таблица перестраивается при заполнении на 3/4, поэтому запас берется с учетом этого порога
+        long needed = Math.max(MIN_CAPACITY, (long) expectedSize * 4 / 3 + 2);
+        if (needed > 1 << 30) {
+            throw new IllegalArgumentException("Index is too large: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    private static int slot(long msb, long lsb, int mask) {
+        long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.netology.patient.service.alert;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Структурированное уведомление о пациенте
+ */
+public class Alert {
+
+    private final String patientId;
+    private final AlertSeverity severity;
+    private final AlertType type;
+    private final Instant timestamp;
+    private final String message;
+
+    public Alert(String patientId, AlertSeverity severity, AlertType type, Instant timestamp, String message) {
+        this.patientId = patientId;
+        this.severity = Objects.requireNonNull(severity, "severity");
+        this.type = Objects.requireNonNull(type, "type");
+        this.timestamp = Objects.requireNonNull(timestamp, "timestamp");
+        this.message = message;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public AlertSeverity getSeverity() {
+        return severity;
+    }
+
+    public AlertType getType() {
+        return type;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "Alert{" +
+            "patientId='" + patientId + '\'' +
+            ", severity=" + severity +
+            ", type=" + type +
+            ", timestamp=" + timestamp +
+            ", message='" + message + '\'' +
+            '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Alert alert = (Alert) o;
+        return Objects.equals(patientId, alert.patientId) &&
+            severity == alert.severity &&
+            type == alert.type &&
+            timestamp.equals(alert.timestamp) &&
+            Objects.equals(message, alert.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(patientId, severity, type, timestamp, message);
+    }
+}
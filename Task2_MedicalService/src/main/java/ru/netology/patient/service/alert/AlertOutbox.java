@@ -0,0 +1,494 @@
+package ru.netology.patient.service.alert;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Исходящий журнал уведомлений: уведомление записывается сюда до передачи на доставку
+ * и подтверждается после нее, а неподтвержденные уведомления повторяются после перезапуска.
+ * <p>
+ * Журнал разбит на сегменты фиксированного размера (файлы alerts-&lt;первый номер&gt;.seg),
+ * отображенные в память. Запись - копирование в отображение без системных вызовов, поэтому переживает
+ * падение процесса сразу; сброс на диск (force) и запись контрольной точки пакетно выполняет фоновый
+ * поток раз в flushIntervalMillis. Контрольная точка - наибольший номер, до которого включительно
+ * все уведомления подтверждены; сегменты целиком до нее удаляются.
+ * <p>
+ * Формат записи: [int длина][int crc32c][long номер][byte важность][byte тип][long секунды][int наносекунды]
+ * [short длина id (-1 - нет)][id][int длина сообщения][сообщение]. Длина 0 - конец сегмента.
+ * Доставка - не менее одного раза: подтвержденные после контрольной точки уведомления
+ * после сбоя будут повторены.
+ */
+public final class AlertOutbox implements Closeable {
+
+    /**
+     * Обработчик неподтвержденного уведомления при повторе
+     */
+    public interface AlertVisitor {
+        void visit(long sequence, Alert alert);
+    }
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+
+    private static final String SEGMENT_PREFIX = "alerts-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String DEAD_LETTER_FILE = "dead-letters";
+    private static final int HEADER_SIZE = 8;
+    private static final AlertSeverity[] SEVERITIES = AlertSeverity.values();
+    private static final AlertType[] TYPES = AlertType.values();
+
+    private static final class Segment {
+        private final File file;
+        private final long firstSequence;
+        private final MappedByteBuffer buffer;
+        // Смещения записей по порядку номеров: запись с номером firstSequence + i лежит по positions[i]
+        private int[] positions = new int[64];
+        private int records;
+
+        private Segment(File file, long firstSequence, MappedByteBuffer buffer) {
+            this.file = file;
+            this.firstSequence = firstSequence;
+            this.buffer = buffer;
+        }
+
+        private void addPosition(int position) {
+            if (records == positions.length) {
+                positions = Arrays.copyOf(positions, records * 2);
+            }
+            positions[records++] = position;
+        }
+    }
+
+    private final File directory;
+    private final int segmentSize;
+    private final FileChannel checkpointChannel;
+    private final ScheduledExecutorService flusher;
+    // Сегменты по возрастанию номеров; последний - текущий
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    // Сегменты, закрытые после последнего сброса: их нужно сбросить целиком
+    private final List<Segment> sealed = new ArrayList<>();
+    // Записанные, но еще не подтвержденные номера
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    private final CRC32C crc = new CRC32C();
+    // Сброс и запись контрольной точки выполняются по одному, не блокируя запись уведомлений
+    private final Object flushLock = new Object();
+
+    private List<Long> undeliveredSequences = new ArrayList<>();
+    private List<Alert> undeliveredAlerts = new ArrayList<>();
+    private Segment active;
+    private int writePosition;
+    private int flushedPosition;
+    private long nextSequence;
+    private long checkpoint;
+    private boolean closed;
+
+    public AlertOutbox(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    public AlertOutbox(File directory, int segmentSize, long flushIntervalMillis) {
+        if (segmentSize < 64) {
+            throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create directory " + directory);
+            }
+            this.checkpointChannel = FileChannel.open(new File(directory, CHECKPOINT_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.checkpoint = readCheckpoint();
+            recover();
+        } catch (IOException exception) {
+            throw new RuntimeException("Cannot open alert outbox " + directory, exception);
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "alert-outbox-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Метод записывает уведомление в журнал и возвращает его номер для {@link #acknowledge}
+     */
+    public synchronized long append(Alert alert) {
+        if (closed) {
+            throw new IllegalStateException("Alert outbox is closed");
+        }
+        byte[] patientId = alert.getPatientId() == null ? null : alert.getPatientId().getBytes(StandardCharsets.UTF_8);
+        byte[] message = alert.getMessage().getBytes(StandardCharsets.UTF_8);
+        int payloadSize = 8 + 1 + 1 + 8 + 4 + 2 + (patientId == null ? 0 : patientId.length) + 4 + message.length;
+        if (patientId != null && patientId.length > Short.MAX_VALUE) {
+            throw new RuntimeException("Patient id is too long for the alert outbox");
+        }
+        if (HEADER_SIZE + payloadSize > segmentSize) {
+            throw new RuntimeException("Alert does not fit into an outbox segment: " + payloadSize + " bytes");
+        }
+        long sequence = nextSequence;
+        if (writePosition + HEADER_SIZE + payloadSize > segmentSize) {
+            roll(sequence);
+        }
+        MappedByteBuffer buffer = active.buffer;
+        int payloadStart = writePosition + HEADER_SIZE;
+        buffer.position(payloadStart);
+        buffer.putLong(sequence);
+        buffer.put((byte) alert.getSeverity().ordinal());
+        buffer.put((byte) alert.getType().ordinal());
+        buffer.putLong(alert.getTimestamp().getEpochSecond());
+        buffer.putInt(alert.getTimestamp().getNano());
+        if (patientId == null) {
+            buffer.putShort((short) -1);
+        } else {
+            buffer.putShort((short) patientId.length);
+            buffer.put(patientId);
+        }
+        buffer.putInt(message.length);
+        buffer.put(message);
+        crc.reset();
+        crc.update(buffer.slice(payloadStart, payloadSize));
+        buffer.putInt(writePosition + 4, (int) crc.getValue());
+        // Длина пишется последней: до нее запись для восстановления не существует
+        buffer.putInt(writePosition, payloadSize);
+        active.addPosition(writePosition);
+        writePosition = payloadStart + payloadSize;
+        nextSequence = sequence + 1;
+        inFlight.add(sequence);
+        return sequence;
+    }
+
+    /**
+     * Метод подтверждает доставку уведомления с номером sequence
+     */
+    public synchronized void acknowledge(long sequence) {
+        inFlight.remove(sequence);
+    }
+
+    /**
+     * Метод переносит уведомление, которое так и не удалось доставить, в файл dead-letters
+     * (строка "номер TAB уведомление") и подтверждает его, чтобы оно не удерживало контрольную точку
+     */
+    public void deadLetter(long sequence, Alert alert) {
+        String line = sequence + "\t" + alert.toString().replace("\n", "\\n") + "\n";
+        try (FileChannel channel = FileChannel.open(deadLetterFile().toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException exception) {
+            throw new RuntimeException("Cannot write dead letter " + sequence, exception);
+        }
+        acknowledge(sequence);
+    }
+
+    public File deadLetterFile() {
+        return new File(directory, DEAD_LETTER_FILE);
+    }
+
+    /**
+     * Метод передает visitor уведомления, не подтвержденные до перезапуска, по возрастанию номеров.
+     * Повтор выполняется один раз; подтверждать их нужно так же, как новые
+     */
+    public void replayUndelivered(AlertVisitor visitor) {
+        List<Long> sequences;
+        List<Alert> alerts;
+        synchronized (this) {
+            sequences = undeliveredSequences;
+            alerts = undeliveredAlerts;
+            undeliveredSequences = new ArrayList<>();
+            undeliveredAlerts = new ArrayList<>();
+        }
+        for (int i = 0; i < sequences.size(); i++) {
+            visitor.visit(sequences.get(i), alerts.get(i));
+        }
+    }
+
+    /**
+     * Метод читает неподтвержденное уведомление с номером sequence из его сегмента.
+     * Смещение записи берется из таблицы смещений сегмента; просмотр сегмента с начала - только запасной путь,
+     * если номера в сегменте идут не подряд
+     */
+    public synchronized Alert read(long sequence) {
+        if (!inFlight.contains(sequence)) {
+            throw new IllegalArgumentException("Alert " + sequence + " is not pending in the outbox");
+        }
+        Segment segment = null;
+        for (Segment candidate : segments) {
+            if (candidate.firstSequence > sequence) {
+                break;
+            }
+            segment = candidate;
+        }
+        if (segment != null) {
+            long index = sequence - segment.firstSequence;
+            if (index < segment.records) {
+                int position = segment.positions[(int) index];
+                if (segment.buffer.getLong(position + HEADER_SIZE) == sequence) {
+                    Alert alert = readRecord(segment.buffer, position);
+                    if (alert != null) {
+                        return alert;
+                    }
+                }
+            }
+        }
+        int position = 0;
+        while (segment != null) {
+            Alert alert = readRecord(segment.buffer, position);
+            if (alert == null) {
+                break;
+            }
+            if (segment.buffer.getLong(position + HEADER_SIZE) == sequence) {
+                return alert;
+            }
+            position += HEADER_SIZE + segment.buffer.getInt(position);
+        }
+        throw new RuntimeException("Alert " + sequence + " is missing from the outbox");
+    }
+
+    /**
+     * Метод возвращает число записанных, но не подтвержденных уведомлений
+     */
+    public synchronized int pending() {
+        return inFlight.size();
+    }
+
+    /**
+     * Метод возвращает номер последней сохраненной контрольной точки
+     */
+    public synchronized long checkpoint() {
+        return checkpoint;
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Метод сбрасывает записанные уведомления на диск, сохраняет контрольную точку
+     * и удаляет полностью подтвержденные сегменты
+     */
+    public void flush() throws IOException {
+        synchronized (flushLock) {
+            flushLocked();
+        }
+    }
+
+    private void flushLocked() throws IOException {
+        List<Segment> toForce;
+        Segment current;
+        int from;
+        int to;
+        long watermark;
+        synchronized (this) {
+            toForce = new ArrayList<>(sealed);
+            sealed.clear();
+            current = active;
+            from = flushedPosition;
+            to = writePosition;
+            flushedPosition = writePosition;
+            watermark = inFlight.isEmpty() ? nextSequence - 1 : inFlight.first() - 1;
+        }
+        // Сброс выполняется вне блокировки, чтобы не задерживать запись новых уведомлений
+        for (Segment segment : toForce) {
+            segment.buffer.force();
+        }
+        if (to > from) {
+            current.buffer.force(from, to - from);
+        }
+        if (watermark > checkpoint) {
+            writeCheckpoint(watermark);
+            List<Segment> obsolete = new ArrayList<>();
+            synchronized (this) {
+                checkpoint = watermark;
+                // Сегмент подтвержден целиком, если следующий начинается не дальше контрольной точки
+                while (segments.size() > 1) {
+                    Segment oldest = segments.pollFirst();
+                    if (segments.peekFirst().firstSequence - 1 > checkpoint) {
+                        segments.addFirst(oldest);
+                        break;
+                    }
+                    obsolete.add(oldest);
+                }
+            }
+            for (Segment segment : obsolete) {
+                if (!segment.file.delete()) {
+                    throw new IOException("Cannot delete outbox segment " + segment.file);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        synchronized (this) {
+            closed = true;
+        }
+        checkpointChannel.close();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        Arrays.sort(files);
+        long lastSequence = checkpoint;
+        for (File file : files) {
+            String name = file.getName();
+            long firstSequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            Segment segment = new Segment(file, firstSequence, map(file));
+            segments.addLast(segment);
+            int position = 0;
+            while (true) {
+                Alert alert = readRecord(segment.buffer, position);
+                if (alert == null) {
+                    break;
+                }
+                long sequence = segment.buffer.getLong(position + HEADER_SIZE);
+                segment.addPosition(position);
+                if (sequence > checkpoint) {
+                    undeliveredSequences.add(sequence);
+                    undeliveredAlerts.add(alert);
+                    inFlight.add(sequence);
+                }
+                lastSequence = Math.max(lastSequence, sequence);
+                position += HEADER_SIZE + segment.buffer.getInt(position);
+            }
+            writePosition = position;
+        }
+        nextSequence = lastSequence + 1;
+        if (segments.isEmpty()) {
+            writePosition = 0;
+            active = null;
+            roll(nextSequence);
+        } else {
+            active = segments.peekLast();
+            // Обрезаем оборванную запись, чтобы ее остатки не читались как продолжение сегмента
+            for (int i = writePosition; i < segmentSize; i++) {
+                active.buffer.put(i, (byte) 0);
+            }
+            active.buffer.force();
+        }
+        flushedPosition = writePosition;
+    }
+
+    /**
+     * Метод читает запись по смещению position; null - конец сегмента или оборванная запись
+     */
+    private Alert readRecord(MappedByteBuffer buffer, int position) {
+        if (position + HEADER_SIZE > segmentSize) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + HEADER_SIZE + length > segmentSize) {
+            return null;
+        }
+        crc.reset();
+        crc.update(buffer.slice(position + HEADER_SIZE, length));
+        if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+            return null;
+        }
+        ByteBuffer record = buffer.slice(position + HEADER_SIZE, length);
+        record.getLong();
+        AlertSeverity severity = SEVERITIES[record.get()];
+        AlertType type = TYPES[record.get()];
+        Instant timestamp = Instant.ofEpochSecond(record.getLong(), record.getInt());
+        short idLength = record.getShort();
+        String patientId = null;
+        if (idLength >= 0) {
+            byte[] id = new byte[idLength];
+            record.get(id);
+            patientId = new String(id, StandardCharsets.UTF_8);
+        }
+        byte[] message = new byte[record.getInt()];
+        record.get(message);
+        return new Alert(patientId, severity, type, timestamp, new String(message, StandardCharsets.UTF_8));
+    }
+
+    private void roll(long firstSequence) {
+        File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        try {
+            Segment segment = new Segment(file, firstSequence, map(file));
+            if (active != null) {
+                sealed.add(active);
+            }
+            segments.addLast(segment);
+            active = segment;
+            writePosition = 0;
+            flushedPosition = 0;
+        } catch (IOException exception) {
+            throw new RuntimeException("Cannot create outbox segment " + file, exception);
+        }
+    }
+
+    private MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(segmentSize);
+            // Отображение остается действительным после закрытия канала
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) {
+            read = checkpointChannel.read(buffer, buffer.position());
+        }
+        if (buffer.hasRemaining()) {
+            return 0;
+        }
+        long value = buffer.getLong(0);
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.array(), 0, 8);
+        // Поврежденная контрольная точка - повторяем все сохранившиеся уведомления
+        return (int) checksum.getValue() == buffer.getInt(8) ? value : 0;
+    }
+
+    private void writeCheckpoint(long value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        buffer.putLong(0, value);
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.array(), 0, 8);
+        buffer.putInt(8, (int) checksum.getValue());
+        while (buffer.hasRemaining()) {
+            checkpointChannel.write(buffer, buffer.position());
+        }
+        checkpointChannel.force(false);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.netology.patient.service.alert;
+
+/**
+ * Важность уведомления, от самой высокой к самой низкой
+ */
+public enum AlertSeverity {
+    CRITICAL,
+    HIGH,
+    MEDIUM,
+    LOW
+}
@@ -0,0 +1,11 @@
+package ru.netology.patient.service.alert;
+
+/**
+ * Источник уведомления
+ */
+public enum AlertType {
+    BLOOD_PRESSURE,
+    TEMPERATURE,
+    TREND,
+    OTHER
+}
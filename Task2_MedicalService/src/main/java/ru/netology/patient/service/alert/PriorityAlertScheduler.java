@@ -0,0 +1,354 @@
+package ru.netology.patient.service.alert;
+
+import java.io.Closeable;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Планировщик уведомлений с приоритетами. Для каждой важности своя ограниченная очередь,
+ * доставку в delegate выполняет один поток-диспетчер:
+ * <ul>
+ *     <li>CRITICAL проверяется перед каждой доставкой и обслуживается в первую очередь;</li>
+ *     <li>остальные уровни выбираются взвешенным циклическим обходом (по умолчанию HIGH:MEDIUM:LOW = 4:2:1),
+ *     поэтому низкие уровни не голодают.</li>
+ * </ul>
+ * Переполнение без журнала: уведомления CRITICAL и HIGH ждут места в очереди (обратное давление на отправителя),
+ * уведомления MEDIUM и LOW отбрасываются и учитываются в {@link #dropped}.
+ * Поток уровня CRITICAL не ждет за низкоприоритетными, поэтому его задержка ограничена
+ * временем доставки одного уведомления, даже если очереди остальных уровней заполнены.
+ * <p>
+ * С {@link AlertOutbox} уведомление записывается в журнал до постановки в очередь и подтверждается
+ * только после доставки. Не поместившееся в очередь уведомление не отбрасывается: в памяти остается
+ * его номер, а само уведомление перечитывается из журнала, когда в очереди его уровня освобождается место.
+ * Неподтвержденные при прошлом запуске уведомления ставятся в очереди при создании планировщика
+ * тем же путем, поэтому их число не ограничено емкостью очередей.
+ * <p>
+ * Неудачная доставка повторяется диспетчером с экспоненциальной задержкой (50, 100, 200... мс).
+ * После {@link #MAX_ATTEMPTS} попыток (или неудачной попытки при закрытии) уведомление переносится
+ * в {@link AlertOutbox#deadLetter} и учитывается в {@link #deadLettered}, чтобы не удерживать контрольную точку журнала.
+ */
+public class PriorityAlertScheduler implements SendAlertService, Closeable {
+
+    private static final AlertSeverity[] LEVELS = AlertSeverity.values();
+    private static final int CRITICAL = AlertSeverity.CRITICAL.ordinal();
+    private static final int HIGH = AlertSeverity.HIGH.ordinal();
+    private static final int[] DEFAULT_WEIGHTS = {0, 4, 2, 1};
+    private static final long NO_SEQUENCE = -1;
+    public static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final SendAlertService delegate;
+    private final AlertOutbox outbox;
+    private final List<BlockingQueue<Queued>> queues;
+    // Вытесненные в журнал уведомления по уровням (без текста); доступ под блокировкой самого списка
+    private final List<ArrayDeque<Queued>> overflow;
+    private final int[] weights;
+    private final int[] credits;
+    // Число уведомлений во всех очередях: диспетчер берет разрешение на каждое
+    private final Semaphore pending = new Semaphore(0);
+    private final AtomicLongArray delivered = new AtomicLongArray(LEVELS.length);
+    private final AtomicLongArray dropped = new AtomicLongArray(LEVELS.length);
+    private final AtomicLongArray deadLettered = new AtomicLongArray(LEVELS.length);
+    private final AtomicLongArray maxLatencyNanos = new AtomicLongArray(LEVELS.length);
+    // Неудачные доставки по времени следующей попытки; доступ только из потока диспетчера
+    private final PriorityQueue<Queued> retries = new PriorityQueue<>(Comparator.comparingLong(queued -> queued.retryAtNanos));
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private static final class Queued {
+        private final Alert alert;
+        private final long sequence;
+        private final long enqueuedNanos;
+        private final int attempts;
+        private final long retryAtNanos;
+
+        private Queued(Alert alert, long sequence, long enqueuedNanos) {
+            this(alert, sequence, enqueuedNanos, 0, 0);
+        }
+
+        private Queued(Alert alert, long sequence, long enqueuedNanos, int attempts, long retryAtNanos) {
+            this.alert = alert;
+            this.sequence = sequence;
+            this.enqueuedNanos = enqueuedNanos;
+            this.attempts = attempts;
+            this.retryAtNanos = retryAtNanos;
+        }
+    }
+
+    public PriorityAlertScheduler(SendAlertService delegate) {
+        this(delegate, 1024, DEFAULT_WEIGHTS);
+    }
+
+    public PriorityAlertScheduler(SendAlertService delegate, AlertOutbox outbox) {
+        this(delegate, 1024, DEFAULT_WEIGHTS, outbox);
+    }
+
+    /**
+     * weights - веса уровней в порядке AlertSeverity; вес CRITICAL не используется
+     */
+    public PriorityAlertScheduler(SendAlertService delegate, int capacityPerLevel, int[] weights) {
+        this(delegate, capacityPerLevel, weights, null);
+    }
+
+    /**
+     * outbox - журнал уведомлений для повтора после перезапуска; null - без журнала
+     */
+    public PriorityAlertScheduler(SendAlertService delegate, int capacityPerLevel, int[] weights, AlertOutbox outbox) {
+        if (weights.length != LEVELS.length) {
+            throw new IllegalArgumentException("Expected " + LEVELS.length + " weights: " + Arrays.toString(weights));
+        }
+        this.delegate = delegate;
+        this.outbox = outbox;
+        this.queues = new ArrayList<>(LEVELS.length);
+        this.overflow = new ArrayList<>(LEVELS.length);
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (i != CRITICAL && weights[i] < 1) {
+                throw new IllegalArgumentException("Weight must be positive: " + Arrays.toString(weights));
+            }
+            queues.add(new ArrayBlockingQueue<>(capacityPerLevel));
+            overflow.add(new ArrayDeque<>());
+        }
+        this.weights = weights.clone();
+        this.credits = weights.clone();
+        this.dispatcher = new Thread(this::dispatchLoop, "alert-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        if (outbox != null) {
+            outbox.replayUndelivered((sequence, alert) -> schedule(new Queued(alert, sequence, System.nanoTime())));
+        }
+    }
+
+    /**
+     * Текстовое уведомление без важности планируется как MEDIUM
+     */
+    @Override
+    public void send(String message) {
+        send(new Alert(null, AlertSeverity.MEDIUM, AlertType.OTHER, Instant.now(), message));
+    }
+
+    @Override
+    public void send(Alert alert) {
+        if (!running) {
+            throw new IllegalStateException("Alert scheduler is closed");
+        }
+        long sequence = outbox == null ? NO_SEQUENCE : outbox.append(alert);
+        schedule(new Queued(alert, sequence, System.nanoTime()));
+    }
+
+    private void schedule(Queued queued) {
+        int level = queued.alert.getSeverity().ordinal();
+        BlockingQueue<Queued> queue = queues.get(level);
+        if (queued.sequence != NO_SEQUENCE) {
+            synchronized (overflow) {
+                // Пока у уровня есть вытесненные уведомления, новые встают за ними, чтобы сохранить порядок
+                ArrayDeque<Queued> spilled = overflow.get(level);
+                if (!spilled.isEmpty() || !queue.offer(queued)) {
+                    spilled.addLast(new Queued(null, queued.sequence, queued.enqueuedNanos));
+                    return;
+                }
+            }
+        } else if (level == CRITICAL || level == HIGH) {
+            try {
+                queue.put(queued);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while scheduling " + LEVELS[level] + " alert", exception);
+            }
+        } else if (!queue.offer(queued)) {
+            dropped.incrementAndGet(level);
+            return;
+        }
+        pending.release();
+    }
+
+    /**
+     * Метод возвращает вытесненные уведомления уровня level из журнала в освободившиеся места очереди
+     */
+    private void refill(int level) {
+        if (outbox == null) {
+            return;
+        }
+        synchronized (overflow) {
+            ArrayDeque<Queued> spilled = overflow.get(level);
+            BlockingQueue<Queued> queue = queues.get(level);
+            while (!spilled.isEmpty() && queue.remainingCapacity() > 0) {
+                Queued waiting = spilled.pollFirst();
+                queue.add(new Queued(outbox.read(waiting.sequence), waiting.sequence, waiting.enqueuedNanos));
+                pending.release();
+            }
+        }
+    }
+
+    public long delivered(AlertSeverity severity) {
+        return delivered.get(severity.ordinal());
+    }
+
+    public long dropped(AlertSeverity severity) {
+        return dropped.get(severity.ordinal());
+    }
+
+    public long deadLettered(AlertSeverity severity) {
+        return deadLettered.get(severity.ordinal());
+    }
+
+    /**
+     * Метод возвращает наибольшее время ожидания уведомления в очереди уровня severity
+     */
+    public long maxLatencyMillis(AlertSeverity severity) {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get(severity.ordinal()));
+    }
+
+    public int queued(AlertSeverity severity) {
+        return queues.get(severity.ordinal()).size();
+    }
+
+    /**
+     * Метод возвращает число уведомлений уровня severity, которые ждут места в очереди в журнале
+     */
+    public int spilled(AlertSeverity severity) {
+        synchronized (overflow) {
+            return overflow.get(severity.ordinal()).size();
+        }
+    }
+
+    /**
+     * Метод останавливает диспетчер и доставляет оставшиеся уведомления в порядке важности;
+     * ожидающие повтора уведомления получают последнюю попытку без задержки
+     */
+    @Override
+    public void close() {
+        running = false;
+        // Будим диспетчер разрешением, а не прерыванием, чтобы не прервать текущую доставку
+        pending.release();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        for (int level = 0; level < LEVELS.length; level++) {
+            Queued queued;
+            while ((queued = queues.get(level).poll()) != null) {
+                refill(level);
+                deliver(queued);
+            }
+        }
+        Queued retry;
+        while ((retry = retries.poll()) != null) {
+            if (!attempt(retry)) {
+                deadLetter(retry);
+            }
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            Queued retry = retries.peek();
+            long waitNanos = retry == null ? 0 : retry.retryAtNanos - System.nanoTime();
+            if (retry != null && waitNanos <= 0) {
+                // Наступивший повтор доставляется раньше очередей: иначе под постоянной нагрузкой
+                // разрешения есть всегда и повтор ждал бы, пока очереди опустеют
+                deliver(retries.poll());
+                continue;
+            }
+            boolean acquired;
+            try {
+                if (retry == null) {
+                    pending.acquire();
+                    acquired = true;
+                } else {
+                    // Ждем новое уведомление не дольше, чем до срока ближайшего повтора
+                    acquired = pending.tryAcquire(waitNanos, TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException exception) {
+                return;
+            }
+            if (!running) {
+                return;
+            }
+            if (acquired) {
+                Queued queued = next();
+                if (queued != null) {
+                    deliver(queued);
+                }
+            }
+        }
+    }
+
+    /**
+     * Метод выбирает следующее уведомление: сначала CRITICAL, затем взвешенный обход остальных уровней
+     */
+    private Queued next() {
+        Queued critical = queues.get(CRITICAL).poll();
+        if (critical != null) {
+            refill(CRITICAL);
+            return critical;
+        }
+        for (int round = 0; round < 2; round++) {
+            for (int level = 0; level < LEVELS.length; level++) {
+                if (level == CRITICAL || credits[level] == 0) {
+                    continue;
+                }
+                Queued queued = queues.get(level).poll();
+                if (queued != null) {
+                    credits[level]--;
+                    refill(level);
+                    return queued;
+                }
+            }
+            // Все непустые уровни исчерпали веса - начинаем новый цикл
+            System.arraycopy(weights, 0, credits, 0, weights.length);
+        }
+        return null;
+    }
+
+    /**
+     * Метод доставляет уведомление; неудачная попытка планирует повтор, а последняя - перенос в dead letters
+     */
+    private void deliver(Queued queued) {
+        if (attempt(queued)) {
+            return;
+        }
+        int attempts = queued.attempts + 1;
+        if (attempts >= MAX_ATTEMPTS) {
+            deadLetter(queued);
+            return;
+        }
+        long retryAt = System.nanoTime() + (RETRY_BACKOFF_NANOS << (attempts - 1));
+        retries.add(new Queued(queued.alert, queued.sequence, queued.enqueuedNanos, attempts, retryAt));
+    }
+
+    private boolean attempt(Queued queued) {
+        int level = queued.alert.getSeverity().ordinal();
+        if (queued.attempts == 0) {
+            // Задержка в очереди; время ожидания повторов в нее не входит
+            maxLatencyNanos.accumulateAndGet(level, System.nanoTime() - queued.enqueuedNanos, Math::max);
+        }
+        try {
+            delegate.send(queued.alert);
+        } catch (RuntimeException exception) {
+            return false;
+        }
+        delivered.incrementAndGet(level);
+        if (queued.sequence != NO_SEQUENCE) {
+            outbox.acknowledge(queued.sequence);
+        }
+        return true;
+    }
+
+    private void deadLetter(Queued queued) {
+        deadLettered.incrementAndGet(queued.alert.getSeverity().ordinal());
+        if (queued.sequence != NO_SEQUENCE) {
+            outbox.deadLetter(queued.sequence, queued.alert);
+        }
+    }
+}
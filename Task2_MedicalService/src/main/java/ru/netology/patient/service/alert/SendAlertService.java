@@ -3,4 +3,11 @@ package ru.netology.patient.service.alert;
 public interface SendAlertService {
 
     void send(String message);
+
+    /**
+     * Метод отправляет структурированное уведомление. По умолчанию отправляется только текст
+     */
+    default void send(Alert alert) {
+        send(alert.getMessage());
+    }
 }
@@ -0,0 +1,67 @@
+package ru.netology.patient.service.medical;
+
+import java.util.List;
+
+import ru.netology.patient.service.alert.Alert;
+
+/**
+ * Результат проверки одного показания: вердикты правил, отправленные уведомления
+ * и ошибка проверки (например, неизвестный пациент), если она была
+ */
+public final class CheckOutcome {
+
+    /**
+     * Показатель отсутствовал в показании и не проверялся
+     */
+    public static final int NOT_CHECKED = -1;
+
+    private final VitalsReading reading;
+    private final int bloodPressureVerdict;
+    private final int temperatureVerdict;
+    private final List<Alert> alerts;
+    private final RuntimeException error;
+
+    public CheckOutcome(VitalsReading reading, int bloodPressureVerdict, int temperatureVerdict,
+                        List<Alert> alerts, RuntimeException error) {
+        this.reading = reading;
+        this.bloodPressureVerdict = bloodPressureVerdict;
+        this.temperatureVerdict = temperatureVerdict;
+        this.alerts = List.copyOf(alerts);
+        this.error = error;
+    }
+
+    public VitalsReading getReading() {
+        return reading;
+    }
+
+    public int getBloodPressureVerdict() {
+        return bloodPressureVerdict;
+    }
+
+    public int getTemperatureVerdict() {
+        return temperatureVerdict;
+    }
+
+    public List<Alert> getAlerts() {
+        return alerts;
+    }
+
+    public RuntimeException getError() {
+        return error;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckOutcome{" +
+            "reading=" + reading +
+            ", bloodPressureVerdict=" + bloodPressureVerdict +
+            ", temperatureVerdict=" + temperatureVerdict +
+            ", alerts=" + alerts +
+            ", error=" + error +
+            '}';
+    }
+}
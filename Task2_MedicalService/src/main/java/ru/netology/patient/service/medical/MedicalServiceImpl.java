@@ -1,46 +1,174 @@
 package ru.netology.patient.service.medical;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 
 import ru.netology.patient.entity.BloodPressure;
 import ru.netology.patient.entity.PatientInfo;
 import ru.netology.patient.repository.PatientInfoRepository;
+import ru.netology.patient.service.alert.Alert;
+import ru.netology.patient.service.alert.AlertSeverity;
+import ru.netology.patient.service.alert.AlertType;
 import ru.netology.patient.service.alert.SendAlertService;
+import ru.netology.patient.service.medical.escalation.AlertEscalator;
+import ru.netology.patient.service.medical.rules.ClinicalRuleEngine;
+import ru.netology.patient.service.medical.rules.ClinicalRules;
+import ru.netology.patient.service.medical.trend.VitalsTrendMonitor;
 
 public class MedicalServiceImpl implements MedicalService {
 
     private final PatientInfoRepository patientInfoRepository;
     private final SendAlertService alertService;
+    // Необязательный снимок норм пациентов; без него все проверки читают полную запись из репозитория
+    private final VitalsBaseline vitalsBaseline;
+    private final ClinicalRuleEngine ruleEngine;
+    // Необязательная эскалация предупреждений, не снятых нормальным показанием
+    private final AlertEscalator escalator;
+    // Необязательное отслеживание трендов: получает каждое показание, прошедшее проверку
+    private final VitalsTrendMonitor trendMonitor;
 
     public MedicalServiceImpl(PatientInfoRepository patientInfoRepository, SendAlertService alertService) {
+        this(patientInfoRepository, alertService, null);
+    }
+
+    public MedicalServiceImpl(PatientInfoRepository patientInfoRepository,
+                              SendAlertService alertService,
+                              VitalsBaseline vitalsBaseline) {
+        this(patientInfoRepository, alertService, vitalsBaseline, null);
+    }
+
+    /**
+     * Без движка правил (ruleEngine == null) действуют исходные проверки: любое отличие давления от нормы
+     * и снижение температуры более чем на 1.5 градуса
+     */
+    public MedicalServiceImpl(PatientInfoRepository patientInfoRepository,
+                              SendAlertService alertService,
+                              VitalsBaseline vitalsBaseline,
+                              ClinicalRuleEngine ruleEngine) {
+        this(patientInfoRepository, alertService, vitalsBaseline, ruleEngine, null);
+    }
+
+    /**
+     * С эскалатором каждое предупреждение ставит таймер эскалации, а нормальное показание его снимает
+     */
+    public MedicalServiceImpl(PatientInfoRepository patientInfoRepository,
+                              SendAlertService alertService,
+                              VitalsBaseline vitalsBaseline,
+                              ClinicalRuleEngine ruleEngine,
+                              AlertEscalator escalator) {
+        this(patientInfoRepository, alertService, vitalsBaseline, ruleEngine, escalator, null);
+    }
+
+    /**
+     * С монитором трендов показания после проверки передаются в скользящие окна пациента
+     */
+    public MedicalServiceImpl(PatientInfoRepository patientInfoRepository,
+                              SendAlertService alertService,
+                              VitalsBaseline vitalsBaseline,
+                              ClinicalRuleEngine ruleEngine,
+                              AlertEscalator escalator,
+                              VitalsTrendMonitor trendMonitor) {
         this.patientInfoRepository = patientInfoRepository;
         this.alertService = alertService;
+        this.vitalsBaseline = vitalsBaseline;
+        this.ruleEngine = ruleEngine != null ? ruleEngine : ClinicalRuleEngine.legacy();
+        this.escalator = escalator;
+        this.trendMonitor = trendMonitor;
     }
 
     @Override
     public void checkBloodPressure(String patientId, BloodPressure bloodPressure) {
-        PatientInfo patientInfo = getPatientInfo(patientId);
-        if (!patientInfo.getHealthInfo().getBloodPressure().equals(bloodPressure)) {
-            String message = String.format("Warning, patient with id: %s, need help", patientInfo.getId());
-            alertService.send(message);
+        int verdict = bloodPressureVerdict(patientId, bloodPressure);
+        // В тренд попадают только показания известных пациентов: для неизвестного проверка уже бросила исключение
+        if (trendMonitor != null && bloodPressure != null) {
+            trendMonitor.onBloodPressure(patientId, System.currentTimeMillis(),
+                bloodPressure.getHigh(), bloodPressure.getLow());
         }
+        report(patientId, verdict, AlertType.BLOOD_PRESSURE);
     }
 
     @Override
     public void checkTemperature(String patientId, BigDecimal temperature) {
-        PatientInfo patientInfo = getPatientInfo(patientId);
-        // Проверяем, что температура ниже нормы более чем на 1.5 градуса
-        if (patientInfo.getHealthInfo().getNormalTemperature().subtract(new BigDecimal("1.5")).compareTo(temperature) > 0) {
-            String message = String.format("Warning, patient with id: %s, need help", patientInfo.getId());
-            alertService.send(message);
+        int verdict = temperatureVerdict(patientId, temperature);
+        if (trendMonitor != null && temperature != null) {
+            trendMonitor.onTemperature(patientId, System.currentTimeMillis(), temperature);
+        }
+        report(patientId, verdict, AlertType.TEMPERATURE);
+    }
+
+    /**
+     * Метод возвращает вердикт правил (ClinicalRules.NORMAL, DEVIATION или OUT_OF_RANGE) без отправки уведомления
+     */
+    int bloodPressureVerdict(String patientId, BloodPressure bloodPressure) {
+        ClinicalRules rules = ruleEngine.rules();
+        if (vitalsBaseline != null && bloodPressure != null) {
+            int verdict = vitalsBaseline.evaluateBloodPressure(patientId,
+                bloodPressure.getHigh(), bloodPressure.getLow(), rules);
+            if (verdict != VitalsBaseline.UNKNOWN) {
+                return verdict;
+            }
         }
+        return rules.evaluate(getPatientInfo(patientId), bloodPressure);
+    }
+
+    int temperatureVerdict(String patientId, BigDecimal temperature) {
+        ClinicalRules rules = ruleEngine.rules();
+        if (vitalsBaseline != null && temperature != null) {
+            int verdict = vitalsBaseline.evaluateTemperature(patientId, temperature, rules);
+            if (verdict != VitalsBaseline.UNKNOWN) {
+                return verdict;
+            }
+        }
+        return rules.evaluate(getPatientInfo(patientId), temperature);
+    }
+
+    static String warningMessage(String patientId) {
+        return String.format("Warning, patient with id: %s, need help", patientId);
+    }
+
+    /**
+     * Метод формирует уведомление по вердикту правил: выход за абсолютные границы - CRITICAL,
+     * отклонение от нормы пациента - HIGH
+     */
+    static Alert warning(String patientId, int verdict, AlertType type) {
+        AlertSeverity severity = verdict == ClinicalRules.OUT_OF_RANGE ? AlertSeverity.CRITICAL : AlertSeverity.HIGH;
+        return new Alert(patientId, severity, type, Instant.now(), warningMessage(patientId));
+    }
+
+    /**
+     * Метод отправляет предупреждение по отклонению или снимает эскалацию по нормальному показанию.
+     * Возвращает отправленное уведомление или null
+     */
+    Alert report(String patientId, int verdict, AlertType type) {
+        if (verdict == ClinicalRules.NORMAL) {
+            if (escalator != null) {
+                escalator.onNormal(patientId, type);
+            }
+            return null;
+        }
+        return sendWarning(patientId, verdict, type);
+    }
+
+    Alert sendWarning(String patientId, int verdict, AlertType type) {
+        Alert alert = warning(patientId, verdict, type);
+        alertService.send(alert);
+        if (escalator != null) {
+            escalator.onWarning(alert);
+        }
+        return alert;
     }
 
     private PatientInfo getPatientInfo(String patientId) {
+        // Номер изменения берется до чтения: прогрев отменится, если слушатель успел обновить снимок
+        long baselineVersion = vitalsBaseline != null ? vitalsBaseline.version() : 0;
         PatientInfo patientInfo = patientInfoRepository.getById(patientId);
         if (patientInfo == null) {
             throw new RuntimeException("Patient not found");
         }
+        if (vitalsBaseline != null) {
+            // Прогреваем снимок, чтобы следующие проверки пациента не обращались к репозиторию
+            vitalsBaseline.warm(patientInfo, baselineVersion);
+        }
         return patientInfo;
     }
 }
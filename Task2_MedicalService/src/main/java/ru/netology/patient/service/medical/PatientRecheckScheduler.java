@@ -0,0 +1,121 @@
+package ru.netology.patient.service.medical;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.service.medical.escalation.TimerWheel;
+
+/**
+ * Периодические повторные проверки пациентов через MedicalService по последним показателям из VitalsFeed.
+ * Проверка ставится таймером в {@link TimerWheel} и после выполнения переставляется на следующий период,
+ * поэтому число пациентов на повторных проверках ограничено только памятью колеса.
+ * Нормальное показание при повторной проверке снимает эскалацию (см. MedicalServiceImpl),
+ * а ошибка проверки (например, пациент удален) прекращает повторные проверки пациента
+ * и сохраняется в {@link #failure}, а не пробрасывается в поток колеса.
+ */
+public class PatientRecheckScheduler {
+
+    private final MedicalService medicalService;
+    private final VitalsFeed vitalsFeed;
+    private final TimerWheel timerWheel;
+    private final Map<String, Recheck> rechecks = new ConcurrentHashMap<>();
+    private final Map<String, RuntimeException> failures = new ConcurrentHashMap<>();
+
+    public PatientRecheckScheduler(MedicalService medicalService, VitalsFeed vitalsFeed, TimerWheel timerWheel) {
+        this.medicalService = medicalService;
+        this.vitalsFeed = vitalsFeed;
+        this.timerWheel = timerWheel;
+    }
+
+    /**
+     * Метод ставит повторные проверки пациента с периодом period, заменяя прежние
+     */
+    public void schedule(String patientId, Duration period) {
+        Recheck recheck = new Recheck(patientId, period.toMillis());
+        failures.remove(patientId);
+        Recheck previous = rechecks.put(patientId, recheck);
+        if (previous != null) {
+            previous.cancel();
+        }
+        recheck.scheduleNext();
+    }
+
+    /**
+     * Метод снимает повторные проверки пациента; возвращает false, если их не было
+     */
+    public boolean cancel(String patientId) {
+        Recheck recheck = rechecks.remove(patientId);
+        if (recheck == null) {
+            return false;
+        }
+        recheck.cancel();
+        return true;
+    }
+
+    public int size() {
+        return rechecks.size();
+    }
+
+    /**
+     * Метод возвращает ошибку, прекратившую повторные проверки пациента; null - ошибки не было
+     */
+    public RuntimeException failure(String patientId) {
+        return failures.get(patientId);
+    }
+
+    private final class Recheck implements TimerWheel.TimerTask {
+
+        private final String patientId;
+        private final long periodMillis;
+        private TimerWheel.Timeout timeout;
+        private boolean cancelled;
+
+        private Recheck(String patientId, long periodMillis) {
+            this.patientId = patientId;
+            this.periodMillis = periodMillis;
+        }
+
+        @Override
+        public void run(TimerWheel.Timeout fired) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+            }
+            try {
+                BloodPressure bloodPressure = vitalsFeed.latestBloodPressure(patientId);
+                if (bloodPressure != null) {
+                    medicalService.checkBloodPressure(patientId, bloodPressure);
+                }
+                BigDecimal temperature = vitalsFeed.latestTemperature(patientId);
+                if (temperature != null) {
+                    medicalService.checkTemperature(patientId, temperature);
+                }
+            } catch (RuntimeException exception) {
+                if (rechecks.remove(patientId, this)) {
+                    failures.put(patientId, exception);
+                }
+                cancel();
+                return;
+            }
+            scheduleNext();
+        }
+
+        private synchronized void scheduleNext() {
+            if (!cancelled) {
+                timeout = timerWheel.schedule(this, periodMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+}
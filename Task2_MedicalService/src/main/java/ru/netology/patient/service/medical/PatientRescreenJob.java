@@ -0,0 +1,182 @@
+package ru.netology.patient.service.medical;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.PatientInfo;
+import ru.netology.patient.repository.FileRange;
+import ru.netology.patient.repository.PatientInfoFileRepository;
+import ru.netology.patient.repository.PatientLogFormat;
+import ru.netology.patient.service.alert.AlertType;
+import ru.netology.patient.service.alert.SendAlertService;
+import ru.netology.patient.service.medical.rules.ClinicalRuleEngine;
+import ru.netology.patient.service.medical.rules.ClinicalRules;
+
+/**
+ * Задание повторной проверки всех пациентов файлового репозитория по последним показателям.
+ * Файл делится на диапазоны байт, выровненные по строкам, которые разбираются и проверяются
+ * параллельно в ForkJoinPool по текущим клиническим правилам. Уведомления отправляются в SendAlertService
+ * тем же текстом, что и в MedicalServiceImpl, а прогресс сообщается после обработки каждого диапазона.
+ */
+public class PatientRescreenJob {
+
+    // Диапазонов больше, чем потоков, чтобы неравномерные по времени части балансировались work-stealing'ом
+    private static final int RANGES_PER_WORKER = 4;
+
+    private final File repoFile;
+    private final ObjectMapper mapper;
+    private final VitalsFeed vitalsFeed;
+    private final SendAlertService alertService;
+    private final ClinicalRuleEngine ruleEngine;
+    private final ForkJoinPool pool;
+    // Журнал хранит и старые версии записей: проверяются только текущие (без обновленных и удаленных)
+    private final PatientInfoFileRepository repository;
+
+    public PatientRescreenJob(PatientInfoFileRepository repository,
+                              ObjectMapper mapper,
+                              VitalsFeed vitalsFeed,
+                              SendAlertService alertService) {
+        this(repository, mapper, vitalsFeed, alertService, ClinicalRuleEngine.legacy(), ForkJoinPool.commonPool());
+    }
+
+    public PatientRescreenJob(PatientInfoFileRepository repository,
+                              ObjectMapper mapper,
+                              VitalsFeed vitalsFeed,
+                              SendAlertService alertService,
+                              ClinicalRuleEngine ruleEngine,
+                              ForkJoinPool pool) {
+        this.repoFile = repository.getRepoFile();
+        this.mapper = mapper;
+        this.vitalsFeed = vitalsFeed;
+        this.alertService = alertService;
+        this.ruleEngine = ruleEngine;
+        this.pool = pool;
+        this.repository = repository;
+    }
+
+    public RescreenReport run() {
+        return run(report -> {
+        });
+    }
+
+    /**
+     * Метод проверяет всех пациентов и возвращает итоговый отчет.
+     * progressListener вызывается из рабочих потоков после каждого обработанного диапазона
+     */
+    public RescreenReport run(Consumer<RescreenReport> progressListener) {
+        try (FileChannel channel = FileChannel.open(repoFile.toPath(), StandardOpenOption.READ)) {
+            long totalBytes = channel.size();
+            List<FileRange> ranges = FileRange.splitByLines(channel, pool.getParallelism() * RANGES_PER_WORKER);
+            Progress progress = new Progress(totalBytes, progressListener);
+            if (!ranges.isEmpty()) {
+                pool.invoke(new RangeTask(channel, ranges, 0, ranges.size(), progress));
+            }
+            return progress.snapshot();
+        } catch (IOException exception) {
+            throw new RuntimeException("Rescreen of " + repoFile + " failed", exception);
+        }
+    }
+
+    private void rescreen(FileChannel channel, FileRange range, Progress progress) throws IOException {
+        // Весь диапазон проверяется по одной версии правил
+        ClinicalRules rules = ruleEngine.rules();
+        long[] counters = new long[2];
+        PatientLogFormat.Frame frame = new PatientLogFormat.Frame();
+        range.forEachLine(channel, (buffer, offset, length, lineOffset) -> {
+            // Оборванные и поврежденные записи журнала пропускаются
+            if (length == 0 || !PatientLogFormat.decode(buffer, offset, length, frame)
+                || frame.getOperation() != PatientLogFormat.PUT) {
+                return;
+            }
+            PatientInfo patientInfo = mapper.readValue(buffer, frame.getPayloadOffset(), frame.getPayloadLength(),
+                PatientInfo.class);
+            if (!repository.isCurrent(patientInfo.getId(), lineOffset)) {
+                return;
+            }
+            counters[0]++;
+            BloodPressure bloodPressure = vitalsFeed.latestBloodPressure(patientInfo.getId());
+            int verdict = bloodPressure == null ? ClinicalRules.NORMAL : rules.evaluate(patientInfo, bloodPressure);
+            if (verdict != ClinicalRules.NORMAL) {
+                alertService.send(MedicalServiceImpl.warning(patientInfo.getId(), verdict, AlertType.BLOOD_PRESSURE));
+                counters[1]++;
+            }
+            BigDecimal temperature = vitalsFeed.latestTemperature(patientInfo.getId());
+            verdict = temperature == null ? ClinicalRules.NORMAL : rules.evaluate(patientInfo, temperature);
+            if (verdict != ClinicalRules.NORMAL) {
+                alertService.send(MedicalServiceImpl.warning(patientInfo.getId(), verdict, AlertType.TEMPERATURE));
+                counters[1]++;
+            }
+        });
+        progress.rangeDone(range.length(), counters[0], counters[1]);
+    }
+
+    // Задача живет только внутри пула и никогда не сериализуется
+    @SuppressWarnings("serial")
+    private final class RangeTask extends RecursiveAction {
+
+        private final FileChannel channel;
+        private final List<FileRange> ranges;
+        private final int from;
+        private final int to;
+        private final Progress progress;
+
+        RangeTask(FileChannel channel, List<FileRange> ranges, int from, int to, Progress progress) {
+            this.channel = channel;
+            this.ranges = ranges;
+            this.from = from;
+            this.to = to;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(channel, ranges, from, middle, progress),
+                    new RangeTask(channel, ranges, middle, to, progress));
+                return;
+            }
+            try {
+                rescreen(channel, ranges.get(from), progress);
+            } catch (IOException exception) {
+                throw new RuntimeException("Rescreen of " + ranges.get(from) + " failed", exception);
+            }
+        }
+    }
+
+    private static final class Progress {
+
+        private final long totalBytes;
+        private final Consumer<RescreenReport> listener;
+        private final AtomicLong processedBytes = new AtomicLong();
+        private final AtomicLong patients = new AtomicLong();
+        private final AtomicLong alerts = new AtomicLong();
+
+        Progress(long totalBytes, Consumer<RescreenReport> listener) {
+            this.totalBytes = totalBytes;
+            this.listener = listener;
+        }
+
+        void rangeDone(long bytes, long rangePatients, long rangeAlerts) {
+            patients.addAndGet(rangePatients);
+            alerts.addAndGet(rangeAlerts);
+            processedBytes.addAndGet(bytes);
+            listener.accept(snapshot());
+        }
+
+        RescreenReport snapshot() {
+            return new RescreenReport(processedBytes.get(), totalBytes, patients.get(), alerts.get());
+        }
+    }
+}
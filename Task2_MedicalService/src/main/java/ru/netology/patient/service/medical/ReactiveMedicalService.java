@@ -0,0 +1,193 @@
+package ru.netology.patient.service.medical;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.netology.patient.service.alert.Alert;
+import ru.netology.patient.service.alert.AlertType;
+
+/**
+ * Реактивный вариант {@link MedicalService}: подписывается на поток показаний и публикует результаты проверок.
+ * <p>
+ * Каждое показание дает ровно один результат, поэтому запрос подписчика передается источнику один в один
+ * и процессор ничего не буферизует: показание запрашивается у источника, только когда подписчик готов
+ * принять результат. Проверка (чтение норм из репозитория) и отправка уведомления выполняются синхронно
+ * в onNext; если SendAlertService не успевает (например, очередь CRITICAL планировщика заполнена),
+ * он задерживает onNext, а с ним и следующие показания.
+ * <p>
+ * Вызовы источника и подписчика выполняются без блокировок: запросы копятся в счетчике и передаются источнику
+ * одним потоком в цикле передачи (счетчик незавершенной работы), поэтому синхронный источник не держит
+ * монитор во время проверок, а отмена из другого потока действует сразу.
+ * <p>
+ * Ошибка проверки одного показания (например, неизвестный пациент) не завершает поток,
+ * а возвращается в {@link CheckOutcome#getError()}. Поддерживается один подписчик.
+ */
+public class ReactiveMedicalService implements Flow.Processor<VitalsReading, CheckOutcome> {
+
+    private final MedicalServiceImpl medicalService;
+
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private volatile Flow.Subscription upstream;
+    // Получатель задается после его onSubscribe; до этого запрос только копится
+    private volatile Flow.Subscriber<? super CheckOutcome> downstream;
+    // Запрос подписчика, еще не переданный источнику
+    private final AtomicLong requested = new AtomicLong();
+    // Счетчик незавершенной работы цикла передачи запроса: передает только поток, увеличивший его с нуля
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile boolean completed;
+    private volatile Throwable failure;
+    private final AtomicBoolean terminated = new AtomicBoolean();
+
+    public ReactiveMedicalService(MedicalServiceImpl medicalService) {
+        this.medicalService = medicalService;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CheckOutcome> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("ReactiveMedicalService supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    cancel();
+                    subscriber.onError(new IllegalArgumentException("Demand must be positive: " + n));
+                    return;
+                }
+                requested.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                Flow.Subscription subscription = upstream;
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+            }
+        });
+        // Подписчик становится получателем сигналов только после onSubscribe; запрос, сделанный внутри onSubscribe,
+        // передается источнику только теперь, иначе синхронный источник вызвал бы onNext раньше, чем задан получатель
+        downstream = subscriber;
+        drain();
+        signalTermination();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (cancelled || upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        // Отмена могла прийти, пока источник еще не был задан
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(VitalsReading reading) {
+        if (cancelled) {
+            return;
+        }
+        downstream.onNext(check(reading));
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        failure = throwable;
+        signalTermination();
+    }
+
+    @Override
+    public void onComplete() {
+        completed = true;
+        signalTermination();
+    }
+
+    /**
+     * Метод проверяет показание: вердикты правил и уведомления по отклонениям
+     */
+    CheckOutcome check(VitalsReading reading) {
+        int bloodPressureVerdict = CheckOutcome.NOT_CHECKED;
+        int temperatureVerdict = CheckOutcome.NOT_CHECKED;
+        List<Alert> alerts = new ArrayList<>(2);
+        try {
+            String patientId = reading.getPatientId();
+            if (reading.getBloodPressure() != null) {
+                bloodPressureVerdict = medicalService.bloodPressureVerdict(patientId, reading.getBloodPressure());
+                Alert alert = medicalService.report(patientId, bloodPressureVerdict, AlertType.BLOOD_PRESSURE);
+                if (alert != null) {
+                    alerts.add(alert);
+                }
+            }
+            if (reading.getTemperature() != null) {
+                temperatureVerdict = medicalService.temperatureVerdict(patientId, reading.getTemperature());
+                Alert alert = medicalService.report(patientId, temperatureVerdict, AlertType.TEMPERATURE);
+                if (alert != null) {
+                    alerts.add(alert);
+                }
+            }
+            return new CheckOutcome(reading, bloodPressureVerdict, temperatureVerdict, alerts, null);
+        } catch (RuntimeException exception) {
+            return new CheckOutcome(reading, bloodPressureVerdict, temperatureVerdict, alerts, exception);
+        }
+    }
+
+    /**
+     * Метод передает накопленный запрос источнику. Вызовы request источника последовательны:
+     * запрос, сделанный во время передачи (например, из onNext подписчика), передается тем же циклом
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Flow.Subscription subscription = upstream;
+            if (subscription != null && downstream != null && !cancelled) {
+                long demand = requested.getAndSet(0);
+                if (demand > 0) {
+                    subscription.request(demand);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Метод один раз передает получателю завершение или ошибку источника, когда заданы и получатель, и сигнал
+     */
+    private void signalTermination() {
+        Flow.Subscriber<? super CheckOutcome> subscriber = downstream;
+        Throwable error = failure;
+        if (subscriber == null || (error == null && !completed) || !terminated.compareAndSet(false, true)) {
+            return;
+        }
+        if (error != null) {
+            subscriber.onError(error);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.netology.patient.service.medical;
+
+/**
+ * Итог (или промежуточное состояние) повторной проверки всех пациентов
+ */
+public class RescreenReport {
+
+    private final long processedBytes;
+    private final long totalBytes;
+    private final long patients;
+    private final long alerts;
+
+    public RescreenReport(long processedBytes, long totalBytes, long patients, long alerts) {
+        this.processedBytes = processedBytes;
+        this.totalBytes = totalBytes;
+        this.patients = patients;
+        this.alerts = alerts;
+    }
+
+    public long getProcessedBytes() {
+        return processedBytes;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getPatients() {
+        return patients;
+    }
+
+    public long getAlerts() {
+        return alerts;
+    }
+
+    @Override
+    public String toString() {
+        return "RescreenReport{" +
+            "processedBytes=" + processedBytes +
+            ", totalBytes=" + totalBytes +
+            ", patients=" + patients +
+            ", alerts=" + alerts +
+            '}';
+    }
+}
@@ -0,0 +1,216 @@
+package ru.netology.patient.service.medical;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+import ru.netology.patient.repository.PatientChangeListener;
+import ru.netology.patient.service.medical.rules.ClinicalRules;
+import ru.netology.patient.service.medical.rules.Hundredths;
+
+/**
+ * Компактный снимок нормальных показателей пациентов для быстрых проверок в MedicalServiceImpl.
+ * Каждый пациент получает плотный индекс, а его показатели лежат подряд в одном массиве int
+ * (давление high, давление low, температура в сотых долях градуса, дата рождения в днях эпохи) -
+ * 16 байт, одна кеш-линия. Проверки выполняются под оптимистичным чтением StampedLock и не создают объектов.
+ * <p>
+ * Снимок заполняется слушателем репозитория (см. ObservablePatientInfoRepository),
+ * а также MedicalServiceImpl при первом обращении к пациенту, которого в снимке еще нет ({@link #warm}).
+ * Прогрев не перезаписывает данные слушателя: запись, прочитанная до изменения, в снимок не попадает.
+ */
+public class VitalsBaseline implements PatientChangeListener {
+
+    public static final int UNKNOWN = -1;
+
+    private static final int STRIDE = 4;
+    private static final int HIGH = 0;
+    private static final int LOW = 1;
+    private static final int TEMPERATURE = 2;
+    private static final int BIRTHDAY = 3;
+
+    // Маркер отсутствующего значения в ячейке
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final StampedLock lock = new StampedLock();
+
+    private volatile int[] vitals;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int nextSlot;
+    // Число изменений от слушателя; меняется под блокировкой записи
+    private volatile long version;
+
+    public VitalsBaseline() {
+        this(1024);
+    }
+
+    public VitalsBaseline(int expectedPatients) {
+        this.vitals = new int[Math.max(expectedPatients, 16) * STRIDE];
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Метод возвращает номер изменения снимка; берется до чтения пациента из репозитория для {@link #warm}
+     */
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public void onPut(PatientInfo patientInfo) {
+        store(patientInfo, true, 0);
+    }
+
+    /**
+     * Метод добавляет норму пациента, прочитанную из репозитория, только если ее еще нет в снимке
+     * и после readVersion слушатель ничего не менял: иначе прочитанная запись может быть старее
+     * обновления или удаления. Возвращает true, если норма добавлена
+     */
+    public boolean warm(PatientInfo patientInfo, long readVersion) {
+        return store(patientInfo, false, readVersion);
+    }
+
+    private boolean store(PatientInfo patientInfo, boolean fromListener, long readVersion) {
+        HealthInfo healthInfo = patientInfo.getHealthInfo();
+        BloodPressure bloodPressure = healthInfo == null ? null : healthInfo.getBloodPressure();
+        int temperature = healthInfo == null ? NONE : Hundredths.of(healthInfo.getNormalTemperature());
+        int birthday = patientInfo.getBirthday() == null
+            ? ClinicalRules.NO_BIRTHDAY
+            : Math.toIntExact(patientInfo.getBirthday().toEpochDay());
+
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = slots.get(patientInfo.getId());
+            if (fromListener) {
+                version++;
+            } else if (slot != null || version != readVersion) {
+                return false;
+            }
+            int index = slot != null ? slot : allocateSlot();
+            int base = index * STRIDE;
+            int[] data = vitals;
+            data[base + HIGH] = bloodPressure != null ? bloodPressure.getHigh() : NONE;
+            data[base + LOW] = bloodPressure != null ? bloodPressure.getLow() : NONE;
+            data[base + TEMPERATURE] = temperature;
+            data[base + BIRTHDAY] = birthday;
+            if (slot == null) {
+                slots.put(patientInfo.getId(), index);
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void onRemove(String id) {
+        long stamp = lock.writeLock();
+        try {
+            version++;
+            Integer slot = slots.remove(id);
+            if (slot != null) {
+                if (freeCount == freeSlots.length) {
+                    int[] grown = new int[freeSlots.length * 2];
+                    System.arraycopy(freeSlots, 0, grown, 0, freeCount);
+                    freeSlots = grown;
+                }
+                freeSlots[freeCount++] = slot;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Метод оценивает давление по норме пациента и правилам.
+     * Возвращает вердикт ClinicalRules или UNKNOWN, если нормы пациента нет в снимке
+     */
+    public int evaluateBloodPressure(String patientId, int high, int low, ClinicalRules rules) {
+        long stamp = lock.tryOptimisticRead();
+        Integer slot = slots.get(patientId);
+        if (slot == null) {
+            return UNKNOWN;
+        }
+        int base = slot * STRIDE;
+        int[] data = vitals;
+        int normalHigh = data[base + HIGH];
+        int normalLow = data[base + LOW];
+        int birthday = data[base + BIRTHDAY];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                slot = slots.get(patientId);
+                if (slot == null) {
+                    return UNKNOWN;
+                }
+                base = slot * STRIDE;
+                data = vitals;
+                normalHigh = data[base + HIGH];
+                normalLow = data[base + LOW];
+                birthday = data[base + BIRTHDAY];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (normalHigh == NONE) {
+            return UNKNOWN;
+        }
+        return rules.evaluateBloodPressure(rules.groupOf(birthday), normalHigh, normalLow, high, low);
+    }
+
+    /**
+     * Метод оценивает температуру по норме пациента и правилам.
+     * Возвращает вердикт ClinicalRules или UNKNOWN, если нормы пациента нет в снимке
+     */
+    public int evaluateTemperature(String patientId, BigDecimal temperature, ClinicalRules rules) {
+        long stamp = lock.tryOptimisticRead();
+        Integer slot = slots.get(patientId);
+        if (slot == null) {
+            return UNKNOWN;
+        }
+        int base = slot * STRIDE;
+        int[] data = vitals;
+        int normal = data[base + TEMPERATURE];
+        int birthday = data[base + BIRTHDAY];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                slot = slots.get(patientId);
+                if (slot == null) {
+                    return UNKNOWN;
+                }
+                base = slot * STRIDE;
+                data = vitals;
+                normal = data[base + TEMPERATURE];
+                birthday = data[base + BIRTHDAY];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (normal == NONE) {
+            return UNKNOWN;
+        }
+        return rules.evaluateTemperature(rules.groupOf(birthday), normal, temperature);
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        int index = nextSlot++;
+        if ((index + 1) * STRIDE > vitals.length) {
+            int[] grown = new int[vitals.length * 2];
+            System.arraycopy(vitals, 0, grown, 0, vitals.length);
+            vitals = grown;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.netology.patient.service.medical;
+
+import java.math.BigDecimal;
+
+import ru.netology.patient.entity.BloodPressure;
+
+/**
+ * Источник последних измеренных показателей пациентов
+ */
+public interface VitalsFeed {
+
+    /**
+     * Метод возвращает последнее измеренное давление пациента или null, если измерений нет
+     */
+    BloodPressure latestBloodPressure(String patientId);
+
+    /**
+     * Метод возвращает последнюю измеренную температуру пациента или null, если измерений нет
+     */
+    BigDecimal latestTemperature(String patientId);
+}
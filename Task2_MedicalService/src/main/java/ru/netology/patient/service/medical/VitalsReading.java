@@ -0,0 +1,58 @@
+package ru.netology.patient.service.medical;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+import ru.netology.patient.entity.BloodPressure;
+
+/**
+ * Показание пациента для {@link ReactiveMedicalService}: давление и/или температура (null - не измерялось)
+ */
+public final class VitalsReading {
+
+    private final String patientId;
+    private final BloodPressure bloodPressure;
+    private final BigDecimal temperature;
+
+    public VitalsReading(String patientId, BloodPressure bloodPressure, BigDecimal temperature) {
+        this.patientId = patientId;
+        this.bloodPressure = bloodPressure;
+        this.temperature = temperature;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public BloodPressure getBloodPressure() {
+        return bloodPressure;
+    }
+
+    public BigDecimal getTemperature() {
+        return temperature;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        VitalsReading that = (VitalsReading) o;
+        return Objects.equals(patientId, that.patientId) &&
+            Objects.equals(bloodPressure, that.bloodPressure) &&
+            Objects.equals(temperature, that.temperature);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(patientId, bloodPressure, temperature);
+    }
+
+    @Override
+    public String toString() {
+        return "VitalsReading{" +
+            "patientId='" + patientId + '\'' +
+            ", bloodPressure=" + bloodPressure +
+            ", temperature=" + temperature +
+            '}';
+    }
+}
@@ -0,0 +1,514 @@
+package ru.netology.patient.service.medical.analytics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+import ru.netology.patient.repository.FileRange;
+import ru.netology.patient.repository.PatientChangeListener;
+import ru.netology.patient.repository.PatientInfoFileRepository;
+import ru.netology.patient.repository.PatientLogFormat;
+import ru.netology.patient.repository.PatientRecordReader;
+import ru.netology.patient.service.medical.rules.Hundredths;
+
+/**
+ * Колоночная копия нормальных показателей пациентов для аналитических запросов.
+ * <p>
+ * Каждое поле лежит в своем файле каталога копии, отображенном в память: давление high и low
+ * и температура в сотых долях градуса - по 2 байта (short), дата рождения в днях эпохи - int.
+ * За пациентом закреплена строка; при удалении строка получает NONE во всех колонках и переиспользуется.
+ * RLE и словарь не применяются: колонки обновляются на месте слушателем репозитория,
+ * а узкие колонки фиксированной ширины и так вдвое меньше int и читаются без декодирования.
+ * <p>
+ * Агрегаты читают колонку порциями в массив и считают в циклах без ветвлений, которые JIT векторизует.
+ * Соответствие id строкам хранится в журнале ids.log, показатели - только в колонках.
+ * Файл meta хранит признак чистого закрытия и длину файла репозитория на этот момент:
+ * если после открытия {@link #isInSync()} ложно, копию нужно перестроить методом {@link #export}.
+ */
+public class VitalsColumnStore implements PatientChangeListener, Closeable {
+
+    /**
+     * Колонки показателей, доступные агрегирующим запросам
+     */
+    public enum Column {
+        HIGH("high.col"),
+        LOW("low.col"),
+        TEMPERATURE("temperature.col");
+
+        private final String fileName;
+
+        Column(String fileName) {
+            this.fileName = fileName;
+        }
+    }
+
+    // Маркер отсутствующего значения (и освобожденной строки) в колонках показателей
+    public static final short NONE = Short.MIN_VALUE;
+
+    static final String BIRTHDAY_FILE = "birthday.col";
+    static final String IDS_FILE = "ids.log";
+    static final String META_FILE = "meta";
+
+    private static final int NO_BIRTHDAY = Integer.MIN_VALUE;
+    private static final int CHUNK_SIZE = 4096;
+    private static final int INITIAL_ROWS = 1024;
+    private static final int MAGIC = 0x56434F4C;
+    private static final int VERSION = 1;
+
+    private final File directory;
+    private final File repoFile;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final FileChannel[] vitalsChannels = new FileChannel[Column.values().length];
+    private final ShortBuffer[] vitals = new ShortBuffer[Column.values().length];
+    // Отображения всех колонок, включая дату рождения (последняя), для сброса на диск
+    private final MappedByteBuffer[] maps = new MappedByteBuffer[Column.values().length + 1];
+    private final FileChannel birthdayChannel;
+    private final FileChannel idsChannel;
+    private final Map<String, Integer> rows = new HashMap<>();
+
+    private IntBuffer birthdays;
+    private ByteBuffer idsEntry = ByteBuffer.allocate(256);
+    private long idsLength;
+    private int[] freeRows = new int[16];
+    private int freeCount;
+    private int rowCount;
+    private int capacity = INITIAL_ROWS;
+    private boolean inSync;
+
+    /**
+     * directory - каталог копии, repoFile - файл репозитория, с которым копия синхронизируется
+     */
+    public VitalsColumnStore(File directory, File repoFile) throws IOException {
+        this.directory = directory;
+        this.repoFile = repoFile;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create column store directory " + directory);
+        }
+        long syncedRepoLength = readSyncedRepoLength();
+        for (Column column : Column.values()) {
+            vitalsChannels[column.ordinal()] = open(column.fileName);
+        }
+        birthdayChannel = open(BIRTHDAY_FILE);
+        idsChannel = open(IDS_FILE);
+        boolean intact = replayIds();
+        while (capacity < rowCount) {
+            capacity *= 2;
+        }
+        map();
+        collectFreeRows();
+        inSync = intact && syncedRepoLength == repoFile.length();
+        // До чистого закрытия копия считается несинхронной: сбой не оставит устаревший признак
+        writeMeta(false, 0);
+    }
+
+    /**
+     * Копия соответствует репозиторию: закрыта чисто при той же длине файла репозитория или перестроена
+     */
+    public boolean isInSync() {
+        lock.readLock().lock();
+        try {
+            return inSync;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onPut(PatientInfo patientInfo) {
+        HealthInfo healthInfo = patientInfo.getHealthInfo();
+        BloodPressure bloodPressure = healthInfo == null ? null : healthInfo.getBloodPressure();
+        short high = bloodPressure == null ? NONE : narrow(bloodPressure.getHigh());
+        short low = bloodPressure == null ? NONE : narrow(bloodPressure.getLow());
+        short temperature = healthInfo == null ? NONE : narrow(Hundredths.of(healthInfo.getNormalTemperature()));
+        int birthday = patientInfo.getBirthday() == null
+            ? NO_BIRTHDAY
+            : Math.toIntExact(patientInfo.getBirthday().toEpochDay());
+
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.get(patientInfo.getId());
+            int index = row != null ? row : allocateRow(patientInfo.getId());
+            write(index, high, low, temperature, birthday);
+        } catch (IOException exception) {
+            throw new RuntimeException("Column store " + directory + " update failed", exception);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onRemove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.remove(id);
+            if (row != null) {
+                write(row, NONE, NONE, NONE, NO_BIRTHDAY);
+                appendId(~row, id);
+                releaseRow(row);
+            }
+        } catch (IOException exception) {
+            throw new RuntimeException("Column store " + directory + " update failed", exception);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Метод перестраивает копию по текущим версиям пациентов файлового репозитория и возвращает их число.
+     * Изменения, сделанные во время выгрузки, слушатель применяет после нее
+     */
+    public int export(PatientInfoFileRepository repository, ObjectMapper mapper) {
+        PatientRecordReader reader = new PatientRecordReader(mapper);
+        lock.writeLock().lock();
+        try (FileChannel channel = FileChannel.open(repository.getRepoFile().toPath(), StandardOpenOption.READ)) {
+            rows.clear();
+            freeCount = 0;
+            rowCount = 0;
+            idsChannel.truncate(0);
+            idsLength = 0;
+            PatientLogFormat.Frame frame = new PatientLogFormat.Frame();
+            new FileRange(0, channel.size()).forEachLine(channel, (buffer, offset, length, lineOffset) -> {
+                if (length == 0 || !PatientLogFormat.decode(buffer, offset, length, frame)
+                    || frame.getOperation() != PatientLogFormat.PUT) {
+                    return;
+                }
+                PatientInfo patientInfo = reader.read(buffer, frame.getPayloadOffset(), frame.getPayloadLength());
+                if (repository.isCurrent(patientInfo.getId(), lineOffset)) {
+                    onPut(patientInfo);
+                }
+            });
+            inSync = true;
+            return rows.size();
+        } catch (IOException exception) {
+            throw new RuntimeException("Export of " + repository.getRepoFile() + " failed", exception);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public VitalsSummary summary(Column column) {
+        lock.readLock().lock();
+        try {
+            ShortBuffer values = vitals[column.ordinal()];
+            short[] chunk = new short[CHUNK_SIZE];
+            long count = 0;
+            long sum = 0;
+            int min = Short.MAX_VALUE;
+            int max = NONE;
+            for (int from = 0; from < rowCount; from += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, rowCount - from);
+                values.get(from, chunk, 0, length);
+                // Суммы порции помещаются в int: 4096 * 32768
+                int chunkCount = 0;
+                int chunkSum = 0;
+                for (int i = 0; i < length; i++) {
+                    int value = chunk[i];
+                    // 1, если значения нет (NONE), иначе 0
+                    int missing = (value - NONE - 1) >>> 31;
+                    chunkCount += missing ^ 1;
+                    chunkSum += value & (missing - 1);
+                    min = Math.min(min, value + missing * 0xFFFF);
+                    max = Math.max(max, value);
+                }
+                count += chunkCount;
+                sum += chunkSum;
+            }
+            return new VitalsSummary(count, count == 0 ? NONE : min, max, sum);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Метод считает агрегаты колонки по пациентам, родившимся в [bornFrom, bornTo];
+     * пациенты без даты рождения не учитываются
+     */
+    public VitalsSummary summary(Column column, LocalDate bornFrom, LocalDate bornTo) {
+        int fromDay = (int) Math.max(bornFrom.toEpochDay(), NO_BIRTHDAY + 1L);
+        long span = Math.min(bornTo.toEpochDay(), Integer.MAX_VALUE) - fromDay;
+        lock.readLock().lock();
+        try {
+            ShortBuffer values = vitals[column.ordinal()];
+            IntBuffer born = birthdays;
+            short[] chunk = new short[CHUNK_SIZE];
+            int[] days = new int[CHUNK_SIZE];
+            long count = 0;
+            long sum = 0;
+            int min = Short.MAX_VALUE;
+            int max = NONE;
+            for (int from = 0; from < rowCount && span >= 0; from += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, rowCount - from);
+                values.get(from, chunk, 0, length);
+                born.get(from, days, 0, length);
+                int chunkCount = 0;
+                int chunkSum = 0;
+                for (int i = 0; i < length; i++) {
+                    int value = chunk[i];
+                    long offset = (long) days[i] - fromDay;
+                    // 1, если дата рождения попадает в диапазон и значение есть, иначе 0
+                    int selected = (int) ((offset | span - offset) >>> 63) ^ 1;
+                    int present = (value - NONE - 1) >>> 31 ^ 1;
+                    int take = selected & present;
+                    int skip = take ^ 1;
+                    chunkCount += take;
+                    chunkSum += value & -take;
+                    min = Math.min(min, value + skip * 0xFFFF);
+                    max = Math.max(max, value - skip * 0xFFFF);
+                }
+                count += chunkCount;
+                sum += chunkSum;
+            }
+            return new VitalsSummary(count, count == 0 ? NONE : min, count == 0 ? NONE : max, sum);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Метод считает пациентов, у которых значение колонки не меньше threshold
+     */
+    public long countAtLeast(Column column, int threshold) {
+        int bound = Math.min(Math.max(threshold, NONE + 1), Short.MAX_VALUE + 1);
+        lock.readLock().lock();
+        try {
+            ShortBuffer values = vitals[column.ordinal()];
+            short[] chunk = new short[CHUNK_SIZE];
+            long count = 0;
+            for (int from = 0; from < rowCount; from += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, rowCount - from);
+                values.get(from, chunk, 0, length);
+                int chunkCount = 0;
+                for (int i = 0; i < length; i++) {
+                    chunkCount += (bound - 1 - chunk[i]) >>> 31;
+                }
+                count += chunkCount;
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Метод сбрасывает колонки на диск и отмечает чистое закрытие
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (MappedByteBuffer map : maps) {
+                map.force();
+            }
+            idsChannel.force(false);
+            writeMeta(inSync, repoFile.length());
+            for (FileChannel channel : vitalsChannels) {
+                channel.close();
+            }
+            birthdayChannel.close();
+            idsChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int allocateRow(String id) throws IOException {
+        int row;
+        if (freeCount > 0) {
+            row = freeRows[--freeCount];
+        } else {
+            if (rowCount == capacity) {
+                capacity *= 2;
+                map();
+            }
+            row = rowCount++;
+        }
+        appendId(row, id);
+        rows.put(id, row);
+        return row;
+    }
+
+    private void releaseRow(int row) {
+        if (freeCount == freeRows.length) {
+            int[] grown = new int[freeRows.length * 2];
+            System.arraycopy(freeRows, 0, grown, 0, freeCount);
+            freeRows = grown;
+        }
+        freeRows[freeCount++] = row;
+    }
+
+    private void write(int row, short high, short low, short temperature, int birthday) {
+        vitals[Column.HIGH.ordinal()].put(row, high);
+        vitals[Column.LOW.ordinal()].put(row, low);
+        vitals[Column.TEMPERATURE.ordinal()].put(row, temperature);
+        birthdays.put(row, birthday);
+    }
+
+    /**
+     * Запись журнала id: номер строки (дополнение номера, если строка освобождена), длина id в байтах, id
+     */
+    private void appendId(int row, String id) throws IOException {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idsEntry.capacity() < 8 + bytes.length) {
+            idsEntry = ByteBuffer.allocate(8 + bytes.length);
+        }
+        idsEntry.clear();
+        idsEntry.putInt(row).putInt(bytes.length).put(bytes).flip();
+        while (idsEntry.hasRemaining()) {
+            idsLength += idsChannel.write(idsEntry, idsLength);
+        }
+    }
+
+    /**
+     * Метод восстанавливает соответствие id строкам; оборванный хвост журнала обрезается.
+     * Возвращает false, если хвост пришлось обрезать
+     */
+    private boolean replayIds() throws IOException {
+        boolean intact = true;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(new File(directory, IDS_FILE)), 1 << 16))) {
+            byte[] idBytes = new byte[64];
+            while (true) {
+                int row;
+                int length;
+                try {
+                    row = in.readInt();
+                    length = in.readInt();
+                    if (length < 0 || length > idsChannel.size()) {
+                        intact = false;
+                        break;
+                    }
+                    if (length > idBytes.length) {
+                        idBytes = new byte[length];
+                    }
+                    in.readFully(idBytes, 0, length);
+                } catch (EOFException exception) {
+                    intact = idsLength == idsChannel.size();
+                    break;
+                }
+                String id = new String(idBytes, 0, length, StandardCharsets.UTF_8);
+                if (row >= 0) {
+                    rows.put(id, row);
+                    rowCount = Math.max(rowCount, row + 1);
+                } else {
+                    rows.remove(id);
+                }
+                idsLength += 8 + length;
+            }
+        }
+        idsChannel.truncate(idsLength);
+        return intact;
+    }
+
+    /**
+     * Строки ниже rowCount, не закрепленные за пациентами, становятся свободными
+     */
+    private void collectFreeRows() {
+        boolean[] used = new boolean[rowCount];
+        for (int row : rows.values()) {
+            used[row] = true;
+        }
+        for (int row = rowCount - 1; row >= 0; row--) {
+            if (!used[row]) {
+                write(row, NONE, NONE, NONE, NO_BIRTHDAY);
+                releaseRow(row);
+            }
+        }
+    }
+
+    private void map() throws IOException {
+        for (Column column : Column.values()) {
+            MappedByteBuffer map = vitalsChannels[column.ordinal()]
+                .map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * Short.BYTES);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            maps[column.ordinal()] = map;
+            vitals[column.ordinal()] = map.asShortBuffer();
+        }
+        MappedByteBuffer map = birthdayChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * Integer.BYTES);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        maps[Column.values().length] = map;
+        birthdays = map.asIntBuffer();
+    }
+
+    private FileChannel open(String fileName) throws IOException {
+        return FileChannel.open(new File(directory, fileName).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Метод возвращает длину файла репозитория при последнем чистом закрытии или -1
+     */
+    private long readSyncedRepoLength() {
+        File metaFile = new File(directory, META_FILE);
+        if (!metaFile.exists()) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(metaFile))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readBoolean()) {
+                return -1;
+            }
+            return in.readLong();
+        } catch (IOException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * Метод записывает meta во временный файл и атомарно заменяет им предыдущий
+     */
+    private void writeMeta(boolean clean, long syncedRepoLength) throws IOException {
+        File metaFile = new File(directory, META_FILE);
+        File tmpFile = new File(metaFile.getPath() + ".tmp");
+        try (FileOutputStream fileStream = new FileOutputStream(tmpFile);
+             DataOutputStream out = new DataOutputStream(fileStream)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(clean);
+            out.writeLong(syncedRepoLength);
+            out.flush();
+            fileStream.getFD().sync();
+        }
+        Files.move(tmpFile.toPath(), metaFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Значения, не помещающиеся в short, считаются отсутствующими
+     */
+    private static short narrow(int value) {
+        return value > NONE && value <= Short.MAX_VALUE ? (short) value : NONE;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.netology.patient.service.medical.analytics;
+
+/**
+ * Итог агрегирующего запроса по колонке показателей.
+ * Значения - в единицах колонки (давление в мм рт. ст., температура в сотых долях градуса);
+ * если подходящих пациентов нет, min и max равны VitalsColumnStore.NONE
+ */
+public class VitalsSummary {
+
+    private final long count;
+    private final int min;
+    private final int max;
+    private final long sum;
+
+    public VitalsSummary(long count, int min, int max, long sum) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Метод возвращает среднее значение или NaN, если подходящих пациентов нет
+     */
+    public double getAverage() {
+        return count == 0 ? Double.NaN : (double) sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return "VitalsSummary{" +
+            "count=" + count +
+            ", min=" + min +
+            ", max=" + max +
+            ", sum=" + sum +
+            '}';
+    }
+}
@@ -0,0 +1,82 @@
+package ru.netology.patient.service.medical.escalation;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import ru.netology.patient.service.alert.Alert;
+import ru.netology.patient.service.alert.AlertSeverity;
+import ru.netology.patient.service.alert.AlertType;
+import ru.netology.patient.service.alert.SendAlertService;
+
+/**
+ * Эскалация предупреждений о показателях пациента.
+ * Предупреждение о давлении или температуре ставит таймер в {@link TimerWheel}; если до его срабатывания
+ * показатель того же типа не вернулся в норму, отправляется критическое уведомление об эскалации.
+ * Повторные предупреждения не переставляют таймер: срок отсчитывается от первого.
+ * Таймер снимается нормальным показанием, эскалация по одному эпизоду отправляется один раз.
+ */
+public class AlertEscalator {
+
+    private final SendAlertService alertService;
+    private final TimerWheel timerWheel;
+    private final long delayMillis;
+    private final Map<AlertType, Map<String, TimerWheel.Timeout>> pending = new EnumMap<>(AlertType.class);
+
+    public AlertEscalator(SendAlertService alertService, TimerWheel timerWheel, Duration delay) {
+        this.alertService = alertService;
+        this.timerWheel = timerWheel;
+        this.delayMillis = delay.toMillis();
+        pending.put(AlertType.BLOOD_PRESSURE, new ConcurrentHashMap<>());
+        pending.put(AlertType.TEMPERATURE, new ConcurrentHashMap<>());
+    }
+
+    static String escalationMessage(String patientId) {
+        return String.format("Escalation, patient with id: %s, still needs help", patientId);
+    }
+
+    /**
+     * Метод вызывается после отправки предупреждения и ставит таймер эскалации, если его еще нет
+     */
+    public void onWarning(Alert alert) {
+        Map<String, TimerWheel.Timeout> timers = pending.get(alert.getType());
+        if (timers == null || alert.getPatientId() == null) {
+            return;
+        }
+        timers.computeIfAbsent(alert.getPatientId(), patientId -> timerWheel.schedule(
+            timeout -> escalate(patientId, alert.getType(), timeout), delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Метод вызывается при нормальном показании и снимает таймер эскалации того же типа
+     */
+    public void onNormal(String patientId, AlertType type) {
+        Map<String, TimerWheel.Timeout> timers = pending.get(type);
+        if (timers == null) {
+            return;
+        }
+        TimerWheel.Timeout timeout = timers.remove(patientId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    public int pending() {
+        int count = 0;
+        for (Map<String, TimerWheel.Timeout> timers : pending.values()) {
+            count += timers.size();
+        }
+        return count;
+    }
+
+    private void escalate(String patientId, AlertType type, TimerWheel.Timeout timeout) {
+        // Нормальное показание могло снять таймер одновременно со срабатыванием
+        if (pending.get(type).remove(patientId, timeout)) {
+            alertService.send(new Alert(patientId, AlertSeverity.CRITICAL, type, Instant.now(),
+                escalationMessage(patientId)));
+        }
+    }
+}
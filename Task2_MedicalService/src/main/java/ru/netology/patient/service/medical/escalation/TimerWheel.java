@@ -0,0 +1,317 @@
+package ru.netology.patient.service.medical.escalation;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Иерархическое колесо таймеров для миллионов отложенных задач (эскалации, повторные проверки).
+ * <p>
+ * Время делится на тики; четыре уровня по 256 ячеек покрывают 2^32 тика. Таймер попадает
+ * на самый низкий уровень, чей оборот вмещает его задержку, а ячейка берется по битам тика срабатывания.
+ * Когда младший уровень проходит полный оборот, очередная ячейка старшего уровня раскладывается
+ * по младшим (каскад), поэтому каждый таймер переносится не больше трех раз.
+ * Ячейка - двусвязный список, так что постановка и отмена выполняются за O(1) под одной блокировкой,
+ * а на таймер приходится один объект {@link Timeout}. Задачи выполняются вне блокировки в потоке колеса.
+ */
+public class TimerWheel implements Closeable {
+
+    /**
+     * Задача таймера; получает собственный таймаут, чтобы сверить его со своим состоянием
+     */
+    public interface TimerTask {
+        void run(Timeout timeout);
+    }
+
+    /**
+     * Поставленный таймер
+     */
+    public static final class Timeout {
+        private final TimerWheel wheel;
+        private TimerTask task;
+        private final long deadlineTick;
+        private Timeout previous;
+        private Timeout next;
+        private int level;
+        private int slot;
+        private int state = PENDING;
+
+        private Timeout(TimerWheel wheel, TimerTask task, long deadlineTick) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Метод отменяет таймер; возвращает false, если он уже сработал или отменен
+         */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+
+        public boolean isCancelled() {
+            wheel.lock.lock();
+            try {
+                return state == CANCELLED;
+            } finally {
+                wheel.lock.unlock();
+            }
+        }
+
+        public boolean isExpired() {
+            wheel.lock.lock();
+            try {
+                return state == EXPIRED;
+            } finally {
+                wheel.lock.unlock();
+            }
+        }
+    }
+
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY_TICKS = 1L << (BITS * LEVELS);
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickMillis;
+    private final LongSupplier clockMillis;
+    private final long startMillis;
+    private final Timeout[][] slots = new Timeout[LEVELS][SLOTS];
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Thread worker;
+
+    // Последний обработанный тик
+    private long currentTick;
+    private int pending;
+    private volatile boolean closed;
+
+    /**
+     * Колесо без собственного потока: тики обрабатываются вызовами {@link #advance()} по часам clockMillis
+     */
+    public TimerWheel(long tickMillis, LongSupplier clockMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.clockMillis = clockMillis;
+        this.startMillis = clockMillis.getAsLong();
+    }
+
+    /**
+     * Метод создает колесо с системными часами и запускает поток, обрабатывающий тики.
+     * Поток запускается после конструктора, чтобы не публиковать недостроенный объект
+     */
+    public static TimerWheel started(long tickMillis) {
+        TimerWheel wheel = new TimerWheel(tickMillis, () -> System.nanoTime() / 1_000_000);
+        Thread worker = new Thread(wheel::work, "timer-wheel");
+        worker.setDaemon(true);
+        wheel.worker = worker;
+        worker.start();
+        return wheel;
+    }
+
+    /**
+     * Метод ставит таймер: задача выполнится не раньше чем через delay и не позже чем через delay плюс тик
+     */
+    public Timeout schedule(TimerTask task, long delay, TimeUnit unit) {
+        long delayMillis = Math.max(0, unit.toMillis(delay));
+        long elapsedMillis = clockMillis.getAsLong() - startMillis;
+        long deadlineTick = (elapsedMillis + delayMillis + tickMillis - 1) / tickMillis;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Timer wheel is closed");
+            }
+            Timeout timeout = new Timeout(this, task, Math.max(deadlineTick, currentTick + 1));
+            place(timeout, currentTick);
+            pending++;
+            return timeout;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int pending() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Метод обрабатывает все наступившие тики и выполняет сработавшие задачи; возвращает их число
+     */
+    public int advance() {
+        long targetTick = (clockMillis.getAsLong() - startMillis) / tickMillis;
+        Timeout expired = null;
+        lock.lock();
+        try {
+            while (currentTick < targetTick) {
+                currentTick++;
+                cascade(currentTick);
+                expired = expire(currentTick, expired);
+            }
+        } finally {
+            lock.unlock();
+        }
+        int fired = 0;
+        while (expired != null) {
+            Timeout timeout = expired;
+            expired = timeout.next;
+            timeout.next = null;
+            TimerTask task = timeout.task;
+            timeout.task = null;
+            try {
+                task.run(timeout);
+            } catch (RuntimeException exception) {
+                exception.printStackTrace();
+            }
+            fired++;
+        }
+        return fired;
+    }
+
+    /**
+     * Метод останавливает поток колеса; невыполненные таймеры отбрасываются
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private boolean cancel(Timeout timeout) {
+        lock.lock();
+        try {
+            if (timeout.state != PENDING) {
+                return false;
+            }
+            unlink(timeout);
+            timeout.state = CANCELLED;
+            timeout.task = null;
+            pending--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        while (!closed) {
+            long nextTickMillis = startMillis + (currentTickSnapshot() + 1) * tickMillis;
+            long sleepMillis = nextTickMillis - clockMillis.getAsLong();
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException exception) {
+                    return;
+                }
+            }
+            advance();
+        }
+    }
+
+    private long currentTickSnapshot() {
+        lock.lock();
+        try {
+            return currentTick;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Метод кладет таймер на уровень, чей оборот от тика reference вмещает его срок.
+     * Слишком далекие сроки кладутся на старший уровень и при каскаде раскладываются заново
+     */
+    private void place(Timeout timeout, long reference) {
+        long delta = timeout.deadlineTick - reference;
+        long placedTick = delta < MAX_DELAY_TICKS ? timeout.deadlineTick : reference + MAX_DELAY_TICKS - 1;
+        delta = placedTick - reference;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) (placedTick >>> (BITS * level)) & MASK;
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.previous = null;
+        Timeout head = slots[level][slot];
+        timeout.next = head;
+        if (head != null) {
+            head.previous = timeout;
+        }
+        slots[level][slot] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            slots[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+    }
+
+    /**
+     * Когда младший уровень начинает новый оборот, очередная ячейка старшего раскладывается по младшим
+     */
+    private void cascade(long tick) {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((tick & (1L << (BITS * level)) - 1) != 0) {
+                return;
+            }
+            int slot = (int) (tick >>> (BITS * level)) & MASK;
+            Timeout timeout = slots[level][slot];
+            slots[level][slot] = null;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                place(timeout, tick);
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * Метод снимает сработавшие таймеры ячейки тика и добавляет их в цепочку expired
+     */
+    private Timeout expire(long tick, Timeout expired) {
+        int slot = (int) tick & MASK;
+        Timeout timeout = slots[0][slot];
+        slots[0][slot] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.deadlineTick > tick) {
+                place(timeout, tick);
+            } else {
+                timeout.state = EXPIRED;
+                timeout.previous = null;
+                timeout.next = expired;
+                expired = timeout;
+                pending--;
+            }
+            timeout = next;
+        }
+        return expired;
+    }
+}
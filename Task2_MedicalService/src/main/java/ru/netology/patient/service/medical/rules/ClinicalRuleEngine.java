@@ -0,0 +1,91 @@
+package ru.netology.patient.service.medical.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+
+/**
+ * Движок клинических правил. Хранит текущую скомпилированную таблицу ClinicalRules
+ * и атомарно подменяет ее при перезагрузке конфигурации или смене дня.
+ * Проверки читают ссылку на таблицу один раз и никогда не ждут перезагрузки:
+ * начатые проверки дорабатывают по старой таблице.
+ */
+public class ClinicalRuleEngine {
+
+    private final Clock clock;
+    private volatile ClinicalRulesConfig config;
+    private volatile ClinicalRules rules;
+
+    public ClinicalRuleEngine(ClinicalRulesConfig config) {
+        this(config, Clock.systemDefaultZone());
+    }
+
+    public ClinicalRuleEngine(ClinicalRulesConfig config, Clock clock) {
+        this.clock = clock;
+        this.config = config;
+        this.rules = compile(config);
+    }
+
+    /**
+     * Метод создает движок с правилами, повторяющими исходные проверки MedicalServiceImpl
+     */
+    public static ClinicalRuleEngine legacy() {
+        return new ClinicalRuleEngine(ClinicalRulesConfig.legacy());
+    }
+
+    public static ClinicalRuleEngine fromFile(Path configFile, ObjectMapper mapper) {
+        return new ClinicalRuleEngine(readConfig(configFile, mapper));
+    }
+
+    /**
+     * Метод возвращает актуальную таблицу правил; при смене дня таблица перекомпилируется,
+     * так как возрастные группы привязаны к датам рождения
+     */
+    public ClinicalRules rules() {
+        ClinicalRules current = rules;
+        if (clock.millis() >= current.getValidUntilMillis()) {
+            current = recompile();
+        }
+        return current;
+    }
+
+    /**
+     * Метод загружает и компилирует правила из файла, после чего атомарно публикует их.
+     * При ошибке чтения или компиляции продолжают действовать прежние правила
+     */
+    public void reload(Path configFile, ObjectMapper mapper) {
+        reload(readConfig(configFile, mapper));
+    }
+
+    public synchronized void reload(ClinicalRulesConfig newConfig) {
+        ClinicalRules compiled = compile(newConfig);
+        config = newConfig;
+        rules = compiled;
+    }
+
+    private synchronized ClinicalRules recompile() {
+        ClinicalRules current = rules;
+        if (clock.millis() >= current.getValidUntilMillis()) {
+            current = compile(config);
+            rules = current;
+        }
+        return current;
+    }
+
+    private ClinicalRules compile(ClinicalRulesConfig ruleConfig) {
+        LocalDate today = LocalDate.now(clock);
+        long validUntil = today.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        return ClinicalRules.compile(ruleConfig, today, validUntil);
+    }
+
+    private static ClinicalRulesConfig readConfig(Path configFile, ObjectMapper mapper) {
+        try {
+            return mapper.readValue(configFile.toFile(), ClinicalRulesConfig.class);
+        } catch (IOException exception) {
+            throw new RuntimeException("Cannot read clinical rules from " + configFile, exception);
+        }
+    }
+}
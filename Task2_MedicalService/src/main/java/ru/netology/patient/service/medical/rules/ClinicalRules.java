@@ -0,0 +1,246 @@
+package ru.netology.patient.service.medical.rules;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+
+/**
+ * Скомпилированные клинические правила - плоская таблица решений.
+ * Возрастные группы переведены в диапазоны дат рождения (в днях эпохи) на конкретный день,
+ * а все пороги - в массивы int, индексируемые номером группы. Последний индекс - правила по умолчанию.
+ * Объект неизменяемый и безопасно используется из многих потоков.
+ */
+public final class ClinicalRules {
+
+    public static final int NORMAL = 0;
+    public static final int DEVIATION = 1;
+    public static final int OUT_OF_RANGE = 2;
+
+    /**
+     * Маркер отсутствующей даты рождения
+     */
+    public static final int NO_BIRTHDAY = Integer.MIN_VALUE;
+
+    private static final int NO_LIMIT = Integer.MIN_VALUE;
+
+    private final LocalDate day;
+    private final long validUntilMillis;
+    private final int[] birthdayFrom;
+    private final int[] birthdayTo;
+    private final int defaultGroup;
+
+    private final int[] highDeviation;
+    private final int[] lowDeviation;
+    private final int[] highMin;
+    private final int[] highMax;
+    private final int[] lowMin;
+    private final int[] lowMax;
+    private final int[] temperatureDrop;
+    private final int[] temperatureRise;
+    private final int[] temperatureMin;
+    private final int[] temperatureMax;
+
+    private ClinicalRules(LocalDate day, long validUntilMillis, int groups) {
+        this.day = day;
+        this.validUntilMillis = validUntilMillis;
+        this.defaultGroup = groups - 1;
+        this.birthdayFrom = new int[groups - 1];
+        this.birthdayTo = new int[groups - 1];
+        this.highDeviation = new int[groups];
+        this.lowDeviation = new int[groups];
+        this.highMin = new int[groups];
+        this.highMax = new int[groups];
+        this.lowMin = new int[groups];
+        this.lowMax = new int[groups];
+        this.temperatureDrop = new int[groups];
+        this.temperatureRise = new int[groups];
+        this.temperatureMin = new int[groups];
+        this.temperatureMax = new int[groups];
+    }
+
+    /**
+     * Метод компилирует правила на день day. Некорректная конфигурация приводит к IllegalArgumentException
+     */
+    public static ClinicalRules compile(ClinicalRulesConfig config, LocalDate day, long validUntilMillis) {
+        if (config.getDefaults() == null) {
+            throw new IllegalArgumentException("Rules must contain defaults");
+        }
+        List<ClinicalRulesConfig.AgeGroup> ageGroups = config.getAgeGroups() == null
+            ? List.of()
+            : config.getAgeGroups();
+        ClinicalRules rules = new ClinicalRules(day, validUntilMillis, ageGroups.size() + 1);
+        for (int group = 0; group < ageGroups.size(); group++) {
+            ClinicalRulesConfig.AgeGroup ageGroup = ageGroups.get(group);
+            int minAge = ageGroup.getMinAge() == null ? 0 : ageGroup.getMinAge();
+            Integer maxAge = ageGroup.getMaxAge();
+            if (minAge < 0 || maxAge != null && maxAge < minAge) {
+                throw new IllegalArgumentException("Invalid age group [" + minAge + ", " + maxAge + "]");
+            }
+            // Возраст не меньше minAge: родился не позже day - minAge лет;
+            // возраст не больше maxAge: родился позже day - (maxAge + 1) лет
+            rules.birthdayTo[group] = Math.toIntExact(day.minusYears(minAge).toEpochDay());
+            rules.birthdayFrom[group] = maxAge == null
+                ? NO_BIRTHDAY + 1
+                : Math.toIntExact(day.minusYears(maxAge + 1L).toEpochDay()) + 1;
+            rules.fill(group, ageGroup);
+        }
+        rules.fill(rules.defaultGroup, config.getDefaults());
+        return rules;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    /**
+     * Момент (в миллисекундах эпохи), после которого таблицу нужно перекомпилировать на новый день
+     */
+    public long getValidUntilMillis() {
+        return validUntilMillis;
+    }
+
+    /**
+     * Метод возвращает номер группы правил для даты рождения в днях эпохи
+     */
+    public int groupOf(int birthdayEpochDay) {
+        if (birthdayEpochDay != NO_BIRTHDAY) {
+            for (int group = 0; group < defaultGroup; group++) {
+                if (birthdayEpochDay >= birthdayFrom[group] && birthdayEpochDay <= birthdayTo[group]) {
+                    return group;
+                }
+            }
+        }
+        return defaultGroup;
+    }
+
+    public int groupOf(LocalDate birthday) {
+        return groupOf(birthday == null ? NO_BIRTHDAY : Math.toIntExact(birthday.toEpochDay()));
+    }
+
+    /**
+     * Метод оценивает давление относительно нормы пациента и возвращает NORMAL, DEVIATION или OUT_OF_RANGE
+     */
+    public int evaluateBloodPressure(int group, int normalHigh, int normalLow, int high, int low) {
+        if (outside(high, highMin[group], highMax[group]) || outside(low, lowMin[group], lowMax[group])) {
+            return OUT_OF_RANGE;
+        }
+        if (exceeds(Math.abs(high - normalHigh), highDeviation[group])
+            || exceeds(Math.abs(low - normalLow), lowDeviation[group])) {
+            return DEVIATION;
+        }
+        return NORMAL;
+    }
+
+    /**
+     * Метод оценивает температуру относительно нормы пациента в сотых долях градуса
+     * (Hundredths.NONE - норма неизвестна, проверяются только абсолютные границы)
+     */
+    public int evaluateTemperature(int group, int normalHundredths, BigDecimal temperature) {
+        if (isOutOfRange(group, temperature)) {
+            return OUT_OF_RANGE;
+        }
+        if (normalHundredths == Hundredths.NONE) {
+            return NORMAL;
+        }
+        int drop = temperatureDrop[group];
+        int rise = temperatureRise[group];
+        if (drop != NO_LIMIT && Hundredths.isBelow(temperature, normalHundredths - drop)
+            || rise != NO_LIMIT && Hundredths.isAbove(temperature, normalHundredths + rise)) {
+            return DEVIATION;
+        }
+        return NORMAL;
+    }
+
+    /**
+     * Метод оценивает давление по полной записи пациента
+     */
+    public int evaluate(PatientInfo patientInfo, BloodPressure bloodPressure) {
+        int group = groupOf(patientInfo.getBirthday());
+        BloodPressure normal = patientInfo.getHealthInfo().getBloodPressure();
+        if (bloodPressure == null) {
+            return DEVIATION;
+        }
+        if (normal == null) {
+            return outside(bloodPressure.getHigh(), highMin[group], highMax[group])
+                || outside(bloodPressure.getLow(), lowMin[group], lowMax[group]) ? OUT_OF_RANGE : NORMAL;
+        }
+        return evaluateBloodPressure(group, normal.getHigh(), normal.getLow(),
+            bloodPressure.getHigh(), bloodPressure.getLow());
+    }
+
+    /**
+     * Метод оценивает температуру по полной записи пациента, в том числе для норм,
+     * не представимых точно в сотых долях градуса
+     */
+    public int evaluate(PatientInfo patientInfo, BigDecimal temperature) {
+        int group = groupOf(patientInfo.getBirthday());
+        HealthInfo healthInfo = patientInfo.getHealthInfo();
+        BigDecimal normal = healthInfo.getNormalTemperature();
+        int normalHundredths = Hundredths.of(normal);
+        if (normal == null || normalHundredths != Hundredths.NONE) {
+            return evaluateTemperature(group, normalHundredths, temperature);
+        }
+        if (isOutOfRange(group, temperature)) {
+            return OUT_OF_RANGE;
+        }
+        int drop = temperatureDrop[group];
+        int rise = temperatureRise[group];
+        if (drop != NO_LIMIT && normal.subtract(BigDecimal.valueOf(drop, 2)).compareTo(temperature) > 0
+            || rise != NO_LIMIT && normal.add(BigDecimal.valueOf(rise, 2)).compareTo(temperature) < 0) {
+            return DEVIATION;
+        }
+        return NORMAL;
+    }
+
+    private boolean isOutOfRange(int group, BigDecimal temperature) {
+        int min = temperatureMin[group];
+        int max = temperatureMax[group];
+        return min != NO_LIMIT && Hundredths.isBelow(temperature, min)
+            || max != NO_LIMIT && Hundredths.isAbove(temperature, max);
+    }
+
+    private void fill(int group, ClinicalRulesConfig.RuleSet ruleSet) {
+        ClinicalRulesConfig.BloodPressureRule bloodPressure = ruleSet.getBloodPressure();
+        ClinicalRulesConfig.TemperatureRule temperature = ruleSet.getTemperature();
+        highDeviation[group] = bloodPressure == null ? NO_LIMIT : limit(bloodPressure.getMaxHighDeviation());
+        lowDeviation[group] = bloodPressure == null ? NO_LIMIT : limit(bloodPressure.getMaxLowDeviation());
+        highMin[group] = bloodPressure == null ? NO_LIMIT : limit(bloodPressure.getHighMin());
+        highMax[group] = bloodPressure == null ? NO_LIMIT : limit(bloodPressure.getHighMax());
+        lowMin[group] = bloodPressure == null ? NO_LIMIT : limit(bloodPressure.getLowMin());
+        lowMax[group] = bloodPressure == null ? NO_LIMIT : limit(bloodPressure.getLowMax());
+        temperatureDrop[group] = temperature == null ? NO_LIMIT : limit(temperature.getMaxDrop());
+        temperatureRise[group] = temperature == null ? NO_LIMIT : limit(temperature.getMaxRise());
+        temperatureMin[group] = temperature == null ? NO_LIMIT : limit(temperature.getMin());
+        temperatureMax[group] = temperature == null ? NO_LIMIT : limit(temperature.getMax());
+    }
+
+    private static int limit(Integer value) {
+        if (value != null && value == NO_LIMIT) {
+            throw new IllegalArgumentException("Unsupported limit: " + value);
+        }
+        return value == null ? NO_LIMIT : value;
+    }
+
+    private static int limit(BigDecimal value) {
+        if (value == null) {
+            return NO_LIMIT;
+        }
+        int hundredths = Hundredths.of(value);
+        if (hundredths == Hundredths.NONE) {
+            throw new IllegalArgumentException("Temperature limit must have at most two decimal places: " + value);
+        }
+        return hundredths;
+    }
+
+    private static boolean exceeds(int deviation, int maxDeviation) {
+        return maxDeviation != NO_LIMIT && deviation > maxDeviation;
+    }
+
+    private static boolean outside(int value, int min, int max) {
+        return min != NO_LIMIT && value < min || max != NO_LIMIT && value > max;
+    }
+}
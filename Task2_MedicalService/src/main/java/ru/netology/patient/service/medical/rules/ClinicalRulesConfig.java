@@ -0,0 +1,176 @@
+package ru.netology.patient.service.medical.rules;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Декларативное описание клинических правил, загружаемое из локального JSON-файла.
+ * Правила возрастной группы применяются к пациентам, чей возраст (полных лет) попадает в [minAge, maxAge];
+ * группы перебираются по порядку, для остальных пациентов действуют правила defaults.
+ * Отсутствующая граница или секция означает отсутствие соответствующей проверки.
+ */
+public class ClinicalRulesConfig {
+
+    private RuleSet defaults;
+    private List<AgeGroup> ageGroups = new ArrayList<>();
+
+    public ClinicalRulesConfig() {
+    }
+
+    public ClinicalRulesConfig(RuleSet defaults, List<AgeGroup> ageGroups) {
+        this.defaults = defaults;
+        this.ageGroups = ageGroups;
+    }
+
+    /**
+     * Метод возвращает правила, повторяющие исходное поведение MedicalServiceImpl:
+     * любое отличие давления от нормы и снижение температуры более чем на 1.5 градуса
+     */
+    public static ClinicalRulesConfig legacy() {
+        return new ClinicalRulesConfig(
+            new RuleSet(new BloodPressureRule(0, 0, null, null, null, null),
+                new TemperatureRule(new BigDecimal("1.5"), null, null, null)),
+            new ArrayList<>());
+    }
+
+    public RuleSet getDefaults() {
+        return defaults;
+    }
+
+    public List<AgeGroup> getAgeGroups() {
+        return ageGroups;
+    }
+
+    public static class RuleSet {
+
+        private BloodPressureRule bloodPressure;
+        private TemperatureRule temperature;
+
+        public RuleSet() {
+        }
+
+        public RuleSet(BloodPressureRule bloodPressure, TemperatureRule temperature) {
+            this.bloodPressure = bloodPressure;
+            this.temperature = temperature;
+        }
+
+        public BloodPressureRule getBloodPressure() {
+            return bloodPressure;
+        }
+
+        public TemperatureRule getTemperature() {
+            return temperature;
+        }
+    }
+
+    public static class AgeGroup extends RuleSet {
+
+        private Integer minAge;
+        private Integer maxAge;
+
+        public AgeGroup() {
+        }
+
+        public AgeGroup(Integer minAge, Integer maxAge, BloodPressureRule bloodPressure, TemperatureRule temperature) {
+            super(bloodPressure, temperature);
+            this.minAge = minAge;
+            this.maxAge = maxAge;
+        }
+
+        public Integer getMinAge() {
+            return minAge;
+        }
+
+        public Integer getMaxAge() {
+            return maxAge;
+        }
+    }
+
+    /**
+     * Правила давления: допустимые отклонения от нормы пациента и абсолютные границы
+     */
+    public static class BloodPressureRule {
+
+        private Integer maxHighDeviation;
+        private Integer maxLowDeviation;
+        private Integer highMin;
+        private Integer highMax;
+        private Integer lowMin;
+        private Integer lowMax;
+
+        public BloodPressureRule() {
+        }
+
+        public BloodPressureRule(Integer maxHighDeviation, Integer maxLowDeviation,
+                                 Integer highMin, Integer highMax, Integer lowMin, Integer lowMax) {
+            this.maxHighDeviation = maxHighDeviation;
+            this.maxLowDeviation = maxLowDeviation;
+            this.highMin = highMin;
+            this.highMax = highMax;
+            this.lowMin = lowMin;
+            this.lowMax = lowMax;
+        }
+
+        public Integer getMaxHighDeviation() {
+            return maxHighDeviation;
+        }
+
+        public Integer getMaxLowDeviation() {
+            return maxLowDeviation;
+        }
+
+        public Integer getHighMin() {
+            return highMin;
+        }
+
+        public Integer getHighMax() {
+            return highMax;
+        }
+
+        public Integer getLowMin() {
+            return lowMin;
+        }
+
+        public Integer getLowMax() {
+            return lowMax;
+        }
+    }
+
+    /**
+     * Правила температуры: допустимые снижение и рост относительно нормы пациента и абсолютные границы
+     */
+    public static class TemperatureRule {
+
+        private BigDecimal maxDrop;
+        private BigDecimal maxRise;
+        private BigDecimal min;
+        private BigDecimal max;
+
+        public TemperatureRule() {
+        }
+
+        public TemperatureRule(BigDecimal maxDrop, BigDecimal maxRise, BigDecimal min, BigDecimal max) {
+            this.maxDrop = maxDrop;
+            this.maxRise = maxRise;
+            this.min = min;
+            this.max = max;
+        }
+
+        public BigDecimal getMaxDrop() {
+            return maxDrop;
+        }
+
+        public BigDecimal getMaxRise() {
+            return maxRise;
+        }
+
+        public BigDecimal getMin() {
+            return min;
+        }
+
+        public BigDecimal getMax() {
+            return max;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.netology.patient.service.medical.rules;
+
+import java.math.BigDecimal;
+
+/**
+ * Работа с температурой, масштабированной в целые сотые доли градуса.
+ * Сравнения не создают объектов для обычных (компактных) значений BigDecimal
+ */
+public final class Hundredths {
+
+    /**
+     * Значение-маркер: величина отсутствует или не представима точно в сотых долях
+     */
+    public static final int NONE = Integer.MIN_VALUE;
+
+    private Hundredths() {
+    }
+
+    /**
+     * Метод переводит значение в сотые доли или возвращает NONE, если оно null или не представимо точно
+     */
+    public static int of(BigDecimal value) {
+        if (value == null) {
+            return NONE;
+        }
+        try {
+            int hundredths = value.setScale(2).unscaledValue().intValueExact();
+            return hundredths == NONE ? NONE : hundredths;
+        } catch (ArithmeticException exception) {
+            return NONE;
+        }
+    }
+
+    /**
+     * Метод проверяет, что value строго меньше порога в сотых долях.
+     * Сравнение идет в double, а точное сравнение BigDecimal нужно только при совпадении округленных значений
+     */
+    public static boolean isBelow(BigDecimal value, int thresholdHundredths) {
+        double threshold = thresholdHundredths / 100.0;
+        double actual = value.doubleValue();
+        if (actual != threshold) {
+            return actual < threshold;
+        }
+        return value.compareTo(BigDecimal.valueOf(thresholdHundredths, 2)) < 0;
+    }
+
+    /**
+     * Метод проверяет, что value строго больше порога в сотых долях
+     */
+    public static boolean isAbove(BigDecimal value, int thresholdHundredths) {
+        double threshold = thresholdHundredths / 100.0;
+        double actual = value.doubleValue();
+        if (actual != threshold) {
+            return actual > threshold;
+        }
+        return value.compareTo(BigDecimal.valueOf(thresholdHundredths, 2)) > 0;
+    }
+}
@@ -0,0 +1,57 @@
+package ru.netology.patient.service.medical.trend;
+
+/**
+ * Пороги трендовых уведомлений. Наклоны задаются в единицах показателя за час;
+ * Double.NaN означает, что соответствующий тренд не проверяется
+ */
+public class TrendThresholds {
+
+    private final double maxTemperatureRisePerHour;
+    private final double maxTemperatureDropPerHour;
+    private final double maxHighRisePerHour;
+    private final double maxLowRisePerHour;
+    private final int minReadings;
+
+    public TrendThresholds(double maxTemperatureRisePerHour,
+                           double maxTemperatureDropPerHour,
+                           double maxHighRisePerHour,
+                           double maxLowRisePerHour,
+                           int minReadings) {
+        if (minReadings < 2) {
+            throw new IllegalArgumentException("At least two readings are needed for a trend: " + minReadings);
+        }
+        this.maxTemperatureRisePerHour = maxTemperatureRisePerHour;
+        this.maxTemperatureDropPerHour = maxTemperatureDropPerHour;
+        this.maxHighRisePerHour = maxHighRisePerHour;
+        this.maxLowRisePerHour = maxLowRisePerHour;
+        this.minReadings = minReadings;
+    }
+
+    /**
+     * Пороги по умолчанию: температура растет на 0.5 градуса в час или падает на 1 градус в час,
+     * давление растет на 20/10 единиц в час, тренд оценивается минимум по трем показаниям
+     */
+    public static TrendThresholds defaults() {
+        return new TrendThresholds(0.5, 1.0, 20, 10, 3);
+    }
+
+    public double getMaxTemperatureRisePerHour() {
+        return maxTemperatureRisePerHour;
+    }
+
+    public double getMaxTemperatureDropPerHour() {
+        return maxTemperatureDropPerHour;
+    }
+
+    public double getMaxHighRisePerHour() {
+        return maxHighRisePerHour;
+    }
+
+    public double getMaxLowRisePerHour() {
+        return maxLowRisePerHour;
+    }
+
+    public int getMinReadings() {
+        return minReadings;
+    }
+}
@@ -0,0 +1,159 @@
+package ru.netology.patient.service.medical.trend;
+
+/**
+ * Скользящее окно последних показаний на примитивном кольцевом буфере.
+ * Суммы для среднего и линейной регрессии поддерживаются инкрементально, поэтому добавление показания,
+ * вытеснение старого и расчет среднего, наклона и скорости изменения выполняются за O(1) без создания объектов.
+ * Время хранится в часах относительно начала отсчета окна, поэтому наклон измеряется "в единицах за час".
+ * Класс не потокобезопасен.
+ */
+public final class TrendWindow {
+
+    private static final double MILLIS_PER_HOUR = 3_600_000.0;
+    // Через столько добавлений суммы пересчитываются заново, чтобы не накапливалась ошибка округления
+    private static final int RECOMPUTE_PERIOD = 4096;
+
+    private final double[] times;
+    private final double[] values;
+    private final long horizonMillis;
+
+    private long originMillis = Long.MIN_VALUE;
+    private long lastMillis = Long.MIN_VALUE;
+    private int head;
+    private int size;
+    private int addsSinceRecompute;
+
+    private double sumT;
+    private double sumV;
+    private double sumTT;
+    private double sumTV;
+
+    /**
+     * @param capacity      максимальное число показаний в окне
+     * @param horizonMillis показания старше последнего более чем на horizonMillis вытесняются
+     */
+    public TrendWindow(int capacity, long horizonMillis) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+        }
+        this.times = new double[capacity];
+        this.values = new double[capacity];
+        this.horizonMillis = horizonMillis;
+    }
+
+    /**
+     * Метод добавляет показание. Показания с временем раньше последнего игнорируются
+     */
+    public boolean add(long timestampMillis, double value) {
+        if (timestampMillis < lastMillis) {
+            return false;
+        }
+        if (originMillis == Long.MIN_VALUE) {
+            originMillis = timestampMillis;
+        }
+        lastMillis = timestampMillis;
+        double t = (timestampMillis - originMillis) / MILLIS_PER_HOUR;
+        double oldest = t - horizonMillis / MILLIS_PER_HOUR;
+        while (size > 0 && times[head] < oldest) {
+            evictOldest();
+        }
+        if (size == times.length) {
+            evictOldest();
+        }
+        int tail = (head + size) % times.length;
+        times[tail] = t;
+        values[tail] = value;
+        size++;
+        sumT += t;
+        sumV += value;
+        sumTT += t * t;
+        sumTV += t * value;
+        if (++addsSinceRecompute >= RECOMPUTE_PERIOD) {
+            rebase();
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double average() {
+        return size == 0 ? Double.NaN : sumV / size;
+    }
+
+    public double last() {
+        return size == 0 ? Double.NaN : values[(head + size - 1) % values.length];
+    }
+
+    /**
+     * Метод возвращает наклон линейной регрессии по окну в единицах за час (NaN, если данных недостаточно)
+     */
+    public double slopePerHour() {
+        if (size < 2) {
+            return Double.NaN;
+        }
+        double denominator = size * sumTT - sumT * sumT;
+        if (denominator <= 0) {
+            return Double.NaN;
+        }
+        return (size * sumTV - sumT * sumV) / denominator;
+    }
+
+    /**
+     * Метод возвращает скорость изменения между двумя последними показаниями в единицах за час
+     */
+    public double rateOfChangePerHour() {
+        if (size < 2) {
+            return Double.NaN;
+        }
+        int lastIndex = (head + size - 1) % times.length;
+        int previousIndex = (head + size - 2) % times.length;
+        double dt = times[lastIndex] - times[previousIndex];
+        return dt <= 0 ? Double.NaN : (values[lastIndex] - values[previousIndex]) / dt;
+    }
+
+    /**
+     * Метод возвращает интервал между первым и последним показаниями окна в часах
+     */
+    public double spanHours() {
+        if (size < 2) {
+            return 0;
+        }
+        return times[(head + size - 1) % times.length] - times[head];
+    }
+
+    private void evictOldest() {
+        double t = times[head];
+        double value = values[head];
+        sumT -= t;
+        sumV -= value;
+        sumTT -= t * t;
+        sumTV -= t * value;
+        head = (head + 1) % times.length;
+        size--;
+    }
+
+    /**
+     * Метод переносит начало отсчета на самое старое показание и пересчитывает суммы заново.
+     * Стоимость O(capacity) раз в RECOMPUTE_PERIOD добавлений, то есть O(1) в среднем
+     */
+    private void rebase() {
+        addsSinceRecompute = 0;
+        double shift = size == 0 ? 0 : times[head];
+        originMillis += Math.round(shift * MILLIS_PER_HOUR);
+        sumT = 0;
+        sumV = 0;
+        sumTT = 0;
+        sumTV = 0;
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % times.length;
+            double t = times[index] - shift;
+            times[index] = t;
+            sumT += t;
+            sumV += values[index];
+            sumTT += t * t;
+            sumTV += t * values[index];
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package ru.netology.patient.service.medical.trend;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ru.netology.patient.entity.PatientInfo;
+import ru.netology.patient.repository.PatientChangeListener;
+import ru.netology.patient.service.alert.Alert;
+import ru.netology.patient.service.alert.AlertSeverity;
+import ru.netology.patient.service.alert.AlertType;
+import ru.netology.patient.service.alert.SendAlertService;
+
+/**
+ * Отслеживание трендов показателей пациентов по скользящим окнам последних измерений.
+ * Окна выделяются один раз на пациента, обработка показания выполняется за O(1) и не создает объектов;
+ * строки уведомлений формируются только при срабатывании тренда.
+ * Уведомление по тренду отправляется один раз при выходе за порог и повторно - только после возврата в норму.
+ */
+public class VitalsTrendMonitor implements PatientChangeListener {
+
+    private static final String TEMPERATURE_RISING = "Warning, patient with id: %s, temperature rising %.2f per hour";
+    private static final String TEMPERATURE_FALLING = "Warning, patient with id: %s, temperature falling %.2f per hour";
+    private static final String PRESSURE_RISING = "Warning, patient with id: %s, blood pressure rising %.1f/%.1f per hour";
+
+    private final SendAlertService alertService;
+    private final TrendThresholds thresholds;
+    private final int windowSize;
+    private final long horizonMillis;
+    private final Map<String, PatientTrend> trends = new ConcurrentHashMap<>();
+
+    public VitalsTrendMonitor(SendAlertService alertService) {
+        this(alertService, TrendThresholds.defaults(), 12, 6 * 3_600_000L);
+    }
+
+    public VitalsTrendMonitor(SendAlertService alertService,
+                              TrendThresholds thresholds,
+                              int windowSize,
+                              long horizonMillis) {
+        this.alertService = alertService;
+        this.thresholds = thresholds;
+        this.windowSize = windowSize;
+        this.horizonMillis = horizonMillis;
+    }
+
+    public void onTemperature(String patientId, long timestampMillis, BigDecimal temperature) {
+        PatientTrend trend = trendOf(patientId);
+        String alert = null;
+        double slope = Double.NaN;
+        synchronized (trend) {
+            if (!trend.temperature.add(timestampMillis, temperature.doubleValue())) {
+                return;
+            }
+            if (trend.temperature.size() >= thresholds.getMinReadings()) {
+                slope = trend.temperature.slopePerHour();
+                boolean rising = slope > thresholds.getMaxTemperatureRisePerHour();
+                boolean falling = -slope > thresholds.getMaxTemperatureDropPerHour();
+                if (rising && !trend.temperatureRisingAlerted) {
+                    alert = TEMPERATURE_RISING;
+                } else if (falling && !trend.temperatureFallingAlerted) {
+                    alert = TEMPERATURE_FALLING;
+                }
+                trend.temperatureRisingAlerted = rising;
+                trend.temperatureFallingAlerted = falling;
+            }
+        }
+        if (alert != null) {
+            sendTrendAlert(patientId, timestampMillis, String.format(Locale.ROOT, alert, patientId, Math.abs(slope)));
+        }
+    }
+
+    public void onBloodPressure(String patientId, long timestampMillis, int high, int low) {
+        PatientTrend trend = trendOf(patientId);
+        boolean alert = false;
+        double highSlope = Double.NaN;
+        double lowSlope = Double.NaN;
+        synchronized (trend) {
+            if (!trend.high.add(timestampMillis, high)) {
+                return;
+            }
+            trend.low.add(timestampMillis, low);
+            if (trend.high.size() >= thresholds.getMinReadings()) {
+                highSlope = trend.high.slopePerHour();
+                lowSlope = trend.low.slopePerHour();
+                boolean rising = highSlope > thresholds.getMaxHighRisePerHour()
+                    || lowSlope > thresholds.getMaxLowRisePerHour();
+                alert = rising && !trend.pressureRisingAlerted;
+                trend.pressureRisingAlerted = rising;
+            }
+        }
+        if (alert) {
+            sendTrendAlert(patientId, timestampMillis,
+                String.format(Locale.ROOT, PRESSURE_RISING, patientId, highSlope, lowSlope));
+        }
+    }
+
+    private void sendTrendAlert(String patientId, long timestampMillis, String message) {
+        // Тренд предупреждает заранее, до выхода показателя за границы, поэтому важность средняя
+        alertService.send(new Alert(patientId, AlertSeverity.MEDIUM, AlertType.TREND,
+            Instant.ofEpochMilli(timestampMillis), message));
+    }
+
+    /**
+     * Метод возвращает наклон температуры пациента в градусах за час или NaN, если данных недостаточно
+     */
+    public double temperatureSlopePerHour(String patientId) {
+        PatientTrend trend = trends.get(patientId);
+        if (trend == null) {
+            return Double.NaN;
+        }
+        synchronized (trend) {
+            return trend.temperature.slopePerHour();
+        }
+    }
+
+    /**
+     * Метод возвращает скользящее среднее температуры пациента или NaN, если показаний нет
+     */
+    public double averageTemperature(String patientId) {
+        PatientTrend trend = trends.get(patientId);
+        if (trend == null) {
+            return Double.NaN;
+        }
+        synchronized (trend) {
+            return trend.temperature.average();
+        }
+    }
+
+    /**
+     * Метод возвращает скорость изменения температуры между двумя последними показаниями в градусах за час
+     */
+    public double temperatureRateOfChange(String patientId) {
+        PatientTrend trend = trends.get(patientId);
+        if (trend == null) {
+            return Double.NaN;
+        }
+        synchronized (trend) {
+            return trend.temperature.rateOfChangePerHour();
+        }
+    }
+
+    public int monitoredPatients() {
+        return trends.size();
+    }
+
+    @Override
+    public void onPut(PatientInfo patientInfo) {
+        // Изменение нормы пациента не влияет на тренд его показаний
+    }
+
+    @Override
+    public void onRemove(String id) {
+        trends.remove(id);
+    }
+
+    private PatientTrend trendOf(String patientId) {
+        PatientTrend trend = trends.get(patientId);
+        if (trend == null) {
+            PatientTrend created = new PatientTrend(windowSize, horizonMillis);
+            trend = trends.putIfAbsent(patientId, created);
+            if (trend == null) {
+                trend = created;
+            }
+        }
+        return trend;
+    }
+
+    private static final class PatientTrend {
+
+        private final TrendWindow temperature;
+        private final TrendWindow high;
+        private final TrendWindow low;
+        private boolean temperatureRisingAlerted;
+        private boolean temperatureFallingAlerted;
+        private boolean pressureRisingAlerted;
+
+        PatientTrend(int windowSize, long horizonMillis) {
+            this.temperature = new TrendWindow(windowSize, horizonMillis);
+            this.high = new TrendWindow(windowSize, horizonMillis);
+            this.low = new TrendWindow(windowSize, horizonMillis);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ru.netology.patient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запуск многопоточных сценариев в тестах.
+ * Все потоки стартуют одновременно по общей защелке, исключение любого потока проваливает тест,
+ * а зависание ограничено таймаутом. Случайные данные потоки берут из Random с номером потока,
+ * поэтому набор операций повторяется от запуска к запуску - меняется только чередование потоков.
+ */
+public final class ConcurrencyHarness {
+
+    private static final long TIMEOUT_SECONDS = 120;
+
+    /**
+     * Тело потока; thread - номер потока от 0
+     */
+    public interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    private ConcurrencyHarness() {
+    }
+
+    /**
+     * Метод выполняет worker в threads потоках и возвращает время от общего старта до завершения последнего, нс
+     */
+    public static long run(int threads, Worker worker) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            int thread = i;
+            Thread workerThread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                    worker.run(thread);
+                } catch (Throwable failure) {
+                    failures.add(failure);
+                }
+            }, "stress-" + i);
+            workers.add(workerThread);
+            workerThread.start();
+        }
+        ready.await();
+        long started = System.nanoTime();
+        start.countDown();
+        long deadline = started + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        for (Thread thread : workers) {
+            thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            if (thread.isAlive()) {
+                throw new AssertionError(thread.getName() + " did not finish in " + TIMEOUT_SECONDS + " s");
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+        if (!failures.isEmpty()) {
+            AssertionError error = new AssertionError("Worker failed", failures.poll());
+            failures.forEach(error::addSuppressed);
+            throw error;
+        }
+        return elapsed;
+    }
+}
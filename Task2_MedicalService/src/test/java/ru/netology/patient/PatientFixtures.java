@@ -0,0 +1,38 @@
+package ru.netology.patient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+
+import java.io.File;
+
+import ru.netology.patient.repository.PatientInfoFileRepository;
+import ru.netology.patient.repository.PatientLog;
+
+/**
+ * Общие заготовки тестов: ObjectMapper с настройками приложения и файловый репозиторий во временном файле
+ */
+public final class PatientFixtures {
+
+    private PatientFixtures() {
+    }
+
+    /**
+     * Метод создает ObjectMapper, настроенный так же, как в Main
+     */
+    public static ObjectMapper createMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModules(new JavaTimeModule(), new ParameterNamesModule());
+        mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        return mapper;
+    }
+
+    public static PatientInfoFileRepository openRepository(File repoFile) {
+        return new PatientInfoFileRepository(repoFile, createMapper());
+    }
+
+    public static PatientInfoFileRepository openRepository(File repoFile, PatientLog.Durability durability) {
+        return new PatientInfoFileRepository(repoFile, createMapper(), durability);
+    }
+}
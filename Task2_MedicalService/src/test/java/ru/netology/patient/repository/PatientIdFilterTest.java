@@ -0,0 +1,131 @@
+package ru.netology.patient.repository;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Класс для тестирования PatientIdFilter
+ * Проверяет отсутствие ложноотрицательных ответов, долю ложных срабатываний и сохранение фильтра в файл
+ */
+public class PatientIdFilterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Тест проверяет, что добавленные id всегда находятся, а при заполнении до расчетной емкости
+     * доля ложных срабатываний не превышает 2%
+     */
+    @Test
+    public void testNoFalseNegativesAndFewFalsePositives() {
+        // Подготовка данных для теста
+        Random random = new Random(42);
+        int count = 10_000;
+        long[] msbs = new long[count];
+        long[] lsbs = new long[count];
+        PatientIdFilter filter = new PatientIdFilter(count / 2);
+        for (int i = 0; i < count; i++) {
+            msbs[i] = random.nextLong();
+            lsbs[i] = random.nextLong();
+            filter.add(PatientIdFilter.hash(msbs[i], lsbs[i]));
+        }
+
+        // Выполнение тестируемого метода
+        int missing = 0;
+        for (int i = 0; i < count; i++) {
+            if (!filter.mightContain(PatientIdFilter.hash(msbs[i], lsbs[i]))) {
+                missing++;
+            }
+        }
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(PatientIdFilter.hash(random.nextLong(), random.nextLong()))) {
+                falsePositives++;
+            }
+        }
+
+        // Проверка результата
+        assertEquals(0, missing);
+        assertTrue("False positives: " + falsePositives, falsePositives < probes / 50);
+        assertFalse(filter.needsRebuild());
+    }
+
+    /**
+     * Тест проверяет, что фильтр требует перестройки при переполнении и при большом числе удаленных id
+     */
+    @Test
+    public void testNeedsRebuild() {
+        // Подготовка данных для теста
+        PatientIdFilter full = new PatientIdFilter(0);
+        PatientIdFilter stale = new PatientIdFilter(10_000);
+
+        // Выполнение тестируемого метода
+        for (int i = 0; i <= full.capacity(); i++) {
+            full.add(PatientIdFilter.hash(0, i));
+        }
+        for (int i = 0; i < 4_000; i++) {
+            stale.add(PatientIdFilter.hash(1, i));
+        }
+        boolean staleBeforeRemovals = stale.needsRebuild();
+        for (int i = 0; i < 2_001; i++) {
+            stale.onRemove();
+        }
+
+        // Проверка результата
+        assertTrue(full.needsRebuild());
+        assertFalse(staleBeforeRemovals);
+        assertTrue(stale.needsRebuild());
+    }
+
+    /**
+     * Тест проверяет, что сохраненный фильтр загружается только для той же покрытой части файла данных
+     * и отбрасывается при повреждении
+     */
+    @Test
+    public void testWriteAndLoad() throws IOException {
+        // Подготовка данных для теста
+        File dataFile = folder.newFile("patients.txt");
+        Files.write(dataFile.toPath(), "{\"id\":\"patient-1\"}\n".getBytes(StandardCharsets.UTF_8));
+        File filterFile = new File(folder.getRoot(), "patients.txt.bloom");
+        PatientIdFilter filter = new PatientIdFilter(100);
+        filter.add(PatientIdFilter.hash("patient-1"));
+
+        try (FileChannel data = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            // Выполнение тестируемого метода
+            filter.write(filterFile, data, data.size());
+            PatientIdFilter loaded = PatientIdFilter.load(filterFile, data, data.size());
+            PatientIdFilter otherLength = PatientIdFilter.load(filterFile, data, data.size() - 1);
+            try (RandomAccessFile file = new RandomAccessFile(filterFile, "rw")) {
+                file.seek(file.length() / 2);
+                int value = file.read();
+                file.seek(file.length() / 2);
+                file.write(value ^ 0xFF);
+            }
+            PatientIdFilter corrupted = PatientIdFilter.load(filterFile, data, data.size());
+
+            // Проверка результата
+            assertNotNull(loaded);
+            assertTrue(loaded.mightContain(PatientIdFilter.hash("patient-1")));
+            assertFalse(loaded.needsRebuild());
+            assertNull(otherLength);
+            assertNull(corrupted);
+        }
+    }
+}
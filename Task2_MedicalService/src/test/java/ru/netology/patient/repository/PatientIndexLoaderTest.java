@@ -0,0 +1,174 @@
+package ru.netology.patient.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static ru.netology.patient.PatientFixtures.createMapper;
+
+/**
+ * Класс для тестирования PatientIndexLoader
+ * Проверяет, что параллельная загрузка журнала по диапазонам дает те же индексы, что и последовательная
+ */
+public class PatientIndexLoaderTest {
+
+    private static final int PATIENTS = 12_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = createMapper();
+
+    /**
+     * Тест проверяет, что после параллельной загрузки видны последние версии пациентов,
+     * удаленные пациенты отсутствуют, а индекс естественного ключа указывает только на текущие версии
+     */
+    @Test
+    public void testParallelLoadMatchesSequentialLoad() throws IOException {
+        // Подготовка данных для теста
+        List<String> ids = new ArrayList<>();
+        File source = folder.newFile("source.txt");
+        long sequence = 1;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(source))) {
+            for (int i = 0; i < PATIENTS; i++) {
+                String id = i % 100 == 0 ? "patient-" + i : UUID.randomUUID().toString();
+                ids.add(id);
+                out.write(PatientLogFormat.encode(sequence++, PatientLogFormat.PUT,
+                    mapper.writeValueAsBytes(patient(id, i, 120))));
+            }
+            // Каждый десятый пациент обновлен, каждый тридцать седьмой удален
+            for (int i = 0; i < PATIENTS; i += 10) {
+                out.write(PatientLogFormat.encode(sequence++, PatientLogFormat.PUT,
+                    mapper.writeValueAsBytes(patient(ids.get(i), i, 140))));
+            }
+            for (int i = 0; i < PATIENTS; i += 37) {
+                out.write(PatientLogFormat.encode(sequence++, PatientLogFormat.DELETE,
+                    mapper.writeValueAsBytes(Collections.singletonMap("id", ids.get(i)))));
+            }
+        }
+        assertTrue(source.length() > 4 * PatientInfoFileRepository.MIN_LOAD_RANGE_SIZE);
+        File parallelFile = copy(source, "parallel.txt");
+        File sequentialFile = copy(source, "sequential.txt");
+
+        // Выполнение тестируемого метода
+        PatientInfoFileRepository parallel = new PatientInfoFileRepository(parallelFile, mapper,
+            PatientLog.Durability.perBatch(), 4);
+        PatientInfoFileRepository sequential = new PatientInfoFileRepository(sequentialFile, mapper,
+            PatientLog.Durability.perBatch(), 1);
+
+        // Проверка результата
+        for (int i = 0; i < PATIENTS; i++) {
+            PatientInfo loaded = parallel.getById(ids.get(i));
+            assertEquals(sequential.getById(ids.get(i)), loaded);
+            if (i % 37 == 0) {
+                assertNull(loaded);
+            } else {
+                assertEquals(i % 10 == 0 ? 140 : 120, loaded.getHealthInfo().getBloodPressure().getHigh());
+            }
+        }
+        assertEquals(sequence, parallel.log().nextSequence());
+        // Старая версия обновленного пациента больше не считается дубликатом, текущая - считается
+        parallel.add(patient(null, 10, 120));
+        try {
+            parallel.add(patient(null, 20, 140));
+            fail("Current version must be a duplicate");
+        } catch (RuntimeException expected) {
+            assertEquals("Patient already exists", expected.getMessage());
+        }
+        parallel.close();
+        sequential.close();
+    }
+
+    /**
+     * Тест проверяет, что при параллельной загрузке оборванная последняя запись обрезается,
+     * а поврежденная запись в середине журнала прерывает открытие
+     */
+    @Test
+    public void testParallelLoadHandlesTornTailAndCorruption() throws IOException {
+        // Подготовка данных для теста
+        File source = folder.newFile("source.txt");
+        String lastId = UUID.randomUUID().toString();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(source))) {
+            for (int i = 0; i < PATIENTS; i++) {
+                String id = i == PATIENTS - 1 ? lastId : UUID.randomUUID().toString();
+                out.write(PatientLogFormat.encode(i + 1, PatientLogFormat.PUT,
+                    mapper.writeValueAsBytes(patient(id, i, 120))));
+            }
+            byte[] torn = PatientLogFormat.encode(PATIENTS + 1, PatientLogFormat.PUT,
+                mapper.writeValueAsBytes(patient(UUID.randomUUID().toString(), PATIENTS, 120)));
+            out.write(torn, 0, torn.length / 2);
+        }
+        long intactLength = lastRecordEnd(source);
+        long sourceLength = source.length();
+        File tornFile = copy(source, "torn.txt");
+        File corruptedFile = copy(source, "corrupted.txt");
+        try (RandomAccessFile file = new RandomAccessFile(corruptedFile, "rw")) {
+            // Байт json первой трети файла: контрольная сумма записи перестает сходиться
+            file.seek(file.length() / 3);
+            int value = file.read();
+            file.seek(file.length() / 3);
+            file.write(value == '0' ? '1' : '0');
+        }
+
+        // Выполнение тестируемого метода
+        PatientInfoFileRepository repository = new PatientInfoFileRepository(tornFile, mapper,
+            PatientLog.Durability.perBatch(), 4);
+        String corruption = null;
+        try {
+            new PatientInfoFileRepository(corruptedFile, mapper, PatientLog.Durability.perBatch(), 4);
+        } catch (RuntimeException expected) {
+            corruption = expected.getCause().getMessage();
+        }
+
+        // Проверка результата
+        assertTrue(corruption, corruption != null && corruption.startsWith("Patient log is corrupted at offset"));
+        assertEquals(intactLength, tornFile.length());
+        assertEquals(sourceLength - intactLength, repository.truncatedBytes());
+        assertEquals(String.valueOf(PATIENTS - 1), repository.getById(lastId).getName());
+        assertEquals(PATIENTS + 1, repository.log().nextSequence());
+        repository.close();
+    }
+
+    private static long lastRecordEnd(File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        return end;
+    }
+
+    private File copy(File source, String name) throws IOException {
+        File target = new File(folder.getRoot(), name);
+        Files.copy(source.toPath(), target.toPath());
+        return target;
+    }
+
+    private static PatientInfo patient(String id, int number, int high) {
+        return new PatientInfo(id, String.valueOf(number), "Петров", LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.65"), new BloodPressure(high, 80)));
+    }
+}
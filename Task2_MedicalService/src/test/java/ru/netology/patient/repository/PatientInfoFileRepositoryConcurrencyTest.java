@@ -0,0 +1,236 @@
+package ru.netology.patient.repository;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.netology.patient.ConcurrencyHarness;
+import ru.netology.patient.PatientFixtures;
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Класс для нагрузочного тестирования PatientInfoFileRepository из многих потоков
+ * Проверяет, что записи не теряются и не рвутся в файле, а чтения общего пациента линеаризуемы;
+ * фиксирует пропускную способность при росте числа потоков
+ */
+public class PatientInfoFileRepositoryConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Тест проверяет, что при одновременных add/get/update/remove каждый поток видит свои изменения,
+     * итоговое состояние совпадает с моделью до и после перезапуска, а в файле нет оборванных строк
+     */
+    @Test
+    public void testConcurrentOperationsLoseNothing() throws Exception {
+        // Подготовка данных для теста
+        int patientsPerThread = 300;
+        File repoFile = folder.newFile("patients.txt");
+        PatientInfoFileRepository repository = openRepository(repoFile);
+        // Ожидаемое давление high по id; -1 - пациент удален
+        Map<String, Integer> expected = new ConcurrentHashMap<>();
+
+        // Выполнение тестируемого метода
+        ConcurrencyHarness.run(THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < patientsPerThread; i++) {
+                int high = 100 + random.nextInt(80);
+                String id = repository.add(patient(null, "t" + thread + "-" + i, high));
+                assertEquals(high, highOf(repository.getById(id)));
+                if (random.nextBoolean()) {
+                    high = 100 + random.nextInt(80);
+                    PatientInfo previous = repository.update(patient(id, "t" + thread + "-" + i, high));
+                    assertNotNull(previous);
+                    assertEquals(high, highOf(repository.getById(id)));
+                }
+                if (i % 3 == 0) {
+                    assertNotNull(repository.remove(id));
+                    assertNull(repository.getById(id));
+                    high = -1;
+                }
+                expected.put(id, high);
+            }
+        });
+        repository.close();
+        PatientInfoFileRepository restarted = openRepository(repoFile);
+
+        // Проверка результата
+        assertEquals(THREADS * patientsPerThread, expected.size());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            PatientInfo loaded = restarted.getById(entry.getKey());
+            if (entry.getValue() < 0) {
+                assertNull(loaded);
+            } else {
+                assertEquals(entry.getValue().intValue(), highOf(loaded));
+            }
+        }
+        assertIntactLog(repoFile);
+        restarted.close();
+    }
+
+    /**
+     * Тест проверяет линеаризуемость общего пациента, которого одновременно обновляют и читают:
+     * чтение не возвращает значение из будущего или уже перезаписанное до его начала,
+     * а два последовательных чтения не видят записи в обратном порядке
+     */
+    @Test
+    public void testSharedPatientIsLinearizable() throws Exception {
+        // Подготовка данных для теста
+        int writers = 4;
+        int readers = 4;
+        int operations = 400;
+        PatientInfoFileRepository repository = openRepository(folder.newFile("patients.txt"));
+        String id = repository.add(patient(null, "initial", 120));
+        Map<String, long[]> writes = new ConcurrentHashMap<>();
+        writes.put("initial", new long[]{Long.MIN_VALUE, Long.MIN_VALUE});
+        List<List<Object[]>> reads = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            reads.add(new ArrayList<>());
+        }
+
+        // Выполнение тестируемого метода
+        ConcurrencyHarness.run(writers + readers, thread -> {
+            for (int i = 0; i < operations; i++) {
+                if (thread < writers) {
+                    String value = "w" + thread + "-" + i;
+                    long invoked = System.nanoTime();
+                    repository.update(patient(id, value, 120));
+                    writes.put(value, new long[]{invoked, System.nanoTime()});
+                } else {
+                    long invoked = System.nanoTime();
+                    String value = repository.getById(id).getName();
+                    reads.get(thread - writers).add(new Object[]{value, invoked, System.nanoTime()});
+                }
+            }
+        });
+        repository.close();
+
+        // Проверка результата
+        List<Object[]> allReads = new ArrayList<>();
+        reads.forEach(allReads::addAll);
+        List<long[]> allWrites = new ArrayList<>(writes.values());
+        for (Object[] read : allReads) {
+            long[] write = writes.get((String) read[0]);
+            assertNotNull("Read a value that was never written: " + read[0], write);
+            long readInvoked = (long) read[1];
+            long readResponded = (long) read[2];
+            assertTrue("Value " + read[0] + " read before it was written", write[0] < readResponded);
+            for (long[] other : allWrites) {
+                if (write[1] < other[0] && other[1] < readInvoked) {
+                    fail("Value " + read[0] + " was overwritten before the read started");
+                }
+            }
+        }
+        for (Object[] first : allReads) {
+            long[] firstWrite = writes.get((String) first[0]);
+            for (Object[] second : allReads) {
+                long[] secondWrite = writes.get((String) second[0]);
+                if ((long) first[2] < (long) second[1] && secondWrite[1] < firstWrite[0]) {
+                    fail("Reads observed " + first[0] + " and then the older " + second[0]);
+                }
+            }
+        }
+        assertEquals(writers * operations + 1, writes.size());
+    }
+
+    /**
+     * Тест фиксирует пропускную способность смешанной нагрузки (добавление и четыре чтения)
+     * при 1, 2, 4 и 8 потоках; результат выводится в лог теста
+     */
+    @Test
+    public void testThroughputScaling() throws Exception {
+        // Подготовка данных для теста
+        int operations = 8_000;
+        Map<Integer, Double> throughput = new HashMap<>();
+        // Прогревочный прогон не учитывается, чтобы замер одного потока не включал компиляцию JIT
+        try (PatientInfoFileRepository warmUp = openRepository(folder.newFile("warm-up.txt"))) {
+            for (int i = 0; i < operations; i++) {
+                warmUp.getById(warmUp.add(patient(null, "warm-up-" + i, 120)));
+            }
+        }
+
+        for (int threads = 1; threads <= THREADS; threads *= 2) {
+            PatientInfoFileRepository repository = openRepository(folder.newFile("patients-" + threads + ".txt"));
+            int perThread = operations / threads;
+            AtomicInteger completed = new AtomicInteger();
+
+            // Выполнение тестируемого метода
+            long elapsed = ConcurrencyHarness.run(threads, thread -> {
+                for (int i = 0; i < perThread; i += 5) {
+                    String id = repository.add(patient(null, "t" + thread + "-" + i, 120));
+                    for (int read = 0; read < 4; read++) {
+                        assertNotNull(repository.getById(id));
+                    }
+                    completed.addAndGet(5);
+                }
+            });
+            repository.close();
+            throughput.put(threads, completed.get() * 1e9 / elapsed);
+
+            // Проверка результата
+            assertEquals(perThread * threads, completed.get());
+        }
+        StringBuilder report = new StringBuilder("Throughput, operations per second:");
+        for (int threads = 1; threads <= THREADS; threads *= 2) {
+            report.append(String.format(" %d threads - %.0f;", threads, throughput.get(threads)));
+        }
+        System.out.println(report);
+    }
+
+    /**
+     * В журнале каждая строка целая, с верной контрольной суммой, а номера записей идут подряд
+     */
+    private static void assertIntactLog(File repoFile) throws IOException {
+        byte[] bytes = Files.readAllBytes(repoFile.toPath());
+        assertTrue(bytes.length > 0 && bytes[bytes.length - 1] == '\n');
+        PatientLogFormat.Frame frame = new PatientLogFormat.Frame();
+        long sequence = 0;
+        int lineStart = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                assertTrue("Torn line at offset " + lineStart,
+                    PatientLogFormat.decode(bytes, lineStart, i - lineStart, frame));
+                assertEquals(++sequence, frame.getSequence());
+                lineStart = i + 1;
+            }
+        }
+    }
+
+    private PatientInfoFileRepository openRepository(File repoFile) {
+        // Без fsync на каждую запись: проверяется согласованность, а не долговечность
+        return PatientFixtures.openRepository(repoFile, PatientLog.Durability.perInterval(60_000));
+    }
+
+    private static int highOf(PatientInfo patientInfo) {
+        return patientInfo.getHealthInfo().getBloodPressure().getHigh();
+    }
+
+    private static PatientInfo patient(String id, String name, int high) {
+        return new PatientInfo(id, name, "Петров", LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.65"), new BloodPressure(high, 80)));
+    }
+}
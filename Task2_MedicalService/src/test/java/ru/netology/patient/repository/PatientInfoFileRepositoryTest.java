@@ -0,0 +1,158 @@
+package ru.netology.patient.repository;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static ru.netology.patient.PatientFixtures.openRepository;
+
+/**
+ * Класс для тестирования PatientInfoFileRepository
+ * Проверяет индексы в памяти и запуск из сохраненного снимка индексов
+ */
+public class PatientInfoFileRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Тест проверяет, что после перезапуска пациенты читаются из снимка,
+     * а записи, дописанные после снимка, дочитываются из хвоста файла
+     */
+    @Test
+    public void testRestartFromSnapshotReplaysTail() throws IOException {
+        // Подготовка данных для теста
+        File repoFile = new File(folder.getRoot(), "patients.txt");
+        String id1;
+        String id2;
+        try (PatientInfoFileRepository repository = openRepository(repoFile)) {
+            id1 = repository.add(patient("Иван", "Петров", 120));
+            id2 = repository.add(patient("Семен", "Михайлов", 125));
+        }
+        // Второй экземпляр дописывает пациента, но снимок не сохраняет (аварийное завершение)
+        String id3 = openRepository(repoFile).add(patient("Анна", "Смирнова", 110));
+
+        // Выполнение тестируемого метода
+        PatientInfoFileRepository restarted = openRepository(repoFile);
+
+        // Проверка результата
+        try (FileChannel channel = FileChannel.open(repoFile.toPath(), StandardOpenOption.READ)) {
+            PatientIndexSnapshot snapshot = PatientIndexSnapshot.load(
+                new File(repoFile.getPath() + PatientInfoFileRepository.SNAPSHOT_SUFFIX), channel);
+            assertNotNull(snapshot);
+            assertEquals(2, snapshot.getIds().size());
+            assertTrue(snapshot.getCoveredLength() < repoFile.length());
+            // Фильтр id сохранен вместе со снимком; пациент из хвоста добавлен в него при дочитывании
+            assertNotNull(PatientIdFilter.load(new File(repoFile.getPath() + PatientInfoFileRepository.ID_FILTER_SUFFIX),
+                channel, snapshot.getCoveredLength()));
+        }
+        assertEquals(new PatientInfo(id1, "Иван", "Петров", LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.65"), new BloodPressure(120, 80))), restarted.getById(id1));
+        assertEquals("Михайлов", restarted.getById(id2).getSurname());
+        assertEquals("Смирнова", restarted.getById(id3).getSurname());
+        restarted.close();
+    }
+
+    /**
+     * Тест проверяет, что поврежденный снимок отбрасывается и индексы перестраиваются по файлу данных
+     */
+    @Test
+    public void testCorruptedSnapshotIsRebuilt() throws IOException {
+        // Подготовка данных для теста
+        File repoFile = new File(folder.getRoot(), "patients.txt");
+        String id;
+        try (PatientInfoFileRepository repository = openRepository(repoFile)) {
+            id = repository.add(patient("Иван", "Петров", 120));
+        }
+        File snapshotFile = new File(repoFile.getPath() + PatientInfoFileRepository.SNAPSHOT_SUFFIX);
+        try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+            file.seek(file.length() / 2);
+            int value = file.read();
+            file.seek(file.length() / 2);
+            file.write(value ^ 0xFF);
+        }
+
+        // Выполнение тестируемого метода
+        PatientInfoFileRepository restarted = openRepository(repoFile);
+
+        // Проверка результата
+        try (FileChannel channel = FileChannel.open(repoFile.toPath(), StandardOpenOption.READ)) {
+            assertNull(PatientIndexSnapshot.load(snapshotFile, channel));
+        }
+        assertEquals("Петров", restarted.getById(id).getSurname());
+        assertNull(restarted.getById("unknown"));
+        restarted.close();
+    }
+
+    /**
+     * Тест проверяет, что дубликат отклоняется и после перезапуска из снимка
+     */
+    @Test(expected = RuntimeException.class)
+    public void testAddDuplicateAfterRestart() throws IOException {
+        // Подготовка данных для теста
+        File repoFile = new File(folder.getRoot(), "patients.txt");
+        try (PatientInfoFileRepository repository = openRepository(repoFile)) {
+            repository.add(patient("Иван", "Петров", 120));
+        }
+        PatientInfoFileRepository restarted = openRepository(repoFile);
+
+        // Выполнение тестируемого метода
+        restarted.add(patient("Иван", "Петров", 120));
+    }
+
+    /**
+     * Тест проверяет, что обновление и удаление переживают перезапуск, а поиск по фамилии видит текущие версии
+     */
+    @Test
+    public void testUpdateRemoveAndSearchAfterRestart() throws IOException {
+        // Подготовка данных для теста
+        File repoFile = new File(folder.getRoot(), "patients.txt");
+        String id1;
+        String id2;
+        try (PatientInfoFileRepository repository = openRepository(repoFile)) {
+            id1 = repository.add(patient("Иван", "Петров", 120));
+            id2 = repository.add(patient("Петр", "Петренко", 125));
+            repository.add(patient("Анна", "Смирнова", 110));
+        }
+        PatientInfoFileRepository repository = openRepository(repoFile);
+        repository.findBySurnamePrefix("пет", 10);
+
+        // Выполнение тестируемого метода
+        PatientInfo previous = repository.update(new PatientInfo(id1, "Иван", "Петровский", LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.65"), new BloodPressure(130, 85))));
+        PatientInfo removed = repository.remove(id2);
+        repository.close();
+        PatientInfoFileRepository restarted = openRepository(repoFile);
+        PatientPage page = restarted.findBySurnamePrefix("ПЕТ", 10);
+
+        // Проверка результата
+        assertEquals("Петров", previous.getSurname());
+        assertEquals("Петренко", removed.getSurname());
+        assertNull(restarted.getById(id2));
+        assertEquals(1, page.getPatients().size());
+        assertEquals("Петровский", page.getPatients().get(0).getSurname());
+        assertEquals(130, page.getPatients().get(0).getHealthInfo().getBloodPressure().getHigh());
+        restarted.close();
+    }
+
+    private static PatientInfo patient(String name, String surname, int high) {
+        return new PatientInfo(name, surname, LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.65"), new BloodPressure(high, 80)));
+    }
+}
@@ -0,0 +1,198 @@
+package ru.netology.patient.repository;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Класс для тестирования PatientInfoOffHeapRepository
+ * Проверяет хранение пациентов вне кучи и работу примитивных индексов
+ */
+public class PatientInfoOffHeapRepositoryTest {
+
+    // Маленький размер сегмента, чтобы тесты проверяли переход между сегментами
+    private final PatientInfoOffHeapRepository repository = new PatientInfoOffHeapRepository(4096, 0);
+
+    /**
+     * Тест проверяет, что добавленный пациент читается по id без потери данных
+     */
+    @Test
+    public void testAddAndGetById() {
+        // Подготовка данных для теста
+        PatientInfo patientInfo = new PatientInfo("Иван", "Петров", LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.65"), new BloodPressure(120, 80)));
+
+        // Выполнение тестируемого метода
+        String id = repository.add(patientInfo);
+        PatientInfo stored = repository.getById(id);
+
+        // Проверка результата
+        assertEquals(new PatientInfo(id, "Иван", "Петров", LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.65"), new BloodPressure(120, 80))), stored);
+    }
+
+    /**
+     * Тест проверяет, что повторное добавление того же пациента отклоняется
+     */
+    @Test(expected = RuntimeException.class)
+    public void testAddDuplicatePatient() {
+        // Подготовка данных для теста
+        PatientInfo patientInfo = new PatientInfo("Семен", "Михайлов", LocalDate.of(1982, 1, 16),
+            new HealthInfo(new BigDecimal("36.6"), new BloodPressure(125, 78)));
+        repository.add(patientInfo);
+
+        // Выполнение тестируемого метода
+        repository.add(patientInfo);
+    }
+
+    /**
+     * Тест проверяет, что для неизвестного или некорректного id возвращается null
+     */
+    @Test
+    public void testGetByUnknownId() {
+        // Проверка результата
+        assertNull(repository.getById("3f2a7c1e-0000-4000-8000-000000000000"));
+        assertNull(repository.getById("patient-123"));
+        assertNull(repository.getById(null));
+    }
+
+    /**
+     * Тест проверяет обновление и удаление пациента
+     */
+    @Test
+    public void testUpdateAndRemove() {
+        // Подготовка данных для теста
+        String id = repository.add(new PatientInfo("Иван", "Петров", LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.6"), new BloodPressure(120, 80))));
+        PatientInfo updated = new PatientInfo(id, "Иван", "Петров", LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.9"), new BloodPressure(130, 85)));
+
+        // Выполнение тестируемого метода
+        PatientInfo previous = repository.update(updated);
+
+        // Проверка результата
+        assertEquals(new BigDecimal("36.6"), previous.getHealthInfo().getNormalTemperature());
+        assertEquals(updated, repository.getById(id));
+        assertTrue(repository.garbageBytes() > 0);
+
+        // Выполнение тестируемого метода
+        PatientInfo removed = repository.remove(id);
+
+        // Проверка результата
+        assertEquals(updated, removed);
+        assertNull(repository.getById(id));
+        assertNull(repository.remove(id));
+        assertEquals(0, repository.size());
+    }
+
+    /**
+     * Тест проверяет работу с большим числом пациентов в нескольких сегментах
+     * (индексы при этом несколько раз перестраиваются)
+     */
+    @Test
+    public void testManyPatientsAcrossSegments() {
+        // Подготовка данных для теста
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            ids.add(repository.add(new PatientInfo("Пациент" + i, "Фамилия" + i, LocalDate.of(1950, 1, 1).plusDays(i),
+                new HealthInfo(new BigDecimal("36.6"), new BloodPressure(100 + i % 50, 70)))));
+        }
+
+        // Проверка результата
+        assertEquals(2000, repository.size());
+        for (int i = 0; i < ids.size(); i++) {
+            PatientInfo stored = repository.getById(ids.get(i));
+            assertEquals("Фамилия" + i, stored.getSurname());
+            assertEquals(100 + i % 50, stored.getHealthInfo().getBloodPressure().getHigh());
+        }
+    }
+
+    /**
+     * Тест проверяет, что при многократных обновлениях мусор уплотняется и объем сегментов не растет,
+     * а данные и проверка дубликатов после уплотнения остаются верными
+     */
+    @Test
+    public void testCompactionBoundsCapacity() {
+        // Подготовка данных для теста
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ids.add(repository.add(patient(i, 120)));
+        }
+        long capacityBefore = repository.capacityBytes();
+
+        // Выполнение тестируемого метода
+        for (int round = 1; round <= 200; round++) {
+            for (int i = 0; i < ids.size(); i++) {
+                PatientInfo patientInfo = patient(i, 120 + round);
+                repository.update(new PatientInfo(ids.get(i), patientInfo.getName(), patientInfo.getSurname(),
+                    patientInfo.getBirthday(), patientInfo.getHealthInfo()));
+            }
+        }
+        repository.remove(ids.get(0));
+
+        // Проверка результата
+        assertTrue(repository.capacityBytes() <= capacityBefore * 2 + 4096);
+        assertEquals(49, repository.size());
+        for (int i = 1; i < ids.size(); i++) {
+            assertEquals(320, repository.getById(ids.get(i)).getHealthInfo().getBloodPressure().getHigh());
+        }
+        try {
+            repository.add(patient(7, 320));
+            fail("Duplicate patient was added after compaction");
+        } catch (RuntimeException exception) {
+            assertEquals("Patient already exists", exception.getMessage());
+        }
+    }
+
+    /**
+     * Тест проверяет поиск по префиксу фамилии и диапазону дат рождения:
+     * индекс строится при первом поиске и дальше следует за добавлениями, обновлениями и удалениями
+     */
+    @Test
+    public void testSearchFollowsChanges() {
+        // Подготовка данных для теста
+        String first = repository.add(patient(1, 120));
+        String second = repository.add(patient(2, 120));
+        repository.add(patient(30, 120));
+        repository.findBySurnamePrefix("фамилия", 10);
+
+        // Выполнение тестируемого метода
+        String third = repository.add(patient(3, 120));
+        repository.remove(second);
+        PatientInfo renamed = patient(1, 120);
+        repository.update(new PatientInfo(first, renamed.getName(), "Другая", renamed.getBirthday(),
+            renamed.getHealthInfo()));
+        PatientPage bySurname = repository.findBySurnamePrefix("ФАМИЛИЯ", 1);
+        PatientPage byBirthday = repository.findByBirthdayBetween(LocalDate.of(1950, 1, 1),
+            LocalDate.of(1950, 1, 10), 10);
+
+        // Проверка результата
+        List<String> surnames = new ArrayList<>();
+        for (PatientPage page = bySurname; page != null; page = page.hasNext() ? page.next() : null) {
+            page.getPatients().forEach(patientInfo -> surnames.add(patientInfo.getSurname()));
+        }
+        assertEquals(2, surnames.size());
+        assertTrue(surnames.containsAll(List.of("Фамилия3", "Фамилия30")));
+        List<String> born = new ArrayList<>();
+        byBirthday.getPatients().forEach(patientInfo -> born.add(patientInfo.getId()));
+        assertEquals(2, born.size());
+        assertTrue(born.containsAll(List.of(first, third)));
+    }
+
+    private static PatientInfo patient(int number, int high) {
+        return new PatientInfo("Пациент" + number, "Фамилия" + number, LocalDate.of(1950, 1, 1).plusDays(number),
+            new HealthInfo(new BigDecimal("36.6"), new BloodPressure(high, 70)));
+    }
+}
@@ -0,0 +1,125 @@
+package ru.netology.patient.repository;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Класс для тестирования PatientLog
+ * Проверяет формат записей журнала и восстановление после сбоя
+ */
+public class PatientLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Тест проверяет, что оборванная последняя запись обрезается, а номера записей продолжаются
+     */
+    @Test
+    public void testRecoverTruncatesTornTail() throws IOException {
+        // Подготовка данных для теста
+        File file = folder.newFile("patients.txt");
+        long intact;
+        try (PatientLog log = new PatientLog(file, PatientLog.Durability.perBatch())) {
+            log.append(PatientLogFormat.PUT, bytes("{\"id\":\"1\"}"));
+            log.append(PatientLogFormat.PUT, bytes("{\"id\":\"2\"}"));
+            intact = log.position();
+        }
+        byte[] torn = PatientLogFormat.encode(3, PatientLogFormat.PUT, bytes("{\"id\":\"3\"}"));
+        Files.write(file.toPath(), new String(torn, StandardCharsets.UTF_8).substring(0, 12).getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.APPEND);
+        List<String> payloads = new ArrayList<>();
+
+        // Выполнение тестируемого метода
+        try (PatientLog log = new PatientLog(file, PatientLog.Durability.perBatch())) {
+            long size = log.recover(0, (sequence, operation, buffer, offset, length, recordOffset) ->
+                payloads.add(sequence + " " + new String(buffer, offset, length, StandardCharsets.UTF_8)));
+
+            // Проверка результата
+            assertEquals(intact, size);
+            assertEquals(intact, file.length());
+            assertEquals(12, log.truncatedBytes());
+            assertEquals(3, log.nextSequence());
+        }
+        try (PatientLog log = new PatientLog(file, PatientLog.Durability.perBatch())) {
+            log.recover(0, (sequence, operation, buffer, offset, length, recordOffset) -> {
+            });
+            assertEquals(0, log.truncatedBytes());
+        }
+        assertEquals(List.of("1 {\"id\":\"1\"}", "2 {\"id\":\"2\"}"), payloads);
+    }
+
+    /**
+     * Тест проверяет, что порча записи в середине журнала не маскируется обрезкой хвоста
+     */
+    @Test(expected = IOException.class)
+    public void testRecoverRejectsCorruptionBeforeIntactRecords() throws IOException {
+        // Подготовка данных для теста
+        File file = folder.newFile("patients.txt");
+        try (PatientLog log = new PatientLog(file, PatientLog.Durability.perBatch())) {
+            log.append(PatientLogFormat.PUT, bytes("{\"id\":\"1\"}"));
+            log.append(PatientLogFormat.PUT, bytes("{\"id\":\"2\"}"));
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            // Меняем символ в JSON первой записи, контрольная сумма перестает сходиться
+            raw.seek(raw.length() / 2 - 3);
+            raw.write('x');
+        }
+
+        // Выполнение тестируемого метода
+        try (PatientLog log = new PatientLog(file, PatientLog.Durability.perBatch())) {
+            log.recover(0, (sequence, operation, buffer, offset, length, recordOffset) -> {
+            });
+        }
+    }
+
+    /**
+     * Тест проверяет, что строки старого формата читаются, а новые записи получают номера после них
+     */
+    @Test
+    public void testLegacyLinesAndContinuationFromOffset() throws IOException {
+        // Подготовка данных для теста
+        File file = folder.newFile("patients.txt");
+        Files.write(file.toPath(), bytes("{\"id\":\"legacy\"}\n"));
+        long appended;
+        try (PatientLog log = new PatientLog(file, PatientLog.Durability.perInterval(10))) {
+            log.recover(0, (sequence, operation, buffer, offset, length, recordOffset) -> {
+            });
+            log.append(PatientLogFormat.PUT, bytes("{\"id\":\"1\"}"));
+            appended = log.position();
+        }
+        List<Long> sequences = new ArrayList<>();
+
+        // Выполнение тестируемого метода
+        try (PatientLog log = new PatientLog(file, PatientLog.Durability.perBatch())) {
+            log.recover(0, (sequence, operation, buffer, offset, length, recordOffset) -> sequences.add(sequence));
+        }
+        long next;
+        try (PatientLog log = new PatientLog(file, PatientLog.Durability.perBatch())) {
+            // Продолжение с конца файла (как после загрузки снимка) восстанавливает номер по последней записи
+            log.recover(appended, (sequence, operation, buffer, offset, length, recordOffset) -> {
+            });
+            next = log.nextSequence();
+        }
+
+        // Проверка результата
+        assertEquals(List.of(PatientLogFormat.LEGACY_SEQUENCE, 1L), sequences);
+        assertEquals(2, next);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,157 @@
+package ru.netology.patient.repository;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static ru.netology.patient.PatientFixtures.createMapper;
+import static ru.netology.patient.PatientFixtures.openRepository;
+
+/**
+ * Класс для тестирования PatientRecordIo
+ * Проверяет чтение записей длиннее порции канала и отсутствие выделений памяти в установившемся режиме
+ * (по счетчику выделенных потоком байт com.sun.management.ThreadMXBean)
+ */
+public class PatientRecordIoTest {
+
+    private static final int WARM_UP = 2_000;
+    private static final int OPERATIONS = 20_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Тест проверяет, что чтение записи по смещению и сравнение id после прогрева не выделяют память,
+     * а запись длиннее порции канала читается целиком
+     */
+    @Test
+    public void testReadRecordDoesNotAllocate() throws IOException {
+        // Подготовка данных для теста
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        File file = folder.newFile("patients.txt");
+        String longName = "x".repeat(3 * PatientRecordIo.CHUNK_SIZE);
+        long[] offsets = new long[3];
+        try (PatientLog log = new PatientLog(file, PatientLog.Durability.perBatch())) {
+            offsets[0] = log.append(PatientLogFormat.PUT, bytes("{\"id\":\"p-1\",\"name\":\"Иван\"}"));
+            offsets[1] = log.append(PatientLogFormat.PUT, bytes("{\"id\":\"p-2\",\"name\":\"" + longName + "\"}"));
+            offsets[2] = log.append(PatientLogFormat.PUT, bytes("{\"id\":\"пациент-3\",\"name\":\"Анна\"}"));
+            PatientRecordIo io = new PatientRecordIo(log.channel());
+            PatientRecordReader reader = new PatientRecordReader(createMapper());
+            String[] ids = {"p-1", "p-2", "пациент-3"};
+            int matched = readAll(io, reader, offsets, ids, WARM_UP);
+
+            // Выполнение тестируемого метода
+            long before = threads.getCurrentThreadAllocatedBytes();
+            matched += readAll(io, reader, offsets, ids, OPERATIONS);
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+            // Проверка результата
+            assertEquals(WARM_UP + OPERATIONS, matched);
+            assertTrue("Allocated " + allocated + " bytes for " + OPERATIONS + " reads", allocated < OPERATIONS);
+            PatientLogFormat.Frame frame = io.readRecord(offsets[1]);
+            assertEquals("{\"id\":\"p-2\",\"name\":\"" + longName + "\"}",
+                new String(io.line(), frame.getPayloadOffset(), frame.getPayloadLength(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Тест проверяет, что добавление записи в журнал после прогрева не выделяет память
+     */
+    @Test
+    public void testAppendDoesNotAllocate() throws IOException {
+        // Подготовка данных для теста
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        byte[] payload = bytes("{\"id\":\"" + UUID.randomUUID() + "\",\"name\":\"Иван\",\"surname\":\"Петров\"}");
+        try (PatientLog log = new PatientLog(folder.newFile("patients.txt"), PatientLog.Durability.perInterval(60_000))) {
+            for (int i = 0; i < WARM_UP; i++) {
+                log.append(PatientLogFormat.PUT, payload, 0, payload.length);
+            }
+
+            // Выполнение тестируемого метода
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < OPERATIONS; i++) {
+                log.append(PatientLogFormat.PUT, payload, 0, payload.length);
+            }
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+            // Проверка результата
+            assertTrue("Allocated " + allocated + " bytes for " + OPERATIONS + " appends", allocated < OPERATIONS);
+            assertEquals(WARM_UP + OPERATIONS + 1, log.nextSequence());
+        }
+    }
+
+    /**
+     * Тест проверяет, что поиск отсутствующего пациента по UUID не выделяет память,
+     * а найденный пациент читается через буферы потока
+     */
+    @Test
+    public void testGetByIdOfMissingPatientDoesNotAllocate() throws IOException {
+        // Подготовка данных для теста
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        String missing = UUID.randomUUID().toString();
+        try (PatientInfoFileRepository repository =
+                 openRepository(folder.newFile("patients.txt"))) {
+            String id = repository.add(new PatientInfo("Иван", "Петров", LocalDate.of(1980, 11, 26),
+                new HealthInfo(new BigDecimal("36.65"), new BloodPressure(120, 80))));
+            for (int i = 0; i < WARM_UP; i++) {
+                repository.getById(missing);
+            }
+
+            // Выполнение тестируемого метода
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < OPERATIONS; i++) {
+                repository.getById(missing);
+            }
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+            PatientInfo found = repository.getById(id);
+
+            // Проверка результата
+            assertTrue("Allocated " + allocated + " bytes for " + OPERATIONS + " lookups", allocated < OPERATIONS);
+            assertNull(repository.getById(missing));
+            assertNotNull(found);
+            assertEquals("Петров", found.getSurname());
+        }
+    }
+
+    private static int readAll(PatientRecordIo io, PatientRecordReader reader, long[] offsets, String[] ids,
+                               int operations) throws IOException {
+        int matched = 0;
+        for (int i = 0; i < operations; i++) {
+            int record = i % offsets.length;
+            PatientLogFormat.Frame frame = io.readRecord(offsets[record]);
+            if (reader.matchLeadingId(io.line(), frame.getPayloadOffset(), frame.getPayloadLength(), ids[record])
+                == PatientRecordReader.ID_MATCH) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        return threads;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
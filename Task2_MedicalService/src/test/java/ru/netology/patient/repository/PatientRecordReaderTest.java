@@ -0,0 +1,120 @@
+package ru.netology.patient.repository;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static ru.netology.patient.PatientFixtures.createMapper;
+
+/**
+ * Класс для тестирования PatientRecordReader
+ * Проверяет потоковое чтение id и хеша естественного ключа без привязки к PatientInfo
+ */
+public class PatientRecordReaderTest {
+
+    private static final String RECORD = "{\"name\":\"Иван\",\"surname\":\"Петров\",\"birthday\":\"1980-11-26\","
+        + "\"healthInfo\":{\"normalTemperature\":36.65,\"bloodPressure\":{\"high\":120,\"low\":80}},\"id\":\"p-1\"}";
+
+    private final PatientRecordReader reader = new PatientRecordReader(createMapper());
+
+    /**
+     * Тест проверяет, что id читается, даже если поле стоит в конце записи
+     */
+    @Test
+    public void testReadIdSkipsOtherFields() throws IOException {
+        // Подготовка данных для теста
+        byte[] record = bytes("  " + RECORD);
+
+        // Выполнение тестируемого метода
+        String id = reader.readId(record, 2, record.length - 2);
+
+        // Проверка результата
+        assertEquals("p-1", id);
+    }
+
+    /**
+     * Тест проверяет, что PatientInfo создается только для записи с искомым id
+     */
+    @Test
+    public void testReadIfIdMatches() throws IOException {
+        // Подготовка данных для теста
+        byte[] record = bytes(RECORD);
+
+        // Выполнение тестируемого метода
+        PatientInfo other = reader.readIfIdMatches(record, 0, record.length, "p-2");
+        PatientInfo matched = reader.readIfIdMatches(record, 0, record.length, "p-1");
+
+        // Проверка результата
+        assertNull(other);
+        assertEquals(new PatientInfo("p-1", "Иван", "Петров", LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.65"), new BloodPressure(120, 80))), matched);
+    }
+
+    /**
+     * Тест проверяет сравнение id по байтам записи: ASCII, UTF-8 и откат к парсеру для экранированного id
+     */
+    @Test
+    public void testMatchLeadingId() {
+        // Подготовка данных для теста
+        byte[] ascii = bytes("{\"id\":\"p-1\",\"name\":\"Иван\"}");
+        byte[] utf8 = bytes("{\"id\":\"пациент-1\",\"name\":\"Иван\"}");
+        byte[] escaped = bytes("{\"id\":\"p\\u002d1\"}");
+
+        byte[] idLast = bytes(RECORD);
+
+        // Выполнение тестируемого метода
+        int asciiMatch = reader.matchLeadingId(ascii, 0, ascii.length, "p-1");
+        int asciiMismatch = reader.matchLeadingId(ascii, 0, ascii.length, "p-10");
+        int utf8Match = reader.matchLeadingId(utf8, 0, utf8.length, "пациент-1");
+        int utf8Mismatch = reader.matchLeadingId(utf8, 0, utf8.length, "пациент-2");
+        int escapedMatch = reader.matchLeadingId(escaped, 0, escaped.length, "p-1");
+        int idLastMatch = reader.matchLeadingId(idLast, 0, idLast.length, "p-1");
+
+        // Проверка результата
+        assertEquals(PatientRecordReader.ID_MATCH, asciiMatch);
+        assertEquals(PatientRecordReader.ID_MISMATCH, asciiMismatch);
+        assertEquals(PatientRecordReader.ID_MATCH, utf8Match);
+        assertEquals(PatientRecordReader.ID_MISMATCH, utf8Mismatch);
+        assertEquals(PatientRecordReader.ID_UNKNOWN, escapedMatch);
+        assertEquals(PatientRecordReader.ID_UNKNOWN, idLastMatch);
+    }
+
+    /**
+     * Тест проверяет, что хеш естественного ключа не зависит от id и порядка полей,
+     * но меняется при изменении показателей
+     */
+    @Test
+    public void testNaturalKeyHash() throws IOException {
+        // Подготовка данных для теста
+        byte[] record = bytes(RECORD);
+        byte[] reordered = bytes("{\"id\":\"p-9\",\"healthInfo\":{\"bloodPressure\":{\"low\":80,\"high\":120},"
+            + "\"normalTemperature\":36.65},\"birthday\":\"1980-11-26\",\"surname\":\"Петров\",\"name\":\"Иван\"}");
+        byte[] changed = bytes(RECORD.replace("\"low\":80", "\"low\":81"));
+
+        // Выполнение тестируемого метода
+        PatientRecordReader.RecordKeys keys = reader.readKeys(record, 0, record.length);
+        String id = keys.getId();
+        int hash = keys.getNaturalKeyHash();
+        int reorderedHash = reader.readKeys(reordered, 0, reordered.length).getNaturalKeyHash();
+        int changedHash = reader.readKeys(changed, 0, changed.length).getNaturalKeyHash();
+
+        // Проверка результата
+        assertEquals("p-1", id);
+        assertEquals(hash, reorderedHash);
+        assertNotEquals(hash, changedHash);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,113 @@
+package ru.netology.patient.repository;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.time.LocalDate;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static ru.netology.patient.PatientFixtures.createMapper;
+import static ru.netology.patient.PatientFixtures.openRepository;
+
+/**
+ * Класс для тестирования репликации журнала пациентов
+ * Проверяет доставку записей ведущего узла на реплику через loopback-сокет и ограничение отставания
+ */
+public class PatientReplicationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Тест проверяет, что реплика получает существующие и новые записи, включая обновления и удаления
+     */
+    @Test
+    public void testReplicaFollowsLeader() throws Exception {
+        // Подготовка данных для теста
+        PatientInfoFileRepository leaderRepository =
+            openRepository(new File(folder.getRoot(), "leader.txt"));
+        String id1 = leaderRepository.add(patient("Иван", "Петров"));
+        String id2 = leaderRepository.add(patient("Семен", "Михайлов"));
+        PatientReplicationLeader leader = new PatientReplicationLeader(leaderRepository, 0, 20);
+        PatientInfoReplicaRepository replica = new PatientInfoReplicaRepository(new File(folder.getRoot(), "replica.txt"),
+            createMapper(), new InetSocketAddress(InetAddress.getLoopbackAddress(), leader.getPort()), 1000);
+
+        // Выполнение тестируемого метода
+        awaitCaughtUp(leaderRepository, replica);
+        PatientInfo initial = replica.getById(id1);
+        leaderRepository.update(new PatientInfo(id1, "Иван", "Петров", LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.65"), new BloodPressure(140, 90))));
+        leaderRepository.remove(id2);
+        String id3 = leaderRepository.add(patient("Анна", "Смирнова"));
+        awaitCaughtUp(leaderRepository, replica);
+
+        // Проверка результата
+        assertEquals("Петров", initial.getSurname());
+        assertEquals(140, replica.getById(id1).getHealthInfo().getBloodPressure().getHigh());
+        assertNull(replica.getById(id2));
+        assertEquals("Смирнова", replica.getById(id3).getSurname());
+        assertEquals(1, replica.findBySurnamePrefix("смир", 10).getPatients().size());
+        try {
+            replica.add(patient("Петр", "Сидоров"));
+            fail("Replica must be read-only");
+        } catch (RuntimeException expected) {
+            assertEquals("Replica is read-only", expected.getMessage());
+        }
+        replica.close();
+        leader.close();
+        leaderRepository.close();
+    }
+
+    /**
+     * Тест проверяет, что реплика без связи с ведущим узлом отклоняет чтения
+     */
+    @Test
+    public void testReplicaWithoutLeaderIsStale() throws IOException {
+        // Подготовка данных для теста
+        int port;
+        try (ServerSocket unused = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = unused.getLocalPort();
+        }
+        PatientInfoReplicaRepository replica = new PatientInfoReplicaRepository(new File(folder.getRoot(), "replica.txt"),
+            createMapper(), new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1000);
+
+        // Выполнение тестируемого метода
+        try {
+            replica.getById("1");
+            fail("Stale replica must reject reads");
+        } catch (RuntimeException expected) {
+            // Проверка результата
+            assertEquals("Replica is stale", expected.getMessage());
+        } finally {
+            replica.close();
+        }
+    }
+
+    private static void awaitCaughtUp(PatientInfoFileRepository leaderRepository, PatientInfoReplicaRepository replica)
+        throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (replica.appliedPosition() < leaderRepository.log().position() || replica.stalenessMillis() < 0) {
+            assertTrue("Replica did not catch up", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static PatientInfo patient(String name, String surname) {
+        return new PatientInfo(name, surname, LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.65"), new BloodPressure(120, 80)));
+    }
+}
@@ -0,0 +1,100 @@
+package ru.netology.patient.repository;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Класс для тестирования PatientSearchIndex
+ * Проверяет поиск по префиксу фамилии, диапазону дат рождения и постраничную выдачу
+ */
+public class PatientSearchIndexTest {
+
+    private final PatientSearchIndex index = new PatientSearchIndex();
+
+    /**
+     * Тест проверяет поиск по префиксу фамилии без учета регистра
+     */
+    @Test
+    public void testFindBySurnamePrefixIgnoresCase() {
+        // Подготовка данных для теста
+        index.onPut(patient("1", "Петров", LocalDate.of(1980, 1, 1)));
+        index.onPut(patient("2", "петренко", LocalDate.of(1981, 1, 1)));
+        index.onPut(patient("3", "Михайлов", LocalDate.of(1982, 1, 1)));
+
+        // Выполнение тестируемого метода
+        List<PatientSearchIndex.Key> keys = index.findBySurnamePrefix("ПЕТР", null, 10);
+
+        // Проверка результата
+        assertEquals(List.of("2", "1"), ids(keys));
+    }
+
+    /**
+     * Тест проверяет, что обновление и удаление пациента сразу отражаются в индексах
+     */
+    @Test
+    public void testUpdateAndRemoveAreIncremental() {
+        // Подготовка данных для теста
+        index.onPut(patient("1", "Петров", LocalDate.of(1980, 1, 1)));
+        index.onPut(patient("2", "Сидоров", LocalDate.of(1990, 1, 1)));
+
+        // Выполнение тестируемого метода
+        index.onPut(patient("1", "Иванов", LocalDate.of(1995, 6, 1)));
+        index.onRemove("2");
+
+        // Проверка результата
+        assertTrue(index.findBySurnamePrefix("Петр", null, 10).isEmpty());
+        assertEquals(List.of("1"), ids(index.findBySurnamePrefix("Ив", null, 10)));
+        assertEquals(List.of("1"), ids(index.findByBirthdayBetween(LocalDate.of(1985, 1, 1), LocalDate.of(2000, 1, 1), null, 10)));
+        assertEquals(1, index.size());
+    }
+
+    /**
+     * Тест проверяет постраничный обход диапазона дат рождения по курсору
+     */
+    @Test
+    public void testFindByBirthdayBetweenPaged() {
+        // Подготовка данных для теста
+        for (int i = 0; i < 10; i++) {
+            index.onPut(patient("p" + i, "Фамилия" + i, LocalDate.of(1980, 1, 1).plusDays(i)));
+        }
+        LocalDate from = LocalDate.of(1980, 1, 3);
+        LocalDate to = LocalDate.of(1980, 1, 9);
+
+        // Выполнение тестируемого метода
+        List<String> visited = new ArrayList<>();
+        PatientSearchIndex.Key cursor = null;
+        List<PatientSearchIndex.Key> page;
+        do {
+            page = index.findByBirthdayBetween(from, to, cursor, 3);
+            visited.addAll(ids(page));
+            cursor = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (page.size() == 3);
+
+        // Проверка результата
+        assertEquals(List.of("p2", "p3", "p4", "p5", "p6", "p7", "p8"), visited);
+    }
+
+    private static List<String> ids(List<PatientSearchIndex.Key> keys) {
+        List<String> ids = new ArrayList<>();
+        for (PatientSearchIndex.Key key : keys) {
+            ids.add(key.getId());
+        }
+        return ids;
+    }
+
+    private static PatientInfo patient(String id, String surname, LocalDate birthday) {
+        return new PatientInfo(id, "Имя", surname, birthday,
+            new HealthInfo(new BigDecimal("36.6"), new BloodPressure(120, 80)));
+    }
+}
@@ -0,0 +1,167 @@
+package ru.netology.patient.service.alert;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Класс для тестирования AlertOutbox
+ * Проверяет повтор неподтвержденных уведомлений после перезапуска, чтение по номеру, смену сегментов и оборванную запись
+ */
+public class AlertOutboxTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Тест проверяет, что после перезапуска повторяются только неподтвержденные уведомления
+     */
+    @Test
+    public void testUnacknowledgedAlertsAreReplayed() throws IOException {
+        // Подготовка данных для теста
+        File directory = folder.newFolder("outbox");
+        AlertOutbox outbox = new AlertOutbox(directory);
+        long first = outbox.append(alert("patient-1", AlertSeverity.CRITICAL, "first"));
+        outbox.append(alert("patient-2", AlertSeverity.HIGH, "second"));
+        long third = outbox.append(alert(null, AlertSeverity.LOW, "third"));
+        outbox.acknowledge(first);
+        outbox.acknowledge(third);
+        outbox.close();
+
+        // Выполнение тестируемого метода
+        AlertOutbox reopened = new AlertOutbox(directory);
+        List<Long> sequences = new ArrayList<>();
+        List<Alert> alerts = new ArrayList<>();
+        reopened.replayUndelivered((sequence, alert) -> {
+            sequences.add(sequence);
+            alerts.add(alert);
+        });
+
+        // Проверка результата: контрольная точка остановилась перед неподтвержденным вторым,
+        // поэтому третье повторяется тоже (доставка не менее одного раза)
+        assertEquals(1, reopened.checkpoint());
+        assertEquals(Arrays.asList(2L, 3L), sequences);
+        assertEquals(alert("patient-2", AlertSeverity.HIGH, "second"), alerts.get(0));
+        assertEquals(alert(null, AlertSeverity.LOW, "third"), alerts.get(1));
+        assertEquals(4, reopened.append(alert("patient-3", AlertSeverity.MEDIUM, "fourth")));
+        reopened.close();
+    }
+
+    /**
+     * Тест проверяет смену сегментов и удаление полностью подтвержденных сегментов
+     */
+    @Test
+    public void testAcknowledgedSegmentsAreDeleted() throws IOException {
+        // Подготовка данных для теста
+        File directory = folder.newFolder("outbox");
+        AlertOutbox outbox = new AlertOutbox(directory, 256, 1000);
+        List<Long> sequences = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            sequences.add(outbox.append(alert("patient-" + i, AlertSeverity.HIGH, "Warning " + i)));
+        }
+        int segmentsBefore = outbox.segmentCount();
+
+        // Выполнение тестируемого метода
+        for (long sequence : sequences.subList(0, 15)) {
+            outbox.acknowledge(sequence);
+        }
+        outbox.flush();
+
+        // Проверка результата
+        assertTrue(segmentsBefore > 3);
+        assertEquals(15, outbox.checkpoint());
+        assertEquals(5, outbox.pending());
+        assertTrue(outbox.segmentCount() < segmentsBefore);
+        assertEquals(outbox.segmentCount(), directory.listFiles((dir, name) -> name.endsWith(".seg")).length);
+        outbox.close();
+        List<Long> replayed = new ArrayList<>();
+        AlertOutbox reopened = new AlertOutbox(directory, 256, 1000);
+        reopened.replayUndelivered((sequence, alert) -> replayed.add(sequence));
+        assertEquals(sequences.subList(15, 20), replayed);
+        reopened.close();
+    }
+
+    /**
+     * Тест проверяет, что оборванная последняя запись отбрасывается, а запись продолжается на ее месте
+     */
+    @Test
+    public void testTornRecordIsDiscarded() throws IOException {
+        // Подготовка данных для теста
+        File directory = folder.newFolder("outbox");
+        AlertOutbox outbox = new AlertOutbox(directory);
+        outbox.append(alert("patient-1", AlertSeverity.HIGH, "first"));
+        outbox.append(alert("patient-2", AlertSeverity.HIGH, "second"));
+        outbox.close();
+        File segment = directory.listFiles((dir, name) -> name.endsWith(".seg"))[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // Портим последний байт сообщения второй записи
+            long position = 0;
+            file.seek(position);
+            position += 8 + file.readInt();
+            file.seek(position);
+            position += 8 + file.readInt() - 1;
+            file.seek(position);
+            file.write('X');
+        }
+
+        // Выполнение тестируемого метода
+        AlertOutbox reopened = new AlertOutbox(directory);
+        List<Alert> replayed = new ArrayList<>();
+        reopened.replayUndelivered((sequence, alert) -> replayed.add(alert));
+        long next = reopened.append(alert("patient-3", AlertSeverity.HIGH, "third"));
+        reopened.close();
+        AlertOutbox again = new AlertOutbox(directory);
+        List<String> messages = new ArrayList<>();
+        again.replayUndelivered((sequence, alert) -> messages.add(alert.getMessage()));
+
+        // Проверка результата
+        assertEquals(1, replayed.size());
+        assertEquals(2, next);
+        assertEquals(Arrays.asList("first", "third"), messages);
+        again.close();
+    }
+
+    /**
+     * Тест проверяет чтение неподтвержденного уведомления по номеру в разных сегментах,
+     * в том числе в сегментах, восстановленных после перезапуска
+     */
+    @Test
+    public void testReadBySequence() throws IOException {
+        // Подготовка данных для теста
+        File directory = folder.newFolder("outbox");
+        AlertOutbox outbox = new AlertOutbox(directory, 256, 1_000);
+        List<Long> sequences = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            sequences.add(outbox.append(alert("patient-" + i, AlertSeverity.LOW, "alert-" + i)));
+        }
+        int segments = outbox.segmentCount();
+        outbox.close();
+
+        // Выполнение тестируемого метода
+        AlertOutbox reopened = new AlertOutbox(directory, 256, 1_000);
+        long appended = reopened.append(alert("patient-40", AlertSeverity.HIGH, "alert-40"));
+
+        // Проверка результата
+        assertTrue(segments > 3);
+        for (int i = 0; i < sequences.size(); i++) {
+            assertEquals(alert("patient-" + i, AlertSeverity.LOW, "alert-" + i), reopened.read(sequences.get(i)));
+        }
+        assertEquals(alert("patient-40", AlertSeverity.HIGH, "alert-40"), reopened.read(appended));
+        reopened.close();
+    }
+
+    private static Alert alert(String patientId, AlertSeverity severity, String message) {
+        return new Alert(patientId, severity, AlertType.OTHER, Instant.ofEpochSecond(1_700_000_000L, 123_456_789), message);
+    }
+}
@@ -0,0 +1,399 @@
+package ru.netology.patient.service.alert;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Класс для тестирования PriorityAlertScheduler
+ * Проверяет приоритет критических уведомлений, взвешенный обход, поведение при переполнении
+ * и повтор недоставленных уведомлений: после ошибки доставки и из журнала после перезапуска
+ */
+public class PriorityAlertSchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Тест проверяет, что критическое уведомление доставляется раньше накопившихся уведомлений ниже по важности
+     */
+    @Test
+    public void testCriticalOvertakesQueuedAlerts() throws InterruptedException {
+        // Подготовка данных для теста
+        BlockingDelegate delegate = new BlockingDelegate();
+        PriorityAlertScheduler scheduler = new PriorityAlertScheduler(delegate);
+        scheduler.send(alert("first", AlertSeverity.LOW));
+        assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            scheduler.send(alert("low-" + i, AlertSeverity.LOW));
+        }
+
+        // Выполнение тестируемого метода
+        scheduler.send(alert("critical", AlertSeverity.CRITICAL));
+        delegate.release.countDown();
+        scheduler.close();
+
+        // Проверка результата
+        assertEquals("first", delegate.delivered.get(0));
+        assertEquals("critical", delegate.delivered.get(1));
+        assertEquals(12, delegate.delivered.size());
+        assertEquals(1, scheduler.delivered(AlertSeverity.CRITICAL));
+        assertEquals(11, scheduler.delivered(AlertSeverity.LOW));
+    }
+
+    /**
+     * Тест проверяет, что уровни ниже CRITICAL обслуживаются в пропорции весов HIGH:MEDIUM:LOW = 4:2:1
+     */
+    @Test
+    public void testWeightedRoundRobin() throws InterruptedException {
+        // Подготовка данных для теста
+        BlockingDelegate delegate = new BlockingDelegate();
+        PriorityAlertScheduler scheduler = new PriorityAlertScheduler(delegate);
+        scheduler.send(alert("high", AlertSeverity.HIGH));
+        assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 8; i++) {
+            scheduler.send(alert("high", AlertSeverity.HIGH));
+            scheduler.send(alert("medium", AlertSeverity.MEDIUM));
+            scheduler.send(alert("low", AlertSeverity.LOW));
+        }
+
+        // Выполнение тестируемого метода: ждем доставки диспетчером, а не досылки при закрытии
+        delegate.release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delegate.delivered.size() < 25) {
+            assertTrue("Alerts were not delivered", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        scheduler.close();
+
+        // Проверка результата: первые 7 доставок - один полный цикл весов
+        List<String> cycle = delegate.delivered.subList(0, 7);
+        assertEquals(4, Collections.frequency(cycle, "high"));
+        assertEquals(2, Collections.frequency(cycle, "medium"));
+        assertEquals(1, Collections.frequency(cycle, "low"));
+        assertEquals(25, delegate.delivered.size());
+    }
+
+    /**
+     * Тест проверяет, что без журнала при переполнении очереди уведомление MEDIUM отбрасывается и учитывается
+     */
+    @Test
+    public void testOverflowDropsNonCritical() throws InterruptedException {
+        // Подготовка данных для теста
+        BlockingDelegate delegate = new BlockingDelegate();
+        PriorityAlertScheduler scheduler = new PriorityAlertScheduler(delegate, 2, new int[]{0, 4, 2, 1});
+        scheduler.send(alert("first", AlertSeverity.MEDIUM));
+        assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+
+        // Выполнение тестируемого метода
+        for (int i = 0; i < 5; i++) {
+            scheduler.send(alert("medium-" + i, AlertSeverity.MEDIUM));
+        }
+        int queued = scheduler.queued(AlertSeverity.MEDIUM);
+        delegate.release.countDown();
+        scheduler.close();
+
+        // Проверка результата
+        assertEquals(2, queued);
+        assertEquals(3, scheduler.dropped(AlertSeverity.MEDIUM));
+        assertEquals(3, scheduler.delivered(AlertSeverity.MEDIUM));
+    }
+
+    /**
+     * Тест проверяет, что уведомление HIGH при переполнении очереди не отбрасывается, а ждет места
+     */
+    @Test
+    public void testOverflowBlocksHigh() throws InterruptedException {
+        // Подготовка данных для теста
+        BlockingDelegate delegate = new BlockingDelegate();
+        PriorityAlertScheduler scheduler = new PriorityAlertScheduler(delegate, 2, new int[]{0, 4, 2, 1});
+        scheduler.send(alert("first", AlertSeverity.HIGH));
+        assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+        scheduler.send(alert("high-0", AlertSeverity.HIGH));
+        scheduler.send(alert("high-1", AlertSeverity.HIGH));
+
+        // Выполнение тестируемого метода
+        Thread sender = new Thread(() -> scheduler.send(alert("high-2", AlertSeverity.HIGH)));
+        sender.start();
+        sender.join(200);
+        boolean blocked = sender.isAlive();
+        delegate.release.countDown();
+        sender.join(5000);
+        scheduler.close();
+
+        // Проверка результата
+        assertTrue(blocked);
+        assertEquals(0, scheduler.dropped(AlertSeverity.HIGH));
+        assertEquals(Arrays.asList("first", "high-0", "high-1", "high-2"), delegate.delivered);
+    }
+
+    /**
+     * Тест проверяет, что с журналом не поместившиеся в очередь уведомления вытесняются в журнал,
+     * а затем доставляются по порядку и подтверждаются
+     */
+    @Test
+    public void testOverflowSpillsToOutbox() throws InterruptedException, IOException {
+        // Подготовка данных для теста
+        BlockingDelegate delegate = new BlockingDelegate();
+        AlertOutbox outbox = new AlertOutbox(folder.newFolder("outbox"));
+        PriorityAlertScheduler scheduler = new PriorityAlertScheduler(delegate, 2, new int[]{0, 4, 2, 1}, outbox);
+        scheduler.send(alert("first", AlertSeverity.MEDIUM));
+        assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+
+        // Выполнение тестируемого метода
+        for (int i = 0; i < 5; i++) {
+            scheduler.send(alert("medium-" + i, AlertSeverity.MEDIUM));
+        }
+        int queued = scheduler.queued(AlertSeverity.MEDIUM);
+        int spilled = scheduler.spilled(AlertSeverity.MEDIUM);
+        delegate.release.countDown();
+        scheduler.close();
+
+        // Проверка результата
+        assertEquals(2, queued);
+        assertEquals(3, spilled);
+        assertEquals(0, scheduler.dropped(AlertSeverity.MEDIUM));
+        assertEquals(Arrays.asList("first", "medium-0", "medium-1", "medium-2", "medium-3", "medium-4"),
+            delegate.delivered);
+        assertEquals(0, outbox.pending());
+        outbox.close();
+    }
+
+    /**
+     * Тест проверяет, что уведомления, не доставленные до аварийной остановки, доставляются после перезапуска
+     */
+    @Test
+    public void testUndeliveredAlertsAreReplayedAfterCrash() throws InterruptedException, IOException {
+        // Подготовка данных для теста
+        File directory = folder.newFolder("outbox");
+        BlockingDelegate stuck = new BlockingDelegate();
+        AlertOutbox outbox = new AlertOutbox(directory);
+        PriorityAlertScheduler scheduler = new PriorityAlertScheduler(stuck, outbox);
+        scheduler.send(alert("first", AlertSeverity.HIGH));
+        assertTrue(stuck.started.await(5, TimeUnit.SECONDS));
+        scheduler.send(alert("second", AlertSeverity.LOW));
+        scheduler.send(alert("critical", AlertSeverity.CRITICAL));
+        // Аварийная остановка: планировщик не закрывается, журнал не сбрасывается
+
+        // Выполнение тестируемого метода
+        BlockingDelegate delegate = new BlockingDelegate();
+        delegate.release.countDown();
+        AlertOutbox reopened = new AlertOutbox(directory);
+        PriorityAlertScheduler restarted = new PriorityAlertScheduler(delegate, reopened);
+        restarted.close();
+        reopened.flush();
+
+        // Проверка результата
+        assertEquals(3, delegate.delivered.size());
+        assertTrue(delegate.delivered.containsAll(Arrays.asList("first", "second", "critical")));
+        assertEquals(0, reopened.pending());
+        assertEquals(3, reopened.checkpoint());
+        reopened.close();
+        stuck.release.countDown();
+        scheduler.close();
+        outbox.close();
+    }
+
+    /**
+     * Тест проверяет, что журнал с числом неподтвержденных уведомлений больше емкости очередей
+     * повторяется после перезапуска целиком
+     */
+    @Test
+    public void testReplayBacklogLargerThanCapacity() throws IOException {
+        // Подготовка данных для теста
+        File directory = folder.newFolder("outbox");
+        AlertOutbox outbox = new AlertOutbox(directory);
+        for (int i = 0; i < 10; i++) {
+            outbox.append(alert("backlog-" + i, AlertSeverity.LOW));
+        }
+        outbox.close();
+        BlockingDelegate delegate = new BlockingDelegate();
+        delegate.release.countDown();
+
+        // Выполнение тестируемого метода
+        AlertOutbox reopened = new AlertOutbox(directory);
+        PriorityAlertScheduler scheduler = new PriorityAlertScheduler(delegate, 2, new int[]{0, 4, 2, 1}, reopened);
+        scheduler.close();
+        reopened.flush();
+
+        // Проверка результата
+        assertEquals(10, delegate.delivered.size());
+        assertEquals("backlog-0", delegate.delivered.get(0));
+        assertEquals("backlog-9", delegate.delivered.get(9));
+        assertEquals(0, scheduler.dropped(AlertSeverity.LOW));
+        assertEquals(0, reopened.pending());
+        assertEquals(10, reopened.checkpoint());
+        reopened.close();
+    }
+
+    /**
+     * Тест проверяет, что неудачная доставка повторяется во время работы, а контрольная точка журнала продвигается
+     */
+    @Test
+    public void testFailedDeliveryIsRetried() throws InterruptedException, IOException {
+        // Подготовка данных для теста
+        FailingDelegate delegate = new FailingDelegate(2);
+        AlertOutbox outbox = new AlertOutbox(folder.newFolder("outbox"));
+        PriorityAlertScheduler scheduler = new PriorityAlertScheduler(delegate, outbox);
+
+        // Выполнение тестируемого метода
+        scheduler.send(alert("retried", AlertSeverity.HIGH));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.delivered(AlertSeverity.HIGH) == 0) {
+            assertTrue("Alert was not retried", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        outbox.flush();
+
+        // Проверка результата
+        assertEquals(3, delegate.attempts.get());
+        assertEquals(0, scheduler.deadLettered(AlertSeverity.HIGH));
+        assertEquals(0, outbox.pending());
+        assertEquals(1, outbox.checkpoint());
+        scheduler.close();
+        outbox.close();
+    }
+
+    /**
+     * Тест проверяет, что повтор неудачной доставки CRITICAL не ждет, пока опустеют очереди:
+     * он выполняется в срок и при непрерывном потоке уведомлений LOW
+     */
+    @Test
+    public void testDueRetryIsNotStarvedByTraffic() throws InterruptedException {
+        // Подготовка данных для теста
+        AtomicInteger criticalAttempts = new AtomicInteger();
+        CountDownLatch criticalDelivered = new CountDownLatch(1);
+        PriorityAlertScheduler scheduler = new PriorityAlertScheduler(message -> {
+            if ("critical".equals(message)) {
+                if (criticalAttempts.incrementAndGet() == 1) {
+                    throw new RuntimeException("Delivery failed");
+                }
+                criticalDelivered.countDown();
+                return;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }, 64, new int[]{0, 4, 2, 1});
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> {
+            while (running.get()) {
+                scheduler.send(alert("low", AlertSeverity.LOW));
+                Thread.yield();
+            }
+        });
+        producer.start();
+        while (scheduler.queued(AlertSeverity.LOW) < 32) {
+            Thread.sleep(1);
+        }
+
+        // Выполнение тестируемого метода
+        scheduler.send(alert("critical", AlertSeverity.CRITICAL));
+        boolean delivered = criticalDelivered.await(2, TimeUnit.SECONDS);
+        int queuedLow = scheduler.queued(AlertSeverity.LOW);
+        running.set(false);
+        producer.join(5000);
+        scheduler.close();
+
+        // Проверка результата: повтор доставлен, пока очередь LOW еще была заполнена
+        assertTrue(delivered);
+        assertEquals(2, criticalAttempts.get());
+        assertTrue(queuedLow > 0);
+    }
+
+    /**
+     * Тест проверяет, что уведомление, не доставленное за MAX_ATTEMPTS попыток, переносится в dead letters
+     * и больше не удерживает контрольную точку журнала
+     */
+    @Test
+    public void testUndeliverableAlertIsDeadLettered() throws InterruptedException, IOException {
+        // Подготовка данных для теста
+        FailingDelegate delegate = new FailingDelegate(Integer.MAX_VALUE);
+        AlertOutbox outbox = new AlertOutbox(folder.newFolder("outbox"));
+        PriorityAlertScheduler scheduler = new PriorityAlertScheduler(delegate, outbox);
+
+        // Выполнение тестируемого метода
+        scheduler.send(alert("undeliverable", AlertSeverity.HIGH));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.deadLettered(AlertSeverity.HIGH) == 0) {
+            assertTrue("Alert was not dead-lettered", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        scheduler.send(alert("next", AlertSeverity.LOW));
+        scheduler.close();
+        outbox.flush();
+
+        // Проверка результата: второе уведомление получает одну попытку и последнюю попытку при закрытии
+        assertEquals(PriorityAlertScheduler.MAX_ATTEMPTS + 2, delegate.attempts.get());
+        assertEquals(1, scheduler.deadLettered(AlertSeverity.LOW));
+        assertEquals(0, outbox.pending());
+        assertEquals(2, outbox.checkpoint());
+        List<String> deadLetters = Files.readAllLines(outbox.deadLetterFile().toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, deadLetters.size());
+        assertTrue(deadLetters.get(0).startsWith("1\t"));
+        assertTrue(deadLetters.get(0).contains("undeliverable"));
+        outbox.close();
+    }
+
+    private static Alert alert(String message, AlertSeverity severity) {
+        return new Alert("patient-1", severity, AlertType.OTHER, Instant.now(), message);
+    }
+
+    /**
+     * Получатель, отказывающий в первых failures доставках
+     */
+    private static final class FailingDelegate implements SendAlertService {
+        private final int failures;
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        private FailingDelegate(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public void send(String message) {
+            if (attempts.incrementAndGet() <= failures) {
+                throw new RuntimeException("Delivery failed");
+            }
+        }
+    }
+
+    /**
+     * Получатель, задерживающий доставки до release, чтобы в очередях накопились уведомления
+     */
+    private static final class BlockingDelegate implements SendAlertService {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void send(String message) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.add(message);
+        }
+    }
+}
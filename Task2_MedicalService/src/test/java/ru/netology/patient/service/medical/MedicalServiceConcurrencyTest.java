@@ -0,0 +1,113 @@
+package ru.netology.patient.service.medical;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.netology.patient.ConcurrencyHarness;
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+import ru.netology.patient.repository.ObservablePatientInfoRepository;
+import ru.netology.patient.repository.PatientInfoFileRepository;
+import ru.netology.patient.repository.PatientLog;
+import ru.netology.patient.service.alert.AlertOutbox;
+import ru.netology.patient.service.alert.AlertSeverity;
+import ru.netology.patient.service.alert.PriorityAlertScheduler;
+import ru.netology.patient.service.alert.SendAlertService;
+
+import static org.junit.Assert.assertEquals;
+import static ru.netology.patient.PatientFixtures.openRepository;
+
+/**
+ * Класс для нагрузочного тестирования пути уведомлений из многих потоков
+ * Проверяет, что каждое отклонение, найденное MedicalServiceImpl, доставляется ровно один раз
+ * через PriorityAlertScheduler с журналом AlertOutbox
+ */
+public class MedicalServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int PATIENTS = 64;
+    private static final int CHECKS_PER_THREAD = 2_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Тест проверяет, что при одновременных проверках давления и температуры из многих потоков
+     * число доставленных предупреждений по каждому пациенту равно числу найденных отклонений,
+     * ничего не отброшено, а журнал уведомлений не содержит неподтвержденных записей
+     */
+    @Test
+    public void testNoAlertsLostUnderConcurrentChecks() throws Exception {
+        // Подготовка данных для теста
+        Map<String, AtomicInteger> delivered = new ConcurrentHashMap<>();
+        List<String> foreign = new CopyOnWriteArrayList<>();
+        SendAlertService delegate = message -> {
+            String patientId = message.substring("Warning, patient with id: ".length(), message.indexOf(", need help"));
+            AtomicInteger counter = delivered.get(patientId);
+            if (counter == null) {
+                foreign.add(message);
+            } else {
+                counter.incrementAndGet();
+            }
+        };
+        File repoFile = folder.newFile("patients.txt");
+        Map<String, AtomicInteger> expected = new ConcurrentHashMap<>();
+        String[] ids = new String[PATIENTS];
+        try (PatientInfoFileRepository fileRepository = openRepository(repoFile,
+                 PatientLog.Durability.perInterval(60_000));
+             AlertOutbox outbox = new AlertOutbox(folder.newFolder("outbox"))) {
+            ObservablePatientInfoRepository repository = new ObservablePatientInfoRepository(fileRepository);
+            VitalsBaseline baseline = new VitalsBaseline();
+            repository.addListener(baseline);
+            for (int i = 0; i < PATIENTS; i++) {
+                ids[i] = repository.add(new PatientInfo("Иван-" + i, "Петров", LocalDate.of(1980, 11, 26),
+                    new HealthInfo(new BigDecimal("36.6"), new BloodPressure(120, 80))));
+                delivered.put(ids[i], new AtomicInteger());
+                expected.put(ids[i], new AtomicInteger());
+            }
+            int total = THREADS * CHECKS_PER_THREAD;
+            PriorityAlertScheduler scheduler = new PriorityAlertScheduler(delegate, total, new int[]{0, 4, 2, 1},
+                outbox);
+            MedicalService medicalService = new MedicalServiceImpl(repository, scheduler, baseline);
+
+            // Выполнение тестируемого метода
+            ConcurrencyHarness.run(THREADS, thread -> {
+                Random random = new Random(thread);
+                for (int i = 0; i < CHECKS_PER_THREAD; i++) {
+                    String id = ids[random.nextInt(PATIENTS)];
+                    boolean abnormal = random.nextInt(4) == 0;
+                    if (random.nextBoolean()) {
+                        medicalService.checkBloodPressure(id, abnormal ? new BloodPressure(150, 100)
+                            : new BloodPressure(120, 80));
+                    } else {
+                        medicalService.checkTemperature(id, new BigDecimal(abnormal ? "34.0" : "36.6"));
+                    }
+                    if (abnormal) {
+                        expected.get(id).incrementAndGet();
+                    }
+                }
+            });
+            scheduler.close();
+
+            // Проверка результата
+            for (String id : ids) {
+                assertEquals(expected.get(id).get(), delivered.get(id).get());
+            }
+            assertEquals(0, foreign.size());
+            assertEquals(0, scheduler.dropped(AlertSeverity.HIGH));
+            assertEquals(0, outbox.pending());
+        }
+    }
+}
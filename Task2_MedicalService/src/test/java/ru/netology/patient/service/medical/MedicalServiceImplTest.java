@@ -14,13 +14,21 @@ import ru.netology.patient.entity.BloodPressure;
 import ru.netology.patient.entity.HealthInfo;
 import ru.netology.patient.entity.PatientInfo;
 import ru.netology.patient.repository.PatientInfoRepository;
+import ru.netology.patient.service.alert.Alert;
+import ru.netology.patient.service.alert.AlertSeverity;
+import ru.netology.patient.service.alert.AlertType;
 import ru.netology.patient.service.alert.SendAlertService;
+import ru.netology.patient.service.medical.escalation.AlertEscalator;
+import ru.netology.patient.service.medical.trend.VitalsTrendMonitor;
 
 import static org.junit.Assert.assertEquals;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.never;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -74,8 +82,8 @@ public class MedicalServiceImplTest {
         // Когда patientInfoRepository.getById вызывается с patientId, возвращаем patientInfo
         when(patientInfoRepository.getById(patientId)).thenReturn(patientInfo);
 
-        // Создаем ArgumentCaptor для захвата аргументов, переданных в метод send
-        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        // Создаем ArgumentCaptor для захвата уведомления, переданного в метод send
+        ArgumentCaptor<Alert> alertCaptor = ArgumentCaptor.forClass(Alert.class);
 
         // Выполнение тестируемого метода
         // Передаем отклоняющееся от нормы давление
@@ -83,10 +91,13 @@ public class MedicalServiceImplTest {
 
         // Проверка результата
         // Проверяем, что метод send был вызван один раз
-        verify(alertService, times(1)).send(messageCaptor.capture());
-        // Проверяем содержимое перехваченного сообщения
-        String capturedMessage = messageCaptor.getValue();
-        assertEquals("Warning, patient with id: patient-123, need help", capturedMessage);
+        verify(alertService, times(1)).send(alertCaptor.capture());
+        // Проверяем содержимое перехваченного уведомления
+        Alert capturedAlert = alertCaptor.getValue();
+        assertEquals("Warning, patient with id: patient-123, need help", capturedAlert.getMessage());
+        assertEquals(patientId, capturedAlert.getPatientId());
+        assertEquals(AlertSeverity.HIGH, capturedAlert.getSeverity());
+        assertEquals(AlertType.BLOOD_PRESSURE, capturedAlert.getType());
     }
 
     /**
@@ -121,7 +132,7 @@ public class MedicalServiceImplTest {
 
         // Проверка результата
         // Проверяем, что метод send не был вызван (показатели в норме)
-        verify(alertService, never()).send(anyString());
+        verifyNoInteractions(alertService);
     }
 
     /**
@@ -152,8 +163,8 @@ public class MedicalServiceImplTest {
         // Когда patientInfoRepository.getById вызывается с patientId, возвращаем patientInfo
         when(patientInfoRepository.getById(patientId)).thenReturn(patientInfo);
 
-        // Создаем ArgumentCaptor для захвата аргументов, переданных в метод send
-        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        // Создаем ArgumentCaptor для захвата уведомления, переданного в метод send
+        ArgumentCaptor<Alert> alertCaptor = ArgumentCaptor.forClass(Alert.class);
 
         // Выполнение тестируемого метода
         // Передаем отклоняющуюся от нормы температуру
@@ -161,10 +172,13 @@ public class MedicalServiceImplTest {
 
         // Проверка результата
         // Проверяем, что метод send был вызван один раз
-        verify(alertService, times(1)).send(messageCaptor.capture());
-        // Проверяем содержимое перехваченного сообщения
-        String capturedMessage = messageCaptor.getValue();
-        assertEquals("Warning, patient with id: patient-123, need help", capturedMessage);
+        verify(alertService, times(1)).send(alertCaptor.capture());
+        // Проверяем содержимое перехваченного уведомления
+        Alert capturedAlert = alertCaptor.getValue();
+        assertEquals("Warning, patient with id: patient-123, need help", capturedAlert.getMessage());
+        assertEquals(patientId, capturedAlert.getPatientId());
+        assertEquals(AlertSeverity.HIGH, capturedAlert.getSeverity());
+        assertEquals(AlertType.TEMPERATURE, capturedAlert.getType());
     }
 
     /**
@@ -201,7 +215,7 @@ public class MedicalServiceImplTest {
 
         // Проверка результата
         // Проверяем, что метод send не был вызван (показатели в норме)
-        verify(alertService, never()).send(anyString());
+        verifyNoInteractions(alertService);
     }
 
     /**
@@ -240,6 +254,105 @@ public class MedicalServiceImplTest {
         // Проверяем, что метод send не был вызван
         // (логика проверяет только низкую температуру: норма - 1.5 > измеренная)
         // Для температуры 38.5: 36.6 - 1.5 = 35.1, 35.1 > 38.5 = false, поэтому send не вызывается
-        verify(alertService, never()).send(anyString());
+        verifyNoInteractions(alertService);
+    }
+
+    /**
+     * Тест проверяет, что при наличии снимка норм повторные проверки не обращаются к репозиторию
+     * Ожидается одно чтение пациента из репозитория и одно уведомление при отклонении давления
+     */
+    @Test
+    public void testChecksUseVitalsBaselineAfterFirstLookup() {
+        // Подготовка данных для теста
+        String patientId = "patient-123";
+        HealthInfo healthInfo = new HealthInfo(new BigDecimal("36.6"), new BloodPressure(120, 80));
+        PatientInfo patientInfo = new PatientInfo(
+            patientId,
+            "Иван",
+            "Иванов",
+            LocalDate.of(1990, 1, 1),
+            healthInfo
+        );
+        when(patientInfoRepository.getById(patientId)).thenReturn(patientInfo);
+        MedicalServiceImpl service = new MedicalServiceImpl(patientInfoRepository, alertService, new VitalsBaseline());
+
+        // Выполнение тестируемого метода
+        service.checkBloodPressure(patientId, new BloodPressure(120, 80));
+        service.checkBloodPressure(patientId, new BloodPressure(150, 100));
+        service.checkTemperature(patientId, new BigDecimal("36.0"));
+
+        // Проверка результата
+        verify(patientInfoRepository, times(1)).getById(patientId);
+        ArgumentCaptor<Alert> alertCaptor = ArgumentCaptor.forClass(Alert.class);
+        verify(alertService, times(1)).send(alertCaptor.capture());
+        assertEquals("Warning, patient with id: patient-123, need help", alertCaptor.getValue().getMessage());
+    }
+
+    /**
+     * Тест проверяет связь с эскалацией: предупреждение ставит таймер эскалации,
+     * а нормальное показание того же типа его снимает
+     */
+    @Test
+    public void testChecksNotifyEscalator() {
+        // Подготовка данных для теста
+        String patientId = "patient-123";
+        PatientInfo patientInfo = new PatientInfo(
+            patientId,
+            "Иван",
+            "Иванов",
+            LocalDate.of(1990, 1, 1),
+            new HealthInfo(new BigDecimal("36.6"), new BloodPressure(120, 80))
+        );
+        when(patientInfoRepository.getById(patientId)).thenReturn(patientInfo);
+        AlertEscalator escalator = mock(AlertEscalator.class);
+        MedicalServiceImpl service = new MedicalServiceImpl(patientInfoRepository, alertService, null, null, escalator);
+
+        // Выполнение тестируемого метода
+        service.checkBloodPressure(patientId, new BloodPressure(150, 100));
+        service.checkBloodPressure(patientId, new BloodPressure(120, 80));
+        service.checkTemperature(patientId, new BigDecimal("36.6"));
+
+        // Проверка результата
+        ArgumentCaptor<Alert> alertCaptor = ArgumentCaptor.forClass(Alert.class);
+        verify(alertService, times(1)).send(alertCaptor.capture());
+        verify(escalator, times(1)).onWarning(alertCaptor.getValue());
+        verify(escalator, times(1)).onNormal(patientId, AlertType.BLOOD_PRESSURE);
+        verify(escalator, times(1)).onNormal(patientId, AlertType.TEMPERATURE);
+    }
+
+    /**
+     * Тест проверяет передачу показаний в монитор трендов: каждое проверенное показание
+     * попадает в окна пациента, а показание неизвестного пациента - нет
+     */
+    @Test
+    public void testChecksFeedTrendMonitor() {
+        // Подготовка данных для теста
+        String patientId = "patient-123";
+        PatientInfo patientInfo = new PatientInfo(
+            patientId,
+            "Иван",
+            "Иванов",
+            LocalDate.of(1990, 1, 1),
+            new HealthInfo(new BigDecimal("36.6"), new BloodPressure(120, 80))
+        );
+        when(patientInfoRepository.getById(patientId)).thenReturn(patientInfo);
+        VitalsTrendMonitor trendMonitor = mock(VitalsTrendMonitor.class);
+        MedicalServiceImpl service = new MedicalServiceImpl(patientInfoRepository, alertService,
+            null, null, null, trendMonitor);
+
+        // Выполнение тестируемого метода
+        service.checkBloodPressure(patientId, new BloodPressure(150, 100));
+        service.checkTemperature(patientId, new BigDecimal("37.2"));
+        try {
+            service.checkTemperature("unknown", new BigDecimal("37.2"));
+            fail("Unknown patient must be rejected");
+        } catch (RuntimeException expected) {
+            // Неизвестный пациент отклоняется до передачи показания в тренд
+        }
+
+        // Проверка результата
+        verify(trendMonitor, times(1)).onBloodPressure(eq(patientId), anyLong(), eq(150), eq(100));
+        verify(trendMonitor, times(1)).onTemperature(eq(patientId), anyLong(), eq(new BigDecimal("37.2")));
+        verify(trendMonitor, times(0)).onTemperature(eq("unknown"), anyLong(), eq(new BigDecimal("37.2")));
     }
 }
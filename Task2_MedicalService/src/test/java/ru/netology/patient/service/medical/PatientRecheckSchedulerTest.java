@@ -0,0 +1,97 @@
+package ru.netology.patient.service.medical;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.service.medical.escalation.TimerWheel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Класс для тестирования PatientRecheckScheduler
+ * Проверяет периодические повторные проверки через MedicalService, их замену и отмену
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PatientRecheckSchedulerTest {
+
+    @Mock
+    private MedicalService medicalService;
+
+    @Mock
+    private VitalsFeed vitalsFeed;
+
+    private final long[] now = {0};
+    private final TimerWheel wheel = new TimerWheel(1_000, () -> now[0]);
+
+    /**
+     * Тест проверяет, что повторная проверка выполняется каждый период по последним показателям,
+     * а после отмены прекращается
+     */
+    @Test
+    public void testRechecksRunEveryPeriodUntilCancelled() {
+        // Подготовка данных для теста
+        BloodPressure bloodPressure = new BloodPressure(150, 100);
+        when(vitalsFeed.latestBloodPressure("patient-1")).thenReturn(bloodPressure);
+        when(vitalsFeed.latestTemperature("patient-1")).thenReturn(new BigDecimal("36.6"));
+        PatientRecheckScheduler scheduler = new PatientRecheckScheduler(medicalService, vitalsFeed, wheel);
+        scheduler.schedule("patient-1", Duration.ofMinutes(5));
+
+        // Выполнение тестируемого метода
+        for (int minute = 1; minute <= 15; minute++) {
+            now[0] = Duration.ofMinutes(minute).toMillis();
+            wheel.advance();
+        }
+        boolean cancelled = scheduler.cancel("patient-1");
+        now[0] = Duration.ofMinutes(60).toMillis();
+        wheel.advance();
+
+        // Проверка результата
+        assertTrue(cancelled);
+        assertFalse(scheduler.cancel("patient-1"));
+        verify(medicalService, times(3)).checkBloodPressure("patient-1", bloodPressure);
+        verify(medicalService, times(3)).checkTemperature("patient-1", new BigDecimal("36.6"));
+        assertEquals(0, wheel.pending());
+    }
+
+    /**
+     * Тест проверяет, что повторное назначение заменяет период, а ошибка проверки прекращает повторные проверки
+     */
+    @Test
+    public void testRescheduleAndFailure() {
+        // Подготовка данных для теста
+        BloodPressure bloodPressure = new BloodPressure(120, 80);
+        doThrow(new RuntimeException("Patient not found")).when(medicalService)
+            .checkBloodPressure("patient-2", bloodPressure);
+        when(vitalsFeed.latestBloodPressure("patient-2")).thenReturn(bloodPressure);
+        PatientRecheckScheduler scheduler = new PatientRecheckScheduler(medicalService, vitalsFeed, wheel);
+        scheduler.schedule("patient-1", Duration.ofMinutes(5));
+        scheduler.schedule("patient-2", Duration.ofMinutes(1));
+
+        // Выполнение тестируемого метода
+        scheduler.schedule("patient-1", Duration.ofMinutes(20));
+        now[0] = Duration.ofMinutes(10).toMillis();
+        wheel.advance();
+
+        // Проверка результата
+        verify(medicalService, never()).checkBloodPressure("patient-1", bloodPressure);
+        verify(medicalService, times(1)).checkBloodPressure("patient-2", bloodPressure);
+        assertEquals(1, scheduler.size());
+        assertEquals(1, wheel.pending());
+        assertEquals("Patient not found", scheduler.failure("patient-2").getMessage());
+        assertNull(scheduler.failure("patient-1"));
+    }
+}
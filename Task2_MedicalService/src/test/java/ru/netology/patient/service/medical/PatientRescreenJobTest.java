@@ -0,0 +1,135 @@
+package ru.netology.patient.service.medical;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+import ru.netology.patient.repository.PatientInfoFileRepository;
+import ru.netology.patient.service.alert.Alert;
+import ru.netology.patient.service.alert.SendAlertService;
+import ru.netology.patient.service.medical.rules.ClinicalRuleEngine;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static ru.netology.patient.PatientFixtures.createMapper;
+import static ru.netology.patient.PatientFixtures.openRepository;
+
+/**
+ * Класс для тестирования PatientRescreenJob
+ * Проверяет параллельную повторную проверку всех пациентов файлового репозитория
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PatientRescreenJobTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private VitalsFeed vitalsFeed;
+
+    @Mock
+    private SendAlertService alertService;
+
+    /**
+     * Тест проверяет, что каждый пациент проверяется ровно один раз,
+     * а уведомления отправляются только для отклоняющихся показателей
+     */
+    @Test
+    public void testRescreenAllPatients() throws IOException {
+        // Подготовка данных для теста
+        File repoFile = folder.newFile("patients.txt");
+        PatientInfoFileRepository repository = openRepository(repoFile);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(repository.add(new PatientInfo("Пациент" + i, "Фамилия" + i, LocalDate.of(1970, 1, 1).plusDays(i),
+                new HealthInfo(new BigDecimal("36.6"), new BloodPressure(120, 80)))));
+        }
+        // У каждого десятого пациента давление отклоняется от нормы
+        when(vitalsFeed.latestBloodPressure(anyString())).thenAnswer(invocation ->
+            ids.indexOf(invocation.<String>getArgument(0)) % 10 == 0 ? new BloodPressure(150, 100) : new BloodPressure(120, 80));
+        when(vitalsFeed.latestTemperature(anyString())).thenReturn(new BigDecimal("36.5"));
+        List<RescreenReport> progress = new CopyOnWriteArrayList<>();
+        PatientRescreenJob job = new PatientRescreenJob(repository, createMapper(), vitalsFeed, alertService,
+            ClinicalRuleEngine.legacy(), new ForkJoinPool(4));
+
+        // Выполнение тестируемого метода
+        RescreenReport report = job.run(progress::add);
+
+        // Проверка результата
+        assertEquals(200, report.getPatients());
+        assertEquals(20, report.getAlerts());
+        assertEquals(repoFile.length(), report.getProcessedBytes());
+        assertEquals(16, progress.size());
+        verify(alertService, times(20)).send(any(Alert.class));
+        verify(vitalsFeed, times(200)).latestBloodPressure(anyString());
+        repository.close();
+    }
+
+    /**
+     * Тест проверяет, что старые версии обновленных пациентов и удаленные пациенты, оставшиеся в журнале,
+     * повторно не проверяются
+     */
+    @Test
+    public void testRescreenSkipsSupersededAndRemovedRecords() throws IOException {
+        // Подготовка данных для теста
+        File repoFile = folder.newFile("patients.txt");
+        PatientInfoFileRepository repository = openRepository(repoFile);
+        String updatedId = repository.add(new PatientInfo("Иван", "Петров", LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.6"), new BloodPressure(120, 80))));
+        String removedId = repository.add(new PatientInfo("Семен", "Михайлов", LocalDate.of(1982, 1, 16),
+            new HealthInfo(new BigDecimal("36.6"), new BloodPressure(125, 78))));
+        repository.update(new PatientInfo(updatedId, "Иван", "Петров", LocalDate.of(1980, 11, 26),
+            new HealthInfo(new BigDecimal("36.6"), new BloodPressure(150, 100))));
+        repository.remove(removedId);
+        when(vitalsFeed.latestBloodPressure(anyString())).thenReturn(new BloodPressure(150, 100));
+        PatientRescreenJob job = new PatientRescreenJob(repository, createMapper(), vitalsFeed, alertService);
+
+        // Выполнение тестируемого метода
+        RescreenReport report = job.run();
+
+        // Проверка результата: у текущей версии давление совпадает с нормой
+        assertEquals(1, report.getPatients());
+        assertEquals(0, report.getAlerts());
+        verify(vitalsFeed, times(1)).latestBloodPressure(updatedId);
+        verify(vitalsFeed, never()).latestBloodPressure(removedId);
+        repository.close();
+    }
+
+    /**
+     * Тест проверяет повторную проверку пустого репозитория
+     */
+    @Test
+    public void testRescreenEmptyRepository() throws IOException {
+        // Подготовка данных для теста
+        PatientInfoFileRepository repository = openRepository(folder.newFile("patients.txt"));
+        PatientRescreenJob job = new PatientRescreenJob(repository, createMapper(), vitalsFeed, alertService);
+
+        // Выполнение тестируемого метода
+        RescreenReport report = job.run();
+
+        // Проверка результата
+        assertEquals(0, report.getPatients());
+        assertEquals(0, report.getTotalBytes());
+        repository.close();
+    }
+}
@@ -0,0 +1,301 @@
+package ru.netology.patient.service.medical;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+import ru.netology.patient.repository.PatientInfoRepository;
+import ru.netology.patient.service.alert.Alert;
+import ru.netology.patient.service.alert.AlertSeverity;
+import ru.netology.patient.service.alert.AlertType;
+import ru.netology.patient.service.alert.SendAlertService;
+import ru.netology.patient.service.medical.rules.ClinicalRules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Класс для тестирования ReactiveMedicalService
+ * Проверяет проверку показаний в потоке, передачу запроса подписчика источнику без буферизации
+ * и отмену во время работы синхронного источника
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ReactiveMedicalServiceTest {
+
+    @Mock
+    private PatientInfoRepository patientInfoRepository;
+
+    @Mock
+    private SendAlertService alertService;
+
+    /**
+     * Тест проверяет, что источник получает ровно запрошенное подписчиком число показаний,
+     * а результаты содержат вердикты и отправленные уведомления
+     */
+    @Test
+    public void testDemandIsForwardedWithoutBuffering() {
+        // Подготовка данных для теста
+        when(patientInfoRepository.getById("patient-1")).thenReturn(new PatientInfo("patient-1", "Иван", "Петров",
+            LocalDate.of(1980, 11, 26), new HealthInfo(new BigDecimal("36.65"), new BloodPressure(120, 80))));
+        ReactiveMedicalService service = new ReactiveMedicalService(new MedicalServiceImpl(patientInfoRepository, alertService));
+        ListPublisher publisher = new ListPublisher(Arrays.asList(
+            new VitalsReading("patient-1", new BloodPressure(120, 80), null),
+            new VitalsReading("patient-1", new BloodPressure(160, 100), new BigDecimal("36.6")),
+            new VitalsReading("patient-1", null, new BigDecimal("34.0"))));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        service.subscribe(subscriber);
+        publisher.subscribe(service);
+
+        // Выполнение тестируемого метода
+        subscriber.subscription.request(2);
+        int afterFirstRequest = subscriber.outcomes.size();
+        long requestedAfterFirst = publisher.requested;
+        subscriber.subscription.request(5);
+
+        // Проверка результата
+        assertEquals(2, afterFirstRequest);
+        assertEquals(2, requestedAfterFirst);
+        assertEquals(3, subscriber.outcomes.size());
+        assertTrue(subscriber.completed);
+        CheckOutcome normal = subscriber.outcomes.get(0);
+        assertEquals(ClinicalRules.NORMAL, normal.getBloodPressureVerdict());
+        assertEquals(CheckOutcome.NOT_CHECKED, normal.getTemperatureVerdict());
+        assertTrue(normal.getAlerts().isEmpty());
+        CheckOutcome pressure = subscriber.outcomes.get(1);
+        assertEquals(1, pressure.getAlerts().size());
+        assertEquals(AlertType.BLOOD_PRESSURE, pressure.getAlerts().get(0).getType());
+        assertEquals(AlertSeverity.HIGH, pressure.getAlerts().get(0).getSeverity());
+        assertEquals(ClinicalRules.NORMAL, pressure.getTemperatureVerdict());
+        assertEquals(AlertType.TEMPERATURE, subscriber.outcomes.get(2).getAlerts().get(0).getType());
+        verify(alertService, times(2)).send(any(Alert.class));
+    }
+
+    /**
+     * Тест проверяет, что ошибка проверки одного показания возвращается в результате и не завершает поток
+     */
+    @Test
+    public void testUnknownPatientDoesNotTerminateStream() {
+        // Подготовка данных для теста
+        ReactiveMedicalService service = new ReactiveMedicalService(new MedicalServiceImpl(patientInfoRepository, alertService));
+        ListPublisher publisher = new ListPublisher(Arrays.asList(
+            new VitalsReading("unknown", new BloodPressure(120, 80), null),
+            new VitalsReading("unknown", null, new BigDecimal("36.6"))));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(service);
+        service.subscribe(subscriber);
+
+        // Выполнение тестируемого метода
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        // Проверка результата
+        assertEquals(2, subscriber.outcomes.size());
+        assertTrue(subscriber.outcomes.get(0).isFailed());
+        assertEquals("Patient not found", subscriber.outcomes.get(0).getError().getMessage());
+        assertTrue(subscriber.completed);
+        assertTrue(subscriber.outcomes.get(1).isFailed());
+    }
+
+    /**
+     * Тест проверяет, что запрос, сделанный подписчиком внутри onSubscribe, безопасен при синхронном источнике:
+     * показания приходят уже после того, как подписчик стал получателем
+     */
+    @Test
+    public void testRequestInsideOnSubscribeWithSynchronousPublisher() {
+        // Подготовка данных для теста
+        when(patientInfoRepository.getById("patient-1")).thenReturn(new PatientInfo("patient-1", "Иван", "Петров",
+            LocalDate.of(1980, 11, 26), new HealthInfo(new BigDecimal("36.65"), new BloodPressure(120, 80))));
+        ReactiveMedicalService service = new ReactiveMedicalService(new MedicalServiceImpl(patientInfoRepository, alertService));
+        ListPublisher publisher = new ListPublisher(Arrays.asList(
+            new VitalsReading("patient-1", new BloodPressure(120, 80), null),
+            new VitalsReading("patient-1", null, new BigDecimal("36.6"))));
+        publisher.subscribe(service);
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        // Выполнение тестируемого метода
+        service.subscribe(subscriber);
+
+        // Проверка результата
+        assertEquals(2, subscriber.outcomes.size());
+        assertEquals(ClinicalRules.NORMAL, subscriber.outcomes.get(0).getBloodPressureVerdict());
+        assertTrue(subscriber.completed);
+    }
+
+    /**
+     * Тест проверяет, что отмена из другого потока останавливает бесконечный синхронный источник:
+     * передача запроса не держит монитор процессора на время проверок
+     */
+    @Test
+    public void testCancelFromAnotherThreadStopsSynchronousSource() throws InterruptedException {
+        // Подготовка данных для теста
+        ReactiveMedicalService service = new ReactiveMedicalService(new MedicalServiceImpl(patientInfoRepository, alertService));
+        EndlessPublisher publisher = new EndlessPublisher();
+        publisher.subscribe(service);
+        AtomicInteger received = new AtomicInteger();
+        AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        Thread source = new Thread(() -> service.subscribe(new Flow.Subscriber<CheckOutcome>() {
+            @Override
+            public void onSubscribe(Flow.Subscription value) {
+                subscription.set(value);
+                value.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(CheckOutcome item) {
+                received.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        }));
+        source.setDaemon(true);
+        source.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (received.get() < 100) {
+            assertTrue("Source did not start", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+
+        // Выполнение тестируемого метода
+        Thread canceller = new Thread(() -> subscription.get().cancel());
+        canceller.setDaemon(true);
+        canceller.start();
+        canceller.join(5000);
+        source.join(5000);
+
+        // Проверка результата
+        assertFalse(canceller.isAlive());
+        assertFalse(source.isAlive());
+        assertTrue(publisher.cancelled);
+    }
+
+    /**
+     * Бесконечный синхронный источник пустых показаний: выдает их внутри request, пока его не отменят
+     */
+    private static final class EndlessPublisher implements Flow.Publisher<VitalsReading> {
+        private volatile boolean cancelled;
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super VitalsReading> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private long requested;
+                private boolean emitting;
+
+                @Override
+                public void request(long n) {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (!cancelled && requested > 0) {
+                        requested--;
+                        subscriber.onNext(new VitalsReading("patient-1", null, null));
+                    }
+                    emitting = false;
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Синхронный источник из списка, запоминающий суммарный запрос
+     */
+    private static final class ListPublisher implements Flow.Publisher<VitalsReading> {
+        private final List<VitalsReading> items;
+        private long requested;
+        private int next;
+
+        private ListPublisher(List<VitalsReading> items) {
+            this.items = items;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super VitalsReading> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    requested += n;
+                    while (requested > next && next < items.size()) {
+                        subscriber.onNext(items.get(next++));
+                    }
+                    if (next == items.size()) {
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+        }
+    }
+
+    /**
+     * Подписчик, запоминающий результаты; initialRequest > 0 запрашивается сразу в onSubscribe
+     */
+    private static final class RecordingSubscriber implements Flow.Subscriber<CheckOutcome> {
+        private final List<CheckOutcome> outcomes = new ArrayList<>();
+        private final long initialRequest;
+        private Flow.Subscription subscription;
+        private boolean completed;
+
+        private RecordingSubscriber() {
+            this(0);
+        }
+
+        private RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(CheckOutcome item) {
+            outcomes.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throw new AssertionError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
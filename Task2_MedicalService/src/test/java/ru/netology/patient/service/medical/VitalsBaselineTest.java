@@ -0,0 +1,180 @@
+package ru.netology.patient.service.medical;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import ru.netology.patient.ConcurrencyHarness;
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+import ru.netology.patient.repository.ObservablePatientInfoRepository;
+import ru.netology.patient.repository.PatientChangeListener;
+import ru.netology.patient.repository.PatientInfoOffHeapRepository;
+import ru.netology.patient.service.medical.rules.ClinicalRuleEngine;
+import ru.netology.patient.service.medical.rules.ClinicalRules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Класс для тестирования VitalsBaseline
+ * Проверяет быстрые проверки показателей по снимку норм пациента
+ * и согласованность снимка с репозиторием при параллельных изменениях
+ */
+public class VitalsBaselineTest {
+
+    private final VitalsBaseline baseline = new VitalsBaseline(1);
+
+    // Исходные правила: любое отличие давления и снижение температуры более чем на 1.5 градуса
+    private final ClinicalRules rules = ClinicalRuleEngine.legacy().rules();
+
+    /**
+     * Тест проверяет сравнение давления с нормой пациента
+     */
+    @Test
+    public void testEvaluateBloodPressure() {
+        // Подготовка данных для теста
+        baseline.onPut(patient("patient-1", "36.6", 120, 80));
+
+        // Проверка результата
+        assertEquals(ClinicalRules.NORMAL, baseline.evaluateBloodPressure("patient-1", 120, 80, rules));
+        assertEquals(ClinicalRules.DEVIATION, baseline.evaluateBloodPressure("patient-1", 150, 100, rules));
+        assertEquals(VitalsBaseline.UNKNOWN, baseline.evaluateBloodPressure("patient-2", 120, 80, rules));
+    }
+
+    /**
+     * Тест проверяет порог снижения температуры на 1.5 градуса, включая границу
+     */
+    @Test
+    public void testEvaluateTemperature() {
+        // Подготовка данных для теста
+        baseline.onPut(patient("patient-1", "36.6", 120, 80));
+
+        // Проверка результата
+        assertEquals(ClinicalRules.DEVIATION, baseline.evaluateTemperature("patient-1", new BigDecimal("34.0"), rules));
+        assertEquals(ClinicalRules.NORMAL, baseline.evaluateTemperature("patient-1", new BigDecimal("35.1"), rules));
+        assertEquals(ClinicalRules.DEVIATION, baseline.evaluateTemperature("patient-1", new BigDecimal("35.0999"), rules));
+        assertEquals(ClinicalRules.NORMAL, baseline.evaluateTemperature("patient-1", new BigDecimal("38.5"), rules));
+    }
+
+    /**
+     * Тест проверяет, что неточно представимая норма температуры не попадает в снимок,
+     * а обновление и удаление пациента отражаются в проверках
+     */
+    @Test
+    public void testUpdateAndRemove() {
+        // Подготовка данных для теста
+        baseline.onPut(patient("patient-1", "36.655", 120, 80));
+        baseline.onPut(patient("patient-2", "36.6", 120, 80));
+
+        // Проверка результата
+        assertEquals(VitalsBaseline.UNKNOWN, baseline.evaluateTemperature("patient-1", new BigDecimal("30"), rules));
+        assertEquals(ClinicalRules.NORMAL, baseline.evaluateBloodPressure("patient-1", 120, 80, rules));
+
+        // Выполнение тестируемого метода
+        baseline.onPut(patient("patient-2", "36.6", 130, 85));
+        baseline.onRemove("patient-1");
+        baseline.onPut(patient("patient-3", "36.6", 110, 70));
+
+        // Проверка результата
+        assertEquals(ClinicalRules.NORMAL, baseline.evaluateBloodPressure("patient-2", 130, 85, rules));
+        assertEquals(VitalsBaseline.UNKNOWN, baseline.evaluateBloodPressure("patient-1", 120, 80, rules));
+        assertEquals(ClinicalRules.NORMAL, baseline.evaluateBloodPressure("patient-3", 110, 70, rules));
+        assertEquals(2, baseline.size());
+    }
+
+    /**
+     * Тест проверяет, что прогрев не возвращает в снимок запись, прочитанную до обновления или удаления,
+     * и не перезаписывает данные слушателя
+     */
+    @Test
+    public void testWarmDoesNotOverrideListener() {
+        // Подготовка данных для теста
+        long beforeRemove = baseline.version();
+        baseline.onPut(patient("patient-1", "36.6", 120, 80));
+        baseline.onRemove("patient-1");
+        long beforeUpdate = baseline.version();
+        baseline.onPut(patient("patient-2", "36.6", 130, 85));
+
+        // Выполнение тестируемого метода
+        boolean staleRemoved = baseline.warm(patient("patient-1", "36.6", 120, 80), beforeRemove);
+        boolean staleUpdated = baseline.warm(patient("patient-2", "36.6", 120, 80), beforeUpdate);
+        boolean fresh = baseline.warm(patient("patient-3", "36.6", 110, 70), baseline.version());
+
+        // Проверка результата
+        assertFalse(staleRemoved);
+        assertFalse(staleUpdated);
+        assertTrue(fresh);
+        assertEquals(VitalsBaseline.UNKNOWN, baseline.evaluateBloodPressure("patient-1", 120, 80, rules));
+        assertEquals(ClinicalRules.NORMAL, baseline.evaluateBloodPressure("patient-2", 130, 85, rules));
+        assertEquals(ClinicalRules.NORMAL, baseline.evaluateBloodPressure("patient-3", 110, 70, rules));
+    }
+
+    private static PatientInfo patient(String id, String temperature, int high, int low) {
+        return new PatientInfo(id, "Иван", "Иванов", LocalDate.of(1990, 1, 1),
+            new HealthInfo(new BigDecimal(temperature), new BloodPressure(high, low)));
+    }
+
+    /**
+     * Тест проверяет, что при параллельных обновлениях и удалении одного пациента снимок в итоге
+     * совпадает с репозиторием: не хранит перезаписанную версию и не возвращает удаленного пациента
+     */
+    @Test
+    public void testConcurrentUpdateAndRemoveKeepCommitOrder() throws InterruptedException {
+        // Подготовка данных для теста: медленный первый слушатель расширяет окно между изменением и оповещением
+        ObservablePatientInfoRepository repository = new ObservablePatientInfoRepository(new PatientInfoOffHeapRepository());
+        repository.addListener(new PatientChangeListener() {
+            @Override
+            public void onPut(PatientInfo patientInfo) {
+                Thread.yield();
+            }
+
+            @Override
+            public void onRemove(String id) {
+                Thread.yield();
+            }
+        });
+        VitalsBaseline shared = new VitalsBaseline();
+        repository.addListener(shared);
+
+        for (int round = 0; round < 300; round++) {
+            int number = round;
+            String id = repository.add(patient(number, 120));
+
+            // Выполнение тестируемого метода
+            ConcurrencyHarness.run(3, thread -> {
+                try {
+                    if (thread == 2) {
+                        if (number % 2 == 0) {
+                            repository.remove(id);
+                        }
+                    } else {
+                        PatientInfo changed = patient(number, 150 + thread * 10);
+                        repository.update(new PatientInfo(id, changed.getName(), changed.getSurname(),
+                            changed.getBirthday(), changed.getHealthInfo()));
+                    }
+                } catch (RuntimeException exception) {
+                    // Обновление уже удаленного пациента отклоняется репозиторием
+                    assertEquals("Patient not found", exception.getMessage());
+                }
+            });
+
+            // Проверка результата
+            PatientInfo stored = repository.getById(id);
+            if (stored == null) {
+                assertEquals(VitalsBaseline.UNKNOWN, shared.evaluateBloodPressure(id, 120, 80, rules));
+            } else {
+                BloodPressure norm = stored.getHealthInfo().getBloodPressure();
+                assertEquals(ClinicalRules.NORMAL, shared.evaluateBloodPressure(id, norm.getHigh(), norm.getLow(), rules));
+            }
+        }
+    }
+
+    private static PatientInfo patient(int number, int high) {
+        return new PatientInfo("Пациент" + number, "Фамилия" + number, LocalDate.of(1970, 1, 1).plusDays(number),
+            new HealthInfo(new BigDecimal("36.6"), new BloodPressure(high, 80)));
+    }
+}
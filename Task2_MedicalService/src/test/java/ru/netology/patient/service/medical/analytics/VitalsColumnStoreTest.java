@@ -0,0 +1,196 @@
+package ru.netology.patient.service.medical.analytics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Random;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+import ru.netology.patient.repository.ObservablePatientInfoRepository;
+import ru.netology.patient.repository.PatientInfoFileRepository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static ru.netology.patient.PatientFixtures.createMapper;
+import static ru.netology.patient.PatientFixtures.openRepository;
+
+/**
+ * Класс для тестирования VitalsColumnStore
+ * Проверяет агрегаты по колонкам, синхронизацию со слушателем репозитория и перестроение копии
+ */
+public class VitalsColumnStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = createMapper();
+
+    /**
+     * Тест проверяет, что добавление, обновление и удаление пациентов через репозиторий
+     * сразу отражаются в агрегатах, включая отбор по дате рождения
+     */
+    @Test
+    public void testSummaryFollowsRepositoryChanges() throws IOException {
+        // Подготовка данных для теста
+        File repoFile = folder.newFile("patients.txt");
+        try (PatientInfoFileRepository fileRepository = openRepository(repoFile);
+             VitalsColumnStore store = new VitalsColumnStore(folder.newFolder("columns"), repoFile)) {
+            ObservablePatientInfoRepository repository = new ObservablePatientInfoRepository(fileRepository);
+            repository.addListener(store);
+            String id1 = repository.add(patient(null, "Иван", LocalDate.of(1980, 11, 26), "36.6", 120, 80));
+            String id2 = repository.add(patient(null, "Семен", LocalDate.of(1982, 1, 16), "36.8", 140, 90));
+            repository.add(patient(null, "Анна", LocalDate.of(1995, 5, 1), "36.4", 110, 70));
+            repository.add(new PatientInfo("Петр", "Иванов", null, null));
+
+            // Выполнение тестируемого метода
+            repository.update(patient(id1, "Иван", LocalDate.of(1980, 11, 26), "36.7", 130, 85));
+            repository.remove(id2);
+            VitalsSummary high = store.summary(VitalsColumnStore.Column.HIGH);
+            VitalsSummary temperature = store.summary(VitalsColumnStore.Column.TEMPERATURE);
+            VitalsSummary bornInEighties = store.summary(VitalsColumnStore.Column.LOW,
+                LocalDate.of(1980, 1, 1), LocalDate.of(1989, 12, 31));
+            VitalsSummary nobody = store.summary(VitalsColumnStore.Column.LOW,
+                LocalDate.of(2000, 1, 1), LocalDate.of(2009, 12, 31));
+
+            // Проверка результата
+            assertEquals(3, store.size());
+            assertEquals(2, high.getCount());
+            assertEquals(110, high.getMin());
+            assertEquals(130, high.getMax());
+            assertEquals(120.0, high.getAverage(), 0.0);
+            assertEquals(3670 + 3640, temperature.getSum());
+            assertEquals(1, bornInEighties.getCount());
+            assertEquals(85, bornInEighties.getMax());
+            assertEquals(0, nobody.getCount());
+            assertEquals(VitalsColumnStore.NONE, nobody.getMin());
+            assertTrue(Double.isNaN(nobody.getAverage()));
+            assertEquals(1, store.countAtLeast(VitalsColumnStore.Column.HIGH, 130));
+        }
+    }
+
+    /**
+     * Тест проверяет агрегаты на многих строках (несколько порций сканирования и рост колонок)
+     * против прямого подсчета, в том числе после освобождения и повторного занятия строк
+     */
+    @Test
+    public void testScanMatchesDirectComputation() throws IOException {
+        // Подготовка данных для теста
+        Random random = new Random(7);
+        int patients = 50_000;
+        int[] highs = new int[patients];
+        int[] birthYears = new int[patients];
+        VitalsColumnStore store = new VitalsColumnStore(folder.newFolder("columns"), folder.newFile("patients.txt"));
+        for (int i = 0; i < patients; i++) {
+            highs[i] = 90 + random.nextInt(90);
+            birthYears[i] = 1940 + random.nextInt(70);
+            store.onPut(patient("patient-" + i, "Иван", LocalDate.of(birthYears[i], 6, 1), "36.6", highs[i], 80));
+        }
+        for (int i = 0; i < patients; i += 3) {
+            store.onRemove("patient-" + i);
+            highs[i] = -1;
+        }
+        for (int i = 0; i < patients; i += 6) {
+            highs[i] = 100;
+            store.onPut(patient("patient-" + i, "Иван", LocalDate.of(birthYears[i], 6, 1), "36.6", highs[i], 80));
+        }
+
+        // Выполнение тестируемого метода
+        VitalsSummary all = store.summary(VitalsColumnStore.Column.HIGH);
+        VitalsSummary born = store.summary(VitalsColumnStore.Column.HIGH,
+            LocalDate.of(1960, 1, 1), LocalDate.of(1979, 12, 31));
+        long hypertensive = store.countAtLeast(VitalsColumnStore.Column.HIGH, 140);
+
+        // Проверка результата
+        long count = 0;
+        long sum = 0;
+        long bornCount = 0;
+        long bornSum = 0;
+        long expectedHypertensive = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < patients; i++) {
+            if (highs[i] < 0) {
+                continue;
+            }
+            count++;
+            sum += highs[i];
+            min = Math.min(min, highs[i]);
+            max = Math.max(max, highs[i]);
+            if (birthYears[i] >= 1960 && birthYears[i] <= 1979) {
+                bornCount++;
+                bornSum += highs[i];
+            }
+            if (highs[i] >= 140) {
+                expectedHypertensive++;
+            }
+        }
+        assertEquals(count, store.size());
+        assertEquals(count, all.getCount());
+        assertEquals(sum, all.getSum());
+        assertEquals(min, all.getMin());
+        assertEquals(max, all.getMax());
+        assertEquals(bornCount, born.getCount());
+        assertEquals(bornSum, born.getSum());
+        assertEquals(expectedHypertensive, hypertensive);
+        store.close();
+    }
+
+    /**
+     * Тест проверяет, что чисто закрытая копия открывается синхронной, а после сбоя или изменения
+     * репозитория в ее отсутствие - несинхронной и перестраивается выгрузкой из репозитория
+     */
+    @Test
+    public void testReopenAndExport() throws IOException {
+        // Подготовка данных для теста
+        File repoFile = folder.newFile("patients.txt");
+        File directory = folder.newFolder("columns");
+        PatientInfoFileRepository fileRepository = openRepository(repoFile);
+        ObservablePatientInfoRepository repository = new ObservablePatientInfoRepository(fileRepository);
+        VitalsColumnStore store = new VitalsColumnStore(directory, repoFile);
+        boolean newStoreInSync = store.isInSync();
+        store.export(fileRepository, mapper);
+        repository.addListener(store);
+        String id1 = repository.add(patient(null, "Иван", LocalDate.of(1980, 11, 26), "36.6", 120, 80));
+        repository.add(patient(null, "Семен", LocalDate.of(1982, 1, 16), "36.8", 140, 90));
+        repository.remove(id1);
+        store.close();
+
+        // Выполнение тестируемого метода
+        VitalsColumnStore reopened = new VitalsColumnStore(directory, repoFile);
+        boolean reopenedInSync = reopened.isInSync();
+        VitalsSummary reopenedHigh = reopened.summary(VitalsColumnStore.Column.HIGH);
+        // Копия не закрыта (сбой), а репозиторий тем временем изменился без слушателя
+        fileRepository.add(patient(null, "Анна", LocalDate.of(1995, 5, 1), "36.4", 110, 70));
+        VitalsColumnStore crashed = new VitalsColumnStore(directory, repoFile);
+        boolean crashedInSync = crashed.isInSync();
+        int exported = crashed.export(fileRepository, mapper);
+
+        // Проверка результата
+        assertFalse(newStoreInSync);
+        assertTrue(reopenedInSync);
+        assertEquals(1, reopenedHigh.getCount());
+        assertEquals(140, reopenedHigh.getMax());
+        assertFalse(crashedInSync);
+        assertEquals(2, exported);
+        assertTrue(crashed.isInSync());
+        assertEquals(250, crashed.summary(VitalsColumnStore.Column.HIGH).getSum());
+        crashed.close();
+        reopened.close();
+        fileRepository.close();
+    }
+
+    private static PatientInfo patient(String id, String name, LocalDate birthday, String temperature,
+                                       int high, int low) {
+        return new PatientInfo(id, name, "Петров", birthday,
+            new HealthInfo(new BigDecimal(temperature), new BloodPressure(high, low)));
+    }
+}
@@ -0,0 +1,101 @@
+package ru.netology.patient.service.medical.escalation;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import ru.netology.patient.service.alert.Alert;
+import ru.netology.patient.service.alert.AlertSeverity;
+import ru.netology.patient.service.alert.AlertType;
+import ru.netology.patient.service.alert.SendAlertService;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Класс для тестирования AlertEscalator
+ * Проверяет отправку эскалации по истечении срока и ее отмену нормальным показанием
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AlertEscalatorTest {
+
+    @Mock
+    private SendAlertService alertService;
+
+    private final long[] now = {0};
+    private final TimerWheel wheel = new TimerWheel(1_000, () -> now[0]);
+    private AlertEscalator escalator;
+
+    @Before
+    public void setUp() {
+        escalator = new AlertEscalator(alertService, wheel, Duration.ofMinutes(15));
+    }
+
+    /**
+     * Тест проверяет, что предупреждение без нормального показания за 15 минут эскалируется один раз,
+     * а повторное предупреждение не сдвигает срок
+     */
+    @Test
+    public void testWarningEscalatesAfterDelay() {
+        // Подготовка данных для теста
+        escalator.onWarning(warning("patient-1", AlertType.BLOOD_PRESSURE));
+        now[0] = Duration.ofMinutes(10).toMillis();
+        wheel.advance();
+        escalator.onWarning(warning("patient-1", AlertType.BLOOD_PRESSURE));
+
+        // Выполнение тестируемого метода
+        now[0] = Duration.ofMinutes(14).toMillis();
+        int firedEarly = wheel.advance();
+        now[0] = Duration.ofMinutes(15).toMillis() + 1_000;
+        wheel.advance();
+        now[0] = Duration.ofMinutes(40).toMillis();
+        wheel.advance();
+
+        // Проверка результата
+        assertEquals(0, firedEarly);
+        ArgumentCaptor<Alert> alertCaptor = ArgumentCaptor.forClass(Alert.class);
+        verify(alertService, times(1)).send(alertCaptor.capture());
+        assertEquals(AlertSeverity.CRITICAL, alertCaptor.getValue().getSeverity());
+        assertEquals(AlertType.BLOOD_PRESSURE, alertCaptor.getValue().getType());
+        assertEquals("Escalation, patient with id: patient-1, still needs help", alertCaptor.getValue().getMessage());
+        assertEquals(0, escalator.pending());
+    }
+
+    /**
+     * Тест проверяет, что нормальное показание снимает эскалацию только своего типа,
+     * а уведомления о трендах не эскалируются
+     */
+    @Test
+    public void testNormalReadingCancelsEscalation() {
+        // Подготовка данных для теста
+        escalator.onWarning(warning("patient-1", AlertType.BLOOD_PRESSURE));
+        escalator.onWarning(warning("patient-2", AlertType.TEMPERATURE));
+        escalator.onWarning(warning("patient-3", AlertType.TREND));
+
+        // Выполнение тестируемого метода
+        escalator.onNormal("patient-1", AlertType.BLOOD_PRESSURE);
+        escalator.onNormal("patient-2", AlertType.BLOOD_PRESSURE);
+        int pending = escalator.pending();
+        escalator.onNormal("patient-2", AlertType.TEMPERATURE);
+        now[0] = Duration.ofHours(1).toMillis();
+        wheel.advance();
+
+        // Проверка результата
+        assertEquals(1, pending);
+        assertEquals(0, wheel.pending());
+        verifyNoInteractions(alertService);
+    }
+
+    private static Alert warning(String patientId, AlertType type) {
+        return new Alert(patientId, AlertSeverity.HIGH, type, Instant.now(),
+            "Warning, patient with id: " + patientId + ", need help");
+    }
+}
@@ -0,0 +1,112 @@
+package ru.netology.patient.service.medical.escalation;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Класс для тестирования TimerWheel
+ * Проверяет точность срабатывания на всех уровнях колеса, отмену таймеров и работу собственного потока
+ */
+public class TimerWheelTest {
+
+    /**
+     * Тест проверяет, что таймеры с задержками от одного тика до старшего уровня колеса
+     * срабатывают не раньше срока и не позже чем через шаг часов после него
+     */
+    @Test
+    public void testTimersFireOnTimeOnAllLevels() {
+        // Подготовка данных для теста
+        long[] now = {0};
+        TimerWheel wheel = new TimerWheel(1, () -> now[0]);
+        Random random = new Random(42);
+        int timers = 100_000;
+        long[] deadlines = new long[timers];
+        long[] fired = new long[timers];
+        for (int i = 0; i < timers; i++) {
+            // Задержки до 2^26 тиков: таймеры попадают на все четыре уровня
+            long delay = i < 1_000 ? i : 1L << random.nextInt(27) | random.nextInt(256);
+            int index = i;
+            deadlines[i] = delay;
+            wheel.schedule(timeout -> fired[index] = now[0], delay, TimeUnit.MILLISECONDS);
+        }
+
+        // Выполнение тестируемого метода
+        long step = 251;
+        int firedCount = 0;
+        while (now[0] < (1L << 27) + 512) {
+            now[0] += now[0] < 100_000 ? 1 : step;
+            firedCount += wheel.advance();
+        }
+
+        // Проверка результата
+        assertEquals(timers, firedCount);
+        assertEquals(0, wheel.pending());
+        for (int i = 0; i < timers; i++) {
+            long latest = Math.max(deadlines[i], 1) + (deadlines[i] < 100_000 ? 1 : step);
+            assertTrue("Timer " + i + " with delay " + deadlines[i] + " fired at " + fired[i],
+                fired[i] >= deadlines[i] && fired[i] < latest);
+        }
+    }
+
+    /**
+     * Тест проверяет, что отмененные таймеры не срабатывают, а повторная отмена и отмена сработавшего
+     * таймера возвращают false
+     */
+    @Test
+    public void testCancel() {
+        // Подготовка данных для теста
+        long[] now = {0};
+        TimerWheel wheel = new TimerWheel(10, () -> now[0]);
+        int timers = 1_000_000;
+        TimerWheel.Timeout[] timeouts = new TimerWheel.Timeout[timers];
+        int[] fired = new int[1];
+        for (int i = 0; i < timers; i++) {
+            timeouts[i] = wheel.schedule(timeout -> fired[0]++, 1_000 + i % 100_000, TimeUnit.MILLISECONDS);
+        }
+        int pendingBefore = wheel.pending();
+
+        // Выполнение тестируемого метода
+        for (int i = 0; i < timers; i += 2) {
+            timeouts[i].cancel();
+        }
+        boolean cancelledTwice = timeouts[0].cancel();
+        now[0] = 200_000;
+        wheel.advance();
+
+        // Проверка результата
+        assertEquals(timers, pendingBefore);
+        assertFalse(cancelledTwice);
+        assertEquals(timers / 2, fired[0]);
+        assertEquals(0, wheel.pending());
+        assertTrue(timeouts[0].isCancelled());
+        assertTrue(timeouts[1].isExpired());
+        assertFalse(timeouts[1].cancel());
+    }
+
+    /**
+     * Тест проверяет, что колесо с системными часами само выполняет задачи в своем потоке
+     */
+    @Test
+    public void testWorkerThreadFiresTimers() throws InterruptedException {
+        // Подготовка данных для теста
+        CountDownLatch latch = new CountDownLatch(2);
+        try (TimerWheel wheel = TimerWheel.started(5)) {
+            long start = System.nanoTime();
+
+            // Выполнение тестируемого метода
+            wheel.schedule(timeout -> latch.countDown(), 20, TimeUnit.MILLISECONDS);
+            wheel.schedule(timeout -> latch.countDown(), 40, TimeUnit.MILLISECONDS);
+
+            // Проверка результата
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ru.netology.patient.service.medical.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import ru.netology.patient.entity.BloodPressure;
+import ru.netology.patient.entity.HealthInfo;
+import ru.netology.patient.entity.PatientInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Класс для тестирования ClinicalRuleEngine и скомпилированной таблицы ClinicalRules
+ */
+public class ClinicalRuleEngineTest {
+
+    private static final String RULES_JSON = "{\n" +
+        "  \"defaults\": {\n" +
+        "    \"bloodPressure\": {\"maxHighDeviation\": 10, \"maxLowDeviation\": 10, \"highMax\": 180},\n" +
+        "    \"temperature\": {\"maxDrop\": 1.5, \"maxRise\": 1.0, \"max\": 40.0}\n" +
+        "  },\n" +
+        "  \"ageGroups\": [\n" +
+        "    {\"minAge\": 0, \"maxAge\": 17,\n" +
+        "     \"bloodPressure\": {\"maxHighDeviation\": 5, \"maxLowDeviation\": 5},\n" +
+        "     \"temperature\": {\"maxDrop\": 1.0, \"maxRise\": 0.5}}\n" +
+        "  ]\n" +
+        "}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Фиксированные часы: 1 июня 2026 года, 12:00 UTC
+    private final Clock clock = Clock.fixed(Instant.parse("2026-06-01T12:00:00Z"), ZoneOffset.UTC);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Тест проверяет правила по умолчанию и правила возрастной группы, загруженные из файла
+     */
+    @Test
+    public void testAgeGroupRulesFromFile() throws IOException {
+        // Подготовка данных для теста
+        File rulesFile = writeRules(RULES_JSON);
+        ClinicalRuleEngine engine = new ClinicalRuleEngine(mapper.readValue(rulesFile, ClinicalRulesConfig.class), clock);
+        PatientInfo adult = patient(LocalDate.of(1990, 1, 1));
+        // Пациенту исполняется 18 лет на следующий день после "сегодня"
+        PatientInfo child = patient(LocalDate.of(2008, 6, 2));
+
+        // Выполнение тестируемого метода
+        ClinicalRules rules = engine.rules();
+
+        // Проверка результата
+        assertEquals(ClinicalRules.NORMAL, rules.evaluate(adult, new BloodPressure(128, 80)));
+        assertEquals(ClinicalRules.DEVIATION, rules.evaluate(child, new BloodPressure(128, 80)));
+        assertEquals(ClinicalRules.OUT_OF_RANGE, rules.evaluate(adult, new BloodPressure(185, 80)));
+        assertEquals(ClinicalRules.NORMAL, rules.evaluate(adult, new BigDecimal("37.6")));
+        assertEquals(ClinicalRules.DEVIATION, rules.evaluate(adult, new BigDecimal("37.61")));
+        assertEquals(ClinicalRules.DEVIATION, rules.evaluate(child, new BigDecimal("37.2")));
+        assertEquals(ClinicalRules.OUT_OF_RANGE, rules.evaluate(adult, new BigDecimal("40.1")));
+    }
+
+    /**
+     * Тест проверяет, что правила по умолчанию повторяют исходное поведение MedicalServiceImpl
+     */
+    @Test
+    public void testLegacyRules() {
+        // Подготовка данных для теста
+        ClinicalRules rules = new ClinicalRuleEngine(ClinicalRulesConfig.legacy(), clock).rules();
+        PatientInfo patientInfo = patient(LocalDate.of(1990, 1, 1));
+
+        // Проверка результата
+        assertEquals(ClinicalRules.DEVIATION, rules.evaluate(patientInfo, new BloodPressure(121, 80)));
+        assertEquals(ClinicalRules.NORMAL, rules.evaluate(patientInfo, new BloodPressure(120, 80)));
+        assertEquals(ClinicalRules.NORMAL, rules.evaluate(patientInfo, new BigDecimal("35.1")));
+        assertEquals(ClinicalRules.DEVIATION, rules.evaluate(patientInfo, new BigDecimal("35.09")));
+        assertEquals(ClinicalRules.NORMAL, rules.evaluate(patientInfo, new BigDecimal("42")));
+    }
+
+    /**
+     * Тест проверяет атомарную перезагрузку правил: ошибочная конфигурация не заменяет действующую
+     */
+    @Test
+    public void testReload() throws IOException {
+        // Подготовка данных для теста
+        ClinicalRuleEngine engine = new ClinicalRuleEngine(ClinicalRulesConfig.legacy(), clock);
+        ClinicalRules before = engine.rules();
+        PatientInfo patientInfo = patient(LocalDate.of(1990, 1, 1));
+
+        // Выполнение тестируемого метода
+        try {
+            engine.reload(writeRules("{\"defaults\": {\"temperature\": {\"maxDrop\": 1.555}}}").toPath(), mapper);
+            fail("Invalid rules must be rejected");
+        } catch (IllegalArgumentException expected) {
+            // ожидаемая ошибка компиляции правил
+        }
+
+        // Проверка результата
+        assertSame(before, engine.rules());
+
+        // Выполнение тестируемого метода
+        engine.reload(writeRules(RULES_JSON).toPath(), mapper);
+
+        // Проверка результата
+        assertEquals(ClinicalRules.NORMAL, engine.rules().evaluate(patientInfo, new BloodPressure(128, 80)));
+    }
+
+    private File writeRules(String json) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static PatientInfo patient(LocalDate birthday) {
+        return new PatientInfo("patient-1", "Иван", "Иванов", birthday,
+            new HealthInfo(new BigDecimal("36.6"), new BloodPressure(120, 80)));
+    }
+}
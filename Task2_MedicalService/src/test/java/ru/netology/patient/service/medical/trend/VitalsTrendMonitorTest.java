@@ -0,0 +1,113 @@
+package ru.netology.patient.service.medical.trend;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import ru.netology.patient.service.alert.Alert;
+import ru.netology.patient.service.alert.AlertSeverity;
+import ru.netology.patient.service.alert.AlertType;
+import ru.netology.patient.service.alert.SendAlertService;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Класс для тестирования VitalsTrendMonitor и скользящего окна TrendWindow
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class VitalsTrendMonitorTest {
+
+    private static final long MINUTE = 60_000L;
+
+    @Mock
+    private SendAlertService alertService;
+
+    /**
+     * Тест проверяет инкрементальные среднее, наклон и скорость изменения с вытеснением старых показаний
+     */
+    @Test
+    public void testTrendWindowStatistics() {
+        // Подготовка данных для теста
+        TrendWindow window = new TrendWindow(3, 24 * 60 * MINUTE);
+
+        // Выполнение тестируемого метода: значение растет на 1 в час, первое показание вытесняется
+        window.add(0, 100);
+        window.add(60 * MINUTE, 10);
+        window.add(120 * MINUTE, 11);
+        window.add(180 * MINUTE, 12);
+
+        // Проверка результата
+        assertEquals(3, window.size());
+        assertEquals(11.0, window.average(), 1e-9);
+        assertEquals(1.0, window.slopePerHour(), 1e-9);
+        assertEquals(1.0, window.rateOfChangePerHour(), 1e-9);
+        assertEquals(2.0, window.spanHours(), 1e-9);
+    }
+
+    /**
+     * Тест проверяет уведомление о росте температуры на 0.5 градуса в час и его однократность
+     */
+    @Test
+    public void testTemperatureRisingAlert() {
+        // Подготовка данных для теста
+        VitalsTrendMonitor monitor = new VitalsTrendMonitor(alertService);
+
+        // Выполнение тестируемого метода: температура растет на 0.6 градуса в час
+        monitor.onTemperature("patient-1", 0, new BigDecimal("36.6"));
+        monitor.onTemperature("patient-1", 30 * MINUTE, new BigDecimal("36.9"));
+        monitor.onTemperature("patient-1", 60 * MINUTE, new BigDecimal("37.2"));
+        monitor.onTemperature("patient-1", 90 * MINUTE, new BigDecimal("37.5"));
+
+        // Проверка результата
+        assertEquals(0.6, monitor.temperatureSlopePerHour("patient-1"), 1e-9);
+        assertEquals(37.05, monitor.averageTemperature("patient-1"), 1e-9);
+        verify(alertService, times(1)).send(new Alert("patient-1", AlertSeverity.MEDIUM, AlertType.TREND,
+            Instant.ofEpochMilli(60 * MINUTE), "Warning, patient with id: patient-1, temperature rising 0.60 per hour"));
+    }
+
+    /**
+     * Тест проверяет, что стабильные показания не приводят к уведомлениям,
+     * а показания с временем раньше последнего игнорируются
+     */
+    @Test
+    public void testStableReadingsDoNotAlert() {
+        // Подготовка данных для теста
+        VitalsTrendMonitor monitor = new VitalsTrendMonitor(alertService);
+
+        // Выполнение тестируемого метода
+        for (int i = 0; i < 20; i++) {
+            monitor.onTemperature("patient-1", i * 10 * MINUTE, new BigDecimal(i % 2 == 0 ? "36.6" : "36.7"));
+            monitor.onBloodPressure("patient-1", i * 10 * MINUTE, 120 + i % 3, 80);
+        }
+        monitor.onTemperature("patient-1", 0, new BigDecimal("41.0"));
+
+        // Проверка результата
+        verifyNoInteractions(alertService);
+        assertEquals(1, monitor.monitoredPatients());
+    }
+
+    /**
+     * Тест проверяет уведомление о быстром росте давления
+     */
+    @Test
+    public void testBloodPressureRisingAlert() {
+        // Подготовка данных для теста
+        VitalsTrendMonitor monitor = new VitalsTrendMonitor(alertService);
+
+        // Выполнение тестируемого метода: верхнее давление растет на 30 в час
+        monitor.onBloodPressure("patient-1", 0, 120, 80);
+        monitor.onBloodPressure("patient-1", 20 * MINUTE, 130, 80);
+        monitor.onBloodPressure("patient-1", 40 * MINUTE, 140, 80);
+
+        // Проверка результата
+        verify(alertService, times(1)).send(new Alert("patient-1", AlertSeverity.MEDIUM, AlertType.TREND,
+            Instant.ofEpochMilli(40 * MINUTE), "Warning, patient with id: patient-1, blood pressure rising 30.0/0.0 per hour"));
+    }
+}